@@ -0,0 +1,185 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.modeln.batam.connector.wrapper.BuildEntry;
+import com.modeln.batam.connector.wrapper.ReportEntry;
+import com.modeln.batam.connector.wrapper.TestEntry;
+
+/**
+ * Running {@link com.modeln.batam.connector.TestAggregates TestAggregates} of the builds and reports a connector published tests to.
+ * 
+ * Builds and reports are identified by their id, or by their name when no id is given. 
+ * Tests that don't name their build are attributed to the build their report was created or updated with.
+ * The state of the tests of a build or a report is released once it is updated with an end date.
+ */
+final class Aggregator {
+	
+	private final ConcurrentMap<String, TestAggregates> builds = new ConcurrentHashMap<String, TestAggregates>();
+	
+	private final ConcurrentMap<String, TestAggregates> reports = new ConcurrentHashMap<String, TestAggregates>();
+	
+	/**
+	 * Build key of every report key.
+	 */
+	private final ConcurrentMap<String, String> reportBuilds = new ConcurrentHashMap<String, String>();
+	
+	private final OverheadBudget overheadBudget;
+	
+	/**
+	 * @param overheadBudget : overhead budget the test durations are reported to.
+	 */
+	Aggregator(OverheadBudget overheadBudget) {
+		this.overheadBudget = overheadBudget;
+	}
+	
+	static String key(String id, String name) {
+		return id != null ? id : name;
+	}
+	
+	private static TestAggregates get(ConcurrentMap<String, TestAggregates> aggregates, String key) {
+		TestAggregates aggregate = aggregates.get(key);
+		if(aggregate == null){
+			TestAggregates created = new TestAggregates();
+			aggregate = aggregates.putIfAbsent(key, created);
+			if(aggregate == null){
+				aggregate = created;
+			}
+		}
+		return aggregate;
+	}
+	
+	/**
+	 * @return build key, null if neither the build nor the build of the report are known.
+	 */
+	String buildKey(String buildId, String buildName, String reportKey) {
+		String buildKey = key(buildId, buildName);
+		return buildKey != null ? buildKey : reportBuilds.get(reportKey);
+	}
+	
+	/**
+	 * Remember the build of a report.
+	 */
+	void report(String buildId, String buildName, String reportId, String reportName) {
+		String reportKey = key(reportId, reportName);
+		String buildKey = key(buildId, buildName);
+		if(reportKey != null && buildKey != null){
+			reportBuilds.put(reportKey, buildKey);
+		}
+	}
+	
+	/**
+	 * Aggregate a published test.
+	 * 
+	 * @param buildId : build id of the test, null to use the test one.
+	 * @param buildName : build name of the test, null to use the test one.
+	 * @param reportId : report id of the test, null to use the test one.
+	 * @param reportName : report name of the test, null to use the test one.
+	 * @param test : published test.
+	 */
+	void test(String buildId, String buildName, String reportId, String reportName, TestEntry test) {
+		String reportKey = key(reportId != null ? reportId : test.getReportId(), reportName != null ? reportName : test.getReportName());
+		String testKey = key(test.getId(), test.getName());
+		if(reportKey == null || testKey == null){
+			return;
+		}
+		String buildKey = buildKey(buildId != null ? buildId : test.getBuildId(), buildName != null ? buildName : test.getBuildName(), reportKey);
+		Long startDate = time(test.getStartTime());
+		Long endDate = time(test.getEndTime());
+		overheadBudget.addTestTime(get(reports, reportKey).record(testKey, test.getStatus(), startDate, endDate));
+		if(buildKey != null){
+			get(builds, buildKey).record(reportKey + "/" + testKey, test.getStatus(), startDate, endDate);
+		}
+	}
+	
+	/**
+	 * Aggregate a summarized passing test.
+	 */
+	void pass(String buildId, String buildName, String reportId, String reportName, long duration) {
+		String reportKey = key(reportId, reportName);
+		String buildKey = buildKey(buildId, buildName, reportKey);
+		get(reports, reportKey).recordPass(duration);
+		overheadBudget.addTestTime(duration);
+		if(buildKey != null){
+			get(builds, buildKey).recordPass(duration);
+		}
+	}
+	
+	private static Long time(long time) {
+		return time == TestEntry.NO_TIME ? null : time;
+	}
+	
+	TestAggregates getBuild(String id, String name) {
+		String key = key(id, name);
+		return key == null ? null : builds.get(key);
+	}
+	
+	TestAggregates getReport(String id, String name) {
+		String key = key(id, name);
+		return key == null ? null : reports.get(key);
+	}
+	
+	/**
+	 * Attach the report aggregates, if any, to an updated report.
+	 */
+	@SuppressWarnings("unchecked")
+	void attach(ReportEntry report) {
+		report(report.getBuildId(), report.getBuildName(), report.getId(), report.getName());
+		TestAggregates aggregates = getReport(report.getId(), report.getName());
+		if(aggregates != null){
+			report.setAggregates(aggregates.toJSON());
+			if(report.getEndDate() != null){
+				aggregates.release("");
+				String reportKey = key(report.getId(), report.getName());
+				TestAggregates build = getBuild(null, buildKey(report.getBuildId(), report.getBuildName(), reportKey));
+				if(build != null){
+					build.release(reportKey + "/");
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Attach the build aggregates, if any, to an updated build.
+	 */
+	@SuppressWarnings("unchecked")
+	void attach(BuildEntry build) {
+		TestAggregates aggregates = getBuild(build.getId(), build.getName());
+		if(aggregates != null){
+			build.setAggregates(aggregates.toJSON());
+			if(build.getEndDate() != null){
+				aggregates.release("");
+			}
+		}
+	}
+	
+	void clear() {
+		builds.clear();
+		reports.clear();
+		reportBuilds.clear();
+	}
+}
@@ -0,0 +1,173 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.modeln.batam.connector.util.ThreadHelper;
+import com.modeln.batam.connector.wrapper.BuildEntry;
+
+/**
+ * Collapse bursts of run_analysis triggers of a build into a single one.
+ * 
+ * A trigger is published once no other trigger has been received for the same build during the quiet period. 
+ * The override flags of collapsed triggers are combined (if any trigger overrides, the published one does).
+ * The debouncer must be closed before the connection ends, so that no trigger is published afterwards.
+ */
+class AnalysisDebouncer {
+	
+	private final static PublishListener FAILURE_LISTENER = new PublishListener() {
+		public void onSuccess(PublishResult result) {
+		}
+		public void onFailure(Throwable cause) {
+			System.err.println("Batam run_analysis trigger could not be published: " + cause.getMessage());
+		}
+	};
+	
+	private static class PendingTrigger {
+		BuildEntry build;
+		ScheduledFuture<?> task;
+	}
+	
+	private final Connector connector;
+	
+	private final long quietPeriod;
+	
+	private final ScheduledExecutorService scheduler;
+	
+	private final Map<String, PendingTrigger> pending = new LinkedHashMap<String, PendingTrigger>();
+	
+	private boolean closed = false;
+
+	/**
+	 * @param connector : connector publishing triggers.
+	 * @param quietPeriod : quiet period in milliseconds.
+	 */
+	AnalysisDebouncer(Connector connector, long quietPeriod) {
+		this.connector = connector;
+		this.quietPeriod = quietPeriod;
+		this.scheduler = new ScheduledThreadPoolExecutor(1, ThreadHelper.newThreadFactory("batam-analysis-" + connector.getName() + "-", false));
+	}
+	
+	long getQuietPeriod() {
+		return quietPeriod;
+	}
+	
+	/**
+	 * Register a trigger, postponing the pending trigger of the same build if any.
+	 * 
+	 * @param id : build id.
+	 * @param name : build name.
+	 * @param override : override flag.
+	 * @return message that will be published if no other trigger is received, null if the debouncer has been closed.
+	 */
+	String trigger(String id, String name, boolean override) {
+		final String key = id + "/" + name;
+		synchronized (pending) {
+			if(closed){
+				return null;
+			}
+			PendingTrigger trigger = pending.get(key);
+			if(trigger == null){
+				trigger = new PendingTrigger();
+				pending.put(key, trigger);
+			}else{
+				trigger.task.cancel(false);
+				override |= trigger.build.isOverride();
+			}
+			trigger.build = new BuildEntry(id, name, null, null, null, null, null, null, null, null, null, override);
+			trigger.task = scheduler.schedule(new Runnable() {
+				public void run() {
+					fire(key);
+				}
+			}, quietPeriod, TimeUnit.MILLISECONDS);
+			return Connector.toMessage(Connector.RUN_ANALYSIS_ACTION, trigger.build.toJSONString());
+		}
+	}
+	
+	private void fire(String key) {
+		PendingTrigger trigger;
+		synchronized (pending) {
+			trigger = pending.remove(key);
+		}
+		if(trigger != null){
+			publish(trigger.build);
+		}
+	}
+	
+	private void publish(BuildEntry build) {
+		try {
+			connector.publishAsync(Connector.RUN_ANALYSIS_ACTION, build.toJSONString(), 
+					MessageHeaders.of(Connector.RUN_ANALYSIS_ACTION, build)).addListener(FAILURE_LISTENER);
+		} catch (IOException e) {
+			FAILURE_LISTENER.onFailure(e);
+		} catch (RuntimeException e) {
+			FAILURE_LISTENER.onFailure(e);
+		}
+	}
+	
+	/**
+	 * Publish every pending trigger right away.
+	 * 
+	 * @return number of published triggers.
+	 */
+	int flush() {
+		List<PendingTrigger> triggers;
+		synchronized (pending) {
+			triggers = new ArrayList<PendingTrigger>(pending.values());
+			pending.clear();
+		}
+		for(PendingTrigger trigger : triggers){
+			trigger.task.cancel(false);
+			publish(trigger.build);
+		}
+		return triggers.size();
+	}
+	
+	/**
+	 * Publish every pending trigger and stop the scheduler. Following triggers are refused.
+	 * 
+	 * @param timeout : maximum time to wait for a trigger being published by the scheduler, in milliseconds.
+	 */
+	void close(long timeout) {
+		synchronized (pending) {
+			closed = true;
+		}
+		flush();
+		scheduler.shutdown();
+		try {
+			scheduler.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
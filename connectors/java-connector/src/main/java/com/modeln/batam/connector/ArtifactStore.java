@@ -0,0 +1,283 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.modeln.batam.connector.exception.InvalidArgumentException;
+import com.modeln.batam.connector.util.ThreadHelper;
+
+/**
+ * Local content-addressed store for screenshots, HTML dumps and other large blobs attached to builds and reports.
+ * 
+ * Files are hashed (SHA-256) on a pool of background threads and copied once into a directory sharded on the first 
+ * characters of their hash: <i>ab/cd/abcd...ef.png</i>. Identical files are stored once, whatever their name, and 
+ * messages only carry the hash and the URL the store is served at.
+ * 
+ * <PRE>
+ * Future&lt;ArtifactStore.Artifact&gt; screenshot = artifactStore.store(new File("login.png"));
+ * ...
+ * report.setScreenshotURL(screenshot.get().getUrl());
+ * </PRE>
+ */
+public class ArtifactStore {
+	
+	private final static String HASH_ALGORITHM = "SHA-256";
+	
+	private final static int BUFFER_SIZE = 65536;
+	
+	private final static char[] HEX = "0123456789abcdef".toCharArray();
+	
+	/**
+	 * Stored file.
+	 */
+	public static class Artifact {
+		
+		private final String hash;
+		
+		private final String url;
+		
+		private final long length;
+		
+		private final boolean duplicate;
+		
+		Artifact(String hash, String url, long length, boolean duplicate) {
+			this.hash = hash;
+			this.url = url;
+			this.length = length;
+			this.duplicate = duplicate;
+		}
+		
+		/**
+		 * @return hexadecimal SHA-256 hash of the file content.
+		 */
+		public String getHash() {
+			return hash;
+		}
+		
+		/**
+		 * @return URL of the stored file.
+		 */
+		public String getUrl() {
+			return url;
+		}
+		
+		/**
+		 * @return file length in bytes.
+		 */
+		public long getLength() {
+			return length;
+		}
+		
+		/**
+		 * @return true if the same content was already stored, the file has not been copied.
+		 */
+		public boolean isDuplicate() {
+			return duplicate;
+		}
+	}
+	
+	private final File directory;
+	
+	private final String baseUrl;
+	
+	private final ExecutorService executor;
+	
+	/**
+	 * Relative paths known to be stored, avoids checking the file system for duplicates.
+	 */
+	private final Set<String> stored = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/**
+	 * @param directory : store root directory.
+	 * @param baseUrl : URL the store root directory is served at.
+	 * @param threads : number of hashing threads.
+	 */
+	public ArtifactStore(File directory, String baseUrl, int threads) {
+		if(directory == null){
+			throw new InvalidArgumentException("Artifact store directory should be provided.");
+		}
+		if(threads < 1){
+			throw new InvalidArgumentException("At least one hashing thread is required.");
+		}
+		this.directory = directory;
+		this.baseUrl = baseUrl == null ? "" : baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+		this.executor = Executors.newFixedThreadPool(threads, ThreadHelper.newThreadFactory("batam-artifacts-", false));
+	}
+	
+	/**
+	 * @param directory : store root directory.
+	 * @param baseUrl : URL the store root directory is served at.
+	 */
+	public ArtifactStore(File directory, String baseUrl) {
+		this(directory, baseUrl, Runtime.getRuntime().availableProcessors());
+	}
+	
+	public File getDirectory() {
+		return directory;
+	}
+	
+	/**
+	 * Hash and store a file on a background thread.
+	 * 
+	 * @param file : file to store.
+	 * @return stored artifact.
+	 */
+	public Future<Artifact> store(final File file) {
+		return executor.submit(new Callable<Artifact>() {
+			public Artifact call() throws IOException {
+				return storeFile(file);
+			}
+		});
+	}
+	
+	/**
+	 * Hash and store a file on the calling thread.
+	 * 
+	 * @param file : file to store.
+	 * @return stored artifact.
+	 * @throws IOException
+	 */
+	public Artifact storeFile(File file) throws IOException {
+		String hash = hash(file);
+		String path = path(hash, extension(file.getName()));
+		boolean duplicate = stored.contains(path);
+		if(!duplicate){
+			File target = new File(directory, path);
+			duplicate = target.exists();
+			if(!duplicate){
+				duplicate = !copy(file, target);
+			}
+			stored.add(path);
+		}
+		return new Artifact(hash, baseUrl + path, file.length(), duplicate);
+	}
+	
+	/**
+	 * @param hash : hexadecimal hash of the file content.
+	 * @param extension : lower case file extension including the dot, empty if none.
+	 * @return path of the file relative to the store root directory.
+	 */
+	static String path(String hash, String extension) {
+		return hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + extension;
+	}
+	
+	/**
+	 * The extension is kept so that stored files are served with the right content type.
+	 */
+	static String extension(String name) {
+		int dot = name.lastIndexOf('.');
+		if(dot <= 0 || dot == name.length() - 1){
+			return "";
+		}
+		return name.substring(dot).toLowerCase();
+	}
+	
+	static String hash(File file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(HASH_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(HASH_ALGORITHM + " is not supported by this JVM.", e);
+		}
+		byte[] buffer = new byte[BUFFER_SIZE];
+		InputStream in = new FileInputStream(file);
+		try {
+			int count;
+			while((count = in.read(buffer)) != -1){
+				digest.update(buffer, 0, count);
+			}
+		}finally{
+			in.close();
+		}
+		
+		byte[] bytes = digest.digest();
+		char[] hex = new char[bytes.length * 2];
+		for(int i = 0; i < bytes.length; i++){
+			hex[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+			hex[i * 2 + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(hex);
+	}
+	
+	/**
+	 * Copy to a temporary file renamed once complete, so that a stored file is never read partially written.
+	 * 
+	 * @return false if another thread or process stored the same content meanwhile.
+	 */
+	private boolean copy(File file, File target) throws IOException {
+		File shard = target.getParentFile();
+		if(!shard.isDirectory() && !shard.mkdirs() && !shard.isDirectory()){
+			throw new IOException("Artifact store directory " + shard + " could not be created.");
+		}
+		File temporary = File.createTempFile(target.getName(), ".tmp", shard);
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			InputStream in = new FileInputStream(file);
+			try {
+				OutputStream out = new FileOutputStream(temporary);
+				try {
+					int count;
+					while((count = in.read(buffer)) != -1){
+						out.write(buffer, 0, count);
+					}
+				}finally{
+					out.close();
+				}
+			}finally{
+				in.close();
+			}
+			if(temporary.renameTo(target)){
+				return true;
+			}
+			if(target.exists()){
+				return false;
+			}
+			throw new IOException("Artifact " + target + " could not be stored.");
+		}finally{
+			temporary.delete();
+		}
+	}
+	
+	/**
+	 * Stop hashing threads once pending files have been stored.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,367 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.modeln.batam.connector.util.RingBuffer;
+import com.modeln.batam.connector.util.Utf8;
+import com.modeln.batam.connector.util.WaitStrategy;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+
+/**
+ * Background publisher used by the asynchronous Connector APIs.
+ * 
+ * Producer threads hand messages over through a lock free {@link com.modeln.batam.connector.util.RingBuffer RingBuffer}. 
+ * A single thread owning its own channel in confirm mode publishes them.
+ * Futures complete when the broker acknowledges the message.
+ * 
+ * When the publisher is closed and time runs out, test level messages are dropped first so that build and report level 
+ * messages still get published.
+ */
+class AsyncPublisher implements Runnable, ConfirmListener, ShutdownListener {
+	
+	final static int DEFAULT_CAPACITY = 8192;
+	
+	final static Executor DIRECT_EXECUTOR = new Executor() {
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+	
+	private final static long POLL_TIMEOUT = TimeUnit.MILLISECONDS.toNanos(100);
+	
+	private final Connector connector;
+	
+	private final Executor callbackExecutor;
+	
+	private final RingBuffer<PublishEvent> ring;
+	
+	private final SortedMap<Long, PublishFuture> unconfirmed = new ConcurrentSkipListMap<Long, PublishFuture>();
+	
+	private final AtomicInteger inFlight = new AtomicInteger();
+	
+	private final AtomicInteger submitting = new AtomicInteger();
+	
+	private final Lock idleLock = new ReentrantLock();
+	
+	private final Condition idle = idleLock.newCondition();
+	
+	private final Thread thread;
+	
+	private volatile boolean running = true;
+	
+	private volatile boolean dropTests = false;
+	
+	private volatile boolean dropAll = false;
+	
+	private final ConcurrentMap<String, AtomicInteger> dropped = new ConcurrentHashMap<String, AtomicInteger>();
+	
+	private Channel channel;
+
+	/**
+	 * @param connector : connector providing the channel.
+	 * @param callbackExecutor : executor running future listeners, null to run them on the completing thread.
+	 * @param threadFactory : factory creating the publisher thread.
+	 * @param capacity : ring buffer capacity, rounded up to a power of 2.
+	 * @param waitStrategy : publisher thread wait strategy.
+	 */
+	AsyncPublisher(Connector connector, Executor callbackExecutor, ThreadFactory threadFactory, int capacity, WaitStrategy waitStrategy) {
+		this.connector = connector;
+		this.callbackExecutor = callbackExecutor == null ? DIRECT_EXECUTOR : callbackExecutor;
+		int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		this.ring = new RingBuffer<PublishEvent>(size, PublishEvent.FACTORY, waitStrategy);
+		this.thread = threadFactory.newThread(this);
+		this.thread.start();
+	}
+	
+	/**
+	 * Queue a message. Waits while the ring buffer is full.
+	 * 
+	 * @param action : message action.
+	 * @param message : formatted message.
+	 * @param headers : message headers.
+	 * @return future completed once the message is confirmed.
+	 * @throws IOException
+	 */
+	PublishFuture submit(String action, String message, Map<String, Object> headers) throws IOException {
+		//Announced before checking running, the publisher thread does not exit while a submit may still claim a slot.
+		submitting.incrementAndGet();
+		try {
+			if(!running){
+				throw new IOException("Publisher has been closed.");
+			}
+			PublishFuture future = new PublishFuture(action, message, headers, callbackExecutor);
+			inFlight.incrementAndGet();
+			long sequence = ring.next();
+			ring.get(sequence).future = future;
+			ring.publish(sequence);
+			return future;
+		}finally{
+			submitting.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * @return number of messages that can be queued without waiting.
+	 */
+	int remainingCapacity() {
+		return ring.remainingCapacity();
+	}
+	
+	/**
+	 * @return number of messages queued or waiting for a broker confirmation.
+	 */
+	int getInFlight() {
+		return inFlight.get();
+	}
+	
+	/**
+	 * Wait until every queued message has been confirmed.
+	 * 
+	 * @param timeout : maximum time to wait in milliseconds.
+	 * @return true if no message is pending anymore.
+	 * @throws InterruptedException
+	 */
+	boolean awaitIdle(long timeout) throws InterruptedException {
+		long remaining = TimeUnit.MILLISECONDS.toNanos(timeout);
+		idleLock.lock();
+		try {
+			while(inFlight.get() > 0){
+				if(remaining <= 0){
+					return false;
+				}
+				remaining = idle.awaitNanos(remaining);
+			}
+		}finally{
+			idleLock.unlock();
+		}
+		return true;
+	}
+	
+	/**
+	 * Stop accepting messages, wait for pending ones and close the publisher channel.
+	 * 
+	 * Test level messages still queued after three quarters of the timeout are dropped, 
+	 * every message still queued once the timeout elapsed is dropped.
+	 * 
+	 * @param timeout : maximum time to wait in milliseconds.
+	 * @return true if every pending message has been confirmed.
+	 */
+	boolean close(long timeout) {
+		running = false;
+		boolean drained;
+		try {
+			long testsTimeout = timeout * 3 / 4;
+			drained = awaitIdle(testsTimeout);
+			if(!drained){
+				dropTests = true;
+				drained = awaitIdle(timeout - testsTimeout);
+			}
+			if(!drained){
+				dropAll = true;
+			}
+			thread.join(TimeUnit.NANOSECONDS.toMillis(POLL_TIMEOUT) * 2);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			drained = false;
+		}
+		Channel current = channel;
+		if(current != null && current.isOpen()){
+			try {
+				current.close();
+			} catch (IOException e) {
+				// Channel is going away anyway.
+			}
+		}
+		return drained;
+	}
+	
+	/**
+	 * @return number of messages dropped while closing the publisher, by action.
+	 */
+	Map<String, Integer> getDropped() {
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		for(Map.Entry<String, AtomicInteger> entry : dropped.entrySet()){
+			counts.put(entry.getKey(), entry.getValue().get());
+		}
+		return counts;
+	}
+	
+	/**
+	 * @return number of messages sent but not confirmed by the message broker.
+	 */
+	int getUnconfirmed() {
+		return unconfirmed.size();
+	}
+
+	public void run() {
+		long next = 0;
+		while(running || submitting.get() > 0 || ring.hasPending()){
+			long available = ring.waitFor(next, POLL_TIMEOUT);
+			for(; next <= available; next++){
+				PublishEvent event = ring.get(next);
+				PublishFuture future = event.future;
+				event.clear();
+				send(future);
+			}
+			ring.release(next - 1);
+		}
+	}
+	
+	private static boolean isTestAction(String action) {
+		return Connector.CREATE_TEST_ACTION.equals(action) || Connector.UPDATE_TEST_ACTION.equals(action);
+	}
+	
+	private void drop(PublishFuture future) {
+		AtomicInteger count = dropped.get(future.action);
+		if(count == null){
+			AtomicInteger created = new AtomicInteger();
+			count = dropped.putIfAbsent(future.action, created);
+			if(count == null){
+				count = created;
+			}
+		}
+		count.incrementAndGet();
+		complete(future, new IOException("Message dropped while closing the publisher."));
+	}
+	
+	private void send(PublishFuture future) {
+		if(dropAll || (dropTests && isTestAction(future.action))){
+			drop(future);
+			return;
+		}
+		long sequence = -1;
+		try {
+			//Messages buffered during the connection warm-up wait for the connection to be configured.
+			connector.awaitWarmUp();
+			RelayClient relay = connector.getRelayClient();
+			if(relay != null){
+				future.size = relay.send(future.action, future.message, future.headers);
+				complete(future, null);
+				return;
+			}
+			byte[] body = Utf8.encode(future.message);
+			future.size = body.length;
+			if(!connector.isPublishing()){
+				System.out.println(future.message);
+				complete(future, null);
+				return;
+			}
+			
+			Channel current = channel();
+			sequence = current.getNextPublishSeqNo();
+			unconfirmed.put(sequence, future);
+			current.basicPublish(connector.getExchange(), connector.getRoutingKey(future.action), 
+					MessageHeaders.toProperties(future.headers), body);
+		} catch (IOException e) {
+			fail(future, sequence, e);
+		} catch (RuntimeException e) {
+			//Keep the publisher thread alive.
+			fail(future, sequence, e);
+		}
+	}
+	
+	private void fail(PublishFuture future, long sequence, Throwable failure) {
+		if(sequence < 0 || unconfirmed.remove(sequence) != null){
+			complete(future, failure);
+		}
+	}
+	
+	private Channel channel() throws IOException {
+		if(channel == null || !channel.isOpen()){
+			channel = connector.createChannel();
+			channel.confirmSelect();
+			channel.addConfirmListener(this);
+			channel.addShutdownListener(this);
+		}
+		return channel;
+	}
+	
+	private void complete(PublishFuture future, Throwable failure) {
+		PublishResult result = null;
+		if(failure == null){
+			result = new PublishResult(future.action, future.message, future.headers, future.size, System.nanoTime() - future.submitted);
+		}
+		future.complete(result, failure);
+		if(inFlight.decrementAndGet() == 0){
+			idleLock.lock();
+			try {
+				idle.signalAll();
+			}finally{
+				idleLock.unlock();
+			}
+		}
+	}
+
+	public void handleAck(long deliveryTag, boolean multiple) throws IOException {
+		confirm(deliveryTag, multiple, null);
+	}
+
+	public void handleNack(long deliveryTag, boolean multiple) throws IOException {
+		confirm(deliveryTag, multiple, new IOException("Message rejected by the message broker."));
+	}
+	
+	private void confirm(long deliveryTag, boolean multiple, Throwable failure) {
+		if(multiple){
+			for(Long sequence : unconfirmed.headMap(deliveryTag + 1).keySet()){
+				PublishFuture future = unconfirmed.remove(sequence);
+				if(future != null){
+					complete(future, failure);
+				}
+			}
+		}else{
+			PublishFuture future = unconfirmed.remove(deliveryTag);
+			if(future != null){
+				complete(future, failure);
+			}
+		}
+	}
+
+	public void shutdownCompleted(ShutdownSignalException cause) {
+		//Messages waiting for a confirmation on a closed channel will never be confirmed.
+		for(Long sequence : unconfirmed.keySet()){
+			PublishFuture future = unconfirmed.remove(sequence);
+			if(future != null){
+				complete(future, cause);
+			}
+		}
+	}
+}
@@ -0,0 +1,304 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.modeln.batam.connector.exception.InvalidArgumentException;
+import com.modeln.batam.connector.wrapper.BuildEntry;
+
+/**
+ * Build scoped publishing API.
+ * 
+ * A session holds the build identity once so that reports and tests published within its scope don't have to repeat it.
+ * Messages are batched and sent over a single connection when the session is flushed or closed.
+ * 
+ * <PRE>
+ * BuildSession session = ConnectorHelper.openBuildSession(null, "My Build");
+ * try {
+ * 	ReportSession report = session.report("suite");
+ * 	report.start();
+ * 	report.test("name").pass();
+ * 	report.end("completed");
+ * } finally {
+ * 	session.close();
+ * }
+ * </PRE>
+ */
+public class BuildSession implements Closeable {
+	
+	private final static int DEFAULT_BATCH_SIZE = 100;
+	
+	private final static int DEGRADED_BATCH_FACTOR = 4;
+	
+	private static class PendingMessage {
+		final String action;
+		final String message;
+		final Map<String, Object> headers;
+		
+		PendingMessage(String action, String message, Map<String, Object> headers) {
+			this.action = action;
+			this.message = message;
+			this.headers = headers;
+		}
+	}
+	
+	private final Connector connector;
+	
+	private final boolean manageConnection;
+	
+	private final String id;
+	
+	private final String name;
+	
+	private final Object lock = new Object();
+	
+	/**
+	 * Held while publishing, so that concurrent flushes publish their batches in order.
+	 */
+	private final Object publishLock = new Object();
+	
+	private List<PendingMessage> pending = new ArrayList<PendingMessage>();
+	
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	
+	/**
+	 * Report and name of the tests started and not finished yet.
+	 */
+	private final Set<String> startedTests = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	BuildSession(Connector connector, String id, String name, boolean manageConnection) {
+		if(id == null && name == null){
+			throw new InvalidArgumentException("At least one of the fields id and name should be provided.");
+		}
+		this.connector = connector;
+		this.id = id;
+		this.name = name;
+		this.manageConnection = manageConnection;
+		connector.registerSession(this);
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Set the number of queued messages triggering a flush.
+	 * @param batchSize : number of messages (1 publishes every message immediately).
+	 */
+	public void setBatchSize(int batchSize) {
+		if(batchSize < 1){
+			throw new InvalidArgumentException("batchSize should be greater than 0.");
+		}
+		this.batchSize = batchSize;
+	}
+	
+	/**
+	 * Get a report session within this build.
+	 * 
+	 * @param name : Report Name.
+	 * @return report session.
+	 */
+	public ReportSession report(String name) {
+		return report(null, name);
+	}
+	
+	/**
+	 * Get a report session within this build.
+	 * 
+	 * @param id : Report id (required if name not provided).
+	 * @param name : Report Name (required if id not provided and if report has a unique name in your build).
+	 * @return report session.
+	 */
+	public ReportSession report(String id, String name) {
+		return new ReportSession(this, id, name);
+	}
+	
+	/**
+	 * Create the build with the current date as start date.
+	 * 
+	 * @return queued message.
+	 * @throws IOException
+	 */
+	public String start() throws IOException {
+		if(name == null){
+			throw new InvalidArgumentException("name field should not be null.");
+		}
+		BuildEntry build = new BuildEntry(id, name, new Date(), null, null, null, null, null, null, null, null, false);
+		return enqueue(Connector.CREATE_BUILD_ACTION, build.toJSONString(), null, null);
+	}
+	
+	/**
+	 * Update the build end date and status.
+	 * 
+	 * @param status : Build status.
+	 * @return queued message.
+	 * @throws IOException
+	 */
+	public String end(String status) throws IOException {
+		BuildEntry build = new BuildEntry(id, name, null, new Date(), status, null, null, null, null, null, null, false);
+		return enqueue(Connector.UPDATE_BUILD_ACTION, connector.toJSONString(build), null, null);
+	}
+	
+	/**
+	 * Run the build analysis. Pending messages are flushed first, 
+	 * then the trigger is published like {@link Connector#runAnalysis(BuildEntry) runAnalysis} ones (debounced if the connector is configured so).
+	 * 
+	 * @param override : false if the build is new, Otherwise true if test have been overriding previous test results from already analyzed build.
+	 * @return published message.
+	 * @throws IOException
+	 */
+	public String runAnalysis(boolean override) throws IOException {
+		flush();
+		BuildEntry build = new BuildEntry(id, name, null, null, null, null, null, null, null, null, null, override);
+		if(manageConnection){
+			try {
+				ConnectorHelper.beginConnection(connector);
+				return connector.runAnalysis(build);
+			}finally{
+				ConnectorHelper.endConnection(connector);
+			}
+		}
+		return connector.runAnalysis(build);
+	}
+	
+	/**
+	 * Remember that a test has been created.
+	 */
+	void started(String test) {
+		startedTests.add(test);
+	}
+	
+	/**
+	 * @return true if the test has been created by {@link #started(String) started}, false if it still has to be created.
+	 */
+	boolean finished(String test) {
+		return startedTests.remove(test);
+	}
+	
+	Connector getConnector() {
+		return connector;
+	}
+	
+	Aggregator getAggregator() {
+		return connector.getAggregator();
+	}
+	
+	/**
+	 * Queue a message for the given action.
+	 * 
+	 * @param action : message action.
+	 * @param data : JSON serialized entry.
+	 * @param reportId : report id of report and test messages.
+	 * @param reportName : report name of report and test messages.
+	 * @return queued message.
+	 * @throws IOException
+	 */
+	String enqueue(String action, String data, String reportId, String reportName) throws IOException {
+		OverheadBudget overheadBudget = connector.getOverheadBudget();
+		long start = overheadBudget.enter();
+		try {
+			String message = Connector.toMessage(action, data);
+			PendingMessage entry = new PendingMessage(action, message, MessageHeaders.of(action, id, name, reportId, reportName));
+			// Larger batches once the connector overhead exceeded its budget.
+			int size = overheadBudget.isDegraded() ? batchSize * DEGRADED_BATCH_FACTOR : batchSize;
+			boolean full;
+			synchronized(lock){
+				pending.add(entry);
+				full = pending.size() >= size;
+			}
+			if(full){
+				flush();
+			}
+			return message;
+		}finally{
+			overheadBudget.exit(start);
+		}
+	}
+	
+	/**
+	 * Publish every queued message. Messages left unpublished by a failure stay queued for the next flush.
+	 * Concurrent flushes publish one after the other, in queuing order.
+	 * 
+	 * @throws IOException
+	 */
+	public void flush() throws IOException {
+		synchronized(publishLock){
+			List<PendingMessage> messages;
+			synchronized(lock){
+				if(pending.isEmpty()){
+					return;
+				}
+				messages = pending;
+				pending = new ArrayList<PendingMessage>();
+			}
+			
+			int published = 0;
+			try {
+				if(manageConnection){
+					ConnectorHelper.beginConnection(connector);
+				}
+				for(PendingMessage message : messages){
+					connector.publishMessage(message.action, message.message, message.headers);
+					published++;
+				}
+			}finally{
+				if(published < messages.size()){
+					//Put the unpublished tail back ahead of the messages queued meanwhile.
+					synchronized(lock){
+						pending.addAll(0, messages.subList(published, messages.size()));
+					}
+				}
+				if(manageConnection){
+					ConnectorHelper.endConnection(connector);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Flush queued messages. Open sessions are also flushed when the JVM shuts down, 
+	 * so a session which could not be flushed stays registered for the shutdown flush.
+	 */
+	public void close() throws IOException {
+		flush();
+		connector.unregisterSession(this);
+	}
+}
@@ -0,0 +1,504 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.simple.JSONObject;
+
+import com.modeln.batam.connector.util.JsonReader;
+import com.modeln.batam.connector.util.ThreadHelper;
+import com.modeln.batam.connector.wrapper.BuildEntry;
+import com.modeln.batam.connector.wrapper.ReportEntry;
+import com.modeln.batam.connector.wrapper.TestEntry;
+
+/**
+ * Imports newline delimited action records, one <code>{"action": "create_test", "data": {...}}</code> object per line.
+ * 
+ * Lines are parsed on a pool of worker threads and published in their original order with the asynchronous APIs, 
+ * over a single connection. At most a window of parsed records is held in memory, whatever the size of the input.
+ * 
+ * <PRE>
+ * BulkImport.Report report = new BulkImport(Connector.getInstance(), 4).run(new FileReader("results.ndjson"));
+ * System.out.println(report);
+ * </PRE>
+ */
+public class BulkImport {
+	
+	/**
+	 * Maximum number of failure messages kept for the report.
+	 */
+	public final static int MAX_ERRORS = 100;
+	
+	private final static long PUBLISH_TIMEOUT = 60000;
+	
+	private final Connector connector;
+	
+	private final int workers;
+	
+	private final int window;
+	
+	private final AtomicLong published = new AtomicLong();
+	
+	private final AtomicLong failed = new AtomicLong();
+	
+	private final AtomicLong rejected = new AtomicLong();
+	
+	private final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+	
+	/**
+	 * Lines, or records of a JSON document, confirmed by the message broker or skipped because they could not be parsed.
+	 */
+	private final BitSet settled = new BitSet();
+	
+	/**
+	 * @param connector : connector publishing records.
+	 * @param workers : number of parsing threads.
+	 */
+	public BulkImport(Connector connector, int workers) {
+		this.connector = connector;
+		this.workers = Math.max(1, workers);
+		this.window = this.workers * 64;
+	}
+	
+	/**
+	 * Read every record of the input and publish it.
+	 * 
+	 * @param in : newline delimited records.
+	 * @return import report.
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public Report run(Reader in) throws IOException, InterruptedException {
+		long start = System.nanoTime();
+		long records = 0;
+		boolean confirmed;
+		ExecutorService parsers = Executors.newFixedThreadPool(workers, ThreadHelper.newThreadFactory("batam-bulk-", false));
+		Queue<Future<Record>> parsed = new LinkedList<Future<Record>>();
+		long number = 0;
+		clearSettled();
+		try {
+			ConnectorHelper.beginConnection(connector);
+			BufferedReader lines = new BufferedReader(in);
+			String line;
+			while((line = lines.readLine()) != null){
+				number++;
+				if(line.trim().isEmpty()){
+					settle(number);
+					continue;
+				}
+				records++;
+				if(parsed.size() == window){
+					publish(parsed.poll());
+				}
+				final long lineNumber = number;
+				final String record = line;
+				parsed.add(parsers.submit(new Callable<Record>() {
+					public Record call() {
+						return parse(lineNumber, record);
+					}
+				}));
+			}
+			while(!parsed.isEmpty()){
+				publish(parsed.poll());
+			}
+			confirmed = connector.awaitPublished(PUBLISH_TIMEOUT, TimeUnit.MILLISECONDS);
+		}finally{
+			parsers.shutdownNow();
+			ConnectorHelper.endConnection(connector);
+		}
+		return new Report(records, published.get(), failed.get(), rejected.get(), confirmed, settledPrefix(number), 
+				System.nanoTime() - start, new ArrayList<String>(errors));
+	}
+	
+	/**
+	 * Publish the records of a JSON document holding a single record or an array of records. 
+	 * Records are bound on the calling thread as they are read, failures are numbered after their position in the document.
+	 * 
+	 * @param reader : JSON document.
+	 * @return import report.
+	 * @throws IOException if the document isn't valid JSON, records read before the error are published.
+	 * @throws InterruptedException
+	 */
+	public Report run(JsonReader reader) throws IOException, InterruptedException {
+		return run(reader, 0);
+	}
+	
+	/**
+	 * Publish the records of a JSON document, skipping the ones a previous import already settled.
+	 * 
+	 * @param reader : JSON document.
+	 * @param skip : number of leading records to skip, see {@link Report#getSettled() getSettled}.
+	 * @return import report, its records don't include the skipped ones.
+	 * @throws IOException if the document isn't valid JSON, records read before the error are published.
+	 * @throws InterruptedException
+	 */
+	public Report run(JsonReader reader, long skip) throws IOException, InterruptedException {
+		long start = System.nanoTime();
+		long index = 0;
+		long records = 0;
+		boolean confirmed;
+		clearSettled();
+		try {
+			ConnectorHelper.beginConnection(connector);
+			boolean array = reader.peek() == JsonReader.Token.BEGIN_ARRAY;
+			if(array){
+				reader.beginArray();
+			}
+			while(array ? reader.hasNext() : index == 0){
+				if(++index <= skip){
+					reader.skipValue();
+					settle(index);
+				}else{
+					records++;
+					publish(read(index, reader));
+				}
+			}
+			if(array){
+				reader.endArray();
+			}
+			confirmed = connector.awaitPublished(PUBLISH_TIMEOUT, TimeUnit.MILLISECONDS);
+		}finally{
+			ConnectorHelper.endConnection(connector);
+		}
+		return new Report(records, published.get(), failed.get(), rejected.get(), confirmed, settledPrefix(index), 
+				System.nanoTime() - start, new ArrayList<String>(errors));
+	}
+	
+	/**
+	 * Bind one record.
+	 * 
+	 * @param line : line number, for error messages.
+	 * @param record : JSON record.
+	 * @return bound record, holding its error if it could not be parsed.
+	 */
+	static Record parse(long line, String record) {
+		try {
+			return read(line, new JsonReader(new StringReader(record)));
+		}catch(Exception e){
+			return new Record(line, null, null, e.getMessage() != null ? e.getMessage() : e.toString());
+		}
+	}
+	
+	/**
+	 * Bind the record the reader is positioned on.
+	 * 
+	 * @param line : line or record number, for error messages.
+	 * @param reader : reader positioned on a record object.
+	 * @return bound record, holding its error if its action or data are invalid.
+	 * @throws IOException if the record isn't valid JSON.
+	 */
+	static Record read(long line, JsonReader reader) throws IOException {
+		String action = null;
+		Object entry = null;
+		JSONObject data = null;
+		int depth = reader.getDepth();
+		reader.beginObject();
+		try {
+			while(reader.hasNext()){
+				String field = reader.nextName();
+				if("action".equals(field)){
+					action = reader.nextString();
+				}else if("data".equals(field) && action != null && isAllowed(action)){
+					entry = read(action, reader);
+				}else if("data".equals(field) && action == null){
+					//Data ahead of its action, bound once the action is known.
+					data = (JSONObject)reader.nextValue();
+				}else{
+					reader.skipValue();
+				}
+			}
+		}catch(RuntimeException e){
+			//A value of the wrong type, such as a non numeric date, skip the rest of the record.
+			reader.skipTo(depth);
+			return new Record(line, action, null, e.toString());
+		}
+		reader.endObject();
+		if(action != null && !isAllowed(action)){
+			return new Record(line, action, null, "action " + action + " not allowed.");
+		}
+		if(entry == null && data != null && action != null){
+			try {
+				entry = fromJSON(action, data);
+			}catch(RuntimeException e){
+				return new Record(line, action, null, e.toString());
+			}
+		}
+		if(action == null || entry == null){
+			return new Record(line, action, null, "Both action and data fields are required.");
+		}
+		return new Record(line, action, entry, null);
+	}
+	
+	private static boolean isAllowed(String action) {
+		return Connector.CREATE_BUILD_ACTION.equals(action) || Connector.UPDATE_BUILD_ACTION.equals(action) || Connector.RUN_ANALYSIS_ACTION.equals(action)
+				|| Connector.CREATE_REPORT_ACTION.equals(action) || Connector.UPDATE_REPORT_ACTION.equals(action)
+				|| Connector.CREATE_TEST_ACTION.equals(action) || Connector.UPDATE_TEST_ACTION.equals(action);
+	}
+	
+	private static Object read(String action, JsonReader reader) throws IOException {
+		if(Connector.CREATE_BUILD_ACTION.equals(action) || Connector.UPDATE_BUILD_ACTION.equals(action) || Connector.RUN_ANALYSIS_ACTION.equals(action)){
+			return BuildEntry.read(reader);
+		}else if(Connector.CREATE_REPORT_ACTION.equals(action) || Connector.UPDATE_REPORT_ACTION.equals(action)){
+			return ReportEntry.read(reader);
+		}else if(Connector.CREATE_TEST_ACTION.equals(action) || Connector.UPDATE_TEST_ACTION.equals(action)){
+			return TestEntry.read(reader);
+		}
+		throw new IOException("action " + action + " not allowed.");
+	}
+	
+	private static Object fromJSON(String action, JSONObject data) throws IOException {
+		if(Connector.CREATE_BUILD_ACTION.equals(action) || Connector.UPDATE_BUILD_ACTION.equals(action) || Connector.RUN_ANALYSIS_ACTION.equals(action)){
+			return BuildEntry.fromJSON(data);
+		}else if(Connector.CREATE_REPORT_ACTION.equals(action) || Connector.UPDATE_REPORT_ACTION.equals(action)){
+			return ReportEntry.fromJSON(data);
+		}else if(Connector.CREATE_TEST_ACTION.equals(action) || Connector.UPDATE_TEST_ACTION.equals(action)){
+			return TestEntry.fromJSON(data);
+		}
+		throw new IOException("action " + action + " not allowed.");
+	}
+	
+	private void publish(Future<Record> parsing) throws IOException, InterruptedException {
+		try {
+			publish(parsing.get());
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+	
+	private void publish(final Record record) throws IOException {
+		if(record.error != null){
+			fail(record.line, record.error);
+			settle(record.line);
+			return;
+		}
+		PublishFuture future;
+		if(Connector.CREATE_BUILD_ACTION.equals(record.action)){
+			future = connector.createBuildAsync((BuildEntry)record.entry);
+		}else if(Connector.UPDATE_BUILD_ACTION.equals(record.action)){
+			future = connector.updateBuildAsync((BuildEntry)record.entry);
+		}else if(Connector.RUN_ANALYSIS_ACTION.equals(record.action)){
+			future = connector.runAnalysisAsync((BuildEntry)record.entry);
+		}else if(Connector.CREATE_REPORT_ACTION.equals(record.action)){
+			future = connector.createReportAsync((ReportEntry)record.entry);
+		}else if(Connector.UPDATE_REPORT_ACTION.equals(record.action)){
+			future = connector.updateReportAsync((ReportEntry)record.entry);
+		}else if(Connector.CREATE_TEST_ACTION.equals(record.action)){
+			future = connector.createTestAsync((TestEntry)record.entry);
+		}else{
+			future = connector.updateTestAsync((TestEntry)record.entry);
+		}
+		future.addListener(new PublishListener() {
+			public void onSuccess(PublishResult result) {
+				published.incrementAndGet();
+				settle(record.line);
+			}
+			public void onFailure(Throwable cause) {
+				rejected.incrementAndGet();
+				fail(record.line, cause.getMessage());
+			}
+		});
+	}
+	
+	private void settle(long line) {
+		synchronized(settled){
+			settled.set((int)line);
+		}
+	}
+	
+	private void clearSettled() {
+		synchronized(settled){
+			settled.clear();
+		}
+	}
+	
+	/**
+	 * @return number of leading lines or records settled, out of the given count.
+	 */
+	private long settledPrefix(long count) {
+		synchronized(settled){
+			return Math.min(count, settled.nextClearBit(1) - 1);
+		}
+	}
+	
+	private void fail(long line, String error) {
+		failed.incrementAndGet();
+		if(errors.size() < MAX_ERRORS){
+			errors.add("line " + line + ": " + error);
+		}
+	}
+	
+	/**
+	 * Parsed record, or the reason it could not be parsed.
+	 */
+	static class Record {
+		
+		final long line;
+		
+		final String action;
+		
+		final Object entry;
+		
+		final String error;
+		
+		Record(long line, String action, Object entry, String error) {
+			this.line = line;
+			this.action = action;
+			this.entry = entry;
+			this.error = error;
+		}
+	}
+	
+	/**
+	 * Outcome of an import.
+	 */
+	public static class Report {
+		
+		private final long records;
+		
+		private final long published;
+		
+		private final long failed;
+		
+		private final long rejected;
+		
+		private final boolean confirmed;
+		
+		private final long settled;
+		
+		private final long elapsedNanos;
+		
+		private final List<String> errors;
+		
+		Report(long records, long published, long failed, long rejected, boolean confirmed, long settled, long elapsedNanos, List<String> errors) {
+			this.records = records;
+			this.published = published;
+			this.failed = failed;
+			this.rejected = rejected;
+			this.confirmed = confirmed;
+			this.settled = settled;
+			this.elapsedNanos = elapsedNanos;
+			this.errors = errors;
+		}
+		
+		/**
+		 * @return number of non blank lines read.
+		 */
+		public long getRecords() {
+			return records;
+		}
+		
+		/**
+		 * @return number of records confirmed by the message broker.
+		 */
+		public long getPublished() {
+			return published;
+		}
+		
+		/**
+		 * @return number of records which could not be parsed or published.
+		 */
+		public long getFailed() {
+			return failed;
+		}
+		
+		/**
+		 * @return number of parsed records which could not be published, included in {@link #getFailed() getFailed}.
+		 */
+		public long getRejected() {
+			return rejected;
+		}
+		
+		/**
+		 * @return false if some messages were still waiting for a broker confirmation when the import ended.
+		 */
+		public boolean isConfirmed() {
+			return confirmed;
+		}
+		
+		/**
+		 * A resumed import can start after the settled lines without publishing any record twice.
+		 * 
+		 * @return number of leading lines, or records of a JSON document, confirmed by the message broker 
+		 * or skipped because they could not be parsed.
+		 */
+		public long getSettled() {
+			return settled;
+		}
+		
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+		
+		/**
+		 * @return first {@link BulkImport#MAX_ERRORS MAX_ERRORS} failures, prefixed with their line number.
+		 */
+		public List<String> getErrors() {
+			return errors;
+		}
+		
+		/**
+		 * @return true if every record has been published.
+		 */
+		public boolean isSuccess() {
+			return failed == 0 && published == records;
+		}
+		
+		@Override
+		public String toString() {
+			double seconds = elapsedNanos / 1e9;
+			StringBuilder report = new StringBuilder();
+			report.append(records).append(" records in ").append(String.format("%.2f", seconds)).append(" s (")
+				.append(seconds > 0 ? Math.round(records / seconds) : records).append(" records/s), ")
+				.append(published).append(" published, ").append(failed).append(" failed");
+			if(!confirmed){
+				report.append(", ").append(records - published - failed).append(" not confirmed");
+			}
+			report.append('.');
+			for(String error : errors){
+				report.append('\n').append(error);
+			}
+			if(failed > errors.size()){
+				report.append("\n... ").append(failed - errors.size()).append(" more failures.");
+			}
+			return report.toString();
+		}
+	}
+}
@@ -0,0 +1,181 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reference count of the helper calls sharing a Connector connection.
+ * 
+ * The first user begins the connection and the last one ends it. Every Connector has its own count, 
+ * so helper calls on a named instance never close or reuse the connection of another one.
+ * The connection is begun and ended outside of the lock: concurrent users wait for the same connection 
+ * instead of queuing behind a retried broker handshake, and a new connection waits for the previous one to end.
+ */
+class ConnectionUsers {
+	
+	private final Connector connector;
+	
+	private final Lock lock = new ReentrantLock();
+	
+	private int users = 0;
+	
+	/**
+	 * Connection shared by current users, null when there is none.
+	 */
+	private FutureTask<Void> connection;
+	
+	/**
+	 * End of the previous connection, null if none.
+	 */
+	private FutureTask<Void> disconnection;
+	
+	ConnectionUsers(Connector connector) {
+		this.connector = connector;
+	}
+	
+	/**
+	 * Begin the connection unless another user already did, and wait for it.
+	 * Must be paired with {@link #release() release}, even if it fails.
+	 */
+	void acquire() throws IOException {
+		await(begin(new Callable<Void>() {
+			public Void call() throws IOException {
+				connector.beginConnection();
+				return null;
+			}
+		}));
+	}
+	
+	/**
+	 * Hold a reference on the connection begun by the connection warm-up. It is never released.
+	 */
+	void warmUp() {
+		begin(new Callable<Void>() {
+			public Void call() {
+				connector.warmUp();
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * End the connection if no other user is still using it.
+	 */
+	void release() throws IOException {
+		FutureTask<Void> end = null;
+		lock.lock();
+		try {
+			users--;
+			if(users == 0){
+				//Every user returned from acquire, so the connection is done.
+				connection = null;
+				disconnection = end = new FutureTask<Void>(new Callable<Void>() {
+					public Void call() throws IOException {
+						connector.endConnection();
+						return null;
+					}
+				});
+			}
+		}finally{
+			lock.unlock();
+		}
+		if(end != null){
+			end.run();
+			await(end);
+		}
+	}
+	
+	/**
+	 * Register a user, the first one runs the given connection task.
+	 * 
+	 * @return connection of the current users.
+	 */
+	private FutureTask<Void> begin(final Callable<Void> connect) {
+		FutureTask<Void> start = null;
+		FutureTask<Void> current;
+		lock.lock();
+		try {
+			users++;
+			if(connection == null){
+				final FutureTask<Void> previous = disconnection;
+				connection = start = new FutureTask<Void>(new Callable<Void>() {
+					public Void call() throws Exception {
+						if(previous != null){
+							try {
+								await(previous);
+							} catch (IOException e) {
+								//Reported to the user ending the previous connection.
+							}
+						}
+						return connect.call();
+					}
+				});
+			}
+			current = connection;
+		}finally{
+			lock.unlock();
+		}
+		if(start != null){
+			start.run();
+		}
+		return current;
+	}
+	
+	private static void await(FutureTask<Void> task) throws IOException {
+		boolean interrupted = false;
+		try {
+			while(true){
+				try {
+					task.get();
+					return;
+				} catch (InterruptedException e) {
+					//The connection is shared, keep waiting for it.
+					interrupted = true;
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if(cause instanceof IOException){
+						throw (IOException)cause;
+					}
+					if(cause instanceof RuntimeException){
+						throw (RuntimeException)cause;
+					}
+					if(cause instanceof Error){
+						throw (Error)cause;
+					}
+					throw new IOException(cause);
+				}
+			}
+		}finally{
+			if(interrupted){
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -23,16 +23,36 @@
  */
 package com.modeln.batam.connector;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.jcabi.aspects.RetryOnFailure;
 import com.modeln.batam.connector.exception.InvalidArgumentException;
 import com.modeln.batam.connector.exception.NoConnectionFoundException;
 import com.modeln.batam.connector.util.ConfigHelper;
+import com.modeln.batam.connector.util.ThreadHelper;
+import com.modeln.batam.connector.util.Utf8;
+import com.modeln.batam.connector.util.WaitStrategy;
 import com.modeln.batam.connector.wrapper.BuildEntry;
 import com.modeln.batam.connector.wrapper.Commit;
 import com.modeln.batam.connector.wrapper.Pair;
@@ -41,7 +61,6 @@ import com.modeln.batam.connector.wrapper.TestEntry;
 import com.modeln.batam.connector.wrapper.ReportEntry;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
-import com.rabbitmq.client.ConnectionFactory;
 
 /**
  * Main connector Singleton class.
@@ -58,6 +77,9 @@ import com.rabbitmq.client.ConnectionFactory;
  * 
  * Since the Connector instance is a singleton, you don't need to begin and end a connection for every actions you need to publish.
  * 
+ * Independently configured instances can be obtained by name using {@link #getInstance(String) getInstance(name)}, 
+ * for example to publish several builds concurrently from the same JVM.
+ * 
  * @author gzussa
  *
  */
@@ -66,18 +88,44 @@ public class Connector {
 	private final static int RETRY_ON_FAILURE_ATTEMPTS = 3;
 	private final static int RETRY_ON_FAILURE_DELAY = 1;
 	
+	private final static long ASYNC_CLOSE_TIMEOUT = 30000;
+	
+	private final static PublishListener WARM_UP_LISTENER = new PublishListener() {
+		public void onSuccess(PublishResult result) {
+		}
+		public void onFailure(Throwable cause) {
+			System.err.println("Batam message buffered during the connection warm-up could not be published: " + cause.getMessage());
+		}
+	};
+	
+	private final static String HEADERS_EXCHANGE = "headers";
+	
 	private final static String ACTION_FIELD = "action";
 	private final static String DATA_FIELD = "data";
 	
-	private final static String CREATE_BUILD_ACTION = "create_build";
-	private final static String UPDATE_BUILD_ACTION = "update_build";
-	private final static String CREATE_REPORT_ACTION = "create_report";
-	private final static String UPDATE_REPORT_ACTION = "update_report";
-	private final static String CREATE_TEST_ACTION = "create_test";
-	private final static String UPDATE_TEST_ACTION = "update_test";
-	private final static String RUN_ANALYSIS_ACTION = "run_analysis";
+	final static String CREATE_BUILD_ACTION = "create_build";
+	final static String UPDATE_BUILD_ACTION = "update_build";
+	final static String CREATE_REPORT_ACTION = "create_report";
+	final static String UPDATE_REPORT_ACTION = "update_report";
+	final static String CREATE_TEST_ACTION = "create_test";
+	final static String UPDATE_TEST_ACTION = "update_test";
+	final static String RUN_ANALYSIS_ACTION = "run_analysis";
+	final static String TEST_SUMMARY_ACTION = "test_summary";
+	final static String UNCHANGED_TESTS_ACTION = "unchanged_tests";
+	final static String APPEND_TEST_LOG_ACTION = "append_test_log";
+	
+	private final static String LOG_ENCODING = "UTF-8";
 	
-	private static Connector instance;
+	private final static String PASS_STATUS = "pass";
+	
+	/**
+	 * Name of the instance returned by {@link #getInstance() getInstance}.
+	 */
+	public final static String DEFAULT_INSTANCE = "default";
+	
+	private final static ConcurrentMap<String, Connector> instances = new ConcurrentHashMap<String, Connector>();
+	
+	private final String name;
 	
 	private Boolean publish;
 
@@ -87,23 +135,104 @@ public class Connector {
 	private Integer port;
 	private String vhost;
 	private String queue;
+	private String exchange;
+	private String exchangeType;
 	
 	private Connection connection;
+	private boolean connectionAcquired;
 	private Channel channel;
+	
+	private String relay;
+	private volatile RelayClient relayClient;
+	
+	private Boolean virtualThreads;
+	
+	private final Lock asyncLock = new ReentrantLock();
+	private volatile AsyncPublisher asyncPublisher;
+	private Executor callbackExecutor;
+	
+	private Thread shutdownHook;
+	
+	private Long analysisQuietPeriod;
+	private AnalysisDebouncer analysisDebouncer;
+	
+	private final OverheadBudget overheadBudget = new OverheadBudget(0);
+	private Double overheadBudgetPercent;
+	
+	private final Aggregator aggregator = new Aggregator(overheadBudget);
+	
+	private volatile ResultCache resultCache;
+	
+	private ArtifactStore artifactStore;
+	
+	private volatile CountDownLatch warmUp;
+	private volatile IOException warmUpFailure;
+	
+	private final ConnectionUsers connectionUsers = new ConnectionUsers(this);
+	
+	private final Set<BuildSession> sessions = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<BuildSession, Boolean>()));
 
 	protected Connector() {
+		this(DEFAULT_INSTANCE);
+	}
+	
+	protected Connector(String name) {
 		// Exists only to defeat instantiation.
+		this.name = name;
 	}
 
 	/**
 	 * Connector Singleton constructor.
-	 * @return a Connector Instance.
+	 * @return the default Connector Instance.
 	 */
 	public static Connector getInstance() {
-		if(instance == null) {
-			instance = new Connector();
+		return getInstance(DEFAULT_INSTANCE);
+	}
+	
+	/**
+	 * Get a named Connector instance, creating it if needed.
+	 * 
+	 * Each instance has its own configuration, channels, publisher thread and buffers, so that concurrent builds can publish 
+	 * without contending on one another. Instances configured with the same message broker and credentials share the underlying connection.
+	 * 
+	 * @param name : instance name.
+	 * @return the Connector Instance registered with this name.
+	 */
+	public static Connector getInstance(String name) {
+		if(name == null){
+			throw new InvalidArgumentException("Connector instance name should be provided.");
+		}
+		Connector connector = instances.get(name);
+		if(connector == null){
+			Connector created = new Connector(name);
+			connector = instances.putIfAbsent(name, created);
+			if(connector == null){
+				connector = created;
+			}
+		}
+		return connector;
+	}
+	
+	/**
+	 * Unregister a named Connector instance. End its connection before to remove it.
+	 * 
+	 * @param name : instance name.
+	 * @return the removed instance, null if no instance was registered with this name.
+	 */
+	public static Connector removeInstance(String name) {
+		Connector connector = instances.remove(name);
+		if(connector != null && connector.shutdownHook != null){
+			try {
+				Runtime.getRuntime().removeShutdownHook(connector.shutdownHook);
+			} catch (IllegalStateException e) {
+				// JVM is already shutting down, the hook is running.
+			}
 		}
-		return instance;
+		return connector;
+	}
+	
+	public String getName() {
+		return name;
 	}
 
 	/**
@@ -196,6 +325,43 @@ public class Connector {
 			this.queue = queue;
 		}
 		
+		if(this.analysisQuietPeriod == null){
+			this.analysisQuietPeriod = ConfigHelper.ANALYSIS_QUIET_PERIOD;
+		}
+		
+		if(this.exchange == null){
+			this.exchange = ConfigHelper.EXCHANGE;
+		}
+		if(this.exchangeType == null){
+			this.exchangeType = ConfigHelper.EXCHANGE_TYPE;
+		}
+		
+		if(this.virtualThreads == null){
+			this.virtualThreads = ThreadHelper.isVirtual(ConfigHelper.THREADS);
+		}
+		
+		if(this.overheadBudgetPercent == null){
+			this.overheadBudgetPercent = ConfigHelper.OVERHEAD_BUDGET;
+			this.overheadBudget.setBudget(overheadBudgetPercent);
+		}
+		
+		if(this.resultCache == null && !ConfigHelper.RESULT_CACHE.isEmpty()){
+			this.resultCache = new ResultCache(new File(ConfigHelper.RESULT_CACHE));
+		}
+		
+		registerShutdownHook();
+		
+		if(this.relay == null){
+			this.relay = ConfigHelper.RELAY;
+		}
+		if(!this.relay.isEmpty()){
+			//The relay owns the message broker connection.
+			if(this.relayClient == null){
+				this.relayClient = RelayClient.connect(this.relay);
+			}
+			return;
+		}
+		
 		if(publisher == null){
 			publisher = ConfigHelper.PUBLISHER;
 		}
@@ -206,15 +372,20 @@ public class Connector {
 			return;
 		}
 		
-		ConnectionFactory factory = new ConnectionFactory();
-		factory.setHost(this.host);
-		factory.setPort(this.port);
-		factory.setUsername(this.username);
-		factory.setPassword(this.password);
-		factory.setVirtualHost(this.vhost);
-		this.connection = factory.newConnection();
+		//Acquire before to release so that a connection still in use isn't closed and reopened.
+		Connection previous = connectionAcquired ? this.connection : null;
+		this.connection = SharedConnections.acquire(this.host, this.port, this.username, this.password, this.vhost);
+		this.connectionAcquired = true;
+		if(previous != null){
+			SharedConnections.release(previous);
+		}
 		this.channel = this.connection.createChannel();
 		this.channel.queueDeclare(this.queue, false, false, false, null);
+		if(!getExchange().isEmpty()){
+			//Headers bindings without arguments match every message, topic ones need a wildcard.
+			this.channel.exchangeDeclare(this.exchange, this.exchangeType);
+			this.channel.queueBind(this.queue, this.exchange, HEADERS_EXCHANGE.equals(this.exchangeType) ? "" : "#");
+		}
 	}
 
 	/**
@@ -223,223 +394,1128 @@ public class Connector {
 	 */
 	@RetryOnFailure(attempts = RETRY_ON_FAILURE_ATTEMPTS, delay = RETRY_ON_FAILURE_DELAY, unit = TimeUnit.SECONDS)
 	public void endConnection() throws IOException {
+		closeAnalysisDebouncer();
+		closeAsyncPublisher(ASYNC_CLOSE_TIMEOUT);
+		ResultCache cache = resultCache;
+		if(cache != null){
+			cache.flush();
+		}
+		RelayClient client = relayClient;
+		if(client != null){
+			relayClient = null;
+			client.close();
+		}
 		if(channel != null){
-			channel.close();
-			if(connection != null){
-				connection.close();
+			if(channel.isOpen()){
+				channel.close();
+			}
+			if(connection != null && connectionAcquired){
+				connectionAcquired = false;
+				SharedConnections.release(connection);
 			}
 		}
 	}
 
 	/**
-	 * Check connection has been initialized.
-	 * @throws IOException 
+	 * Set the executor running {@link com.modeln.batam.connector.PublishListener PublishListener} callbacks of asynchronous APIs.
+	 * By default, callbacks run on the thread completing the {@link com.modeln.batam.connector.PublishFuture PublishFuture}, 
+	 * keep them short or provide an executor.
+	 * 
+	 * This executor is used by asynchronous publishers started after this call.
+	 * 
+	 * @param callbackExecutor : callback executor.
 	 */
-	private void checkConnection() throws IOException{
-		if(channel == null || connection == null){
-			if(publish == null || publish){
-				throw new NoConnectionFoundException("Establish a connection before to publish any information.");
+	public void setCallbackExecutor(Executor callbackExecutor) {
+		this.callbackExecutor = callbackExecutor;
+	}
+	
+	/**
+	 * Wait until every message published using asynchronous APIs has been confirmed by the message broker.
+	 * 
+	 * @param timeout : maximum time to wait.
+	 * @param unit : timeout unit.
+	 * @return true if no message is pending anymore.
+	 * @throws InterruptedException
+	 */
+	public boolean awaitPublished(long timeout, TimeUnit unit) throws InterruptedException {
+		AsyncPublisher publisher = this.asyncPublisher;
+		return publisher == null || publisher.awaitIdle(unit.toMillis(timeout));
+	}
+	
+	/**
+	 * Run blocking message broker I/O on virtual threads (Java 21 and above).
+	 * 
+	 * When turned on, synchronous APIs hand their message to the background publisher and wait for the broker confirmation, 
+	 * so calling threads park instead of blocking on socket I/O. On older JVMs, platform threads are used.
+	 * Defaults to the <i>com.modeln.batam.threads</i> property (<i>virtual</i> or <i>platform</i>).
+	 * 
+	 * @param virtualThreads : true to turn virtual threads mode on.
+	 */
+	public void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+	
+	/**
+	 * Begin the connection on a background thread so that property loading, DNS resolution and the message broker handshake 
+	 * don't delay the first message. Messages published before the connection is ready are buffered by the 
+	 * asynchronous publisher and sent in order once it is. If the warm-up fails, the next message begins the connection again.
+	 * 
+	 * Calling this method more than once has no effect.
+	 */
+	public void warmUp() {
+		final CountDownLatch latch;
+		asyncLock.lock();
+		try {
+			if(warmUp != null){
+				return;
 			}
+			warmUp = latch = new CountDownLatch(1);
+		}finally{
+			asyncLock.unlock();
 		}
-		//If the channel or connection is closed then we attempt to reopen it.
-		//This logic should be called after a retry on a ChannelAlreadyClosedException.
-		if(channel == null || channel.isOpen() || !connection.isOpen()){
-			//First we close channel before to recreate one.
-			if(channel != null && channel.isOpen()){
-				channel.close();
-			}
-			//First we close connection before to recreate one.
-			if(connection != null && connection.isOpen()){
-				connection.close();
+		ThreadHelper.newThreadFactory("batam-warmup-" + name + "-", false).newThread(new Runnable() {
+			public void run() {
+				try {
+					beginConnection();
+				} catch (IOException e) {
+					warmUpFailure = e;
+				} catch (RuntimeException e) {
+					warmUpFailure = new IOException(e);
+				} finally {
+					latch.countDown();
+				}
 			}
-			beginConnection(this.host, this.username, this.password, this.port, this.vhost, this.queue, this.publish == true ? "on" : "off");
-		}
+		}).start();
+	}
+	
+	private boolean isWarmingUp() {
+		CountDownLatch latch = warmUp;
+		return latch != null && latch.getCount() > 0;
 	}
 	
 	/**
-	 * Create Build basic API. 
-	 * 
-	 * This is a generic API that take a {@link com.modeln.batam.connector.wrapper.BuildEntry BuildEntry Object} as parameter.
-	 * It publishes the BuildEntry object with CREATE_BUILD action. 
-	 * Calling this API will create a new Build in the BATAM system.
-	 * 
-	 * @param build : {@link com.modeln.batam.connector.wrapper.BuildEntry BuildEntry} Object.
-	 * @return published message.
+	 * Wait for the connection warm-up to complete, if any.
 	 * @throws IOException
 	 */
-	@RetryOnFailure(attempts = RETRY_ON_FAILURE_ATTEMPTS, delay = RETRY_ON_FAILURE_DELAY, unit = TimeUnit.SECONDS)
-	public String createBuild(BuildEntry build) throws IOException {
-		
-		checkConnection();
-		
-		String message = "{\""+ACTION_FIELD+"\": \""+CREATE_BUILD_ACTION+"\", \""+DATA_FIELD+"\": "+build.toJSONString()+"}";
-		if(publish){
-			channel.basicPublish("", queue, null, message.getBytes());
-		}else{
-			System.out.println(message);
+	void awaitWarmUp() throws IOException {
+		CountDownLatch latch = warmUp;
+		if(latch == null){
+			return;
+		}
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the connection warm-up.");
 		}
-
-		return message;
 	}
 	
 	/**
-	 * Update Build basic API. 
+	 * @return users of the connection begun by {@link ConnectorHelper} calls on this connector.
+	 */
+	ConnectionUsers connectionUsers() {
+		return connectionUsers;
+	}
+	
+	/**
+	 * @return true while messages published before the end of the warm-up are still pending.
+	 */
+	private boolean isBufferingWarmUp() {
+		if(warmUp == null){
+			return false;
+		}
+		if(isWarmingUp()){
+			return true;
+		}
+		AsyncPublisher publisher = asyncPublisher;
+		return publisher != null && publisher.getInFlight() > 0;
+	}
+	
+	/**
+	 * Debounce run_analysis triggers per build: triggers are published once no other trigger has been received for the same build 
+	 * during the quiet period, and collapsed triggers combine their override flags. 
+	 * Pending triggers are published right away when the connection ends or by {@link #flushPending(long, TimeUnit) flushPending}.
+	 * Defaults to the <i>com.modeln.batam.analysis_quiet_period</i> property.
 	 * 
-	 * This is a generic API that take a {@link com.modeln.batam.connector.wrapper.BuildEntry BuildEntry Object} as parameter.
-	 * It publishes the BuildEntry object with UPDATE_BUILD action. 
-	 * Calling this API will update a previously created Build in the BATAM system.
+	 * @param quietPeriod : quiet period in milliseconds, 0 to publish every trigger right away.
+	 */
+	public void setAnalysisQuietPeriod(long quietPeriod) {
+		this.analysisQuietPeriod = quietPeriod;
+	}
+	
+	/**
+	 * Running aggregates of the tests published to a build. They are attached to every update_build message of the build.
 	 * 
-	 * @param build : {@link com.modeln.batam.connector.wrapper.BuildEntry BuildEntry} Object.
-	 * @return published message.
-	 * @throws IOException
+	 * @param id : Build id (required if name not provided).
+	 * @param name : Build name (required if id not provided).
+	 * @return build aggregates, null if no test has been published to the build.
 	 */
-	@RetryOnFailure(attempts = RETRY_ON_FAILURE_ATTEMPTS, delay = RETRY_ON_FAILURE_DELAY, unit = TimeUnit.SECONDS)
-	public String updateBuild(BuildEntry build) throws IOException {
-		
-		checkConnection();
-		
-		String message = "{\""+ACTION_FIELD+"\": \""+UPDATE_BUILD_ACTION+"\", \""+DATA_FIELD+"\": "+build.toJSONString()+"}";
-		if(publish){
-			channel.basicPublish("", queue, null, message.getBytes());
-		}else{
-			System.out.println(message);
-		}
-		
-		return message;
+	public TestAggregates getBuildAggregates(String id, String name) {
+		return aggregator.getBuild(id, name);
 	}
 	
 	/**
-	 * Run Analysis basic API. 
+	 * Running aggregates of the tests published to a report. They are attached to every update_report message of the report.
 	 * 
-	 * This is a generic API that take a {@link com.modeln.batam.connector.wrapper.BuildEntry BuildEntry Object} as parameter.
-	 * It publishes the BuildEntry object with RUN_ANALYSIS action. 
-	 * Calling this API will kick off build analysis in the BATAM system.
+	 * @param id : Report id (required if name not provided).
+	 * @param name : Report name (required if id not provided).
+	 * @return report aggregates, null if no test has been published to the report.
+	 */
+	public TestAggregates getReportAggregates(String id, String name) {
+		return aggregator.getReport(id, name);
+	}
+	
+	/**
+	 * Forget the aggregates of every build and report, once they are not updated anymore.
+	 */
+	public void clearAggregates() {
+		aggregator.clear();
+	}
+	
+	Aggregator getAggregator() {
+		return aggregator;
+	}
+	
+	/**
+	 * Set the share of the test time the connector may spend on the threads publishing tests, 
+	 * see {@link com.modeln.batam.connector.OverheadBudget OverheadBudget}. 
+	 * Defaults to the <i>com.modeln.batam.overhead_budget</i> property.
 	 * 
-	 * @param build : {@link com.modeln.batam.connector.wrapper.BuildEntry BuildEntry} Object.
-	 * @return published message.
-	 * @throws IOException
+	 * @param percent : overhead budget in percent of the test time, 0 to never degrade.
 	 */
-	@RetryOnFailure(attempts = RETRY_ON_FAILURE_ATTEMPTS, delay = RETRY_ON_FAILURE_DELAY, unit = TimeUnit.SECONDS)
-	public String runAnalysis(BuildEntry build) throws IOException {
-		
-		checkConnection();
-		
-		String message = "{\""+ACTION_FIELD+"\": \""+RUN_ANALYSIS_ACTION+"\", \""+DATA_FIELD+"\": "+build.toJSONString()+"}";
-		if(publish){
-			channel.basicPublish("", queue, null, message.getBytes());
-		}else{
-			System.out.println(message);
-		}
-		
-		return message;
+	public void setOverheadBudget(double percent) {
+		this.overheadBudgetPercent = percent;
+		this.overheadBudget.setBudget(percent);
 	}
 	
 	/**
-	 * Create Report basic API. 
+	 * @return time spent publishing, compared to the reported test time.
+	 */
+	public OverheadBudget getOverheadBudget() {
+		return overheadBudget;
+	}
+	
+	/**
+	 * Attach the build aggregates to an updated build and serialize it with the connector overhead infos. 
+	 * The build infos are left unchanged.
 	 * 
-	 * This is a generic API that take a {@link com.modeln.batam.connector.wrapper.ReportEntry ReportEntry Object} as parameter.
-	 * It publishes the ReportEntry object with CREATE_REPORT action. 
-	 * Calling this API will create a new report within an existing build in the BATAM system.
+	 * @return JSON string.
+	 */
+	String toJSONString(BuildEntry build) {
+		aggregator.attach(build);
+		return build.toJSONString(overheadBudget.infos(build.getInfos()));
+	}
+	
+	/**
+	 * Skip test results that are unchanged since they were last published to the same build report, when a stage is rerun.
 	 * 
-	 * @param report : {@link com.modeln.batam.connector.wrapper.ReportEntry ReportEntry} Object.
-	 * @return published message.
-	 * @throws IOException
+	 * The hash of every published result is stored in the given directory. Unchanged results, and tests already created, 
+	 * are not published again: synchronous APIs return null instead of the message. Unchanged results of a report are listed 
+	 * in an unchanged_tests message published before the report is updated.
+	 * Asynchronous APIs and subscribers always publish. Defaults to the <i>com.modeln.batam.result_cache</i> property, empty to turn the cache off.
+	 * 
+	 * @param directory : cache directory, null to turn the cache off.
 	 */
-	@RetryOnFailure(attempts = RETRY_ON_FAILURE_ATTEMPTS, delay = RETRY_ON_FAILURE_DELAY, unit = TimeUnit.SECONDS)
-	public String createReport(ReportEntry report) throws IOException {
-		
-		checkConnection();
-		
-		String message = "{\""+ACTION_FIELD+"\": \""+CREATE_REPORT_ACTION+"\", \""+DATA_FIELD+"\": "+report.toJSONString()+"}";
-		if(publish){
-			channel.basicPublish("", queue, null, message.getBytes());
-		}else{
-			System.out.println(message);
-		}
-		
-		return message;
+	public void setResultCache(File directory) {
+		this.resultCache = directory == null ? null : new ResultCache(directory);
 	}
 	
 	/**
-	 * Update Report basic API. 
+	 * Set the store screenshots and other large blobs are copied to, deduplicated by content.
 	 * 
-	 * This is a generic API that take a {@link com.modeln.batam.connector.wrapper.ReportEntry ReportEntry Object} as parameter.
-	 * It publishes the ReportEntry object with UPDATE_REPORT action. 
-	 * Calling this API will update a previously created report in the BATAM system.
+	 * Defaults to a store in the <i>com.modeln.batam.artifact_store</i> directory served at <i>com.modeln.batam.artifact_url</i>.
 	 * 
-	 * @param report : {@link com.modeln.batam.connector.wrapper.ReportEntry ReportEntry} Object.
-	 * @return published message.
-	 * @throws IOException
+	 * @param artifactStore : artifact store, null to use the configured one.
 	 */
-	@RetryOnFailure(attempts = RETRY_ON_FAILURE_ATTEMPTS, delay = RETRY_ON_FAILURE_DELAY, unit = TimeUnit.SECONDS)
-	public String updateReport(ReportEntry report) throws IOException {
-		
-		checkConnection();
-		
-		String message = "{\""+ACTION_FIELD+"\": \""+UPDATE_REPORT_ACTION+"\", \""+DATA_FIELD+"\": "+report.toJSONString()+"}";
-		if(publish){
-			channel.basicPublish("", queue, null, message.getBytes());
-		}else{
-			System.out.println(message);
+	public synchronized void setArtifactStore(ArtifactStore artifactStore) {
+		this.artifactStore = artifactStore;
+	}
+	
+	/**
+	 * @return artifact store, null if none is set nor configured.
+	 */
+	public synchronized ArtifactStore getArtifactStore() {
+		if(artifactStore == null){
+			ConfigHelper.loadProperties(null);
+			if(!ConfigHelper.ARTIFACT_STORE.isEmpty()){
+				artifactStore = new ArtifactStore(new File(ConfigHelper.ARTIFACT_STORE), ConfigHelper.ARTIFACT_URL);
+			}
 		}
-		
-		return message;
+		return artifactStore;
 	}
 	
 	/**
-	 * Create Test basic API. 
-	 * 
-	 * This is a generic API that take a {@link com.modeln.batam.connector.wrapper.TestEntry TestEntry Object} as parameter.
-	 * It publishes the TestEntry object with CREATE_TEST action. 
-	 * Calling this API will create a new test within an existing report in the BATAM system.
+	 * Hash and copy a file into the artifact store on a background thread. Files with the same content are stored once.
 	 * 
-	 * Do not specify the Test id since the id will be generated by the system automatically. The Test id is only useful when updating a test.
+	 * <PRE>
+	 * Future&lt;ArtifactStore.Artifact&gt; screenshot = connector.storeArtifact(new File("login.png"));
+	 * ...
+	 * report.setScreenshotURL(screenshot.get().getUrl());
+	 * </PRE>
 	 * 
-	 * @param test : {@link com.modeln.batam.connector.wrapper.TestEntry TestEntry} Object.
-	 * @return published message.
-	 * @throws IOException
+	 * @param file : file to store.
+	 * @return stored artifact, carrying the content hash and URL.
 	 */
-	@RetryOnFailure(attempts = RETRY_ON_FAILURE_ATTEMPTS, delay = RETRY_ON_FAILURE_DELAY, unit = TimeUnit.SECONDS)
-	public String createTest(TestEntry test) throws IOException {
-		
-		checkConnection();
-		
-		String message = "{\""+ACTION_FIELD+"\": \""+CREATE_TEST_ACTION+"\", \""+DATA_FIELD+"\": "+test.toJSONString()+"}";
-		if(publish){
-			channel.basicPublish("", queue, null, message.getBytes());
-		}else{
-			System.out.println(message);
+	public Future<ArtifactStore.Artifact> storeArtifact(File file) {
+		ArtifactStore store = getArtifactStore();
+		if(store == null){
+			throw new InvalidArgumentException("No artifact store is configured.");
 		}
-		
-		return message;
+		return store.store(file);
 	}
 	
 	/**
-	 * Update Test basic API. 
-	 * 
-	 * This is a generic API that take a {@link com.modeln.batam.connector.wrapper.TestEntry TestEntry Object} as parameter.
-	 * It publishes the TestEntry object with UPDATE_TEST action. 
-	 * Calling this API will update a previously created test in the BATAM system.
+	 * Publish a test unless its result is unchanged in the result cache.
 	 * 
-	 * @param test : {@link com.modeln.batam.connector.wrapper.TestEntry TestEntry} Object.
-	 * @return published message.
+	 * @param test : published test.
+	 * @param buildId : build id of the test, null to use the test one.
+	 * @param buildName : build name of the test, null to use the test one.
+	 * @param reportId : report id of the test, null to use the test one.
+	 * @param reportName : report name of the test, null to use the test one.
+	 * @param publisher : publishes the test message.
+	 * @return published message, null if the test has not been published.
 	 * @throws IOException
 	 */
-	@RetryOnFailure(attempts = RETRY_ON_FAILURE_ATTEMPTS, delay = RETRY_ON_FAILURE_DELAY, unit = TimeUnit.SECONDS)
-	public String updateTest(TestEntry test) throws IOException {
-		
-		checkConnection();
+	String publishTest(TestEntry test, String buildId, String buildName, String reportId, String reportName, 
+			TestPublisher publisher) throws IOException {
+		long start = overheadBudget.enter();
+		try {
+			return publishCachedTest(test, buildId, buildName, reportId, reportName, publisher);
+		}finally{
+			overheadBudget.exit(start);
+		}
+	}
+	
+	private String publishCachedTest(TestEntry test, String buildId, String buildName, String reportId, String reportName, 
+			TestPublisher publisher) throws IOException {
+		//Passed test logs are left out of the message, the caller's test is not changed.
+		boolean withLog = !(overheadBudget.isDegraded() && PASS_STATUS.equals(test.getStatus()));
+		ResultCache cache = resultCache;
+		buildId = buildId != null ? buildId : test.getBuildId();
+		buildName = buildName != null ? buildName : test.getBuildName();
+		reportId = reportId != null ? reportId : test.getReportId();
+		reportName = reportName != null ? reportName : test.getReportName();
+		String report = Aggregator.key(reportId, reportName);
+		String build = aggregator.buildKey(buildId, buildName, report);
+		String name = Aggregator.key(test.getId(), test.getName());
+		if(cache == null || report == null || build == null || name == null){
+			return publisher.publish(withLog);
+		}
+		Long hash = test.getStatus() == null ? null : ResultCache.hash(test);
+		if(cache.isUnchanged(build, report, name, hash)){
+			if(hash != null){
+				cache.unchanged(report, name, buildId, buildName, reportId, reportName);
+			}
+			return null;
+		}
+		String message = publisher.publish(withLog);
+		if(hash != null){
+			cache.record(build, report, name, hash);
+		}
+		return message;
+	}
+	
+	/**
+	 * Publishes a test message, see {@link Connector#publishTest(TestEntry, String, String, String, String, TestPublisher) publishTest}.
+	 */
+	interface TestPublisher {
+		String publish(boolean withLog) throws IOException;
+	}
+	
+	/**
+	 * @param reportId : report id, null with a null report name for every report.
+	 * @param reportName : report name.
+	 * @return JSON serialized unchanged_tests data of the report results skipped by the result cache.
+	 */
+	List<String> drainUnchanged(String reportId, String reportName) {
+		ResultCache cache = resultCache;
+		if(cache == null){
+			return Collections.emptyList();
+		}
+		return cache.drainManifests(Aggregator.key(reportId, reportName));
+	}
+	
+	private void publishUnchanged(String reportId, String reportName) throws IOException {
+		for(String data : drainUnchanged(reportId, reportName)){
+			publish(UNCHANGED_TESTS_ACTION, data, MessageHeaders.of(UNCHANGED_TESTS_ACTION, null, null, reportId, reportName));
+		}
+	}
+	
+	private AnalysisDebouncer analysisDebouncer() {
+		asyncLock.lock();
+		try {
+			long quietPeriod = analysisQuietPeriod != null ? analysisQuietPeriod : 0;
+			if(analysisDebouncer != null && analysisDebouncer.getQuietPeriod() != quietPeriod){
+				analysisDebouncer.close(ASYNC_CLOSE_TIMEOUT);
+				analysisDebouncer = null;
+			}
+			if(analysisDebouncer == null && quietPeriod > 0){
+				analysisDebouncer = new AnalysisDebouncer(this, quietPeriod);
+			}
+			return analysisDebouncer;
+		}finally{
+			asyncLock.unlock();
+		}
+	}
+	
+	/**
+	 * Publish pending run_analysis triggers and stop debouncing until the next trigger.
+	 */
+	private void closeAnalysisDebouncer() {
+		AnalysisDebouncer debouncer;
+		asyncLock.lock();
+		try {
+			debouncer = analysisDebouncer;
+			analysisDebouncer = null;
+		}finally{
+			asyncLock.unlock();
+		}
+		if(debouncer != null){
+			debouncer.close(ASYNC_CLOSE_TIMEOUT);
+		}
+	}
+	
+	private boolean isVirtualThreads() {
+		return virtualThreads != null && virtualThreads;
+	}
+	
+	private AsyncPublisher asyncPublisher() {
+		AsyncPublisher publisher = asyncPublisher;
+		if(publisher != null){
+			return publisher;
+		}
+		asyncLock.lock();
+		try {
+			if(asyncPublisher == null){
+				asyncPublisher = new AsyncPublisher(this, callbackExecutor, 
+						ThreadHelper.newThreadFactory("batam-publisher-" + name + "-", isVirtualThreads()), 
+						ConfigHelper.BUFFER_SIZE != null ? ConfigHelper.BUFFER_SIZE : AsyncPublisher.DEFAULT_CAPACITY, 
+						WaitStrategy.fromName(ConfigHelper.WAIT_STRATEGY));
+			}
+			return asyncPublisher;
+		}finally{
+			asyncLock.unlock();
+		}
+	}
+	
+	private boolean closeAsyncPublisher(long timeout) {
+		asyncLock.lock();
+		try {
+			if(asyncPublisher == null){
+				return true;
+			}
+			boolean drained = asyncPublisher.close(timeout);
+			Map<String, Integer> dropped = asyncPublisher.getDropped();
+			if(!dropped.isEmpty()){
+				System.err.println("Batam messages dropped before being published: " + dropped);
+			}
+			if(asyncPublisher.getUnconfirmed() > 0){
+				System.err.println(asyncPublisher.getUnconfirmed() + " Batam messages have not been confirmed by the message broker.");
+			}
+			asyncPublisher = null;
+			return drained;
+		}finally{
+			asyncLock.unlock();
+		}
+	}
+	
+	private void registerShutdownHook() {
+		if(shutdownHook != null){
+			return;
+		}
+		shutdownHook = new Thread(new Runnable() {
+			public void run() {
+				long timeout = ConfigHelper.SHUTDOWN_TIMEOUT != null ? ConfigHelper.SHUTDOWN_TIMEOUT : ASYNC_CLOSE_TIMEOUT;
+				flushPending(timeout, TimeUnit.MILLISECONDS);
+			}
+		}, "batam-shutdown-" + name);
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+	
+	/**
+	 * Publish pending messages within the given time budget and stop the asynchronous publisher.
+	 * This is done automatically when the JVM shuts down, using the <i>com.modeln.batam.shutdown_timeout</i> property (in milliseconds).
+	 * 
+	 * Debounced run_analysis triggers are queued right away. Open sessions are flushed first, using at most half of the budget, then the asynchronous publisher is drained. 
+	 * When time runs out, test level messages are dropped before build and report level ones. Dropped messages are reported 
+	 * on the standard error.
+	 * 
+	 * @param timeout : time budget.
+	 * @param unit : timeout unit.
+	 * @return true if every pending message has been published.
+	 */
+	public boolean flushPending(long timeout, TimeUnit unit) {
+		timeout = unit.toMillis(timeout);
+		long deadline = System.currentTimeMillis() + timeout;
+		closeAnalysisDebouncer();
+		ResultCache cache = resultCache;
+		if(cache != null){
+			for(String data : drainUnchanged(null, null)){
+				try {
+					publishAsync(UNCHANGED_TESTS_ACTION, data, MessageHeaders.of(UNCHANGED_TESTS_ACTION, null, null, null, null));
+				} catch (IOException e) {
+					System.err.println("Batam unchanged test results could not be published: " + e.getMessage());
+				}
+			}
+			try {
+				cache.flush();
+			} catch (IOException e) {
+				System.err.println("Batam result cache could not be written: " + e.getMessage());
+			}
+		}
+		final List<BuildSession> open;
+		synchronized (sessions) {
+			open = new ArrayList<BuildSession>(sessions);
+		}
+		boolean flushed = true;
+		if(!open.isEmpty()){
+			//Flush sessions in a separate thread so that a blocked connection can't hold the JVM exit.
+			Thread flusher = new Thread(new Runnable() {
+				public void run() {
+					for(BuildSession session : open){
+						try {
+							session.flush();
+						} catch (IOException e) {
+							System.err.println("Batam session " + session.getName() + " could not be flushed: " + e.getMessage());
+						}
+					}
+				}
+			}, "batam-shutdown-flush");
+			flusher.setDaemon(true);
+			flusher.start();
+			try {
+				flusher.join(Math.max(1, timeout / 2));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if(flusher.isAlive()){
+				System.err.println("Batam sessions could not be flushed within " + timeout / 2 + " ms, pending session messages are dropped.");
+				flushed = false;
+			}
+		}
+		return closeAsyncPublisher(Math.max(1, deadline - System.currentTimeMillis())) && flushed;
+	}
+	
+	void registerSession(BuildSession session) {
+		sessions.add(session);
+	}
+	
+	void unregisterSession(BuildSession session) {
+		sessions.remove(session);
+	}
+	
+	/**
+	 * @return number of messages the asynchronous publisher can queue without blocking.
+	 */
+	int asyncCapacity() {
+		return asyncPublisher().remainingCapacity();
+	}
+	
+	boolean isPublishing() {
+		return publish != null && publish;
+	}
+	
+	String getQueue() {
+		return queue;
+	}
+	
+	String getExchange() {
+		return exchange != null ? exchange : "";
+	}
+	
+	/**
+	 * @param action : message action.
+	 * @return the queue when publishing to the default exchange, the action otherwise.
+	 */
+	String getRoutingKey(String action) {
+		return getExchange().isEmpty() ? queue : action;
+	}
+	
+	/**
+	 * Publish messages to an exchange bound to the queue instead of the default exchange. 
+	 * Headers exchanges can route messages on {@link com.modeln.batam.connector.MessageHeaders MessageHeaders}, 
+	 * topic exchanges on the action used as routing key.
+	 * Defaults to the <i>com.modeln.batam.exchange</i> and <i>com.modeln.batam.exchange_type</i> properties. 
+	 * Applies to connections begun after this call.
+	 * 
+	 * @param exchange : exchange name, empty to use the default exchange.
+	 * @param type : exchange type, <i>headers</i> or <i>topic</i>.
+	 */
+	public void setExchange(String exchange, String type) {
+		this.exchange = exchange;
+		this.exchangeType = type;
+	}
+	
+	/**
+	 * Publish messages through a {@link com.modeln.batam.connector.RelayServer RelayServer} instead of connecting to the message broker.
+	 * Defaults to the <i>com.modeln.batam.relay</i> property. 
+	 * Applies to connections begun after this call.
+	 * 
+	 * @param relay : relay port on the local host or host:port, empty to connect to the message broker.
+	 */
+	public void setRelay(String relay) {
+		this.relay = relay;
+	}
+	
+	/**
+	 * @return relay client if messages are published through a relay, null otherwise.
+	 */
+	RelayClient getRelayClient() {
+		return relayClient;
+	}
+	
+	/**
+	 * Create a new channel on the current connection.
+	 * @return channel.
+	 * @throws IOException
+	 */
+	Channel createChannel() throws IOException {
+		awaitWarmUp();
+		checkConnection();
+		return connection.createChannel();
+	}
+	
+	/**
+	 * Check connection has been initialized.
+	 * @throws IOException 
+	 */
+	private void checkConnection() throws IOException{
+		if(relayClient != null){
+			return;
+		}
+		if(channel == null || connection == null){
+			if(publish == null || publish){
+				if(warmUpFailure != null){
+					//Warm-up failed, begin the connection inline as if there was no warm-up.
+					warmUpFailure = null;
+					beginConnection();
+					return;
+				}
+				throw new NoConnectionFoundException("Establish a connection before to publish any information.");
+			}
+			//Nothing to reopen when messages are printed to stdout.
+			return;
+		}
+		//If the channel or connection is closed then we attempt to reopen it.
+		//This logic should be called after a retry on a ChannelAlreadyClosedException.
+		if(!channel.isOpen() || !connection.isOpen()){
+			//First we close channel before to recreate one.
+			if(channel != null && channel.isOpen()){
+				channel.close();
+			}
+			//The connection may be shared with other instances, beginConnection replaces it only if it is closed.
+			beginConnection(this.host, this.username, this.password, this.port, this.vhost, this.queue, this.publish == true ? "on" : "off");
+		}
+	}
+	
+	/**
+	 * Wrap serialized data into a message for the given action.
+	 * 
+	 * @param action : message action.
+	 * @param data : JSON serialized entry.
+	 * @return message.
+	 */
+	static String toMessage(String action, String data) {
+		return "{\""+ACTION_FIELD+"\": \""+action+"\", \""+DATA_FIELD+"\": "+data+"}";
+	}
+	
+	/**
+	 * Publish serialized data with the given action.
+	 * 
+	 * @param action : message action.
+	 * @param data : JSON serialized entry.
+	 * @param headers : message headers.
+	 * @return published message.
+	 * @throws IOException
+	 */
+	private String publish(String action, String data, Map<String, Object> headers) throws IOException {
+		return publishMessage(action, toMessage(action, data), headers);
+	}
+	
+	/**
+	 * Queue serialized data with the given action on the asynchronous publisher.
+	 * 
+	 * @param action : message action.
+	 * @param data : JSON serialized entry.
+	 * @param headers : message headers.
+	 * @return future completed once the message broker confirmed the message.
+	 * @throws IOException
+	 */
+	PublishFuture publishAsync(String action, String data, Map<String, Object> headers) throws IOException {
+		long start = overheadBudget.enter();
+		try {
+			checkConnection();
+			return asyncPublisher().submit(action, toMessage(action, data), headers);
+		}finally{
+			overheadBudget.exit(start);
+		}
+	}
+	
+	/**
+	 * Queue an already formatted message on the asynchronous publisher.
+	 * 
+	 * @param action : message action.
+	 * @param message : message built with {@link #toMessage(String, String) toMessage}.
+	 * @param headers : message headers.
+	 * @return future completed once the message broker confirmed the message.
+	 * @throws IOException
+	 */
+	PublishFuture publishMessageAsync(String action, String message, Map<String, Object> headers) throws IOException {
+		checkConnection();
+		return asyncPublisher().submit(action, message, headers);
+	}
+	
+	/**
+	 * Publish an already formatted message.
+	 * 
+	 * @param action : message action.
+	 * @param message : message built with {@link #toMessage(String, String) toMessage}.
+	 * @param headers : message headers.
+	 * @return published message.
+	 * @throws IOException
+	 */
+	String publishMessage(String action, String message, Map<String, Object> headers) throws IOException {
+		long start = overheadBudget.enter();
+		try {
+			return publishMeasuredMessage(action, message, headers);
+		}finally{
+			overheadBudget.exit(start);
+		}
+	}
+	
+	private String publishMeasuredMessage(String action, String message, Map<String, Object> headers) throws IOException {
+		if(isBufferingWarmUp()){
+			//Keep messages ordered until every message buffered during the warm-up has been published.
+			asyncPublisher().submit(action, message, headers).addListener(WARM_UP_LISTENER);
+			return message;
+		}
+		checkConnection();
 		
-		String message = "{\""+ACTION_FIELD+"\": \""+UPDATE_TEST_ACTION+"\", \""+DATA_FIELD+"\": "+test.toJSONString()+"}";
-		if(publish){
-			channel.basicPublish("", queue, null, message.getBytes());
+		RelayClient client = relayClient;
+		if(client != null){
+			client.send(action, message, headers);
+		}else if(isVirtualThreads()){
+			awaitPublished(asyncPublisher().submit(action, message, headers));
+		}else if(publish){
+			channel.basicPublish(getExchange(), getRoutingKey(action), MessageHeaders.toProperties(headers), Utf8.encode(message));
 		}else{
 			System.out.println(message);
 		}
-
+		
 		return message;
 	}
+	
+	private void awaitPublished(PublishFuture future) throws IOException {
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the message broker confirmation.");
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException){
+				throw (IOException)e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+	
+	/**
+	 * Open a {@link com.modeln.batam.connector.BuildSession BuildSession} scoped to a build.
+	 * 
+	 * The session reuses this connector connection, begin it before to flush the session.
+	 * 
+	 * @param id : Build id (required if name not provided).
+	 * @param name : Build Name (required if id not provided and if build has a unique name among all builds ).
+	 * @return build session.
+	 */
+	public BuildSession openBuildSession(String id, String name) {
+		return new BuildSession(this, id, name, false);
+	}
+	
+	/**
+	 * Open a {@link com.modeln.batam.connector.TestSummarizer TestSummarizer} aggregating the passing tests of a report.
+	 * 
+	 * The summarizer reuses this connector connection, begin it before to publish summaries.
+	 * Sample rate and interval are read from the <i>com.modeln.batam.summary_sample_rate</i> and <i>com.modeln.batam.summary_interval</i> properties.
+	 * 
+	 * @param buildId : Build id (required if build name not provided).
+	 * @param buildName : Build name (required if build id not provided).
+	 * @param reportId : Report id (required if report name not provided).
+	 * @param reportName : Report name (required if report id not provided).
+	 * @return test summarizer.
+	 */
+	public TestSummarizer openTestSummary(String buildId, String buildName, String reportId, String reportName) {
+		ConfigHelper.loadProperties(null);
+		return new TestSummarizer(this, buildId, buildName, reportId, reportName, 
+				ConfigHelper.SUMMARY_SAMPLE_RATE, ConfigHelper.SUMMARY_INTERVAL, false);
+	}
+	
+	/**
+	 * Create Build basic API. 
+	 * 
+	 * This is a generic API that take a {@link com.modeln.batam.connector.wrapper.BuildEntry BuildEntry Object} as parameter.
+	 * It publishes the BuildEntry object with CREATE_BUILD action. 
+	 * Calling this API will create a new Build in the BATAM system.
+	 * 
+	 * @param build : {@link com.modeln.batam.connector.wrapper.BuildEntry BuildEntry} Object.
+	 * @return published message.
+	 * @throws IOException
+	 */
+	@RetryOnFailure(attempts = RETRY_ON_FAILURE_ATTEMPTS, delay = RETRY_ON_FAILURE_DELAY, unit = TimeUnit.SECONDS)
+	public String createBuild(BuildEntry build) throws IOException {
+		return publish(CREATE_BUILD_ACTION, build.toJSONString(), MessageHeaders.of(CREATE_BUILD_ACTION, build));
+	}
+	
+	/**
+	 * Update Build basic API. 
+	 * 
+	 * This is a generic API that take a {@link com.modeln.batam.connector.wrapper.BuildEntry BuildEntry Object} as parameter.
+	 * It publishes the BuildEntry object with UPDATE_BUILD action. 
+	 * Calling this API will update a previously created Build in the BATAM system.
+	 * 
+	 * @param build : {@link com.modeln.batam.connector.wrapper.BuildEntry BuildEntry} Object.
+	 * @return published message.
+	 * @throws IOException
+	 */
+	@RetryOnFailure(attempts = RETRY_ON_FAILURE_ATTEMPTS, delay = RETRY_ON_FAILURE_DELAY, unit = TimeUnit.SECONDS)
+	public String updateBuild(BuildEntry build) throws IOException {
+		return publish(UPDATE_BUILD_ACTION, toJSONString(build), MessageHeaders.of(UPDATE_BUILD_ACTION, build));
+	}
+	
+	/**
+	 * Run Analysis basic API. 
+	 * 
+	 * This is a generic API that take a {@link com.modeln.batam.connector.wrapper.BuildEntry BuildEntry Object} as parameter.
+	 * It publishes the BuildEntry object with RUN_ANALYSIS action. 
+	 * Calling this API will kick off build analysis in the BATAM system.
+	 * 
+	 * @param build : {@link com.modeln.batam.connector.wrapper.BuildEntry BuildEntry} Object.
+	 * @return published message.
+	 * @throws IOException
+	 */
+	@RetryOnFailure(attempts = RETRY_ON_FAILURE_ATTEMPTS, delay = RETRY_ON_FAILURE_DELAY, unit = TimeUnit.SECONDS)
+	public String runAnalysis(BuildEntry build) throws IOException {
+		AnalysisDebouncer debouncer = analysisDebouncer();
+		if(debouncer != null && (build.getId() != null || build.getName() != null)){
+			String message = debouncer.trigger(build.getId(), build.getName(), build.isOverride());
+			if(message != null){
+				return message;
+			}
+			//Closed meanwhile, publish right away.
+		}
+		return publish(RUN_ANALYSIS_ACTION, build.toJSONString(), MessageHeaders.of(RUN_ANALYSIS_ACTION, build));
+	}
+	
+	/**
+	 * Create Report basic API. 
+	 * 
+	 * This is a generic API that take a {@link com.modeln.batam.connector.wrapper.ReportEntry ReportEntry Object} as parameter.
+	 * It publishes the ReportEntry object with CREATE_REPORT action. 
+	 * Calling this API will create a new report within an existing build in the BATAM system.
+	 * 
+	 * @param report : {@link com.modeln.batam.connector.wrapper.ReportEntry ReportEntry} Object.
+	 * @return published message.
+	 * @throws IOException
+	 */
+	@RetryOnFailure(attempts = RETRY_ON_FAILURE_ATTEMPTS, delay = RETRY_ON_FAILURE_DELAY, unit = TimeUnit.SECONDS)
+	public String createReport(ReportEntry report) throws IOException {
+		aggregator.report(report.getBuildId(), report.getBuildName(), report.getId(), report.getName());
+		return publish(CREATE_REPORT_ACTION, report.toJSONString(), MessageHeaders.of(CREATE_REPORT_ACTION, report));
+	}
+	
+	/**
+	 * Update Report basic API. 
+	 * 
+	 * This is a generic API that take a {@link com.modeln.batam.connector.wrapper.ReportEntry ReportEntry Object} as parameter.
+	 * It publishes the ReportEntry object with UPDATE_REPORT action. 
+	 * Calling this API will update a previously created report in the BATAM system.
+	 * 
+	 * @param report : {@link com.modeln.batam.connector.wrapper.ReportEntry ReportEntry} Object.
+	 * @return published message.
+	 * @throws IOException
+	 */
+	@RetryOnFailure(attempts = RETRY_ON_FAILURE_ATTEMPTS, delay = RETRY_ON_FAILURE_DELAY, unit = TimeUnit.SECONDS)
+	public String updateReport(ReportEntry report) throws IOException {
+		publishUnchanged(report.getId(), report.getName());
+		aggregator.attach(report);
+		return publish(UPDATE_REPORT_ACTION, report.toJSONString(), MessageHeaders.of(UPDATE_REPORT_ACTION, report));
+	}
+	
+	/**
+	 * Create Test basic API. 
+	 * 
+	 * This is a generic API that take a {@link com.modeln.batam.connector.wrapper.TestEntry TestEntry Object} as parameter.
+	 * It publishes the TestEntry object with CREATE_TEST action. 
+	 * Calling this API will create a new test within an existing report in the BATAM system.
+	 * 
+	 * Do not specify the Test id since the id will be generated by the system automatically. The Test id is only useful when updating a test.
+	 * 
+	 * @param test : {@link com.modeln.batam.connector.wrapper.TestEntry TestEntry} Object.
+	 * @return published message, null if the result cache skipped an unchanged result (see {@link #setResultCache(File) setResultCache}).
+	 * @throws IOException
+	 */
+	@RetryOnFailure(attempts = RETRY_ON_FAILURE_ATTEMPTS, delay = RETRY_ON_FAILURE_DELAY, unit = TimeUnit.SECONDS)
+	public String createTest(final TestEntry test) throws IOException {
+		aggregator.test(null, null, null, null, test);
+		return publishTest(test, null, null, null, null, new TestPublisher() {
+			public String publish(boolean withLog) throws IOException {
+				return Connector.this.publish(CREATE_TEST_ACTION, test.toJSONString(withLog), MessageHeaders.of(CREATE_TEST_ACTION, test));
+			}
+		});
+	}
+	
+	/**
+	 * Update Test basic API. 
+	 * 
+	 * This is a generic API that take a {@link com.modeln.batam.connector.wrapper.TestEntry TestEntry Object} as parameter.
+	 * It publishes the TestEntry object with UPDATE_TEST action. 
+	 * Calling this API will update a previously created test in the BATAM system.
+	 * 
+	 * @param test : {@link com.modeln.batam.connector.wrapper.TestEntry TestEntry} Object.
+	 * @return published message, null if the result cache skipped an unchanged result (see {@link #setResultCache(File) setResultCache}).
+	 * @throws IOException
+	 */
+	@RetryOnFailure(attempts = RETRY_ON_FAILURE_ATTEMPTS, delay = RETRY_ON_FAILURE_DELAY, unit = TimeUnit.SECONDS)
+	public String updateTest(final TestEntry test) throws IOException {
+		aggregator.test(null, null, null, null, test);
+		return publishTest(test, null, null, null, null, new TestPublisher() {
+			public String publish(boolean withLog) throws IOException {
+				return Connector.this.publish(UPDATE_TEST_ACTION, test.toJSONString(withLog), MessageHeaders.of(UPDATE_TEST_ACTION, test));
+			}
+		});
+	}
+	
+	/**
+	 * Attach Test Log API.
+	 * 
+	 * Stream a UTF-8 encoded log to an existing test as append_test_log chunks instead of holding it in {@link TestEntry#setLog(String) TestEntry log}. 
+	 * Only the first <i>com.modeln.batam.log_head</i> and last <i>com.modeln.batam.log_tail</i> characters are published, 
+	 * skipped characters are replaced by a marker. Memory used does not depend on the log size.
+	 * The test is identified by its name and its report, the stream is not closed.
+	 * 
+	 * @param test : {@link com.modeln.batam.connector.wrapper.TestEntry TestEntry} Object the log is attached to.
+	 * @param log : log content.
+	 * @return number of published chunks.
+	 * @throws IOException
+	 */
+	public int attachTestLog(TestEntry test, InputStream log) throws IOException {
+		ConfigHelper.loadProperties(null);
+		return attachTestLog(test, log, ConfigHelper.LOG_HEAD, ConfigHelper.LOG_TAIL);
+	}
+	
+	/**
+	 * Attach Test Log API.
+	 * 
+	 * Version of {@link #attachTestLog(TestEntry, InputStream) attachTestLog} retaining the given number of characters 
+	 * instead of the <i>com.modeln.batam.log_head</i> and <i>com.modeln.batam.log_tail</i> properties.
+	 * 
+	 * @param test : {@link com.modeln.batam.connector.wrapper.TestEntry TestEntry} Object the log is attached to.
+	 * @param log : log content.
+	 * @param head : number of characters published from the beginning of the log.
+	 * @param tail : number of characters published from the end of the log.
+	 * @return number of published chunks.
+	 * @throws IOException
+	 */
+	public int attachTestLog(TestEntry test, InputStream log, int head, int tail) throws IOException {
+		if(test.getName() == null){
+			throw new InvalidArgumentException("Name field is required.");
+		}
+		if(test.getReportId() == null && test.getReportName() == null){
+			throw new InvalidArgumentException("At least one of the fields reportId and reportName should be provided.");
+		}
+		LogAttachment attachment = new LogAttachment(this, test, head, tail);
+		return attachment.attach(new InputStreamReader(log, LOG_ENCODING));
+	}
+	
+	/**
+	 * Attach Test Log API.
+	 * 
+	 * File version of {@link #attachTestLog(TestEntry, InputStream) attachTestLog}.
+	 * 
+	 * @param test : {@link com.modeln.batam.connector.wrapper.TestEntry TestEntry} Object the log is attached to.
+	 * @param log : log file.
+	 * @return number of published chunks.
+	 * @throws IOException
+	 */
+	public int attachTestLog(TestEntry test, File log) throws IOException {
+		InputStream in = new FileInputStream(log);
+		try {
+			return attachTestLog(test, in);
+		}finally{
+			in.close();
+		}
+	}
 
+	/**
+	 * Create Build asynchronous API. 
+	 * 
+	 * Asynchronous version of {@link #createBuild(BuildEntry) createBuild}. The message is queued and published by a background thread.
+	 * 
+	 * @param build : {@link com.modeln.batam.connector.wrapper.BuildEntry BuildEntry} Object.
+	 * @return future completed once the message broker confirmed the message.
+	 * @throws IOException
+	 */
+	public PublishFuture createBuildAsync(BuildEntry build) throws IOException {
+		return publishAsync(CREATE_BUILD_ACTION, build.toJSONString(), MessageHeaders.of(CREATE_BUILD_ACTION, build));
+	}
+	
+	/**
+	 * Update Build asynchronous API. 
+	 * 
+	 * Asynchronous version of {@link #updateBuild(BuildEntry) updateBuild}. The message is queued and published by a background thread.
+	 * 
+	 * @param build : {@link com.modeln.batam.connector.wrapper.BuildEntry BuildEntry} Object.
+	 * @return future completed once the message broker confirmed the message.
+	 * @throws IOException
+	 */
+	public PublishFuture updateBuildAsync(BuildEntry build) throws IOException {
+		return publishAsync(UPDATE_BUILD_ACTION, toJSONString(build), MessageHeaders.of(UPDATE_BUILD_ACTION, build));
+	}
+	
+	/**
+	 * Run Analysis asynchronous API. 
+	 * 
+	 * Asynchronous version of {@link #runAnalysis(BuildEntry) runAnalysis}. The message is queued and published by a background thread.
+	 * 
+	 * @param build : {@link com.modeln.batam.connector.wrapper.BuildEntry BuildEntry} Object.
+	 * @return future completed once the message broker confirmed the message.
+	 * @throws IOException
+	 */
+	public PublishFuture runAnalysisAsync(BuildEntry build) throws IOException {
+		return publishAsync(RUN_ANALYSIS_ACTION, build.toJSONString(), MessageHeaders.of(RUN_ANALYSIS_ACTION, build));
+	}
+	
+	/**
+	 * Create Report asynchronous API. 
+	 * 
+	 * Asynchronous version of {@link #createReport(ReportEntry) createReport}. The message is queued and published by a background thread.
+	 * 
+	 * @param report : {@link com.modeln.batam.connector.wrapper.ReportEntry ReportEntry} Object.
+	 * @return future completed once the message broker confirmed the message.
+	 * @throws IOException
+	 */
+	public PublishFuture createReportAsync(ReportEntry report) throws IOException {
+		aggregator.report(report.getBuildId(), report.getBuildName(), report.getId(), report.getName());
+		return publishAsync(CREATE_REPORT_ACTION, report.toJSONString(), MessageHeaders.of(CREATE_REPORT_ACTION, report));
+	}
+	
+	/**
+	 * Update Report asynchronous API. 
+	 * 
+	 * Asynchronous version of {@link #updateReport(ReportEntry) updateReport}. The message is queued and published by a background thread.
+	 * 
+	 * @param report : {@link com.modeln.batam.connector.wrapper.ReportEntry ReportEntry} Object.
+	 * @return future completed once the message broker confirmed the message.
+	 * @throws IOException
+	 */
+	public PublishFuture updateReportAsync(ReportEntry report) throws IOException {
+		for(String data : drainUnchanged(report.getId(), report.getName())){
+			publishAsync(UNCHANGED_TESTS_ACTION, data, MessageHeaders.of(UNCHANGED_TESTS_ACTION, null, null, report.getId(), report.getName()));
+		}
+		aggregator.attach(report);
+		return publishAsync(UPDATE_REPORT_ACTION, report.toJSONString(), MessageHeaders.of(UPDATE_REPORT_ACTION, report));
+	}
+	
+	/**
+	 * Create Test asynchronous API. 
+	 * 
+	 * Asynchronous version of {@link #createTest(TestEntry) createTest}. The message is queued and published by a background thread.
+	 * 
+	 * @param test : {@link com.modeln.batam.connector.wrapper.TestEntry TestEntry} Object.
+	 * @return future completed once the message broker confirmed the message.
+	 * @throws IOException
+	 */
+	public PublishFuture createTestAsync(TestEntry test) throws IOException {
+		aggregator.test(null, null, null, null, test);
+		return publishAsync(CREATE_TEST_ACTION, test.toJSONString(), MessageHeaders.of(CREATE_TEST_ACTION, test));
+	}
+	
+	/**
+	 * Update Test asynchronous API. 
+	 * 
+	 * Asynchronous version of {@link #updateTest(TestEntry) updateTest}. The message is queued and published by a background thread.
+	 * 
+	 * @param test : {@link com.modeln.batam.connector.wrapper.TestEntry TestEntry} Object.
+	 * @return future completed once the message broker confirmed the message.
+	 * @throws IOException
+	 */
+	public PublishFuture updateTestAsync(TestEntry test) throws IOException {
+		aggregator.test(null, null, null, null, test);
+		return publishAsync(UPDATE_TEST_ACTION, test.toJSONString(), MessageHeaders.of(UPDATE_TEST_ACTION, test));
+	}
+	
+	/**
+	 * Get a {@link com.modeln.batam.connector.flow.Subscriber Subscriber} publishing every received {@link com.modeln.batam.connector.wrapper.BuildEntry BuildEntry} with CREATE_BUILD action.
+	 * 
+	 * The subscriber requests entries according to the asynchronous publisher buffer capacity and broker confirmations. 
+	 * Begin a connection before to subscribe.
+	 * 
+	 * @return subscriber.
+	 */
+	public PublishingSubscriber<BuildEntry> createBuildSubscriber() {
+		return new PublishingSubscriber<BuildEntry>(this, CREATE_BUILD_ACTION, PublishingSubscriber.DEFAULT_WINDOW);
+	}
+	
+	/**
+	 * Get a {@link com.modeln.batam.connector.flow.Subscriber Subscriber} publishing every received {@link com.modeln.batam.connector.wrapper.BuildEntry BuildEntry} with UPDATE_BUILD action.
+	 * 
+	 * The subscriber requests entries according to the asynchronous publisher buffer capacity and broker confirmations. 
+	 * Begin a connection before to subscribe.
+	 * 
+	 * @return subscriber.
+	 */
+	public PublishingSubscriber<BuildEntry> updateBuildSubscriber() {
+		return new PublishingSubscriber<BuildEntry>(this, UPDATE_BUILD_ACTION, PublishingSubscriber.DEFAULT_WINDOW);
+	}
+	
+	/**
+	 * Get a {@link com.modeln.batam.connector.flow.Subscriber Subscriber} publishing every received {@link com.modeln.batam.connector.wrapper.ReportEntry ReportEntry} with CREATE_REPORT action.
+	 * 
+	 * The subscriber requests entries according to the asynchronous publisher buffer capacity and broker confirmations. 
+	 * Begin a connection before to subscribe.
+	 * 
+	 * @return subscriber.
+	 */
+	public PublishingSubscriber<ReportEntry> createReportSubscriber() {
+		return new PublishingSubscriber<ReportEntry>(this, CREATE_REPORT_ACTION, PublishingSubscriber.DEFAULT_WINDOW);
+	}
+	
+	/**
+	 * Get a {@link com.modeln.batam.connector.flow.Subscriber Subscriber} publishing every received {@link com.modeln.batam.connector.wrapper.ReportEntry ReportEntry} with UPDATE_REPORT action.
+	 * 
+	 * The subscriber requests entries according to the asynchronous publisher buffer capacity and broker confirmations. 
+	 * Begin a connection before to subscribe.
+	 * 
+	 * @return subscriber.
+	 */
+	public PublishingSubscriber<ReportEntry> updateReportSubscriber() {
+		return new PublishingSubscriber<ReportEntry>(this, UPDATE_REPORT_ACTION, PublishingSubscriber.DEFAULT_WINDOW);
+	}
+	
+	/**
+	 * Get a {@link com.modeln.batam.connector.flow.Subscriber Subscriber} publishing every received {@link com.modeln.batam.connector.wrapper.TestEntry TestEntry} with CREATE_TEST action.
+	 * 
+	 * The subscriber requests entries according to the asynchronous publisher buffer capacity and broker confirmations. 
+	 * Begin a connection before to subscribe.
+	 * 
+	 * @return subscriber.
+	 */
+	public PublishingSubscriber<TestEntry> createTestSubscriber() {
+		return new PublishingSubscriber<TestEntry>(this, CREATE_TEST_ACTION, PublishingSubscriber.DEFAULT_WINDOW);
+	}
+	
+	/**
+	 * Get a {@link com.modeln.batam.connector.flow.Subscriber Subscriber} publishing every received {@link com.modeln.batam.connector.wrapper.TestEntry TestEntry} with UPDATE_TEST action.
+	 * 
+	 * The subscriber requests entries according to the asynchronous publisher buffer capacity and broker confirmations. 
+	 * Begin a connection before to subscribe.
+	 * 
+	 * @return subscriber.
+	 */
+	public PublishingSubscriber<TestEntry> updateTestSubscriber() {
+		return new PublishingSubscriber<TestEntry>(this, UPDATE_TEST_ACTION, PublishingSubscriber.DEFAULT_WINDOW);
+	}
+	
 	/**
 	 * Create Build simple API with individual {@link com.modeln.batam.connector.wrapper.BuildEntry BuildEntry} parameters.
 	 * 
@@ -23,15 +23,19 @@
  */
 package com.modeln.batam.connector;
 
-import java.io.FileReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.concurrent.CountDownLatch;
 
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
 
 import com.modeln.batam.connector.util.ConfigHelper;
+import com.modeln.batam.connector.util.JsonReader;
 import com.modeln.batam.connector.wrapper.BuildEntry;
 import com.modeln.batam.connector.wrapper.TestEntry;
 import com.modeln.batam.connector.wrapper.ReportEntry;
@@ -39,13 +43,27 @@ import com.modeln.batam.connector.wrapper.ReportEntry;
 /**
  * Command Line class. This class contains the main function method called when executing the application jar file as a standalone application.
  * <code>java -jar connector.jar -a <action_name> -f <json_file> -p <property_file> </code>
- * This command only has two options:
+ * This command has the following options:
  * <ul>
  * 		<li> -a : Specify an action among the following "create_build", "update_build", "create_report", "update_report", "create_test", "update_test" and "run_analysis".</li>
- * 		<li> -f : Specify a JSON file containing data to send to the BATAM system.</li>
+ * 		<li> -f : Specify a JSON file containing data to send to the BATAM system, either one entry or an array of entries.</li>
  * 		<li> -p : Specify a external property file to use.</li>
+ * 		<li> -b : Bulk mode, see below.</li>
+ * 		<li> -w : Number of threads parsing bulk records.</li>
+ * 		<li> -r : Relay mode, see below.</li>
+ * 		<li> -d : Watch mode, see below.</li>
  * </ul>
  * 
+ * In bulk mode, <code>java -jar connector.jar -b -f <ndjson_file> -p <property_file></code> reads one action record per line, 
+ * such as <code>{"action": "create_test", "data": {...}}</code>, from the file or from stdin when -f is omitted or "-". 
+ * Records are parsed on -w threads and published in order over a single connection, then the throughput and failures are reported on stderr.
+ * 
+ * In relay mode, <code>java -jar connector.jar -r <port> -p <property_file></code> runs a {@link RelayServer RelayServer} on the local port until the JVM is stopped. 
+ * Other connectors started with <code>-Dbatam.relay=<port></code>, such as command line calls or forked test JVMs, then publish through its connection.
+ * 
+ * In watch mode, <code>java -jar connector.jar -d <directory> -p <property_file></code> polls the directory tree until the JVM is stopped, 
+ * publishing the records of .ndjson files as their lines are written and the ones of .json files once they are complete. See {@link DirectoryWatcher DirectoryWatcher}.
+ * 
  * When using actions "create_build", "update_build" or "run_analysis", the JSON file you need to send should corresponds to a build json object {@link com.modeln.batam.connector.wrapper.BuildEntry}
  * When using actions "create_report" or "update_report", the JSON file you need to send should corresponds to a TestReport json object {@link com.modeln.batam.connector.wrapper.ReportEntry}
  * When using actions "create_test" or "update_test", the JSON file you need to send should corresponds to a TestReport json object {@link com.modeln.batam.connector.wrapper.TestEntry}
@@ -119,6 +137,18 @@ public class ConnectorCml {
 	@Option(name="-p", required=false, usage="Property file location")
 	private String propertyFile;
 	
+	@Option(name="-b", required=false, usage="Bulk mode, import newline delimited action records from the -f file or stdin")
+	private boolean bulk;
+	
+	@Option(name="-w", required=false, usage="Number of threads parsing bulk records (number of processors by default)")
+	private int workers = Runtime.getRuntime().availableProcessors();
+	
+	@Option(name="-r", required=false, usage="Relay mode, publish messages of connectors configured with batam.relay=<port> over one connection")
+	private Integer relayPort;
+	
+	@Option(name="-d", required=false, usage="Watch mode, publish action records of .ndjson and .json files written in the directory tree")
+	private String watchDirectory;
+	
 	private final static String CREATE_BUILD_ACTION = "create_build";
 	
 	private final static String UPDATE_BUILD_ACTION = "update_build";
@@ -132,6 +162,8 @@ public class ConnectorCml {
 	private final static String UPDATE_TEST_ACTION = "update_test";
 	
 	private final static String RUN_ANALYSIS_ACTION = "run_analysis";
+	
+	private final static String STDIN = "-";
 
 	/**
 	 * Command Line entry point
@@ -147,56 +179,196 @@ public class ConnectorCml {
 		}
 		
 		//Perform main logic
-		connector.execute();
+		if(connector.relayPort != null){
+			connector.executeRelay();
+		}else if(connector.watchDirectory != null){
+			connector.executeWatch();
+		}else if(connector.bulk){
+			connector.executeBulk();
+		}else{
+			connector.execute();
+		}
 		
 		System.exit(0);
 	}
 	
 	/**
 	 * Execute main logic.
+	 * 
+	 * The file is read with a streaming {@link JsonReader JsonReader} and may contain a single entry or an array of entries. 
+	 * Entries are bound and published one at a time over the same connection, so that memory does not grow with the file size.
 	 */
 	private void execute(){
-		JSONParser parser = new JSONParser();
+		JsonReader reader = null;
+		Connector connector = null;
 		try {
-	 
-			Object obj = parser.parse(new FileReader(file));
-			JSONObject jsonObject = (JSONObject) obj;
 			//Load property file.
 			ConfigHelper.loadProperties(propertyFile);
 			
-			if(CREATE_BUILD_ACTION.equals(action)){
-				BuildEntry build = BuildEntry.fromJSON(jsonObject);
-				ConnectorHelper.createBuild(build);
-				
-			}else if(UPDATE_BUILD_ACTION.equals(action)){
-				BuildEntry build = BuildEntry.fromJSON(jsonObject);
-				ConnectorHelper.updateBuild(build);
-				
-			}else if(RUN_ANALYSIS_ACTION.equals(action)){
-				BuildEntry build = BuildEntry.fromJSON(jsonObject);
-				ConnectorHelper.runAnalysis(build);
-				
-			}else if(CREATE_REPORT_ACTION.equals(action)){
-				ReportEntry report = ReportEntry.fromJSON(jsonObject);
-				ConnectorHelper.createReport(report);
-				
-			}else if(UPDATE_REPORT_ACTION.equals(action)){
-				ReportEntry report = ReportEntry.fromJSON(jsonObject);
-				ConnectorHelper.updateReport(report);
-				
-			}else if(CREATE_TEST_ACTION.equals(action)){
-				TestEntry test = TestEntry.fromJSON(jsonObject);
-				ConnectorHelper.createTest(test);
-				
-			}else if(UPDATE_TEST_ACTION.equals(action)){
-				TestEntry test = TestEntry.fromJSON(jsonObject);
-				ConnectorHelper.updateTest(test);
-			}else {
+			if(!isAllowed(action)){
 				System.out.println("action "+action+" not allowed.");
-			}	 
+				return;
+			}
+			
+			reader = new JsonReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			connector = Connector.getInstance();
+			ConnectorHelper.beginConnection(connector);
+			if(reader.peek() == JsonReader.Token.BEGIN_ARRAY){
+				reader.beginArray();
+				while(reader.hasNext()){
+					publish(reader);
+				}
+				reader.endArray();
+			}else{
+				publish(reader);
+			}
+		} catch (Exception e) {
+			e.printStackTrace(System.err);
+			System.exit(-1);
+		} finally {
+			try {
+				if(connector != null){
+					ConnectorHelper.endConnection(connector);
+				}
+				if(reader != null){
+					reader.close();
+				}
+			} catch (IOException e) {
+				e.printStackTrace(System.err);
+			}
+		}
+	}
+	
+	/**
+	 * Execute bulk import and print its report.
+	 * 
+	 * Each line of the input is a <code>{"action": "create_test", "data": {...}}</code> record, read from the -f file or from stdin when no file or "-" is given. 
+	 * Exits with an error status if a record could not be published.
+	 */
+	private void executeBulk(){
+		Reader in = null;
+		try {
+			//Load property file.
+			ConfigHelper.loadProperties(propertyFile);
+			
+			in = new InputStreamReader(file == null || STDIN.equals(file) ? System.in : new FileInputStream(file), "UTF-8");
+			BulkImport.Report report = new BulkImport(Connector.getInstance(), workers).run(in);
+			System.err.println("Bulk import: " + report);
+			if(!report.isSuccess()){
+				System.exit(-1);
+			}
 		} catch (Exception e) {
 			e.printStackTrace(System.err);
 			System.exit(-1);
+		} finally {
+			try {
+				if(in != null){
+					in.close();
+				}
+			} catch (IOException e) {
+				e.printStackTrace(System.err);
+			}
+		}
+	}
+	
+	/**
+	 * Run a relay until the JVM is stopped.
+	 */
+	private void executeRelay(){
+		try {
+			//Load property file.
+			ConfigHelper.loadProperties(propertyFile);
+			
+			final RelayServer relay = new RelayServer(Connector.getInstance(), relayPort);
+			relay.start();
+			Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+				public void run() {
+					try {
+						relay.close();
+					} catch (IOException e) {
+						e.printStackTrace(System.err);
+					}
+					System.err.println("Batam relay stopped, " + relay.getRelayed() + " messages relayed, " + relay.getFailed() + " failed.");
+				}
+			}, "batam-relay-shutdown"));
+			System.err.println("Batam relay listening on port " + relay.getPort() + ".");
+			relay.join();
+		} catch (Exception e) {
+			e.printStackTrace(System.err);
+			System.exit(-1);
+		}
+	}
+	
+	/**
+	 * Watch a directory until the JVM is stopped.
+	 */
+	private void executeWatch(){
+		try {
+			//Load property file.
+			ConfigHelper.loadProperties(propertyFile);
+			
+			final DirectoryWatcher watcher = new DirectoryWatcher(Connector.getInstance(), new File(watchDirectory), null, workers);
+			final CountDownLatch stopped = new CountDownLatch(1);
+			Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+				public void run() {
+					try {
+						watcher.close();
+					} catch (Exception e) {
+						e.printStackTrace(System.err);
+					}
+					System.err.println("Batam watch stopped, " + watcher.getRecords() + " records read, " + watcher.getFailed() + " failed.");
+					stopped.countDown();
+				}
+			}, "batam-watch-shutdown"));
+			watcher.start(DirectoryWatcher.DEFAULT_INTERVAL);
+			System.err.println("Batam watching " + watchDirectory + ".");
+			stopped.await();
+		} catch (Exception e) {
+			e.printStackTrace(System.err);
+			System.exit(-1);
+		}
+	}
+	
+	private static boolean isAllowed(String action) {
+		return CREATE_BUILD_ACTION.equals(action) || UPDATE_BUILD_ACTION.equals(action) || RUN_ANALYSIS_ACTION.equals(action)
+				|| CREATE_REPORT_ACTION.equals(action) || UPDATE_REPORT_ACTION.equals(action)
+				|| CREATE_TEST_ACTION.equals(action) || UPDATE_TEST_ACTION.equals(action);
+	}
+	
+	/**
+	 * Bind the entry the reader is positioned on and publish it.
+	 * 
+	 * @param reader : reader positioned on an entry object.
+	 * @throws IOException
+	 */
+	private void publish(JsonReader reader) throws IOException {
+		if(CREATE_BUILD_ACTION.equals(action)){
+			BuildEntry build = BuildEntry.read(reader);
+			ConnectorHelper.createBuild(build);
+			
+		}else if(UPDATE_BUILD_ACTION.equals(action)){
+			BuildEntry build = BuildEntry.read(reader);
+			ConnectorHelper.updateBuild(build);
+			
+		}else if(RUN_ANALYSIS_ACTION.equals(action)){
+			BuildEntry build = BuildEntry.read(reader);
+			ConnectorHelper.runAnalysis(build);
+			
+		}else if(CREATE_REPORT_ACTION.equals(action)){
+			ReportEntry report = ReportEntry.read(reader);
+			ConnectorHelper.createReport(report);
+			
+		}else if(UPDATE_REPORT_ACTION.equals(action)){
+			ReportEntry report = ReportEntry.read(reader);
+			ConnectorHelper.updateReport(report);
+			
+		}else if(CREATE_TEST_ACTION.equals(action)){
+			TestEntry test = TestEntry.read(reader);
+			ConnectorHelper.createTest(test);
+			
+		}else if(UPDATE_TEST_ACTION.equals(action)){
+			TestEntry test = TestEntry.read(reader);
+			ConnectorHelper.updateTest(test);
 		}
 	}
 	
@@ -23,11 +23,14 @@
  */
 package com.modeln.batam.connector;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import com.modeln.batam.connector.util.ConfigHelper;
 import com.modeln.batam.connector.wrapper.BuildEntry;
 import com.modeln.batam.connector.wrapper.Commit;
 import com.modeln.batam.connector.wrapper.Pair;
@@ -40,10 +43,52 @@ import com.modeln.batam.connector.wrapper.ReportEntry;
  * choice when called often since a new connection to the message broker is
  * created every time we call one of those helper methods.
  * 
+ * Helper methods can be called concurrently. The connection is shared by concurrent calls and closed by the last one.
+ * 
  * @author gzussa
  * 
  */
 public class ConnectorHelper {
+	
+	private final static AtomicBoolean warmedUp = new AtomicBoolean();
+	
+	static {
+		try {
+			ConfigHelper.loadProperties(null);
+			if(ConfigHelper.WARMUP != null && ConfigHelper.WARMUP){
+				warmUp();
+			}
+		} catch (RuntimeException e) {
+			// Misconfiguration is reported by the first helper call.
+		}
+	}
+	
+	/**
+	 * Begin the shared connection on a background thread (see {@see com.modeln.batam.connector.Connector#warmUp() warmUp}).
+	 * The connection then stays open for the lifetime of the JVM so that helper calls don't reconnect.
+	 * 
+	 * Called when this class is loaded if the <i>com.modeln.batam.warmup</i> property is turned on.
+	 */
+	public static void warmUp() {
+		if(warmedUp.compareAndSet(false, true)){
+			Connector.getInstance().connectionUsers().warmUp();
+		}
+	}
+	
+	/**
+	 * Begin a connection unless concurrent helper calls on the same connector already did. 
+	 * Must be paired with {@link #endConnection(Connector) endConnection}, even if it fails.
+	 */
+	static void beginConnection(Connector connector) throws IOException {
+		connector.connectionUsers().acquire();
+	}
+	
+	/**
+	 * End the connection if no concurrent helper call on the same connector is still using it.
+	 */
+	static void endConnection(Connector connector) throws IOException {
+		connector.connectionUsers().release();
+	}
 
 	/**
 	 * Static version of {@see com.modeln.batam.connector.Connector#createBuild(BuildEntry) createBuild} function.
@@ -56,11 +101,11 @@ public class ConnectorHelper {
 		Connector connector = Connector.getInstance();
 		String message = null;
 		try {
-			connector.beginConnection();
+			beginConnection(connector);
 			message = connector.createBuild(build);
 		}finally{
 			if(connector != null){
-				connector.endConnection();
+				endConnection(connector);
 			}
 		}
 
@@ -78,11 +123,11 @@ public class ConnectorHelper {
 		Connector connector = Connector.getInstance();
 		String message = null;
 		try {
-			connector.beginConnection();
+			beginConnection(connector);
 			message = connector.updateBuild(build);
 		}finally{
 			if(connector != null){
-				connector.endConnection();
+				endConnection(connector);
 			}
 		}
 
@@ -100,11 +145,11 @@ public class ConnectorHelper {
 		Connector connector = Connector.getInstance();
 		String message = null;
 		try {
-			connector.beginConnection();
+			beginConnection(connector);
 			message = connector.runAnalysis(build);
 		}finally{
 			if(connector != null){
-				connector.endConnection();
+				endConnection(connector);
 			}
 		}
 
@@ -122,11 +167,11 @@ public class ConnectorHelper {
 		Connector connector = Connector.getInstance();
 		String message = null;
 		try {
-			connector.beginConnection();
+			beginConnection(connector);
 			message = connector.createReport(report);
 		}finally{
 			if(connector != null){
-				connector.endConnection();
+				endConnection(connector);
 			}
 		}
 
@@ -144,11 +189,11 @@ public class ConnectorHelper {
 		Connector connector = Connector.getInstance();
 		String message = null;
 		try {
-			connector.beginConnection();
+			beginConnection(connector);
 			message = connector.updateReport(report);
 		}finally{
 			if(connector != null){
-				connector.endConnection();
+				endConnection(connector);
 			}
 		}
 
@@ -168,11 +213,11 @@ public class ConnectorHelper {
 		Connector connector = Connector.getInstance();
 		String message = null;
 		try {
-			connector.beginConnection();
+			beginConnection(connector);
 			message = connector.createTest(test);
 		}finally{
 			if(connector != null){
-				connector.endConnection();
+				endConnection(connector);
 			}
 		}
 
@@ -190,17 +235,40 @@ public class ConnectorHelper {
 		Connector connector = Connector.getInstance();
 		String message = null;
 		try {
-			connector.beginConnection();
+			beginConnection(connector);
 			message = connector.updateTest(test);
 		}finally{
 			if(connector != null){
-				connector.endConnection();
+				endConnection(connector);
 			}
 		}
 
 		return message;
 	}
 
+	/**
+	 * Static version of {@see com.modeln.batam.connector.Connector#attachTestLog(TestEntry, File) attachTestLog} function.
+	 *
+	 * @param test : {@link com.modeln.batam.connector.wrapper.TestEntry TestEntry} Object the log is attached to.
+	 * @param log : log file.
+	 * @return number of published chunks.
+	 * @throws IOException
+	 */
+	public static int attachTestLog(TestEntry test, File log) throws IOException {
+		Connector connector = Connector.getInstance();
+		int chunks = 0;
+		try {
+			beginConnection(connector);
+			chunks = connector.attachTestLog(test, log);
+		}finally{
+			if(connector != null){
+				endConnection(connector);
+			}
+		}
+
+		return chunks;
+	}
+
 	/**
 	 * Static version of {@see com.modeln.batam.connector.Connector#createBuild(String, String, Date, Date, String, String, List, List, List, List, List) createBuild} function.
 	 *
@@ -305,12 +373,12 @@ public class ConnectorHelper {
 		Connector connector = Connector.getInstance();
 		String message = null;
 		try {
-			connector.beginConnection();
+			beginConnection(connector);
 			message = connector.createBuild(id, name, startDate, endDate,
 					status, description, criterias, infos, reports, steps, commits, isCustomFormatEnabled, customFormat, customEntry, screenshotURL, customAttributes);
 		}finally{
 			if(connector != null){
-				connector.endConnection();
+				endConnection(connector);
 			}
 		}
 
@@ -331,11 +399,11 @@ public class ConnectorHelper {
 		Connector connector = Connector.getInstance();
 		String message = null;
 		try {
-			connector.beginConnection();
+			beginConnection(connector);
 			message = connector.addBuildCommits(id, name, commits);
 		}finally{
 			if(connector != null){
-				connector.endConnection();
+				endConnection(connector);
 			}
 		}
 
@@ -356,11 +424,11 @@ public class ConnectorHelper {
 		Connector connector = Connector.getInstance();
 		String message = null;
 		try {
-			connector.beginConnection();
+			beginConnection(connector);
 			message = connector.addBuildInfos(id, name, infos);
 		}finally{
 			if(connector != null){
-				connector.endConnection();
+				endConnection(connector);
 			}
 		}
 
@@ -381,11 +449,11 @@ public class ConnectorHelper {
 		Connector connector = Connector.getInstance();
 		String message = null;
 		try {
-			connector.beginConnection();
+			beginConnection(connector);
 			message = connector.addBuildReports(id, name, reports);
 		}finally{
 			if(connector != null){
-				connector.endConnection();
+				endConnection(connector);
 			}
 		}
 
@@ -406,11 +474,11 @@ public class ConnectorHelper {
 		Connector connector = Connector.getInstance();
 		String message = null;
 		try {
-			connector.beginConnection();
+			beginConnection(connector);
 			message = connector.addBuildSteps(id, name, steps);
 		}finally{
 			if(connector != null){
-				connector.endConnection();
+				endConnection(connector);
 			}
 		}
 
@@ -431,11 +499,11 @@ public class ConnectorHelper {
 		Connector connector = Connector.getInstance();
 		String message = null;
 		try {
-			connector.beginConnection();
+			beginConnection(connector);
 			message = connector.updateBuildEndDate(id, name, endDate);
 		}finally{
 			if(connector != null){
-				connector.endConnection();
+				endConnection(connector);
 			}
 		}
 
@@ -456,11 +524,11 @@ public class ConnectorHelper {
 		Connector connector = Connector.getInstance();
 		String message = null;
 		try {
-			connector.beginConnection();
+			beginConnection(connector);
 			message = connector.updateBuildStatus(id, name, status);
 		}finally{
 			if(connector != null){
-				connector.endConnection();
+				endConnection(connector);
 			}
 		}
 
@@ -481,11 +549,11 @@ public class ConnectorHelper {
 		Connector connector = Connector.getInstance();
 		String message = null;
 		try {
-			connector.beginConnection();
+			beginConnection(connector);
 			message = connector.runAnalysis(id, name, override);
 		}finally{
 			if(connector != null){
-				connector.endConnection();
+				endConnection(connector);
 			}
 		}
 		
@@ -570,11 +638,11 @@ public class ConnectorHelper {
 		Connector connector = Connector.getInstance();
 		String message = null;
 		try {
-			connector.beginConnection();
+			beginConnection(connector);
 			message = connector.createReport(id, name, buildId, buildName, description, startDate, endDate, status, logs, isCustomFormatEnabled, customFormat, customEntry, screenshotURL, customAttributes);
 		}finally{
 			if(connector != null){
-				connector.endConnection();
+				endConnection(connector);
 			}
 		}
 
@@ -600,12 +668,12 @@ public class ConnectorHelper {
 		Connector connector = Connector.getInstance();
 		String message = null;
 		try {
-			connector.beginConnection();
+			beginConnection(connector);
 			message = connector.addReportLogs(id, name, buildId,
 					buildName, logs);
 		}finally{
 			if(connector != null){
-				connector.endConnection();
+				endConnection(connector);
 			}
 		}
 
@@ -632,11 +700,11 @@ public class ConnectorHelper {
 		Connector connector = Connector.getInstance();
 		String message = null;
 		try {
-			connector.beginConnection();
+			beginConnection(connector);
 		 	message = connector.updateReportStatus(id, name, buildId, buildName, status);
 		}finally{
 			if(connector != null){
-				connector.endConnection();
+				endConnection(connector);
 			}
 		}
 
@@ -663,11 +731,11 @@ public class ConnectorHelper {
 		Connector connector = Connector.getInstance();
 		String message = null;
 		try {
-			connector.beginConnection();
+			beginConnection(connector);
 			message = connector.updateReportEndDate(id, name, buildId, buildName, endDate);
 		}finally{
 			if(connector != null){
-				connector.endConnection();
+				endConnection(connector);
 			}
 		}
 
@@ -715,12 +783,12 @@ public class ConnectorHelper {
 		Connector connector = Connector.getInstance();
 		String message = null;
 		try {
-			connector.beginConnection();
+			beginConnection(connector);
 			message = connector.createTest(buildId, buildName, reportId, reportName, name,
 					description, startDate, endDate, status, criterias, tags, steps, log);
 		}finally{
 			if(connector != null){
-				connector.endConnection();
+				endConnection(connector);
 			}
 		}
 
@@ -773,14 +841,44 @@ public class ConnectorHelper {
 		Connector connector = Connector.getInstance();
 		String message = null;
 		try {
-			connector.beginConnection();
+			beginConnection(connector);
 			message = connector.updateTest(id, buildId, buildName, reportId, reportName, name, description, startDate, endDate, status, criterias, tags, steps, log, override);
 		}finally{
 			if(connector != null){
-				connector.endConnection();
+				endConnection(connector);
 			}
 		}
 		return message;
 	}
+	
+	/**
+	 * Open a {@link com.modeln.batam.connector.BuildSession BuildSession} scoped to a build.
+	 * 
+	 * Unlike other helper methods, a connection is only created when the session flushes a batch of messages.
+	 * 
+	 * @param id : Build id (required if name not provided).
+	 * @param name : Build Name (required if id not provided and if build has a unique name among all builds ).
+	 * @return build session.
+	 */
+	public static BuildSession openBuildSession(String id, String name) {
+		return new BuildSession(Connector.getInstance(), id, name, true);
+	}
+	
+	/**
+	 * Open a {@link com.modeln.batam.connector.TestSummarizer TestSummarizer} aggregating the passing tests of a report.
+	 * 
+	 * Unlike other helper methods, a connection is only created when the summarizer publishes a summary.
+	 * 
+	 * @param buildId : Build id (required if build name not provided).
+	 * @param buildName : Build name (required if build id not provided).
+	 * @param reportId : Report id (required if report name not provided).
+	 * @param reportName : Report name (required if report id not provided).
+	 * @return test summarizer.
+	 */
+	public static TestSummarizer openTestSummary(String buildId, String buildName, String reportId, String reportName) {
+		ConfigHelper.loadProperties(null);
+		return new TestSummarizer(Connector.getInstance(), buildId, buildName, reportId, reportName, 
+				ConfigHelper.SUMMARY_SAMPLE_RATE, ConfigHelper.SUMMARY_INTERVAL, true);
+	}
 
 }
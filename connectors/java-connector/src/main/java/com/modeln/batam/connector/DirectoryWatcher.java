@@ -0,0 +1,498 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.modeln.batam.connector.util.JsonReader;
+import com.modeln.batam.connector.util.ThreadHelper;
+
+/**
+ * Watch a directory tree and publish the action records of result files while they are written.
+ * 
+ * <ul>
+ * 	<li><i>.ndjson</i> files hold one <code>{"action": ..., "data": ...}</code> record per line, as the command line bulk mode. 
+ * 	They are tailed, complete lines being published as soon as they are written.</li>
+ * 	<li><i>.json</i> files hold a single record or an array of records. They are published once their size and modification 
+ * 	date did not change between two polls.</li>
+ * </ul>
+ * 
+ * Hidden files and files ending with <i>.tmp</i> or <i>.part</i> are ignored. The published part of each file is saved in 
+ * a checkpoint file once the message broker confirmed it, so that a restarted watcher resumes where it stopped. 
+ * Records which could not be parsed are skipped. Publishing resumes at the first record which was rejected or not confirmed 
+ * by the message broker at the next poll, the records confirmed before it are not published again.
+ */
+public class DirectoryWatcher {
+	
+	/**
+	 * Default checkpoint file name, in the watched directory.
+	 */
+	public final static String CHECKPOINT_FILE = ".batam-checkpoint";
+	
+	public final static long DEFAULT_INTERVAL = 1000;
+	
+	private final static String NDJSON_EXTENSION = ".ndjson";
+	
+	private final static String JSON_EXTENSION = ".json";
+	
+	private final static String ENCODING = "UTF-8";
+	
+	private final static int TAIL_BLOCK = 8192;
+	
+	/**
+	 * Published records of a .json file which has been entirely published.
+	 */
+	private final static long COMPLETE = Long.MAX_VALUE;
+	
+	private final Connector connector;
+	
+	private final File directory;
+	
+	private final File checkpoint;
+	
+	private final int workers;
+	
+	/**
+	 * Published length and modification date of files, by path relative to the directory.
+	 */
+	private Map<String, Progress> published;
+	
+	/**
+	 * Length and modification date of .json files at the previous poll.
+	 */
+	private Map<String, Progress> seen = new HashMap<String, Progress>();
+	
+	private ScheduledExecutorService scheduler;
+	
+	private final AtomicLong records = new AtomicLong();
+	
+	private final AtomicLong failed = new AtomicLong();
+	
+	/**
+	 * @param connector : connector publishing records.
+	 * @param directory : watched directory.
+	 * @param checkpoint : checkpoint file, {@link #CHECKPOINT_FILE CHECKPOINT_FILE} in the directory if null.
+	 * @param workers : number of threads parsing .ndjson records.
+	 */
+	public DirectoryWatcher(Connector connector, File directory, File checkpoint, int workers) {
+		this.connector = connector;
+		this.directory = directory;
+		this.checkpoint = checkpoint != null ? checkpoint : new File(directory, CHECKPOINT_FILE);
+		this.workers = workers;
+	}
+	
+	/**
+	 * Begin the connector connection and poll the directory on a background thread.
+	 * 
+	 * @param interval : delay between two polls in milliseconds.
+	 * @throws IOException
+	 */
+	public synchronized void start(long interval) throws IOException {
+		if(scheduler != null){
+			return;
+		}
+		try {
+			ConnectorHelper.beginConnection(connector);
+		}catch(IOException e){
+			ConnectorHelper.endConnection(connector);
+			throw e;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(ThreadHelper.newThreadFactory("batam-watch-", false));
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					poll();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (Exception e) {
+					//Files are retried at the next poll.
+					System.err.println("Batam watch of " + directory + " failed: " + e.getMessage());
+				}
+			}
+		}, 0, interval, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Stop polling, wait for the current poll and end the connector connection.
+	 * 
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void close() throws IOException, InterruptedException {
+		ScheduledExecutorService current;
+		synchronized(this){
+			current = scheduler;
+			scheduler = null;
+		}
+		if(current == null){
+			return;
+		}
+		current.shutdown();
+		current.awaitTermination(1, TimeUnit.MINUTES);
+		ConnectorHelper.endConnection(connector);
+	}
+	
+	/**
+	 * @return number of records read from watched files.
+	 */
+	public long getRecords() {
+		return records.get();
+	}
+	
+	/**
+	 * @return number of records which could not be parsed or published.
+	 */
+	public long getFailed() {
+		return failed.get();
+	}
+	
+	/**
+	 * Publish records written since the previous poll.
+	 * 
+	 * @return number of files records were published from.
+	 * @throws IOException if records could not be published, they are retried at the next poll.
+	 * @throws InterruptedException
+	 */
+	public synchronized int poll() throws IOException, InterruptedException {
+		if(published == null){
+			published = load();
+		}
+		List<File> files = new ArrayList<File>();
+		list(directory, files);
+		Collections.sort(files, new Comparator<File>() {
+			public int compare(File first, File second) {
+				//Oldest first, so that builds and reports are created before their tests.
+				long diff = first.lastModified() - second.lastModified();
+				return diff != 0 ? (diff < 0 ? -1 : 1) : first.getPath().compareTo(second.getPath());
+			}
+		});
+		
+		int ingested = 0;
+		Map<String, Progress> current = new HashMap<String, Progress>();
+		for(File file : files){
+			String path = relativePath(file);
+			Progress progress = new Progress(file.length(), file.lastModified(), 0);
+			Progress done = published.get(path);
+			if(file.getName().endsWith(NDJSON_EXTENSION)){
+				long offset = done == null || done.length > progress.length ? 0 : done.length;
+				long end = lastLineEnd(file, offset, progress.length);
+				long settled = end > offset ? publishLines(path, file, offset, end) : offset;
+				if(settled > offset){
+					published.put(path, new Progress(settled, progress.modified, 0));
+					save();
+					ingested++;
+				}
+			}else{
+				current.put(path, progress);
+				boolean stable = progress.equals(seen.get(path));
+				//Records published from a previous version of the file are published again.
+				long skip = progress.equals(done) ? done.records : 0;
+				if(stable && progress.length > 0 && skip != COMPLETE){
+					long settled = publishDocument(path, file, skip);
+					if(settled > skip){
+						published.put(path, new Progress(progress.length, progress.modified, settled));
+						save();
+						ingested++;
+					}
+				}
+			}
+		}
+		seen = current;
+		return ingested;
+	}
+	
+	private void list(File dir, List<File> files) {
+		File[] children = dir.listFiles();
+		if(children == null){
+			return;
+		}
+		for(File child : children){
+			String name = child.getName();
+			if(name.startsWith(".") || child.equals(checkpoint)){
+				continue;
+			}
+			if(child.isDirectory()){
+				list(child, files);
+			}else if(name.endsWith(NDJSON_EXTENSION) || name.endsWith(JSON_EXTENSION)){
+				files.add(child);
+			}
+		}
+	}
+	
+	private String relativePath(File file) {
+		String root = directory.getAbsolutePath();
+		String path = file.getAbsolutePath();
+		return path.startsWith(root) ? path.substring(root.length() + 1).replace(File.separatorChar, '/') : path;
+	}
+	
+	/**
+	 * @return position after the last line feed between offset and length, offset if there is none.
+	 */
+	static long lastLineEnd(File file, long offset, long length) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			byte[] block = new byte[TAIL_BLOCK];
+			long end = length;
+			while(end > offset){
+				int size = (int)Math.min(TAIL_BLOCK, end - offset);
+				in.seek(end - size);
+				in.readFully(block, 0, size);
+				for(int i = size - 1; i >= 0; i--){
+					if(block[i] == '\n'){
+						return end - size + i + 1;
+					}
+				}
+				end -= size;
+			}
+			return offset;
+		}finally{
+			in.close();
+		}
+	}
+	
+	/**
+	 * @return position after the given number of lines from offset.
+	 */
+	static long lineOffset(File file, long offset, long lines) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file), TAIL_BLOCK);
+		try {
+			skip(file, in, offset);
+			long position = offset;
+			int b;
+			while(lines > 0 && (b = in.read()) >= 0){
+				position++;
+				if(b == '\n'){
+					lines--;
+				}
+			}
+			return position;
+		}finally{
+			in.close();
+		}
+	}
+	
+	private static void skip(File file, InputStream in, long offset) throws IOException {
+		long skipped = 0;
+		while(skipped < offset){
+			long skip = in.skip(offset - skipped);
+			if(skip <= 0){
+				throw new IOException(file + " is shorter than its checkpoint.");
+			}
+			skipped += skip;
+		}
+	}
+	
+	/**
+	 * @return position the lines can be checkpointed at.
+	 */
+	private long publishLines(String path, File file, long offset, long end) throws IOException, InterruptedException {
+		InputStream in = new FileInputStream(file);
+		BulkImport.Report report;
+		try {
+			skip(file, in, offset);
+			report = report(path, new BulkImport(connector, workers).run(new InputStreamReader(new BoundedInputStream(in, end - offset), ENCODING)));
+		}finally{
+			in.close();
+		}
+		return isSettled(report) ? end : lineOffset(file, offset, report.getSettled());
+	}
+	
+	/**
+	 * @param skip : number of records published by a previous poll.
+	 * @return number of records which can be checkpointed, {@link #COMPLETE COMPLETE} if the document can be.
+	 */
+	private long publishDocument(String path, File file, long skip) throws IOException, InterruptedException {
+		JsonReader reader = new JsonReader(new InputStreamReader(new FileInputStream(file), ENCODING));
+		try {
+			BulkImport.Report report = report(path, new BulkImport(connector, workers).run(reader, skip));
+			return isSettled(report) ? COMPLETE : report.getSettled();
+		} catch (JsonReader.MalformedJsonException e) {
+			//Records read before the error have been published, the file is not read again until it changes.
+			failed.incrementAndGet();
+			System.err.println("Batam watch: " + path + " is not valid JSON, " + e.getMessage());
+			return COMPLETE;
+		}finally{
+			reader.close();
+		}
+	}
+	
+	private BulkImport.Report report(String path, BulkImport.Report report) {
+		records.addAndGet(report.getRecords());
+		failed.addAndGet(report.getFailed());
+		if(!report.isSuccess()){
+			System.err.println("Batam watch: " + path + ", " + report);
+		}
+		return report;
+	}
+	
+	/**
+	 * Records which could not be parsed are skipped, the ones rejected or not confirmed by the message broker are retried at the next poll.
+	 * 
+	 * @return true if every record has been confirmed or skipped.
+	 */
+	private static boolean isSettled(BulkImport.Report report) {
+		return report.isConfirmed() && report.getRejected() == 0;
+	}
+	
+	/**
+	 * Checkpoint lines are: published length, modification date, published records of .json files and path, separated by tabs.
+	 */
+	private Map<String, Progress> load() throws IOException {
+		Map<String, Progress> progress = new HashMap<String, Progress>();
+		if(!checkpoint.exists()){
+			return progress;
+		}
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(checkpoint), ENCODING));
+		try {
+			String line;
+			while((line = in.readLine()) != null){
+				String[] fields = line.split("\t", 4);
+				if(fields.length == 4){
+					progress.put(fields[3], new Progress(Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+				}
+			}
+		}finally{
+			in.close();
+		}
+		return progress;
+	}
+	
+	private void save() throws IOException {
+		File temporary = new File(checkpoint.getPath() + ".tmp");
+		Writer out = new OutputStreamWriter(new FileOutputStream(temporary), ENCODING);
+		try {
+			for(Map.Entry<String, Progress> entry : published.entrySet()){
+				Progress progress = entry.getValue();
+				out.write(progress.length + "\t" + progress.modified + "\t" + progress.records + "\t" + entry.getKey() + "\n");
+			}
+		}finally{
+			out.close();
+		}
+		if(!temporary.renameTo(checkpoint) && !(checkpoint.delete() && temporary.renameTo(checkpoint))){
+			throw new IOException("Checkpoint " + checkpoint + " could not be saved.");
+		}
+	}
+	
+	/**
+	 * Length and modification date of a file, compared by {@link #equals(Object) equals}, and its published records.
+	 */
+	private static class Progress {
+		
+		private final long length;
+		
+		private final long modified;
+		
+		private final long records;
+		
+		private Progress(long length, long modified, long records) {
+			this.length = length;
+			this.modified = modified;
+			this.records = records;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof Progress)){
+				return false;
+			}
+			Progress other = (Progress)obj;
+			return length == other.length && modified == other.modified;
+		}
+		
+		@Override
+		public int hashCode() {
+			return (int)(length ^ modified);
+		}
+	}
+	
+	/**
+	 * Input stream ending after a number of bytes, so that a line still being written is left for the next poll.
+	 */
+	private static class BoundedInputStream extends FilterInputStream {
+		
+		private long remaining;
+		
+		private BoundedInputStream(InputStream in, long length) {
+			super(in);
+			this.remaining = length;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			if(remaining <= 0){
+				return -1;
+			}
+			int b = super.read();
+			if(b >= 0){
+				remaining--;
+			}
+			return b;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(remaining <= 0){
+				return -1;
+			}
+			int read = super.read(b, off, (int)Math.min(len, remaining));
+			if(read > 0){
+				remaining -= read;
+			}
+			return read;
+		}
+		
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(Math.min(n, remaining));
+			remaining -= skipped;
+			return skipped;
+		}
+		
+		@Override
+		public int available() throws IOException {
+			return (int)Math.min(super.available(), remaining);
+		}
+	}
+}
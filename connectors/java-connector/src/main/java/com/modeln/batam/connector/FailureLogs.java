@@ -0,0 +1,190 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.modeln.batam.connector.util.Fnv;
+import com.modeln.batam.connector.util.StackTraces;
+import com.modeln.batam.connector.util.ThreadHelper;
+
+/**
+ * Render test failure logs on a background thread, deduplicated per build.
+ * 
+ * Every failure is fingerprinted from its root cause (see {@link com.modeln.batam.connector.util.StackTraces StackTraces}). 
+ * Only the first failure of a build with a given fingerprint carries the folded stack trace, the other ones only carry 
+ * the fingerprint and the failure message.
+ * 
+ * Fingerprints are remembered in memory, so each JVM of a build, such as forked test JVMs, logs its own first occurrence. 
+ * Give a directory shared by every JVM of the build and a run identifier to log each stack trace once per run: first occurrences 
+ * are claimed there with marker files scoped to the run, so that a build name reused by a later run logs its stack traces again. 
+ * Markers of runs which have not claimed anything for a week are deleted.
+ * 
+ * <PRE>
+ * Future&lt;String&gt; log = failureLogs.render(buildName, failure.getException());
+ * ...
+ * test.setLog(log.get());
+ * </PRE>
+ */
+public class FailureLogs {
+	
+	private final static String FINGERPRINT_PREFIX = "Failure fingerprint ";
+	
+	private final static String FINGERPRINTS_DIRECTORY = "fingerprints";
+	
+	private final static long MARKERS_RETENTION = TimeUnit.DAYS.toMillis(7);
+	
+	private final int maxFrames;
+	
+	private final ExecutorService executor;
+	
+	private final ConcurrentMap<String, Set<Long>> fingerprints = new ConcurrentHashMap<String, Set<Long>>();
+	
+	private final File markers;
+
+	/**
+	 * @param maxFrames : maximum number of frames rendered per throwable.
+	 */
+	public FailureLogs(int maxFrames) {
+		this(maxFrames, null, null);
+	}
+	
+	/**
+	 * @param maxFrames : maximum number of frames rendered per throwable.
+	 * @param directory : directory shared by the JVMs of a build, null to deduplicate within this JVM only.
+	 * @param run : identifier shared by the JVMs of a run and unique to it, null to deduplicate within this JVM only.
+	 */
+	public FailureLogs(int maxFrames, File directory, String run) {
+		this.maxFrames = maxFrames;
+		this.executor = Executors.newSingleThreadExecutor(ThreadHelper.newThreadFactory("batam-failure-logs-", false));
+		if(directory != null && run != null){
+			final File runs = new File(directory, FINGERPRINTS_DIRECTORY);
+			final File current = new File(runs, Long.toHexString(Fnv.hash(Fnv.OFFSET_BASIS, run)));
+			this.markers = current;
+			executor.execute(new Runnable() {
+				public void run() {
+					prune(runs, current);
+				}
+			});
+		}else{
+			this.markers = null;
+		}
+	}
+	
+	/**
+	 * @param build : build the failure is published to (build id or name).
+	 * @param failure : test failure.
+	 * @return failure log, rendered on a background thread.
+	 */
+	public Future<String> render(final String build, final Throwable failure) {
+		return executor.submit(new Callable<String>() {
+			public String call() {
+				return log(build, failure);
+			}
+		});
+	}
+	
+	/**
+	 * Render a failure log on the calling thread.
+	 * 
+	 * @param build : build the failure is published to (build id or name).
+	 * @param failure : test failure.
+	 * @return failure log.
+	 */
+	public String log(String build, Throwable failure) {
+		long fingerprint = StackTraces.fingerprint(failure);
+		String header = FINGERPRINT_PREFIX + Long.toHexString(fingerprint);
+		if(firstOccurrence(build == null ? "" : build, fingerprint)){
+			return header + "\n" + StackTraces.render(failure, maxFrames);
+		}
+		return header + " (stack trace logged with its first occurrence in the build)\n" + failure;
+	}
+	
+	private boolean firstOccurrence(String build, long fingerprint) {
+		Set<Long> seen = fingerprints.get(build);
+		if(seen == null){
+			Set<Long> created = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+			seen = fingerprints.putIfAbsent(build, created);
+			if(seen == null){
+				seen = created;
+			}
+		}
+		if(!seen.add(fingerprint)){
+			return false;
+		}
+		return markers == null || claim(build, fingerprint);
+	}
+	
+	private boolean claim(String build, long fingerprint) {
+		File marker = new File(markers, Long.toHexString(Fnv.hash(Fnv.OFFSET_BASIS, build)) + "-" + Long.toHexString(fingerprint));
+		try {
+			markers.mkdirs();
+			//Atomic across the JVMs sharing the directory.
+			return marker.createNewFile();
+		} catch (IOException e) {
+			//Rather log the stack trace again than lose it.
+			return true;
+		}
+	}
+	
+	/**
+	 * Delete the markers of past runs.
+	 */
+	private static void prune(File runs, File current) {
+		File[] directories = runs.listFiles();
+		if(directories == null){
+			return;
+		}
+		long expired = System.currentTimeMillis() - MARKERS_RETENTION;
+		for(File directory : directories){
+			if(directory.equals(current) || directory.lastModified() >= expired){
+				continue;
+			}
+			File[] markers = directory.listFiles();
+			if(markers != null){
+				for(File marker : markers){
+					marker.delete();
+				}
+			}
+			directory.delete();
+		}
+	}
+	
+	/**
+	 * Stop the background thread once pending logs have been rendered.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+}
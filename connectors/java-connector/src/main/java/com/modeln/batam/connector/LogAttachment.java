@@ -0,0 +1,155 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.json.simple.JSONObject;
+
+import com.modeln.batam.connector.wrapper.TestEntry;
+
+/**
+ * Streams a test log as append_test_log chunks of at most {@link #CHUNK_SIZE} characters.
+ * 
+ * The first <i>head</i> characters are published as they are read and the last <i>tail</i> characters are kept in a ring buffer 
+ * until the end of the log. Characters in between are replaced by a single skipped marker chunk. 
+ * Memory used is bounded by the chunk and tail sizes, whatever the size of the log.
+ */
+class LogAttachment {
+	
+	final static int CHUNK_SIZE = 32768;
+	
+	private final Connector connector;
+	
+	private final TestEntry test;
+	
+	private final long head;
+	
+	private final char[] chunk;
+	
+	private final char[] tail;
+	
+	private long read = 0;
+	
+	private long tailCount = 0;
+	
+	private int index = 0;
+	
+	/**
+	 * @param connector : connector publishing chunks.
+	 * @param test : test the log is attached to.
+	 * @param head : number of characters published from the beginning of the log.
+	 * @param tail : number of characters published from the end of the log.
+	 */
+	LogAttachment(Connector connector, TestEntry test, int head, int tail) {
+		this.connector = connector;
+		this.test = test;
+		this.head = Math.max(0, head);
+		this.chunk = new char[CHUNK_SIZE];
+		this.tail = new char[Math.max(0, tail)];
+	}
+	
+	/**
+	 * Read the log until its end and publish it.
+	 * 
+	 * @param log : log content.
+	 * @return number of published chunks.
+	 * @throws IOException
+	 */
+	int attach(Reader log) throws IOException {
+		int length;
+		while((length = fill(log)) > 0){
+			int offset = 0;
+			if(read < head){
+				int published = (int)Math.min(length, head - read);
+				publish(chunk, 0, published);
+				offset = published;
+			}
+			keepTail(offset, length - offset);
+			read += length;
+		}
+		
+		long retained = Math.min(tailCount, tail.length);
+		long skipped = read - Math.min(read, head) - retained;
+		if(skipped > 0){
+			String marker = "\n... " + skipped + " characters skipped ...\n";
+			publish(marker.toCharArray(), 0, marker.length());
+		}
+		int start = tailCount > tail.length ? (int)(tailCount % tail.length) : 0;
+		for(long i = 0; i < retained; i += CHUNK_SIZE){
+			int size = (int)Math.min(CHUNK_SIZE, retained - i);
+			int from = (int)((start + i) % tail.length);
+			int first = Math.min(size, tail.length - from);
+			System.arraycopy(tail, from, chunk, 0, first);
+			System.arraycopy(tail, 0, chunk, first, size - first);
+			publish(chunk, 0, size);
+		}
+		return index;
+	}
+	
+	/**
+	 * Fill the chunk buffer so that every published chunk but the last ones is full.
+	 */
+	private int fill(Reader log) throws IOException {
+		int length = 0;
+		int count;
+		while(length < chunk.length && (count = log.read(chunk, length, chunk.length - length)) != -1){
+			length += count;
+		}
+		return length;
+	}
+	
+	private void keepTail(int offset, int length) {
+		if(tail.length == 0 || length == 0){
+			return;
+		}
+		if(length > tail.length){
+			offset += length - tail.length;
+			tailCount += length - tail.length;
+			length = tail.length;
+		}
+		int position = (int)(tailCount % tail.length);
+		int first = Math.min(length, tail.length - position);
+		System.arraycopy(chunk, offset, tail, position, first);
+		System.arraycopy(chunk, offset + first, tail, 0, length - first);
+		tailCount += length;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void publish(char[] content, int offset, int length) throws IOException {
+		JSONObject obj = new JSONObject();
+		obj.put("id", test.getId());
+		obj.put("build_id", test.getBuildId());
+		obj.put("build_name", test.getBuildName());
+		obj.put("report_id", test.getReportId());
+		obj.put("report_name", test.getReportName());
+		obj.put("name", test.getName());
+		obj.put("index", index++);
+		obj.put("content", new String(content, offset, length));
+		
+		String message = Connector.toMessage(Connector.APPEND_TEST_LOG_ACTION, obj.toJSONString());
+		connector.publishMessage(Connector.APPEND_TEST_LOG_ACTION, message, MessageHeaders.of(Connector.APPEND_TEST_LOG_ACTION, test));
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.modeln.batam.connector.wrapper.BuildEntry;
+import com.modeln.batam.connector.wrapper.ReportEntry;
+import com.modeln.batam.connector.wrapper.TestEntry;
+import com.rabbitmq.client.AMQP;
+
+/**
+ * AMQP headers describing a message, so that consumers and broker bindings can route or drop messages without parsing their body.
+ * 
+ * <ul>
+ * 	<li>action : message action (create_build, update_test, etc.).</li>
+ * 	<li>build_id, build_name : build identity, when known.</li>
+ * 	<li>report_id, report_name : report identity, when known.</li>
+ * 	<li>entry_count : number of entries in the message.</li>
+ * 	<li>encoding : payload encoding.</li>
+ * </ul>
+ */
+final class MessageHeaders {
+	
+	final static String ACTION_HEADER = "action";
+	final static String BUILD_ID_HEADER = "build_id";
+	final static String BUILD_NAME_HEADER = "build_name";
+	final static String REPORT_ID_HEADER = "report_id";
+	final static String REPORT_NAME_HEADER = "report_name";
+	final static String ENTRY_COUNT_HEADER = "entry_count";
+	final static String ENCODING_HEADER = "encoding";
+	
+	final static String JSON_ENCODING = "json";
+	
+	private final static String CONTENT_TYPE = "application/json";
+	
+	private MessageHeaders() {
+	}
+	
+	/**
+	 * @param action : message action.
+	 * @param buildId : build id, may be null.
+	 * @param buildName : build name, may be null.
+	 * @param reportId : report id, may be null.
+	 * @param reportName : report name, may be null.
+	 * @return headers of a single entry message.
+	 */
+	static Map<String, Object> of(String action, String buildId, String buildName, String reportId, String reportName) {
+		Map<String, Object> headers = new HashMap<String, Object>();
+		headers.put(ACTION_HEADER, action);
+		put(headers, BUILD_ID_HEADER, buildId);
+		put(headers, BUILD_NAME_HEADER, buildName);
+		put(headers, REPORT_ID_HEADER, reportId);
+		put(headers, REPORT_NAME_HEADER, reportName);
+		headers.put(ENTRY_COUNT_HEADER, 1);
+		headers.put(ENCODING_HEADER, JSON_ENCODING);
+		return headers;
+	}
+	
+	/**
+	 * @param action : message action.
+	 * @param entry : {@link BuildEntry BuildEntry}, {@link ReportEntry ReportEntry} or {@link TestEntry TestEntry}.
+	 * @return headers of a single entry message.
+	 */
+	static Map<String, Object> of(String action, Object entry) {
+		if(entry instanceof BuildEntry){
+			BuildEntry build = (BuildEntry)entry;
+			return of(action, build.getId(), build.getName(), null, null);
+		}
+		if(entry instanceof ReportEntry){
+			ReportEntry report = (ReportEntry)entry;
+			return of(action, report.getBuildId(), report.getBuildName(), report.getId(), report.getName());
+		}
+		if(entry instanceof TestEntry){
+			TestEntry test = (TestEntry)entry;
+			return of(action, test.getBuildId(), test.getBuildName(), test.getReportId(), test.getReportName());
+		}
+		return of(action, null, null, null, null);
+	}
+	
+	private static void put(Map<String, Object> headers, String name, String value) {
+		//Absent identities are left out rather than sent as void values.
+		if(value != null){
+			headers.put(name, value);
+		}
+	}
+	
+	/**
+	 * @param headers : message headers, may be null.
+	 * @return message properties carrying the headers.
+	 */
+	static AMQP.BasicProperties toProperties(Map<String, Object> headers) {
+		return new AMQP.BasicProperties.Builder()
+				.contentType(CONTENT_TYPE)
+				.headers(headers)
+				.build();
+	}
+}
@@ -0,0 +1,169 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.modeln.batam.connector.wrapper.Pair;
+
+/**
+ * Time a connector spends on producer threads (serialization, queueing and blocking publishes), compared to the test time 
+ * it reports.
+ * 
+ * Nested measures of a thread are only counted once. When the overhead exceeds the budget, the connector degrades for 
+ * the rest of its lifetime: passing tests are summarized by the JUnit listener, sessions send larger batches and logs 
+ * of passing tests are dropped. The overhead is published as build infos with every update_build message.
+ */
+public class OverheadBudget {
+	
+	final static String OVERHEAD_INFO = "batam.overhead.ms";
+	final static String OVERHEAD_PERCENT_INFO = "batam.overhead.percent";
+	final static String DEGRADED_INFO = "batam.overhead.degraded";
+	
+	/**
+	 * Test time under which the overhead isn't compared to the budget yet.
+	 */
+	private final static long MIN_TEST_TIME = TimeUnit.SECONDS.toNanos(1);
+	
+	private final ThreadLocal<int[]> depth = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
+	
+	private final AtomicLong overhead = new AtomicLong();
+	
+	private final AtomicLong testTime = new AtomicLong();
+	
+	private final AtomicBoolean degraded = new AtomicBoolean();
+	
+	private volatile double budget;
+
+	/**
+	 * @param budget : maximum overhead in percent of the test time, 0 to never degrade.
+	 */
+	OverheadBudget(double budget) {
+		this.budget = budget;
+	}
+	
+	void setBudget(double budget) {
+		this.budget = budget;
+	}
+	
+	/**
+	 * Start measuring the calling thread.
+	 * 
+	 * @return start time to give to {@link #exit(long) exit}.
+	 */
+	long enter() {
+		return depth.get()[0]++ == 0 ? System.nanoTime() : -1;
+	}
+	
+	/**
+	 * Stop measuring the calling thread.
+	 * 
+	 * @param start : start time returned by {@link #enter() enter}.
+	 */
+	void exit(long start) {
+		depth.get()[0]--;
+		if(start >= 0){
+			overhead.addAndGet(System.nanoTime() - start);
+			check();
+		}
+	}
+	
+	/**
+	 * @param duration : duration of a reported test in milliseconds.
+	 */
+	void addTestTime(long duration) {
+		if(duration > 0){
+			testTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(duration));
+		}
+	}
+	
+	private void check() {
+		double limit = budget;
+		long tests = testTime.get();
+		if(limit > 0 && tests >= MIN_TEST_TIME && !degraded.get() && overhead.get() * 100.0 > tests * limit){
+			if(degraded.compareAndSet(false, true)){
+				System.err.println("Batam reporting overhead exceeds " + limit + "% of the test time (" + getOverheadPercent() + "%), "
+						+ "passing tests are summarized, batches are enlarged and logs of passing tests are dropped.");
+			}
+		}
+	}
+	
+	/**
+	 * @return time spent by producer threads in milliseconds.
+	 */
+	public long getOverhead() {
+		return TimeUnit.NANOSECONDS.toMillis(overhead.get());
+	}
+	
+	/**
+	 * @return reported test time in milliseconds.
+	 */
+	public long getTestTime() {
+		return TimeUnit.NANOSECONDS.toMillis(testTime.get());
+	}
+	
+	/**
+	 * @return overhead in percent of the test time, rounded to 2 decimals, 0 if no test time has been reported.
+	 */
+	public double getOverheadPercent() {
+		long tests = testTime.get();
+		return tests == 0 ? 0 : Math.round(overhead.get() * 10000.0 / tests) / 100.0;
+	}
+	
+	/**
+	 * @return true once the overhead exceeded the budget.
+	 */
+	public boolean isDegraded() {
+		return degraded.get();
+	}
+	
+	/**
+	 * @param infos : infos of an updated build, may be null.
+	 * @return a copy of the infos with the overhead ones.
+	 */
+	List<Pair> infos(List<Pair> infos) {
+		List<Pair> merged = new ArrayList<Pair>();
+		if(infos != null){
+			for(Pair info : infos){
+				String name = info.getName();
+				if(!OVERHEAD_INFO.equals(name) && !OVERHEAD_PERCENT_INFO.equals(name) && !DEGRADED_INFO.equals(name)){
+					merged.add(info);
+				}
+			}
+		}
+		merged.add(new Pair(OVERHEAD_INFO, String.valueOf(getOverhead())));
+		merged.add(new Pair(OVERHEAD_PERCENT_INFO, String.valueOf(getOverheadPercent())));
+		merged.add(new Pair(DEGRADED_INFO, String.valueOf(isDegraded())));
+		return merged;
+	}
+}
@@ -0,0 +1,146 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Pending result of an asynchronous publish.
+ * 
+ * The future completes when the message broker confirms the message (or immediately when the publisher is turned off).
+ * It can't be cancelled once submitted.
+ */
+public class PublishFuture implements Future<PublishResult> {
+	
+	private final CountDownLatch done = new CountDownLatch(1);
+	
+	private final Executor executor;
+	
+	final String action;
+	
+	final String message;
+	
+	final Map<String, Object> headers;
+	
+	final long submitted = System.nanoTime();
+	
+	int size;
+	
+	private List<PublishListener> listeners = new ArrayList<PublishListener>();
+	
+	private PublishResult result;
+	
+	private Throwable failure;
+
+	PublishFuture(String action, String message, Map<String, Object> headers, Executor executor) {
+		this.action = action;
+		this.message = message;
+		this.headers = headers;
+		this.executor = executor;
+	}
+	
+	/**
+	 * Register a listener notified when the publish completes. 
+	 * If the future is already complete, the listener is notified right away.
+	 * 
+	 * @param listener : listener to notify.
+	 */
+	public void addListener(PublishListener listener) {
+		synchronized(this){
+			if(listeners != null){
+				listeners.add(listener);
+				return;
+			}
+		}
+		notify(listener);
+	}
+	
+	void complete(PublishResult result, Throwable failure) {
+		List<PublishListener> toNotify;
+		synchronized(this){
+			if(listeners == null){
+				return;
+			}
+			this.result = result;
+			this.failure = failure;
+			toNotify = listeners;
+			listeners = null;
+		}
+		done.countDown();
+		for(PublishListener listener : toNotify){
+			notify(listener);
+		}
+	}
+	
+	private void notify(final PublishListener listener) {
+		executor.execute(new Runnable() {
+			public void run() {
+				if(failure != null){
+					listener.onFailure(failure);
+				}else{
+					listener.onSuccess(result);
+				}
+			}
+		});
+	}
+
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return false;
+	}
+
+	public boolean isCancelled() {
+		return false;
+	}
+
+	public boolean isDone() {
+		return done.getCount() == 0;
+	}
+
+	public PublishResult get() throws InterruptedException, ExecutionException {
+		done.await();
+		return report();
+	}
+
+	public PublishResult get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if(!done.await(timeout, unit)){
+			throw new TimeoutException("Message not confirmed after " + timeout + " " + unit + ".");
+		}
+		return report();
+	}
+	
+	private PublishResult report() throws ExecutionException {
+		if(failure != null){
+			throw new ExecutionException(failure);
+		}
+		return result;
+	}
+}
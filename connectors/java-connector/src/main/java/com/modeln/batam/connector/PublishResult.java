@@ -0,0 +1,98 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of an asynchronous publish, available once the message broker confirmed the message.
+ */
+public class PublishResult {
+	
+	private final String action;
+	
+	private final String message;
+	
+	private final int size;
+	
+	private final long latency;
+	
+	private final Map<String, Object> headers;
+
+	public PublishResult(String action, String message, int size, long latency) {
+		this(action, message, null, size, latency);
+	}
+	
+	public PublishResult(String action, String message, Map<String, Object> headers, int size, long latency) {
+		super();
+		this.action = action;
+		this.message = message;
+		this.headers = headers;
+		this.size = size;
+		this.latency = latency;
+	}
+
+	public String getAction() {
+		return action;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * @return AMQP headers sent with the message (action, build and report identity, entry count and encoding).
+	 */
+	public Map<String, Object> getHeaders() {
+		return headers != null ? Collections.unmodifiableMap(headers) : Collections.<String, Object>emptyMap();
+	}
+
+	/**
+	 * @return message body size in bytes.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return time elapsed between the publish call and the broker confirmation, in nanoseconds.
+	 */
+	public long getLatencyNanos() {
+		return latency;
+	}
+	
+	/**
+	 * @return time elapsed between the publish call and the broker confirmation, in milliseconds.
+	 */
+	public long getLatencyMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(latency);
+	}
+
+	@Override
+	public String toString() {
+		return action + " (" + size + " bytes, " + getLatencyMillis() + " ms)";
+	}
+}
@@ -0,0 +1,183 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.modeln.batam.connector.flow.Subscriber;
+import com.modeln.batam.connector.flow.Subscription;
+import com.modeln.batam.connector.util.ThreadHelper;
+import com.modeln.batam.connector.wrapper.BuildEntry;
+import com.modeln.batam.connector.wrapper.ReportEntry;
+import com.modeln.batam.connector.wrapper.TestEntry;
+
+/**
+ * Subscriber publishing every received entry with a given action through the asynchronous publisher.
+ * 
+ * Demand is bounded by the publisher buffer capacity. Every broker confirmation requests one more entry, 
+ * so producers are throttled by the message broker pace. Confirmations are forwarded upstream from a dedicated 
+ * thread: a synchronous producer would otherwise publish from the publisher thread and block it on a full buffer.
+ *
+ * @param <T> {@link com.modeln.batam.connector.wrapper.BuildEntry BuildEntry}, {@link com.modeln.batam.connector.wrapper.ReportEntry ReportEntry} 
+ * or {@link com.modeln.batam.connector.wrapper.TestEntry TestEntry}. Entries are serialized using their JSON toString representation.
+ */
+public class PublishingSubscriber<T> implements Subscriber<T>, PublishListener {
+	
+	final static int DEFAULT_WINDOW = 256;
+	
+	private final Connector connector;
+	
+	private final String action;
+	
+	private final int window;
+	
+	private final AtomicBoolean done = new AtomicBoolean();
+	
+	private final AtomicLong credits = new AtomicLong();
+	
+	private volatile ExecutorService requester;
+	
+	private volatile Subscription subscription;
+	
+	private volatile Throwable failure;
+
+	PublishingSubscriber(Connector connector, String action, int window) {
+		this.connector = connector;
+		this.action = action;
+		this.window = window;
+	}
+
+	public void onSubscribe(Subscription subscription) {
+		if(this.subscription != null){
+			subscription.cancel();
+			return;
+		}
+		this.subscription = subscription;
+		this.requester = Executors.newSingleThreadExecutor(ThreadHelper.newThreadFactory("batam-subscriber-" + connector.getName() + "-", false));
+		int demand = Math.min(window, connector.asyncCapacity());
+		subscription.request(Math.max(1, demand));
+	}
+
+	public void onNext(T item) {
+		if(done.get()){
+			return;
+		}
+		try {
+			connector.publishAsync(action, aggregate(item), MessageHeaders.of(action, item)).addListener(this);
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * @return serialized item.
+	 */
+	private String aggregate(T item) {
+		if(item instanceof TestEntry){
+			connector.getAggregator().test(null, null, null, null, (TestEntry)item);
+		}else if(item instanceof ReportEntry){
+			if(Connector.UPDATE_REPORT_ACTION.equals(action)){
+				connector.getAggregator().attach((ReportEntry)item);
+			}else{
+				ReportEntry report = (ReportEntry)item;
+				connector.getAggregator().report(report.getBuildId(), report.getBuildName(), report.getId(), report.getName());
+			}
+		}else if(item instanceof BuildEntry && Connector.UPDATE_BUILD_ACTION.equals(action)){
+			return connector.toJSONString((BuildEntry)item);
+		}
+		return item.toString();
+	}
+
+	public void onError(Throwable throwable) {
+		if(done.compareAndSet(false, true)){
+			failure = throwable;
+		}
+		shutdown();
+	}
+
+	public void onComplete() {
+		done.set(true);
+		shutdown();
+	}
+	
+	/**
+	 * @return upstream or publishing failure, null if none happened.
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	public void onSuccess(PublishResult result) {
+		if(done.get()){
+			return;
+		}
+		//Only the first pending credit schedules a relay, following ones are carried by it.
+		if(credits.getAndIncrement() == 0){
+			try {
+				requester.execute(new Runnable() {
+					
+					public void run() {
+						relay();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				//Subscription already terminated.
+			}
+		}
+	}
+	
+	private void relay() {
+		long n = credits.get();
+		while(n > 0){
+			if(!done.get()){
+				subscription.request(n);
+			}
+			n = credits.addAndGet(-n);
+		}
+	}
+
+	public void onFailure(Throwable cause) {
+		fail(cause);
+	}
+	
+	private void fail(Throwable cause) {
+		if(done.compareAndSet(false, true)){
+			failure = cause;
+			subscription.cancel();
+		}
+		shutdown();
+	}
+	
+	private void shutdown() {
+		ExecutorService requester = this.requester;
+		if(requester != null){
+			requester.shutdown();
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Map;
+
+import com.modeln.batam.connector.exception.InvalidArgumentException;
+
+/**
+ * Connection to a {@link RelayServer RelayServer}, used by a connector instead of a message broker connection 
+ * when the <i>com.modeln.batam.relay</i> property is set. Messages are sent already formatted, the relay publishes them.
+ */
+class RelayClient {
+	
+	private final Socket socket;
+	
+	private final DataOutputStream out;
+	
+	private final DataInputStream in;
+	
+	/**
+	 * @param address : relay port on the local host, or host:port.
+	 * @return client connected to the relay.
+	 * @throws IOException
+	 */
+	static RelayClient connect(String address) throws IOException {
+		int separator = address.lastIndexOf(':');
+		String host = separator < 0 ? null : address.substring(0, separator);
+		int port;
+		try {
+			port = Integer.parseInt(address.substring(separator + 1).trim());
+		} catch (NumberFormatException e) {
+			throw new InvalidArgumentException("Invalid relay address " + address + ", expecting a port or host:port.");
+		}
+		return new RelayClient(new Socket(host == null || host.isEmpty() ? InetAddress.getByName(null) : InetAddress.getByName(host), port));
+	}
+	
+	private RelayClient(Socket socket) throws IOException {
+		this.socket = socket;
+		this.socket.setTcpNoDelay(true);
+		this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+	}
+	
+	/**
+	 * Hand a formatted message to the relay.
+	 * 
+	 * @param action : message action.
+	 * @param message : message built with {@link Connector#toMessage(String, String) toMessage}.
+	 * @param headers : message headers.
+	 * @return size of the message in bytes.
+	 * @throws IOException
+	 */
+	synchronized int send(String action, String message, Map<String, Object> headers) throws IOException {
+		int size = RelayFrames.writeMessage(out, action, message, headers);
+		out.flush();
+		return size;
+	}
+	
+	/**
+	 * Wait until the relay published every message sent by this client, then disconnect.
+	 * 
+	 * @throws IOException
+	 */
+	synchronized void close() throws IOException {
+		try {
+			out.writeByte(RelayFrames.FLUSH);
+			out.flush();
+			int failed = in.readInt();
+			int pending = in.readInt();
+			if(failed > 0){
+				System.err.println(failed + " Batam messages could not be published by the relay.");
+			}
+			if(pending > 0){
+				System.err.println(pending + " Batam messages have not been confirmed by the relay.");
+			}
+		}finally{
+			socket.close();
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Wire format between {@link RelayClient RelayClient} and {@link RelayServer RelayServer}.
+ * 
+ * <ul>
+ * 	<li>message frame : 'M', action (modified UTF-8), header count, typed headers, message length and UTF-8 message bytes.</li>
+ * 	<li>flush frame : 'F', answered with the number of the client messages which failed since the previous flush 
+ * 	and the number of messages not confirmed yet, once they have been confirmed or the flush timed out.</li>
+ * </ul>
+ */
+final class RelayFrames {
+	
+	final static int MESSAGE = 'M';
+	
+	final static int FLUSH = 'F';
+	
+	private final static int STRING_HEADER = 'S';
+	
+	private final static int INTEGER_HEADER = 'I';
+	
+	private final static int LONG_HEADER = 'L';
+	
+	private final static String ENCODING = "UTF-8";
+	
+	private RelayFrames() {
+	}
+	
+	/**
+	 * Write a message frame.
+	 * 
+	 * @return size of the message in bytes.
+	 */
+	static int writeMessage(DataOutputStream out, String action, String message, Map<String, Object> headers) throws IOException {
+		byte[] body = message.getBytes(ENCODING);
+		out.writeByte(MESSAGE);
+		out.writeUTF(action);
+		out.writeInt(headers == null ? 0 : headers.size());
+		if(headers != null){
+			for(Map.Entry<String, Object> header : headers.entrySet()){
+				out.writeUTF(header.getKey());
+				Object value = header.getValue();
+				if(value instanceof Integer){
+					out.writeByte(INTEGER_HEADER);
+					out.writeInt((Integer)value);
+				}else if(value instanceof Long){
+					out.writeByte(LONG_HEADER);
+					out.writeLong((Long)value);
+				}else{
+					out.writeByte(STRING_HEADER);
+					out.writeUTF(String.valueOf(value));
+				}
+			}
+		}
+		out.writeInt(body.length);
+		out.write(body);
+		return body.length;
+	}
+	
+	/**
+	 * Read the rest of a message frame, its type having already been read.
+	 */
+	static Frame readMessage(DataInputStream in) throws IOException {
+		String action = in.readUTF();
+		int count = in.readInt();
+		Map<String, Object> headers = new HashMap<String, Object>();
+		for(int i = 0; i < count; i++){
+			String name = in.readUTF();
+			int type = in.readUnsignedByte();
+			if(type == INTEGER_HEADER){
+				headers.put(name, in.readInt());
+			}else if(type == LONG_HEADER){
+				headers.put(name, in.readLong());
+			}else if(type == STRING_HEADER){
+				headers.put(name, in.readUTF());
+			}else{
+				throw new IOException("Unknown relay header type " + type + ".");
+			}
+		}
+		int length = in.readInt();
+		if(length < 0){
+			throw new EOFException("Invalid relay message length " + length + ".");
+		}
+		byte[] body = new byte[length];
+		in.readFully(body);
+		return new Frame(action, new String(body, ENCODING), headers);
+	}
+	
+	/**
+	 * Message received by the relay.
+	 */
+	static class Frame {
+		
+		final String action;
+		
+		final String message;
+		
+		final Map<String, Object> headers;
+		
+		Frame(String action, String message, Map<String, Object> headers) {
+			this.action = action;
+			this.message = message;
+			this.headers = headers;
+		}
+	}
+}
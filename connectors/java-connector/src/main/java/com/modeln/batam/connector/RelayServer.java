@@ -0,0 +1,264 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.modeln.batam.connector.util.ThreadHelper;
+
+/**
+ * Long running relay publishing messages of other connectors (command line calls, forked test JVMs, etc.) over a single connection.
+ * 
+ * The relay listens on a port of the loopback interface. Connectors configured with the <i>com.modeln.batam.relay</i> property 
+ * connect to it instead of the message broker and send their messages already formatted. The relay queues them on its 
+ * asynchronous publisher, which pipelines them on its broker connection, so that short lived clients neither open 
+ * a broker connection nor wait for confirmations. Clients ending their connection wait until their messages are confirmed.
+ * 
+ * <PRE>
+ * RelayServer relay = new RelayServer(Connector.getInstance(), 5673);
+ * relay.start();
+ * relay.join();
+ * </PRE>
+ */
+public class RelayServer {
+	
+	private final static long FLUSH_TIMEOUT = 60000;
+	
+	private final Connector connector;
+	
+	private final int port;
+	
+	private ServerSocket serverSocket;
+	
+	private ExecutorService threads;
+	
+	private final Set<Socket> clients = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+	
+	private final CountDownLatch closed = new CountDownLatch(1);
+	
+	private final AtomicLong relayed = new AtomicLong();
+	
+	private final AtomicLong failed = new AtomicLong();
+	
+	/**
+	 * @param connector : connector publishing relayed messages, its own relay setting is ignored.
+	 * @param port : local port to listen on, 0 to pick a free one.
+	 */
+	public RelayServer(Connector connector, int port) {
+		this.connector = connector;
+		this.port = port;
+	}
+	
+	/**
+	 * Begin the connector connection and start accepting clients.
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void start() throws IOException {
+		if(serverSocket != null){
+			return;
+		}
+		//The relay publishes to the message broker itself.
+		connector.setRelay("");
+		connector.beginConnection();
+		serverSocket = new ServerSocket(port, 50, InetAddress.getByName(null));
+		threads = Executors.newCachedThreadPool(ThreadHelper.newThreadFactory("batam-relay-", false));
+		threads.execute(new Runnable() {
+			public void run() {
+				accept();
+			}
+		});
+	}
+	
+	/**
+	 * @return port the relay listens on.
+	 */
+	public int getPort() {
+		return serverSocket != null ? serverSocket.getLocalPort() : port;
+	}
+	
+	/**
+	 * @return number of messages received from clients.
+	 */
+	public long getRelayed() {
+		return relayed.get();
+	}
+	
+	/**
+	 * @return number of relayed messages which could not be published.
+	 */
+	public long getFailed() {
+		return failed.get();
+	}
+	
+	/**
+	 * Wait until the relay is closed.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void join() throws InterruptedException {
+		closed.await();
+	}
+	
+	/**
+	 * Stop accepting clients, disconnect current ones and end the connector connection once pending messages are published.
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void close() throws IOException {
+		if(serverSocket == null || serverSocket.isClosed()){
+			return;
+		}
+		try {
+			serverSocket.close();
+			for(Socket client : clients){
+				client.close();
+			}
+			threads.shutdown();
+			connector.endConnection();
+		}finally{
+			closed.countDown();
+		}
+	}
+	
+	private void accept() {
+		while(!serverSocket.isClosed()){
+			try {
+				final Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				clients.add(socket);
+				threads.execute(new Runnable() {
+					public void run() {
+						new Client(socket).run();
+					}
+				});
+			} catch (SocketException e) {
+				//Server socket closed.
+			} catch (IOException e) {
+				System.err.println("Batam relay could not accept a client: " + e.getMessage());
+			}
+		}
+	}
+	
+	/**
+	 * Connection of a client, publishing its messages and tracking their confirmations for its flush requests.
+	 */
+	private class Client implements PublishListener {
+		
+		private final Socket socket;
+		
+		private int pending = 0;
+		
+		private int clientFailed = 0;
+		
+		private Client(Socket socket) {
+			this.socket = socket;
+		}
+		
+		private void run() {
+			try {
+				DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+				int type;
+				while((type = in.read()) != -1){
+					if(type == RelayFrames.MESSAGE){
+						RelayFrames.Frame frame = RelayFrames.readMessage(in);
+						synchronized(this){
+							pending++;
+						}
+						relayed.incrementAndGet();
+						connector.publishMessageAsync(frame.action, frame.message, frame.headers).addListener(this);
+					}else if(type == RelayFrames.FLUSH){
+						flush(out);
+					}else{
+						throw new IOException("Unknown relay frame " + type + ".");
+					}
+				}
+			} catch (EOFException e) {
+				//Client disconnected in the middle of a frame.
+			} catch (SocketException e) {
+				//Client or relay closed.
+			} catch (IOException e) {
+				System.err.println("Batam relay client failed: " + e.getMessage());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}finally{
+				clients.remove(socket);
+				try {
+					socket.close();
+				} catch (IOException e) {
+					//Already disconnected.
+				}
+			}
+		}
+		
+		private void flush(DataOutputStream out) throws IOException, InterruptedException {
+			int flushFailed;
+			int flushPending;
+			synchronized(this){
+				long remaining = TimeUnit.MILLISECONDS.toNanos(FLUSH_TIMEOUT);
+				long deadline = System.nanoTime() + remaining;
+				while(pending > 0 && remaining > 0){
+					TimeUnit.NANOSECONDS.timedWait(this, remaining);
+					remaining = deadline - System.nanoTime();
+				}
+				flushFailed = clientFailed;
+				flushPending = pending;
+				clientFailed = 0;
+			}
+			out.writeInt(flushFailed);
+			out.writeInt(flushPending);
+			out.flush();
+		}
+		
+		public synchronized void onSuccess(PublishResult result) {
+			pending--;
+			notifyAll();
+		}
+		
+		public synchronized void onFailure(Throwable cause) {
+			pending--;
+			clientFailed++;
+			failed.incrementAndGet();
+			notifyAll();
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.io.IOException;
+import java.util.Date;
+
+import com.modeln.batam.connector.exception.InvalidArgumentException;
+import com.modeln.batam.connector.wrapper.ReportEntry;
+import com.modeln.batam.connector.wrapper.TestEntry;
+
+/**
+ * Report scoped publishing API, obtained from {@link com.modeln.batam.connector.BuildSession#report(String, String) BuildSession.report}.
+ * 
+ * The test identity (build and report fields) is validated and encoded once for every test of the report.
+ */
+public class ReportSession {
+	
+	private final BuildSession build;
+	
+	private final String id;
+	
+	private final String name;
+	
+	private final String testIdentity;
+
+	ReportSession(BuildSession build, String id, String name) {
+		if(id == null && name == null){
+			throw new InvalidArgumentException("At least one of the fields id and name should be provided.");
+		}
+		this.build = build;
+		this.id = id;
+		this.name = name;
+		this.testIdentity = TestEntry.identityFragment(build.getId(), build.getName(), id, name);
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+	
+	public BuildSession getBuild() {
+		return build;
+	}
+	
+	/**
+	 * Get a test session within this report.
+	 * 
+	 * @param name : Test Name.
+	 * @return test session.
+	 */
+	public TestSession test(String name) {
+		if(name == null){
+			throw new InvalidArgumentException("Name field is required.");
+		}
+		return new TestSession(this, name);
+	}
+	
+	/**
+	 * Create the report with the current date as start date.
+	 * 
+	 * @return queued message.
+	 * @throws IOException
+	 */
+	public String start() throws IOException {
+		if(name == null){
+			throw new InvalidArgumentException("name field should not be null.");
+		}
+		ReportEntry report = new ReportEntry(id, name, build.getId(), build.getName(), null, new Date(), null, null, null);
+		build.getAggregator().report(build.getId(), build.getName(), id, name);
+		return build.enqueue(Connector.CREATE_REPORT_ACTION, report.toJSONString(), id, name);
+	}
+	
+	/**
+	 * Update the report end date and status.
+	 * 
+	 * @param status : Report status.
+	 * @return queued message.
+	 * @throws IOException
+	 */
+	public String end(String status) throws IOException {
+		ReportEntry report = new ReportEntry(id, name, build.getId(), build.getName(), null, null, new Date(), status, null);
+		for(String data : build.getConnector().drainUnchanged(id, name)){
+			build.enqueue(Connector.UNCHANGED_TESTS_ACTION, data, id, name);
+		}
+		build.getAggregator().attach(report);
+		return build.enqueue(Connector.UPDATE_REPORT_ACTION, report.toJSONString(), id, name);
+	}
+	
+	/**
+	 * Create a test, see {@link TestSession#start() TestSession.start}.
+	 */
+	String startTest(TestEntry test) throws IOException {
+		build.started(Aggregator.key(id, name) + "/" + test.getName());
+		return publishTest(Connector.CREATE_TEST_ACTION, test);
+	}
+	
+	/**
+	 * Update a started test, or create it at once if it has not been started within the build session.
+	 */
+	String finishTest(TestEntry test) throws IOException {
+		boolean started = build.finished(Aggregator.key(id, name) + "/" + test.getName());
+		return publishTest(started ? Connector.UPDATE_TEST_ACTION : Connector.CREATE_TEST_ACTION, test);
+	}
+	
+	private String publishTest(final String action, final TestEntry test) throws IOException {
+		build.getAggregator().test(build.getId(), build.getName(), id, name, test);
+		return build.getConnector().publishTest(test, build.getId(), build.getName(), id, name, new Connector.TestPublisher() {
+			public String publish(boolean withLog) throws IOException {
+				return build.enqueue(action, test.toJSONString(testIdentity, withLog), id, name);
+			}
+		});
+	}
+}
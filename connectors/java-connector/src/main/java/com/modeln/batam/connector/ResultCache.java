@@ -0,0 +1,270 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import com.modeln.batam.connector.util.Fnv;
+import com.modeln.batam.connector.util.Utf8;
+import com.modeln.batam.connector.wrapper.TestEntry;
+
+/**
+ * Local cache of the test results published to every build report, used to skip unchanged results when a stage is rerun.
+ * 
+ * Results are hashed (64 bits FNV-1a) over the fields a rerun can change, dates excluded. 
+ * The hashes of a build report are stored in their own file of the cache directory, one <i>hash name</i> line per published result. 
+ * Files are append only, the last line of a test wins when the file is loaded.
+ */
+final class ResultCache {
+	
+	private final static String FILE_EXTENSION = ".results";
+	
+	/**
+	 * Cached results of a build report.
+	 */
+	private static class Results {
+		final ConcurrentMap<String, Long> hashes = new ConcurrentHashMap<String, Long>();
+		final StringBuilder pending = new StringBuilder();
+		File file;
+	}
+	
+	/**
+	 * Unchanged results of a report, not reported yet.
+	 */
+	private static class Manifest {
+		final String buildId;
+		final String buildName;
+		final String reportId;
+		final String reportName;
+		final List<String> tests = new ArrayList<String>();
+		
+		Manifest(String buildId, String buildName, String reportId, String reportName) {
+			this.buildId = buildId;
+			this.buildName = buildName;
+			this.reportId = reportId;
+			this.reportName = reportName;
+		}
+	}
+	
+	private final File directory;
+	
+	private final ConcurrentMap<String, Results> results = new ConcurrentHashMap<String, Results>();
+	
+	private final Map<String, Manifest> manifests = new ConcurrentHashMap<String, Manifest>();
+
+	ResultCache(File directory) {
+		this.directory = directory;
+	}
+	
+	File getDirectory() {
+		return directory;
+	}
+	
+	private static long hash(long hash, String value) {
+		if(value == null){
+			return Fnv.hash(hash, 0xff);
+		}
+		// Field separator.
+		return Fnv.hash(Fnv.hash(hash, value), 0xfe);
+	}
+	
+	private static long hash(long hash, Collection<?> values) {
+		if(values == null){
+			return hash(hash, (String)null);
+		}
+		for(Object value : values){
+			hash = hash(hash, value == null ? null : value.toString());
+		}
+		return Fnv.hash(hash, 0xfd);
+	}
+	
+	/**
+	 * @param test : published test.
+	 * @return hash of the test result, start and end dates left out.
+	 */
+	static long hash(TestEntry test) {
+		long hash = Fnv.OFFSET_BASIS;
+		hash = hash(hash, test.getStatus());
+		hash = hash(hash, test.getDescription());
+		hash = hash(hash, test.getLog());
+		hash = hash(hash, test.getCriterias());
+		hash = hash(hash, test.getTags());
+		hash = hash(hash, test.getSteps());
+		hash = hash(hash, test.getCustomAttributes() == null ? null : test.getCustomAttributes().entrySet());
+		return hash;
+	}
+	
+	private Results results(String build, String report) throws IOException {
+		String key = build + "\n" + report;
+		Results cached = results.get(key);
+		if(cached != null){
+			return cached;
+		}
+		synchronized(results){
+			cached = results.get(key);
+			if(cached == null){
+				cached = load(new File(directory, Long.toHexString(hash(Fnv.OFFSET_BASIS, key)) + FILE_EXTENSION));
+				results.put(key, cached);
+			}
+			return cached;
+		}
+	}
+	
+	private static Results load(File file) throws IOException {
+		Results loaded = new Results();
+		if(file.exists()){
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), Utf8.UTF8));
+			try {
+				String line;
+				while((line = reader.readLine()) != null){
+					int separator = line.indexOf(' ');
+					if(separator > 0){
+						try {
+							loaded.hashes.put(line.substring(separator + 1), Fnv.parse(line.substring(0, separator)));
+						} catch (NumberFormatException e) {
+							// Truncated line, the result is published again.
+						}
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}else if(!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()){
+			throw new IOException("Result cache directory "+file.getParentFile()+" could not be created.");
+		}
+		loaded.file = file;
+		return loaded;
+	}
+	
+	/**
+	 * @param build : build key.
+	 * @param report : report key.
+	 * @param test : test key.
+	 * @param hash : test result hash, null for a test published without result.
+	 * @return true if the test result was already published, or if the test was already published when no result is given.
+	 * @throws IOException
+	 */
+	boolean isUnchanged(String build, String report, String test, Long hash) throws IOException {
+		Long cached = results(build, report).hashes.get(test);
+		return cached != null && (hash == null || cached.longValue() == hash.longValue());
+	}
+	
+	/**
+	 * Store a published test result.
+	 */
+	void record(String build, String report, String test, long hash) throws IOException {
+		Results cached = results(build, report);
+		Long previous = cached.hashes.put(test, hash);
+		if(previous == null || previous.longValue() != hash){
+			synchronized(cached){
+				cached.pending.append(Long.toHexString(hash)).append(' ').append(test.replace('\n', ' ')).append('\n');
+			}
+		}
+	}
+	
+	/**
+	 * Add an unchanged result to the manifest of its report.
+	 */
+	void unchanged(String report, String test, String buildId, String buildName, String reportId, String reportName) {
+		synchronized(manifests){
+			Manifest manifest = manifests.get(report);
+			if(manifest == null){
+				manifest = new Manifest(buildId, buildName, reportId, reportName);
+				manifests.put(report, manifest);
+			}
+			manifest.tests.add(test);
+		}
+	}
+	
+	/**
+	 * Remove the manifest of a report.
+	 * 
+	 * @param report : report key, null for every report.
+	 * @return JSON serialized manifests of unchanged results.
+	 */
+	@SuppressWarnings("unchecked")
+	List<String> drainManifests(String report) {
+		List<Manifest> drained = new ArrayList<Manifest>();
+		synchronized(manifests){
+			if(report == null){
+				drained.addAll(manifests.values());
+				manifests.clear();
+			}else if(manifests.containsKey(report)){
+				drained.add(manifests.remove(report));
+			}
+		}
+		List<String> data = new ArrayList<String>(drained.size());
+		for(Manifest manifest : drained){
+			JSONObject obj = new JSONObject();
+			obj.put("id", manifest.reportId);
+			obj.put("name", manifest.reportName);
+			obj.put("build_id", manifest.buildId);
+			obj.put("build_name", manifest.buildName);
+			JSONArray tests = new JSONArray();
+			tests.addAll(manifest.tests);
+			obj.put("tests", tests);
+			data.add(obj.toJSONString());
+		}
+		return data;
+	}
+	
+	/**
+	 * Append recorded results to the cache files.
+	 */
+	synchronized void flush() throws IOException {
+		for(Results cached : results.values()){
+			String lines;
+			synchronized(cached){
+				if(cached.pending.length() == 0){
+					continue;
+				}
+				lines = cached.pending.toString();
+				cached.pending.setLength(0);
+			}
+			Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(cached.file, true), Utf8.UTF8));
+			try {
+				writer.write(lines);
+			} finally {
+				writer.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+
+/**
+ * Message broker connections shared by Connector instances configured with the same broker and credentials.
+ * 
+ * Each Connector opens its own channels on the shared connection. The connection is closed once every Connector using it released it.
+ * Connections are opened under a lock of their own broker key only, and closed outside of any lock, 
+ * so a slow broker never delays Connectors using another one.
+ */
+class SharedConnections {
+	
+	private static class SharedConnection {
+		final String key;
+		Connection connection;
+		int users;
+		//True once removed from the connections map, a new holder must be created for the key.
+		boolean retired;
+		
+		SharedConnection(String key) {
+			this.key = key;
+		}
+	}
+	
+	private final static ConcurrentMap<String, SharedConnection> connections = new ConcurrentHashMap<String, SharedConnection>();
+	
+	private final static ConcurrentMap<Connection, SharedConnection> owners = new ConcurrentHashMap<Connection, SharedConnection>();
+	
+	private SharedConnections() {
+	}
+	
+	private static String key(String host, Integer port, String username, String password, String vhost) {
+		return username + ":" + password + "@" + host + ":" + port + "/" + vhost;
+	}
+	
+	/**
+	 * Get an open connection to the given broker, creating it if needed.
+	 * Every acquired connection must be released with {@link #release(Connection) release}.
+	 * 
+	 * @return shared connection.
+	 * @throws IOException
+	 */
+	static Connection acquire(String host, Integer port, String username, String password, String vhost) throws IOException {
+		String key = key(host, port, username, password, vhost);
+		while(true){
+			SharedConnection shared = connections.get(key);
+			if(shared == null){
+				SharedConnection created = new SharedConnection(key);
+				shared = connections.putIfAbsent(key, created);
+				if(shared == null){
+					shared = created;
+				}
+			}
+			synchronized(shared){
+				if(shared.retired){
+					continue;
+				}
+				if(shared.connection != null && !shared.connection.isOpen()){
+					//Users of a dead connection keep their reference and release it later on.
+					retire(shared);
+					continue;
+				}
+				if(shared.connection == null){
+					ConnectionFactory factory = new ConnectionFactory();
+					factory.setHost(host);
+					factory.setPort(port);
+					factory.setUsername(username);
+					factory.setPassword(password);
+					factory.setVirtualHost(vhost);
+					shared.connection = factory.newConnection();
+					owners.put(shared.connection, shared);
+				}
+				shared.users++;
+				return shared.connection;
+			}
+		}
+	}
+	
+	/**
+	 * Release a connection. It is closed when no Connector uses it anymore.
+	 * 
+	 * @param connection : connection returned by {@link #acquire(String, Integer, String, String, String) acquire}.
+	 * @throws IOException
+	 */
+	static void release(Connection connection) throws IOException {
+		SharedConnection shared = owners.get(connection);
+		if(shared != null){
+			synchronized(shared){
+				if(--shared.users > 0){
+					return;
+				}
+				retire(shared);
+				owners.remove(connection);
+			}
+		}
+		//Last user, or connection replaced after it died.
+		if(connection.isOpen()){
+			connection.close();
+		}
+	}
+	
+	private static void retire(SharedConnection shared) {
+		shared.retired = true;
+		connections.remove(shared.key, shared);
+	}
+}
@@ -0,0 +1,235 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import com.modeln.batam.connector.util.Histogram;
+
+/**
+ * Running test aggregates of a build or a report: test counts by status, total, minimum and maximum duration 
+ * and a duration histogram.
+ * 
+ * Counters are updated without locking by every thread publishing tests. The state of a test is swapped atomically too, 
+ * so that a test published several times is counted once with its latest status.
+ * 
+ * The state of every test is kept until its build or report ends, a test published again afterwards is counted as a new test.
+ */
+public class TestAggregates {
+	
+	private static class TestState {
+		
+		private final static AtomicReferenceFieldUpdater<TestState, String> STATUS = 
+				AtomicReferenceFieldUpdater.newUpdater(TestState.class, String.class, "status");
+		
+		private final static AtomicIntegerFieldUpdater<TestState> TIMED = AtomicIntegerFieldUpdater.newUpdater(TestState.class, "timed");
+		
+		volatile String status;
+		volatile Long startDate;
+		volatile int timed;
+	}
+	
+	private final ConcurrentMap<String, TestState> tests = new ConcurrentHashMap<String, TestState>();
+	
+	private final ConcurrentMap<String, AtomicLong> statuses = new ConcurrentHashMap<String, AtomicLong>();
+	
+	private final AtomicLong count = new AtomicLong();
+	
+	private final AtomicLong duration = new AtomicLong();
+	
+	private final AtomicLong timedCount = new AtomicLong();
+	
+	private final AtomicLong minDuration = new AtomicLong(Long.MAX_VALUE);
+	
+	private final AtomicLong maxDuration = new AtomicLong(Long.MIN_VALUE);
+	
+	private final Histogram histogram = new Histogram();
+	
+	/**
+	 * Record a published test.
+	 * 
+	 * @param test : test identity within the aggregates.
+	 * @param status : test status, null if not known yet.
+	 * @param startDate : test start date in milliseconds, null if not known.
+	 * @param endDate : test end date in milliseconds, null if not known.
+	 * @return test duration in milliseconds if it just became known, -1 otherwise.
+	 */
+	long record(String test, String status, Long startDate, Long endDate) {
+		TestState state = tests.get(test);
+		if(state == null){
+			TestState created = new TestState();
+			state = tests.putIfAbsent(test, created);
+			if(state == null){
+				state = created;
+				count.incrementAndGet();
+			}
+		}
+		String previous = status == null ? null : TestState.STATUS.getAndSet(state, status);
+		if(startDate != null){
+			state.startDate = startDate;
+		}
+		long elapsed = -1;
+		Long start = state.startDate;
+		if(endDate != null && start != null && state.timed == 0 && TestState.TIMED.compareAndSet(state, 0, 1)){
+			elapsed = endDate - start;
+		}
+		if(status != null && !status.equals(previous)){
+			if(previous != null){
+				counter(previous).decrementAndGet();
+			}
+			counter(status).incrementAndGet();
+		}
+		if(elapsed >= 0){
+			recordDuration(elapsed);
+		}
+		return elapsed;
+	}
+	
+	/**
+	 * Release the state of tests that are not published anymore. Counters are kept.
+	 * 
+	 * @param prefix : identity prefix of the released tests, empty for every test.
+	 */
+	void release(String prefix) {
+		if(prefix.length() == 0){
+			tests.clear();
+			return;
+		}
+		for(Iterator<String> it = tests.keySet().iterator(); it.hasNext();){
+			if(it.next().startsWith(prefix)){
+				it.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Record a passing test without tracking its identity (summarized tests).
+	 * 
+	 * @param duration : test duration in milliseconds.
+	 */
+	void recordPass(long duration) {
+		count.incrementAndGet();
+		counter("pass").incrementAndGet();
+		recordDuration(duration);
+	}
+	
+	private void recordDuration(long elapsed) {
+		timedCount.incrementAndGet();
+		duration.addAndGet(elapsed);
+		histogram.record(elapsed);
+		long min;
+		while(elapsed < (min = minDuration.get()) && !minDuration.compareAndSet(min, elapsed)){
+			// Retry.
+		}
+		long max;
+		while(elapsed > (max = maxDuration.get()) && !maxDuration.compareAndSet(max, elapsed)){
+			// Retry.
+		}
+	}
+	
+	private AtomicLong counter(String status) {
+		AtomicLong counter = statuses.get(status);
+		if(counter == null){
+			AtomicLong created = new AtomicLong();
+			counter = statuses.putIfAbsent(status, created);
+			if(counter == null){
+				counter = created;
+			}
+		}
+		return counter;
+	}
+	
+	/**
+	 * @return number of tests.
+	 */
+	public long getCount() {
+		return count.get();
+	}
+	
+	/**
+	 * @param status : test status.
+	 * @return number of tests whose latest status is the given one.
+	 */
+	public long getCount(String status) {
+		AtomicLong counter = statuses.get(status);
+		return counter == null ? 0 : counter.get();
+	}
+	
+	/**
+	 * @return total duration of the tests having a start and an end date, in milliseconds.
+	 */
+	public long getDuration() {
+		return duration.get();
+	}
+	
+	/**
+	 * @return shortest test duration in milliseconds, -1 if no duration has been recorded.
+	 */
+	public long getMinDuration() {
+		return timedCount.get() == 0 ? -1 : minDuration.get();
+	}
+	
+	/**
+	 * @return longest test duration in milliseconds, -1 if no duration has been recorded.
+	 */
+	public long getMaxDuration() {
+		return timedCount.get() == 0 ? -1 : maxDuration.get();
+	}
+	
+	public Histogram getHistogram() {
+		return histogram;
+	}
+	
+	/**
+	 * @return JSON representation attached to update_report and update_build messages.
+	 */
+	@SuppressWarnings("unchecked")
+	public JSONObject toJSON() {
+		JSONObject obj = new JSONObject();
+		obj.put("tests", getCount());
+		JSONObject counts = new JSONObject();
+		for(Map.Entry<String, AtomicLong> entry : statuses.entrySet()){
+			counts.put(entry.getKey(), entry.getValue().get());
+		}
+		obj.put("statuses", counts);
+		JSONObject durations = new JSONObject();
+		durations.put("total", getDuration());
+		durations.put("min", getMinDuration());
+		durations.put("max", getMaxDuration());
+		obj.put("duration", durations);
+		JSONArray buckets = new JSONArray();
+		buckets.addAll(histogram.toList());
+		obj.put("histogram", buckets);
+		return obj;
+	}
+}
@@ -0,0 +1,114 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.io.IOException;
+import java.util.Date;
+
+import com.modeln.batam.connector.wrapper.TestEntry;
+
+/**
+ * Test scoped publishing API, obtained from {@link com.modeln.batam.connector.ReportSession#test(String) ReportSession.test}.
+ * 
+ * <PRE>
+ * session.report("suite").test("name").pass();
+ * </PRE>
+ */
+public class TestSession {
+	
+	private final ReportSession report;
+	
+	private final String name;
+
+	TestSession(ReportSession report, String name) {
+		this.report = report;
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Create the test with the current date as start date.
+	 * 
+	 * @return queued message.
+	 * @throws IOException
+	 */
+	public String start() throws IOException {
+		TestEntry test = new TestEntry();
+		test.setName(name);
+		test.setStartDate(new Date());
+		return report.startTest(test);
+	}
+	
+	/**
+	 * Update the test status to pass, see {@link #finish(String, String) finish}.
+	 * 
+	 * @return queued message.
+	 * @throws IOException
+	 */
+	public String pass() throws IOException {
+		return finish("pass", null);
+	}
+	
+	/**
+	 * Update the test status to fail, see {@link #finish(String, String) finish}.
+	 * 
+	 * @param log : Test log (raw logs).
+	 * @return queued message.
+	 * @throws IOException
+	 */
+	public String fail(String log) throws IOException {
+		return finish("fail", log);
+	}
+	
+	/**
+	 * Update the test status to error, see {@link #finish(String, String) finish}.
+	 * 
+	 * @param log : Test log (raw logs).
+	 * @return queued message.
+	 * @throws IOException
+	 */
+	public String error(String log) throws IOException {
+		return finish("error", log);
+	}
+	
+	/**
+	 * Update the test end date, status and log. A test that has not been started is created with them instead.
+	 * 
+	 * @param status : Test Status.
+	 * @param log : Test log (raw logs).
+	 * @return queued message.
+	 * @throws IOException
+	 */
+	public String finish(String status, String log) throws IOException {
+		TestEntry test = new TestEntry();
+		test.setName(name);
+		test.setEndDate(new Date());
+		test.setStatus(status);
+		test.setLog(log);
+		return report.finishTest(test);
+	}
+}
@@ -0,0 +1,269 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import com.modeln.batam.connector.exception.InvalidArgumentException;
+import com.modeln.batam.connector.util.Histogram;
+import com.modeln.batam.connector.util.ThreadHelper;
+
+/**
+ * Summary mode of a report: passing tests are aggregated per class instead of being published one by one.
+ * 
+ * Pass counts, cumulated durations and duration histograms are published periodically as compact test_summary records 
+ * holding the counts since the previous record. Failures and a sample of passing tests should still be published in full, 
+ * sampled passes are not counted in the summary.
+ * 
+ * <PRE>
+ * TestSummarizer summary = ConnectorHelper.openTestSummary(null, "My Build", null, "suite");
+ * if(failed || summary.isSampled(testName)){
+ * 	//publish the test in full.
+ * }else{
+ * 	summary.recordPass(className, duration);
+ * }
+ * ...
+ * summary.close();
+ * </PRE>
+ */
+public class TestSummarizer implements Closeable {
+	
+	private static class ClassSummary {
+		final AtomicLong passes = new AtomicLong();
+		final AtomicLong duration = new AtomicLong();
+		final Histogram histogram = new Histogram();
+		
+		void add(ClassSummary other) {
+			passes.addAndGet(other.passes.get());
+			duration.addAndGet(other.duration.get());
+			histogram.add(other.histogram);
+		}
+	}
+	
+	private final static int SAMPLE_SCALE = 10000;
+	
+	private final Connector connector;
+	
+	private final boolean manageConnection;
+	
+	private final String buildId;
+	
+	private final String buildName;
+	
+	private final String reportId;
+	
+	private final String reportName;
+	
+	private final int sampleThreshold;
+	
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	
+	private ConcurrentMap<String, ClassSummary> classes = new ConcurrentHashMap<String, ClassSummary>();
+	
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * @param connector : connector publishing summaries.
+	 * @param buildId : build id (required if build name not provided).
+	 * @param buildName : build name (required if build id not provided).
+	 * @param reportId : report id (required if report name not provided).
+	 * @param reportName : report name (required if report id not provided).
+	 * @param sampleRate : ratio of passing tests to publish in full, between 0 and 1.
+	 * @param interval : time between two summary records in milliseconds, 0 to publish only when flushed.
+	 * @param manageConnection : true to begin and end the connection around every publish.
+	 */
+	TestSummarizer(Connector connector, String buildId, String buildName, String reportId, String reportName, 
+			double sampleRate, long interval, boolean manageConnection) {
+		if(buildId == null && buildName == null){
+			throw new InvalidArgumentException("At least one of the fields build id and build name should be provided.");
+		}
+		if(reportId == null && reportName == null){
+			throw new InvalidArgumentException("At least one of the fields report id and report name should be provided.");
+		}
+		this.connector = connector;
+		this.buildId = buildId;
+		this.buildName = buildName;
+		this.reportId = reportId;
+		this.reportName = reportName;
+		this.sampleThreshold = (int)Math.round(Math.max(0, Math.min(1, sampleRate)) * SAMPLE_SCALE);
+		this.manageConnection = manageConnection;
+		if(interval > 0){
+			this.scheduler = new ScheduledThreadPoolExecutor(1, ThreadHelper.newThreadFactory("batam-summary-" + connector.getName() + "-", false));
+			this.scheduler.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					try {
+						flush();
+					} catch (IOException e) {
+						System.err.println("Batam test summary could not be published: " + e.getMessage());
+					}
+				}
+			}, interval, interval, TimeUnit.MILLISECONDS);
+		}else{
+			this.scheduler = null;
+		}
+	}
+	
+	/**
+	 * Sampling is based on the test name so that the same tests are published in full from one build to another.
+	 * 
+	 * @param testName : test name.
+	 * @return true if the passing test should be published in full.
+	 */
+	public boolean isSampled(String testName) {
+		return ((testName.hashCode() & Integer.MAX_VALUE) % SAMPLE_SCALE) < sampleThreshold;
+	}
+	
+	/**
+	 * Aggregate a passing test.
+	 * 
+	 * @param className : test class name.
+	 * @param duration : test duration in milliseconds.
+	 */
+	public void recordPass(String className, long duration) {
+		lock.readLock().lock();
+		try {
+			ClassSummary summary = summary(className);
+			summary.passes.incrementAndGet();
+			summary.duration.addAndGet(duration);
+			summary.histogram.record(duration);
+		}finally{
+			lock.readLock().unlock();
+		}
+		connector.getAggregator().pass(buildId, buildName, reportId, reportName, duration);
+	}
+	
+	private ClassSummary summary(String className) {
+		ClassSummary summary = classes.get(className);
+		if(summary == null){
+			ClassSummary created = new ClassSummary();
+			summary = classes.putIfAbsent(className, created);
+			if(summary == null){
+				summary = created;
+			}
+		}
+		return summary;
+	}
+	
+	/**
+	 * Merge back passes which could not be published, so that the next record counts them.
+	 */
+	private void restore(Map<String, ClassSummary> snapshot) {
+		lock.readLock().lock();
+		try {
+			for(Map.Entry<String, ClassSummary> entry : snapshot.entrySet()){
+				summary(entry.getKey()).add(entry.getValue());
+			}
+		}finally{
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Publish passes aggregated since the previous record.
+	 * If the record can't be published, its passes are kept for the next one.
+	 * 
+	 * @return published message, null if no pass has been aggregated.
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	public String flush() throws IOException {
+		Map<String, ClassSummary> snapshot;
+		lock.writeLock().lock();
+		try {
+			if(classes.isEmpty()){
+				return null;
+			}
+			snapshot = classes;
+			classes = new ConcurrentHashMap<String, ClassSummary>();
+		}finally{
+			lock.writeLock().unlock();
+		}
+		
+		long passes = 0;
+		JSONArray records = new JSONArray();
+		for(Map.Entry<String, ClassSummary> entry : snapshot.entrySet()){
+			JSONObject record = new JSONObject();
+			record.put("name", entry.getKey());
+			record.put("passes", entry.getValue().passes.get());
+			record.put("duration", entry.getValue().duration.get());
+			JSONArray histogram = new JSONArray();
+			histogram.addAll(entry.getValue().histogram.toList());
+			record.put("histogram", histogram);
+			records.add(record);
+			passes += entry.getValue().passes.get();
+		}
+		JSONObject obj = new JSONObject();
+		obj.put("id", reportId);
+		obj.put("name", reportName);
+		obj.put("build_id", buildId);
+		obj.put("build_name", buildName);
+		obj.put("classes", records);
+		
+		Map<String, Object> headers = MessageHeaders.of(Connector.TEST_SUMMARY_ACTION, buildId, buildName, reportId, reportName);
+		headers.put(MessageHeaders.ENTRY_COUNT_HEADER, passes);
+		String message = Connector.toMessage(Connector.TEST_SUMMARY_ACTION, obj.toJSONString());
+		boolean published = false;
+		try {
+			if(manageConnection){
+				try {
+					ConnectorHelper.beginConnection(connector);
+					connector.publishMessage(Connector.TEST_SUMMARY_ACTION, message, headers);
+				}finally{
+					ConnectorHelper.endConnection(connector);
+				}
+			}else{
+				connector.publishMessage(Connector.TEST_SUMMARY_ACTION, message, headers);
+			}
+			published = true;
+		}finally{
+			if(!published){
+				restore(snapshot);
+			}
+		}
+		return message;
+	}
+
+	/**
+	 * Stop periodic records and publish the last one.
+	 */
+	public void close() throws IOException {
+		if(scheduler != null){
+			scheduler.shutdown();
+		}
+		flush();
+	}
+}
@@ -0,0 +1,58 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector.flow;
+
+/**
+ * Receiver of a stream of items, following the java.util.concurrent.Flow.Subscriber contract.
+ * 
+ * The connector targets Java 1.6, so the interface is declared here with the same methods. 
+ * Adapting it to a JDK 9 Flow.Subscriber or a Reactive Streams Subscriber is a one to one delegation.
+ *
+ * @param <T> item type.
+ */
+public interface Subscriber<T> {
+	
+	/**
+	 * Called before any other method with the subscription used to request items.
+	 * @param subscription : subscription.
+	 */
+	void onSubscribe(Subscription subscription);
+	
+	/**
+	 * Called with the next item. Only called after items have been requested.
+	 * @param item : item.
+	 */
+	void onNext(T item);
+	
+	/**
+	 * Called when the upstream fails. No other method is called afterward.
+	 * @param throwable : failure cause.
+	 */
+	void onError(Throwable throwable);
+	
+	/**
+	 * Called when the upstream has no more items. No other method is called afterward.
+	 */
+	void onComplete();
+}
@@ -41,6 +41,24 @@ public class ConfigHelper {
 	private final static String VHOST_PROPERTY_CONF = "com.modeln.batam.vhost";
 	private final static String QUEUE_PROPERTY_CONF = "com.modeln.batam.queue";
 	private final static String PUBLISHER_PROPERTY_CONF = "com.modeln.batam.publisher";
+	private final static String THREADS_PROPERTY_CONF = "com.modeln.batam.threads";
+	private final static String WAIT_STRATEGY_PROPERTY_CONF = "com.modeln.batam.wait_strategy";
+	private final static String BUFFER_SIZE_PROPERTY_CONF = "com.modeln.batam.buffer_size";
+	private final static String SHUTDOWN_TIMEOUT_PROPERTY_CONF = "com.modeln.batam.shutdown_timeout";
+	private final static String WARMUP_PROPERTY_CONF = "com.modeln.batam.warmup";
+	private final static String EXCHANGE_PROPERTY_CONF = "com.modeln.batam.exchange";
+	private final static String ANALYSIS_QUIET_PERIOD_PROPERTY_CONF = "com.modeln.batam.analysis_quiet_period";
+	private final static String EXCHANGE_TYPE_PROPERTY_CONF = "com.modeln.batam.exchange_type";
+	private final static String SUMMARY_SAMPLE_RATE_PROPERTY_CONF = "com.modeln.batam.summary_sample_rate";
+	private final static String SUMMARY_INTERVAL_PROPERTY_CONF = "com.modeln.batam.summary_interval";
+	private final static String RESULT_CACHE_PROPERTY_CONF = "com.modeln.batam.result_cache";
+	private final static String MAX_STACK_FRAMES_PROPERTY_CONF = "com.modeln.batam.max_stack_frames";
+	private final static String OVERHEAD_BUDGET_PROPERTY_CONF = "com.modeln.batam.overhead_budget";
+	private final static String LOG_HEAD_PROPERTY_CONF = "com.modeln.batam.log_head";
+	private final static String LOG_TAIL_PROPERTY_CONF = "com.modeln.batam.log_tail";
+	private final static String ARTIFACT_STORE_PROPERTY_CONF = "com.modeln.batam.artifact_store";
+	private final static String ARTIFACT_URL_PROPERTY_CONF = "com.modeln.batam.artifact_url";
+	private final static String RELAY_PROPERTY_CONF = "com.modeln.batam.relay";
 	
 	private final static String HOST_SYSTEM_PROPERTY_CONF = "batam.host";		
 	private final static String USER_SYSTEM_PROPERTY_CONF = "batam.username";		
@@ -49,6 +67,43 @@ public class ConfigHelper {
 	private final static String VHOST_SYSTEM_PROPERTY_CONF = "batam.vhost";		
 	private final static String QUEUE_SYSTEM_PROPERTY_CONF = "batam.queue";		
 	private final static String PUBLISHER_SYSTEM_PROPERTY_CONF = "batam.publisher";
+	private final static String THREADS_SYSTEM_PROPERTY_CONF = "batam.threads";
+	private final static String WAIT_STRATEGY_SYSTEM_PROPERTY_CONF = "batam.wait_strategy";
+	private final static String BUFFER_SIZE_SYSTEM_PROPERTY_CONF = "batam.buffer_size";
+	private final static String SHUTDOWN_TIMEOUT_SYSTEM_PROPERTY_CONF = "batam.shutdown_timeout";
+	private final static String WARMUP_SYSTEM_PROPERTY_CONF = "batam.warmup";
+	private final static String EXCHANGE_SYSTEM_PROPERTY_CONF = "batam.exchange";
+	private final static String ANALYSIS_QUIET_PERIOD_SYSTEM_PROPERTY_CONF = "batam.analysis_quiet_period";
+	private final static String EXCHANGE_TYPE_SYSTEM_PROPERTY_CONF = "batam.exchange_type";
+	private final static String SUMMARY_SAMPLE_RATE_SYSTEM_PROPERTY_CONF = "batam.summary_sample_rate";
+	private final static String SUMMARY_INTERVAL_SYSTEM_PROPERTY_CONF = "batam.summary_interval";
+	private final static String RESULT_CACHE_SYSTEM_PROPERTY_CONF = "batam.result_cache";
+	private final static String MAX_STACK_FRAMES_SYSTEM_PROPERTY_CONF = "batam.max_stack_frames";
+	private final static String OVERHEAD_BUDGET_SYSTEM_PROPERTY_CONF = "batam.overhead_budget";
+	private final static String LOG_HEAD_SYSTEM_PROPERTY_CONF = "batam.log_head";
+	private final static String LOG_TAIL_SYSTEM_PROPERTY_CONF = "batam.log_tail";
+	private final static String ARTIFACT_STORE_SYSTEM_PROPERTY_CONF = "batam.artifact_store";
+	private final static String ARTIFACT_URL_SYSTEM_PROPERTY_CONF = "batam.artifact_url";
+	private final static String RELAY_SYSTEM_PROPERTY_CONF = "batam.relay";
+	
+	private final static String THREADS_DEFAULT = "platform";
+	private final static String WAIT_STRATEGY_DEFAULT = "park";
+	private final static String BUFFER_SIZE_DEFAULT = "8192";
+	private final static String SHUTDOWN_TIMEOUT_DEFAULT = "5000";
+	private final static String WARMUP_DEFAULT = "off";
+	private final static String EXCHANGE_DEFAULT = "";
+	private final static String ANALYSIS_QUIET_PERIOD_DEFAULT = "0";
+	private final static String EXCHANGE_TYPE_DEFAULT = "headers";
+	private final static String SUMMARY_SAMPLE_RATE_DEFAULT = "0.01";
+	private final static String SUMMARY_INTERVAL_DEFAULT = "10000";
+	private final static String RESULT_CACHE_DEFAULT = "";
+	private final static String MAX_STACK_FRAMES_DEFAULT = "50";
+	private final static String OVERHEAD_BUDGET_DEFAULT = "5";
+	private final static String LOG_HEAD_DEFAULT = "1048576";
+	private final static String LOG_TAIL_DEFAULT = "1048576";
+	private final static String ARTIFACT_STORE_DEFAULT = "";
+	private final static String ARTIFACT_URL_DEFAULT = "";
+	private final static String RELAY_DEFAULT = "";
 	
 	public static String HOST;
 	public static String USER;
@@ -57,10 +112,34 @@ public class ConfigHelper {
 	public static String VHOST;
 	public static String QUEUE;
 	public static String PUBLISHER;
+	public static String THREADS;
+	public static String WAIT_STRATEGY;
+	public static Integer BUFFER_SIZE;
+	public static Long SHUTDOWN_TIMEOUT;
+	public static Boolean WARMUP;
+	public static String EXCHANGE;
+	public static String EXCHANGE_TYPE;
+	public static Long ANALYSIS_QUIET_PERIOD;
+	public static Double SUMMARY_SAMPLE_RATE;
+	public static Long SUMMARY_INTERVAL;
+	public static String RESULT_CACHE;
+	public static Integer MAX_STACK_FRAMES;
+	public static Double OVERHEAD_BUDGET;
+	public static Integer LOG_HEAD;
+	public static Integer LOG_TAIL;
+	public static String ARTIFACT_STORE;
+	public static String ARTIFACT_URL;
+	public static String RELAY;
 
 	public static void loadProperties(String fileName) {
 		if(HOST != null && USER != null && PASSWORD != null && 
-				PORT != null && VHOST != null && QUEUE != null && PUBLISHER != null){
+				PORT != null && VHOST != null && QUEUE != null && PUBLISHER != null && THREADS != null &&
+				WAIT_STRATEGY != null && BUFFER_SIZE != null && SHUTDOWN_TIMEOUT != null &&
+				WARMUP != null && EXCHANGE != null && EXCHANGE_TYPE != null &&
+				ANALYSIS_QUIET_PERIOD != null && SUMMARY_SAMPLE_RATE != null && SUMMARY_INTERVAL != null &&
+				RESULT_CACHE != null && MAX_STACK_FRAMES != null &&
+				OVERHEAD_BUDGET != null && LOG_HEAD != null && LOG_TAIL != null &&
+				ARTIFACT_STORE != null && ARTIFACT_URL != null && RELAY != null){
 			return;
 		}
 
@@ -111,10 +190,53 @@ public class ConfigHelper {
 					prop.getProperty(PUBLISHER_SYSTEM_PROPERTY_CONF) : 
 						(System.getenv(PUBLISHER_PROPERTY_CONF) != null ? System.getenv(PUBLISHER_PROPERTY_CONF) : prop.getProperty(PUBLISHER_PROPERTY_CONF));
 			PUBLISHER = (PUBLISHER.equals("on") || PUBLISHER.equals("true")) ? "true" : "false";
+			THREADS = getProperty(prop, THREADS_SYSTEM_PROPERTY_CONF, THREADS_PROPERTY_CONF, THREADS_DEFAULT);
+			WAIT_STRATEGY = getProperty(prop, WAIT_STRATEGY_SYSTEM_PROPERTY_CONF, WAIT_STRATEGY_PROPERTY_CONF, WAIT_STRATEGY_DEFAULT);
+			BUFFER_SIZE = Integer.valueOf(getProperty(prop, BUFFER_SIZE_SYSTEM_PROPERTY_CONF, BUFFER_SIZE_PROPERTY_CONF, BUFFER_SIZE_DEFAULT));
+			SHUTDOWN_TIMEOUT = Long.valueOf(getProperty(prop, SHUTDOWN_TIMEOUT_SYSTEM_PROPERTY_CONF, SHUTDOWN_TIMEOUT_PROPERTY_CONF, SHUTDOWN_TIMEOUT_DEFAULT));
+			WARMUP = isOn(getProperty(prop, WARMUP_SYSTEM_PROPERTY_CONF, WARMUP_PROPERTY_CONF, WARMUP_DEFAULT));
+			EXCHANGE = getProperty(prop, EXCHANGE_SYSTEM_PROPERTY_CONF, EXCHANGE_PROPERTY_CONF, EXCHANGE_DEFAULT);
+			EXCHANGE_TYPE = getProperty(prop, EXCHANGE_TYPE_SYSTEM_PROPERTY_CONF, EXCHANGE_TYPE_PROPERTY_CONF, EXCHANGE_TYPE_DEFAULT);
+			ANALYSIS_QUIET_PERIOD = Long.valueOf(getProperty(prop, ANALYSIS_QUIET_PERIOD_SYSTEM_PROPERTY_CONF, ANALYSIS_QUIET_PERIOD_PROPERTY_CONF, ANALYSIS_QUIET_PERIOD_DEFAULT));
+			SUMMARY_SAMPLE_RATE = Double.valueOf(getProperty(prop, SUMMARY_SAMPLE_RATE_SYSTEM_PROPERTY_CONF, SUMMARY_SAMPLE_RATE_PROPERTY_CONF, SUMMARY_SAMPLE_RATE_DEFAULT));
+			SUMMARY_INTERVAL = Long.valueOf(getProperty(prop, SUMMARY_INTERVAL_SYSTEM_PROPERTY_CONF, SUMMARY_INTERVAL_PROPERTY_CONF, SUMMARY_INTERVAL_DEFAULT));
+			RESULT_CACHE = getProperty(prop, RESULT_CACHE_SYSTEM_PROPERTY_CONF, RESULT_CACHE_PROPERTY_CONF, RESULT_CACHE_DEFAULT);
+			MAX_STACK_FRAMES = Integer.valueOf(getProperty(prop, MAX_STACK_FRAMES_SYSTEM_PROPERTY_CONF, MAX_STACK_FRAMES_PROPERTY_CONF, MAX_STACK_FRAMES_DEFAULT));
+			OVERHEAD_BUDGET = Double.valueOf(getProperty(prop, OVERHEAD_BUDGET_SYSTEM_PROPERTY_CONF, OVERHEAD_BUDGET_PROPERTY_CONF, OVERHEAD_BUDGET_DEFAULT));
+			LOG_HEAD = Integer.valueOf(getProperty(prop, LOG_HEAD_SYSTEM_PROPERTY_CONF, LOG_HEAD_PROPERTY_CONF, LOG_HEAD_DEFAULT));
+			LOG_TAIL = Integer.valueOf(getProperty(prop, LOG_TAIL_SYSTEM_PROPERTY_CONF, LOG_TAIL_PROPERTY_CONF, LOG_TAIL_DEFAULT));
+			ARTIFACT_STORE = getProperty(prop, ARTIFACT_STORE_SYSTEM_PROPERTY_CONF, ARTIFACT_STORE_PROPERTY_CONF, ARTIFACT_STORE_DEFAULT);
+			ARTIFACT_URL = getProperty(prop, ARTIFACT_URL_SYSTEM_PROPERTY_CONF, ARTIFACT_URL_PROPERTY_CONF, ARTIFACT_URL_DEFAULT);
+			RELAY = getProperty(prop, RELAY_SYSTEM_PROPERTY_CONF, RELAY_PROPERTY_CONF, RELAY_DEFAULT);
 						
 		} catch (IOException e) {
 			throw new PropertyConfigurationException("Check your property file is correctly configured.", e);
 		}
 		return ;
 	}
+	
+	/**
+	 * Resolve an optional property. System property names defined in the property file have priority over environment properties, 
+	 * then over the property file value.
+	 * 
+	 * @param prop : loaded property file.
+	 * @param systemKey : system property name.
+	 * @param key : property name.
+	 * @param defaultValue : value used when the property is not defined.
+	 * @return property value.
+	 */
+	private static String getProperty(Properties prop, String systemKey, String key, String defaultValue) {
+		String value = prop.getProperty(systemKey);
+		if(value == null){
+			value = System.getenv(key);
+		}
+		if(value == null){
+			value = prop.getProperty(key);
+		}
+		return value != null ? value : defaultValue;
+	}
+	
+	private static boolean isOn(String value) {
+		return value.equals("on") || value.equals("true");
+	}
 }
@@ -0,0 +1,79 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector.util;
+
+/**
+ * 64 bits FNV-1a hashing, used for fingerprints and result hashes. 
+ * It is fast and allocation free, but not a cryptographic hash.
+ * 
+ * <PRE>
+ * long hash = Fnv.hash(Fnv.OFFSET_BASIS, "first field");
+ * hash = Fnv.hash(hash, "second field");
+ * </PRE>
+ */
+public final class Fnv {
+	
+	public final static long OFFSET_BASIS = 0xcbf29ce484222325L;
+	
+	private final static long PRIME = 0x100000001b3L;
+	
+	private Fnv() {
+	}
+	
+	/**
+	 * @param hash : current hash.
+	 * @param value : value to mix in, only its lowest 16 bits are used.
+	 * @return updated hash.
+	 */
+	public static long hash(long hash, int value) {
+		return (hash ^ (value & 0xffff)) * PRIME;
+	}
+	
+	/**
+	 * @param hash : current hash.
+	 * @param value : characters to mix in.
+	 * @return updated hash.
+	 */
+	public static long hash(long hash, CharSequence value) {
+		for(int i = 0; i < value.length(); i++){
+			hash = (hash ^ value.charAt(i)) * PRIME;
+		}
+		return hash;
+	}
+	
+	/**
+	 * Parse an unsigned hexadecimal hash written by {@link Long#toHexString(long)}.
+	 * 
+	 * @param hex : hexadecimal hash.
+	 * @return hash.
+	 */
+	public static long parse(String hex) {
+		int last = Character.digit(hex.charAt(hex.length() - 1), 16);
+		if(last < 0){
+			throw new NumberFormatException(hex);
+		}
+		long high = hex.length() > 1 ? Long.parseLong(hex.substring(0, hex.length() - 1), 16) : 0;
+		return (high << 4) | last;
+	}
+}
@@ -0,0 +1,122 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of durations with power of 2 buckets.
+ * 
+ * Bucket 0 counts values lower than 1, bucket i counts values in [2^(i-1), 2^i). 
+ * The last bucket also counts every larger value.
+ */
+public class Histogram {
+	
+	public final static int BUCKETS = 32;
+	
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	
+	/**
+	 * @param value : value to record (a duration in milliseconds for instance), negative values are recorded as 0.
+	 * @return bucket the value has been recorded in.
+	 */
+	public static int bucket(long value) {
+		if(value <= 0){
+			return 0;
+		}
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+	}
+	
+	public void record(long value) {
+		counts.incrementAndGet(bucket(value));
+	}
+	
+	/**
+	 * Add the counts of another histogram to this one.
+	 * 
+	 * @param other : histogram to add.
+	 */
+	public void add(Histogram other) {
+		for(int i = 0; i < BUCKETS; i++){
+			long count = other.counts.get(i);
+			if(count > 0){
+				counts.addAndGet(i, count);
+			}
+		}
+	}
+	
+	public long getCount(int bucket) {
+		return counts.get(bucket);
+	}
+	
+	/**
+	 * @return total number of recorded values.
+	 */
+	public long getCount() {
+		long count = 0;
+		for(int i = 0; i < BUCKETS; i++){
+			count += counts.get(i);
+		}
+		return count;
+	}
+	
+	/**
+	 * @return bucket counts, trailing empty buckets are left out.
+	 */
+	public List<Long> toList() {
+		int last = BUCKETS - 1;
+		while(last >= 0 && counts.get(last) == 0){
+			last--;
+		}
+		List<Long> list = new ArrayList<Long>(last + 1);
+		for(int i = 0; i <= last; i++){
+			list.add(counts.get(i));
+		}
+		return list;
+	}
+	
+	/**
+	 * Estimate a percentile from the bucket bounds.
+	 * 
+	 * @param percentile : percentile between 0 and 100.
+	 * @return upper bound of the bucket holding the percentile, 0 if nothing was recorded.
+	 */
+	public long getPercentile(double percentile) {
+		long total = getCount();
+		if(total == 0){
+			return 0;
+		}
+		long rank = (long)Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++){
+			seen += counts.get(i);
+			if(seen >= Math.max(1, rank)){
+				return i == 0 ? 0 : (1L << i) - 1;
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+}
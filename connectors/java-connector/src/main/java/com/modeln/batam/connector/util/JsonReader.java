@@ -0,0 +1,489 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+/**
+ * Streaming pull parser binding JSON documents of any size in constant memory.
+ * 
+ * Values are read one token at a time from a fixed size buffer, without building a JSONObject tree, so that 
+ * entries can be bound directly into wrapper objects. The reader is lenient: commas and colons are treated as separators 
+ * and are not validated, and scalar values can be read as strings.
+ * 
+ * <PRE>
+ * reader.beginObject();
+ * while(reader.hasNext()){
+ * 	String name = reader.nextName();
+ * 	if("name".equals(name)){
+ * 		test.setName(reader.nextString());
+ * 	}else{
+ * 		reader.skipValue();
+ * 	}
+ * }
+ * reader.endObject();
+ * </PRE>
+ */
+public final class JsonReader implements Closeable {
+	
+	public enum Token {
+		BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+	}
+	
+	private final static int BUFFER_SIZE = 16384;
+	
+	private final Reader in;
+	
+	private final char[] buffer;
+	
+	private int position = 0;
+	
+	private int limit = 0;
+	
+	/**
+	 * Characters consumed before the current buffer, for error messages.
+	 */
+	private long offset = 0;
+	
+	private Token peeked;
+	
+	/**
+	 * Number of objects and arrays begun and not ended yet.
+	 */
+	private int depth = 0;
+	
+	private final StringBuilder builder = new StringBuilder();
+	
+	public JsonReader(Reader in) {
+		this(in, BUFFER_SIZE);
+	}
+	
+	/**
+	 * @param in : JSON content.
+	 * @param bufferSize : read buffer size in characters.
+	 */
+	public JsonReader(Reader in, int bufferSize) {
+		this.in = in;
+		this.buffer = new char[bufferSize];
+	}
+	
+	/**
+	 * @return type of the next token, without consuming it.
+	 * @throws IOException
+	 */
+	public Token peek() throws IOException {
+		if(peeked != null){
+			return peeked;
+		}
+		while(true){
+			if(position == limit && !fill()){
+				return peeked = Token.END_DOCUMENT;
+			}
+			char c = buffer[position];
+			switch(c){
+			case ' ': case '\t': case '\n': case '\r': case ',': case ':':
+				position++;
+				continue;
+			case '{':
+				return peeked = Token.BEGIN_OBJECT;
+			case '}':
+				return peeked = Token.END_OBJECT;
+			case '[':
+				return peeked = Token.BEGIN_ARRAY;
+			case ']':
+				return peeked = Token.END_ARRAY;
+			case '"':
+				return peeked = Token.STRING;
+			case 't': case 'f':
+				return peeked = Token.BOOLEAN;
+			case 'n':
+				return peeked = Token.NULL;
+			default:
+				if(c == '-' || (c >= '0' && c <= '9')){
+					return peeked = Token.NUMBER;
+				}
+				throw syntaxError("Unexpected character '" + c + "'");
+			}
+		}
+	}
+	
+	public void beginObject() throws IOException {
+		consume(Token.BEGIN_OBJECT);
+	}
+	
+	public void endObject() throws IOException {
+		consume(Token.END_OBJECT);
+	}
+	
+	public void beginArray() throws IOException {
+		consume(Token.BEGIN_ARRAY);
+	}
+	
+	public void endArray() throws IOException {
+		consume(Token.END_ARRAY);
+	}
+	
+	/**
+	 * @return true if the current object or array has another element.
+	 * @throws IOException
+	 */
+	public boolean hasNext() throws IOException {
+		Token token = peek();
+		return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+	}
+	
+	/**
+	 * @return next object member name.
+	 * @throws IOException
+	 */
+	public String nextName() throws IOException {
+		if(peek() != Token.STRING){
+			throw syntaxError("Expected a name but was " + peeked);
+		}
+		return nextString();
+	}
+	
+	/**
+	 * @return next string, the text of a number or boolean, null for a null value.
+	 * @throws IOException
+	 */
+	public String nextString() throws IOException {
+		switch(peek()){
+		case STRING:
+			peeked = null;
+			position++;
+			return readString();
+		case NUMBER:
+			peeked = null;
+			return readNumber();
+		case BOOLEAN:
+			return String.valueOf(nextBoolean());
+		case NULL:
+			nextNull();
+			return null;
+		default:
+			throw syntaxError("Expected a string but was " + peeked);
+		}
+	}
+	
+	/**
+	 * @return next number, null for a null value.
+	 * @throws IOException
+	 */
+	public Long nextLong() throws IOException {
+		String value = nextString();
+		return value == null ? null : Long.valueOf(value);
+	}
+	
+	/**
+	 * @return next boolean, null for a null value.
+	 * @throws IOException
+	 */
+	public Boolean nextBoolean() throws IOException {
+		Token token = peek();
+		if(token == Token.NULL){
+			nextNull();
+			return null;
+		}
+		if(token != Token.BOOLEAN){
+			throw syntaxError("Expected a boolean but was " + token);
+		}
+		peeked = null;
+		if(buffer[position] == 't'){
+			literal("true");
+			return Boolean.TRUE;
+		}
+		literal("false");
+		return Boolean.FALSE;
+	}
+	
+	public void nextNull() throws IOException {
+		if(peek() != Token.NULL){
+			throw syntaxError("Expected null but was " + peeked);
+		}
+		peeked = null;
+		literal("null");
+	}
+	
+	/**
+	 * Read the next value as json-simple objects, for free form values.
+	 * 
+	 * @return JSONObject, JSONArray, String, Long, Double, Boolean or null.
+	 * @throws IOException
+	 */
+	@SuppressWarnings("unchecked")
+	public Object nextValue() throws IOException {
+		switch(peek()){
+		case BEGIN_OBJECT:
+			JSONObject object = new JSONObject();
+			beginObject();
+			while(hasNext()){
+				String name = nextName();
+				object.put(name, nextValue());
+			}
+			endObject();
+			return object;
+		case BEGIN_ARRAY:
+			JSONArray array = new JSONArray();
+			beginArray();
+			while(hasNext()){
+				array.add(nextValue());
+			}
+			endArray();
+			return array;
+		case NUMBER:
+			String number = nextString();
+			if(number.indexOf('.') >= 0 || number.indexOf('e') >= 0 || number.indexOf('E') >= 0){
+				return Double.valueOf(number);
+			}
+			return Long.valueOf(number);
+		case BOOLEAN:
+			return nextBoolean();
+		case NULL:
+			nextNull();
+			return null;
+		case STRING:
+			return nextString();
+		default:
+			throw syntaxError("Expected a value but was " + peeked);
+		}
+	}
+	
+	/**
+	 * Skip the next value, including nested objects and arrays, without keeping it in memory.
+	 * 
+	 * @throws IOException
+	 */
+	public void skipValue() throws IOException {
+		int depth = 0;
+		do {
+			switch(peek()){
+			case BEGIN_OBJECT:
+			case BEGIN_ARRAY:
+				consume(peeked);
+				depth++;
+				break;
+			case END_OBJECT:
+			case END_ARRAY:
+				consume(peeked);
+				depth--;
+				break;
+			case STRING:
+				peeked = null;
+				position++;
+				skipString();
+				break;
+			case END_DOCUMENT:
+				throw syntaxError("Unexpected end of document");
+			default:
+				nextString();
+			}
+		} while(depth > 0);
+	}
+	
+	/**
+	 * @return number of objects and arrays the reader is in.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+	
+	/**
+	 * Skip the rest of the objects and arrays the reader is in, up to the given depth. 
+	 * Used to resume reading after a value failed to bind.
+	 * 
+	 * @param target : depth returned by {@link #getDepth() getDepth} before beginning the abandoned value.
+	 * @throws IOException
+	 */
+	public void skipTo(int target) throws IOException {
+		while(depth > target){
+			switch(peek()){
+			case END_OBJECT:
+			case END_ARRAY:
+				consume(peeked);
+				break;
+			case END_DOCUMENT:
+				throw syntaxError("Unexpected end of document");
+			default:
+				skipValue();
+			}
+		}
+	}
+	
+	public void close() throws IOException {
+		in.close();
+	}
+	
+	private void consume(Token expected) throws IOException {
+		if(peek() != expected){
+			throw syntaxError("Expected " + expected + " but was " + peeked);
+		}
+		peeked = null;
+		position++;
+		if(expected == Token.BEGIN_OBJECT || expected == Token.BEGIN_ARRAY){
+			depth++;
+		}else if(expected == Token.END_OBJECT || expected == Token.END_ARRAY){
+			depth--;
+		}
+	}
+	
+	private boolean fill() throws IOException {
+		offset += limit;
+		position = 0;
+		limit = 0;
+		int count;
+		while((count = in.read(buffer, 0, buffer.length)) == 0){
+			//Nothing read yet.
+		}
+		if(count == -1){
+			return false;
+		}
+		limit = count;
+		return true;
+	}
+	
+	private String readString() throws IOException {
+		//Fast path: the string is in the buffer and has no escape sequence.
+		for(int i = position; i < limit; i++){
+			char c = buffer[i];
+			if(c == '"'){
+				String value = new String(buffer, position, i - position);
+				position = i + 1;
+				return value;
+			}
+			if(c == '\\'){
+				break;
+			}
+		}
+		builder.setLength(0);
+		while(true){
+			if(position == limit && !fill()){
+				throw syntaxError("Unterminated string");
+			}
+			char c = buffer[position++];
+			if(c == '"'){
+				return builder.toString();
+			}
+			if(c == '\\'){
+				builder.append(readEscape());
+			}else{
+				builder.append(c);
+			}
+		}
+	}
+	
+	private void skipString() throws IOException {
+		while(true){
+			if(position == limit && !fill()){
+				throw syntaxError("Unterminated string");
+			}
+			char c = buffer[position++];
+			if(c == '"'){
+				return;
+			}
+			if(c == '\\'){
+				readEscape();
+			}
+		}
+	}
+	
+	private char readEscape() throws IOException {
+		char c = nextChar();
+		switch(c){
+		case 'b':
+			return '\b';
+		case 'f':
+			return '\f';
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 't':
+			return '\t';
+		case 'u':
+			int value = 0;
+			for(int i = 0; i < 4; i++){
+				int digit = Character.digit(nextChar(), 16);
+				if(digit == -1){
+					throw syntaxError("Invalid unicode escape sequence");
+				}
+				value = (value << 4) | digit;
+			}
+			return (char)value;
+		default:
+			//Covers \" \\ and \/.
+			return c;
+		}
+	}
+	
+	private String readNumber() throws IOException {
+		builder.setLength(0);
+		while(position < limit || fill()){
+			char c = buffer[position];
+			if((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E'){
+				builder.append(c);
+				position++;
+			}else{
+				break;
+			}
+		}
+		return builder.toString();
+	}
+	
+	private void literal(String literal) throws IOException {
+		for(int i = 0; i < literal.length(); i++){
+			if(nextChar() != literal.charAt(i)){
+				throw syntaxError("Expected " + literal);
+			}
+		}
+	}
+	
+	private char nextChar() throws IOException {
+		if(position == limit && !fill()){
+			throw syntaxError("Unexpected end of document");
+		}
+		return buffer[position++];
+	}
+	
+	private IOException syntaxError(String message) {
+		return new MalformedJsonException(message + " at character " + (offset + position) + ".");
+	}
+	
+	/**
+	 * Thrown when the document isn't valid JSON, as opposed to errors of the underlying reader.
+	 */
+	public static class MalformedJsonException extends IOException {
+		
+		private static final long serialVersionUID = 1L;
+
+		public MalformedJsonException(String message) {
+			super(message);
+		}
+	}
+}
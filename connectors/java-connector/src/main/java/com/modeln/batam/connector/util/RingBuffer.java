@@ -0,0 +1,194 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector.util;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pre-allocated multi-producer / single-consumer ring buffer.
+ * 
+ * Slots hold reusable event objects created once by an {@link EventFactory}. 
+ * Producers claim slots with a compare and set on the cursor and never take a lock. 
+ * The single consumer reads every published slot in order and releases them once processed.
+ * 
+ * <PRE>
+ * long sequence = ring.next();
+ * ring.get(sequence).set(...);
+ * ring.publish(sequence);
+ * </PRE>
+ *
+ * @param <E> event type.
+ */
+public class RingBuffer<E> {
+	
+	/**
+	 * Create the events stored in the ring buffer slots.
+	 */
+	public interface EventFactory<E> {
+		E newInstance();
+	}
+	
+	private final static long PRODUCER_PARK_NANOS = 1000;
+	
+	private final Object[] entries;
+	
+	private final int mask;
+	
+	private final int indexShift;
+	
+	private final AtomicIntegerArray available;
+	
+	private final WaitStrategy waitStrategy;
+	
+	/**
+	 * Last claimed sequence.
+	 */
+	private final Sequence cursor = new Sequence(-1);
+	
+	/**
+	 * Last sequence released by the consumer.
+	 */
+	private final Sequence consumed = new Sequence(-1);
+	
+	/**
+	 * Producers cache of the consumer sequence, avoids reading the consumer cache line on every claim.
+	 */
+	private final Sequence gatingCache = new Sequence(-1);
+
+	/**
+	 * @param capacity : number of slots, must be a power of 2.
+	 * @param factory : event factory.
+	 * @param waitStrategy : consumer wait strategy.
+	 */
+	public RingBuffer(int capacity, EventFactory<E> factory, WaitStrategy waitStrategy) {
+		if(capacity < 1 || Integer.bitCount(capacity) != 1){
+			throw new IllegalArgumentException("capacity should be a power of 2.");
+		}
+		this.entries = new Object[capacity];
+		for(int i = 0; i < capacity; i++){
+			entries[i] = factory.newInstance();
+		}
+		this.mask = capacity - 1;
+		this.indexShift = Integer.numberOfTrailingZeros(capacity);
+		this.available = new AtomicIntegerArray(capacity);
+		for(int i = 0; i < capacity; i++){
+			available.set(i, -1);
+		}
+		this.waitStrategy = waitStrategy;
+	}
+	
+	public int getCapacity() {
+		return entries.length;
+	}
+	
+	/**
+	 * @return number of slots that can be claimed without waiting.
+	 */
+	public int remainingCapacity() {
+		return (int)(entries.length - (cursor.get() - consumed.get()));
+	}
+	
+	/**
+	 * @return true if claimed slots have not been released by the consumer yet.
+	 */
+	public boolean hasPending() {
+		return cursor.get() > consumed.get();
+	}
+	
+	/**
+	 * Claim the next slot, waiting while the buffer is full.
+	 * @return claimed sequence.
+	 */
+	public long next() {
+		while(true) {
+			long current = cursor.get();
+			long next = current + 1;
+			long wrapPoint = next - entries.length;
+			if(wrapPoint > gatingCache.get()){
+				long consumerSequence = consumed.get();
+				if(wrapPoint > consumerSequence){
+					LockSupport.parkNanos(PRODUCER_PARK_NANOS);
+					continue;
+				}
+				gatingCache.set(consumerSequence);
+			}
+			if(cursor.compareAndSet(current, next)){
+				return next;
+			}
+		}
+	}
+	
+	/**
+	 * @param sequence : claimed or available sequence.
+	 * @return event stored in the slot.
+	 */
+	@SuppressWarnings("unchecked")
+	public E get(long sequence) {
+		return (E)entries[(int)sequence & mask];
+	}
+	
+	/**
+	 * Make a claimed slot visible to the consumer.
+	 * @param sequence : claimed sequence.
+	 */
+	public void publish(long sequence) {
+		available.lazySet((int)sequence & mask, (int)(sequence >>> indexShift));
+	}
+	
+	private boolean isAvailable(long sequence) {
+		return available.get((int)sequence & mask) == (int)(sequence >>> indexShift);
+	}
+	
+	/**
+	 * Wait until the given sequence has been published. Consumer only.
+	 * 
+	 * @param sequence : next sequence to consume.
+	 * @param timeout : maximum time to wait in nanoseconds.
+	 * @return highest contiguous published sequence, lower than sequence if the timeout elapsed.
+	 */
+	public long waitFor(long sequence, long timeout) {
+		long deadline = System.nanoTime() + timeout;
+		while(!isAvailable(sequence)){
+			if(System.nanoTime() - deadline >= 0){
+				return sequence - 1;
+			}
+			waitStrategy.idle();
+		}
+		long highest = sequence;
+		long claimed = cursor.get();
+		while(highest < claimed && isAvailable(highest + 1)){
+			highest++;
+		}
+		return highest;
+	}
+	
+	/**
+	 * Release slots up to the given sequence so producers can reuse them. Consumer only.
+	 * @param sequence : last processed sequence.
+	 */
+	public void release(long sequence) {
+		consumed.set(sequence);
+	}
+}
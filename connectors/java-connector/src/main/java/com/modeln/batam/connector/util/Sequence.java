@@ -0,0 +1,61 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector.util;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+class SequenceLeftPadding {
+	protected long p1, p2, p3, p4, p5, p6, p7;
+}
+
+class SequenceValue extends SequenceLeftPadding {
+	protected volatile long value;
+}
+
+/**
+ * Sequence counter padded on both sides so that it sits alone on its cache line.
+ * Padding is declared in super classes because the JVM may reorder fields declared in the same class.
+ */
+class Sequence extends SequenceValue {
+	
+	private final static AtomicLongFieldUpdater<SequenceValue> UPDATER = AtomicLongFieldUpdater.newUpdater(SequenceValue.class, "value");
+	
+	protected long p9, p10, p11, p12, p13, p14, p15;
+
+	Sequence(long initialValue) {
+		UPDATER.set(this, initialValue);
+	}
+	
+	long get() {
+		return value;
+	}
+	
+	void set(long newValue) {
+		UPDATER.lazySet(this, newValue);
+	}
+	
+	boolean compareAndSet(long expected, long newValue) {
+		return UPDATER.compareAndSet(this, expected, newValue);
+	}
+}
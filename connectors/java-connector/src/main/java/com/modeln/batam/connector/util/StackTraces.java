@@ -0,0 +1,158 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector.util;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Compact stack trace rendering and fingerprinting of test failures.
+ * 
+ * Frames of test frameworks, build tools and reflection are folded, and at most a given number of frames is rendered per throwable. 
+ * The fingerprint identifies the root cause of a failure: the innermost cause type and its first application frames, 
+ * so that tests failing for the same reason share a fingerprint. Exception messages are left out since they often carry varying values.
+ */
+public final class StackTraces {
+	
+	private final static String[] FRAMEWORK_PACKAGES = {
+		"org.junit.", "junit.framework.", "org.testng.", 
+		"sun.reflect.", "java.lang.reflect.", "jdk.internal.reflect.", 
+		"org.apache.maven.surefire.", "org.gradle.", "com.intellij.", "org.eclipse.jdt.internal.junit."
+	};
+	
+	/**
+	 * Number of application frames of the root cause used in its fingerprint.
+	 */
+	private final static int FINGERPRINT_FRAMES = 3;
+	
+	private StackTraces() {
+	}
+	
+	/**
+	 * @param frame : stack frame.
+	 * @return true if the frame belongs to a test framework, a build tool or reflection.
+	 */
+	public static boolean isFramework(StackTraceElement frame) {
+		String className = frame.getClassName();
+		for(String prefix : FRAMEWORK_PACKAGES){
+			if(className.startsWith(prefix)){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Render a throwable and its causes like {@link Throwable#printStackTrace()}, framework frames folded.
+	 * 
+	 * @param throwable : failure.
+	 * @param maxFrames : maximum number of frames rendered per throwable.
+	 * @return rendered stack trace.
+	 */
+	public static String render(Throwable throwable, int maxFrames) {
+		StringBuilder builder = new StringBuilder(1024);
+		Set<Throwable> rendered = Collections.newSetFromMap(new IdentityHashMap<Throwable, Boolean>());
+		render(builder, throwable, null, "", maxFrames, rendered);
+		return builder.toString();
+	}
+	
+	private static void render(StringBuilder builder, Throwable throwable, StackTraceElement[] enclosing, String caption, 
+			int maxFrames, Set<Throwable> rendered) {
+		if(!rendered.add(throwable)){
+			builder.append("\t[CIRCULAR REFERENCE: ").append(throwable).append("]\n");
+			return;
+		}
+		builder.append(caption).append(throwable).append('\n');
+		
+		StackTraceElement[] trace = throwable.getStackTrace();
+		// Frames in common with the enclosing trace are not rendered again.
+		int last = trace.length - 1;
+		if(enclosing != null){
+			for(int e = enclosing.length - 1; last >= 0 && e >= 0 && trace[last].equals(enclosing[e]); e--){
+				last--;
+			}
+		}
+		int shown = 0;
+		int folded = 0;
+		boolean truncated = false;
+		for(int i = 0; i <= last; i++){
+			if(isFramework(trace[i])){
+				folded++;
+				continue;
+			}
+			if(shown == maxFrames){
+				folded += last + 1 - i;
+				truncated = true;
+				break;
+			}
+			if(folded > 0){
+				builder.append("\t... ").append(folded).append(" framework frames\n");
+				folded = 0;
+			}
+			builder.append("\tat ").append(trace[i]).append('\n');
+			shown++;
+		}
+		if(truncated){
+			builder.append("\t... ").append(folded).append(" more frames\n");
+		}else if(folded > 0){
+			builder.append("\t... ").append(folded).append(" framework frames\n");
+		}
+		if(last < trace.length - 1){
+			builder.append("\t... ").append(trace.length - 1 - last).append(" more\n");
+		}
+		
+		if(throwable.getCause() != null){
+			render(builder, throwable.getCause(), trace, "Caused by: ", maxFrames, rendered);
+		}
+	}
+	
+	/**
+	 * @param throwable : failure.
+	 * @return root cause fingerprint.
+	 */
+	public static long fingerprint(Throwable throwable) {
+		Throwable root = throwable;
+		Set<Throwable> visited = Collections.newSetFromMap(new IdentityHashMap<Throwable, Boolean>());
+		while(root.getCause() != null && visited.add(root)){
+			root = root.getCause();
+		}
+		long hash = Fnv.hash(Fnv.OFFSET_BASIS, root.getClass().getName());
+		int frames = 0;
+		for(StackTraceElement frame : root.getStackTrace()){
+			if(frames == FINGERPRINT_FRAMES){
+				break;
+			}
+			if(!isFramework(frame)){
+				hash = Fnv.hash(hash, '\n');
+				hash = Fnv.hash(hash, frame.getClassName());
+				hash = Fnv.hash(hash, '.');
+				hash = Fnv.hash(hash, frame.getMethodName());
+				hash = Fnv.hash(hash, frame.getLineNumber());
+				frames++;
+			}
+		}
+		return hash;
+	}
+}
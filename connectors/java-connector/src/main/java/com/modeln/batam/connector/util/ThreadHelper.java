@@ -0,0 +1,89 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread factories used by the connector background workers.
+ * 
+ * Virtual threads are created by reflection so that the connector still runs on JVMs older than Java 21. 
+ * When they are not available, daemon platform threads are used instead.
+ */
+public class ThreadHelper {
+	
+	private final static String VIRTUAL_THREADS = "virtual";
+	
+	/**
+	 * @param threads : threads configuration value.
+	 * @return true if the value asks for virtual threads.
+	 */
+	public static boolean isVirtual(String threads) {
+		return VIRTUAL_THREADS.equals(threads);
+	}
+	
+	/**
+	 * Create a thread factory.
+	 * 
+	 * @param name : thread name prefix.
+	 * @param virtual : true to create virtual threads when the JVM supports them.
+	 * @return thread factory.
+	 */
+	public static ThreadFactory newThreadFactory(String name, boolean virtual) {
+		if(virtual){
+			ThreadFactory factory = newVirtualThreadFactory(name);
+			if(factory != null){
+				return factory;
+			}
+		}
+		return newDaemonThreadFactory(name);
+	}
+	
+	private static ThreadFactory newDaemonThreadFactory(final String name) {
+		return new ThreadFactory() {
+			
+			private final AtomicInteger count = new AtomicInteger();
+			
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, name + count.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+	
+	private static ThreadFactory newVirtualThreadFactory(String name) {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Method nameMethod = builderClass.getMethod("name", String.class, long.class);
+			builder = nameMethod.invoke(builder, name, 0L);
+			return (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector.util;
+
+import java.nio.charset.Charset;
+
+/**
+ * UTF-8 encoding of messages straight into an array of the exact encoded length. 
+ * Unlike {@link String#getBytes(Charset)}, no oversized intermediate array is allocated and copied.
+ * Unpaired surrogates are replaced by '?'.
+ * 
+ * <PRE>
+ * channel.basicPublish(exchange, routingKey, properties, Utf8.encode(message));
+ * </PRE>
+ */
+public final class Utf8 {
+	
+	public final static Charset UTF8 = Charset.forName("UTF-8");
+	
+	private Utf8() {
+	}
+	
+	/**
+	 * @param chars : characters to encode.
+	 * @return number of bytes of the UTF-8 encoded characters.
+	 */
+	public static int length(CharSequence chars) {
+		int length = chars.length();
+		int bytes = length;
+		for(int i = 0; i < length; i++){
+			char c = chars.charAt(i);
+			if(c >= 0x80){
+				if(c < 0x800){
+					bytes++;
+				}else if(isPair(chars, i)){
+					//4 bytes for 2 chars.
+					bytes += 2;
+					i++;
+				}else if(!isSurrogate(c)){
+					bytes += 2;
+				}
+			}
+		}
+		return bytes;
+	}
+	
+	/**
+	 * @param chars : characters to encode.
+	 * @return UTF-8 encoded characters.
+	 */
+	public static byte[] encode(CharSequence chars) {
+		byte[] bytes = new byte[length(chars)];
+		int length = chars.length();
+		int position = 0;
+		for(int i = 0; i < length; i++){
+			char c = chars.charAt(i);
+			if(c < 0x80){
+				bytes[position++] = (byte)c;
+			}else if(c < 0x800){
+				bytes[position++] = (byte)(0xc0 | (c >> 6));
+				bytes[position++] = (byte)(0x80 | (c & 0x3f));
+			}else if(isPair(chars, i)){
+				int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+				bytes[position++] = (byte)(0xf0 | (codePoint >> 18));
+				bytes[position++] = (byte)(0x80 | ((codePoint >> 12) & 0x3f));
+				bytes[position++] = (byte)(0x80 | ((codePoint >> 6) & 0x3f));
+				bytes[position++] = (byte)(0x80 | (codePoint & 0x3f));
+			}else if(isSurrogate(c)){
+				bytes[position++] = '?';
+			}else{
+				bytes[position++] = (byte)(0xe0 | (c >> 12));
+				bytes[position++] = (byte)(0x80 | ((c >> 6) & 0x3f));
+				bytes[position++] = (byte)(0x80 | (c & 0x3f));
+			}
+		}
+		return bytes;
+	}
+	
+	private static boolean isSurrogate(char c) {
+		return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+	}
+	
+	private static boolean isPair(CharSequence chars, int index) {
+		return Character.isHighSurrogate(chars.charAt(index)) && index + 1 < chars.length() 
+				&& Character.isLowSurrogate(chars.charAt(index + 1));
+	}
+}
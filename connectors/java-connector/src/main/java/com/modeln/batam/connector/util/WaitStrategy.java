@@ -0,0 +1,78 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector.util;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a {@link com.modeln.batam.connector.util.RingBuffer RingBuffer} consumer waits for new events.
+ * <ul>
+ * 	<li>BUSY_SPIN : lowest latency, burns a core while idle.</li>
+ * 	<li>YIELD : low latency, gives the core away to other runnable threads.</li>
+ * 	<li>PARK : parks the consumer for a short time, lowest CPU usage (default).</li>
+ * </ul>
+ */
+public enum WaitStrategy {
+	
+	BUSY_SPIN {
+		@Override
+		void idle() {
+			// Spin.
+		}
+	},
+	
+	YIELD {
+		@Override
+		void idle() {
+			Thread.yield();
+		}
+	},
+	
+	PARK {
+		@Override
+		void idle() {
+			LockSupport.parkNanos(PARK_NANOS);
+		}
+	};
+	
+	private final static long PARK_NANOS = 100000;
+	
+	/**
+	 * Called every time the consumer finds no new event.
+	 */
+	abstract void idle();
+	
+	/**
+	 * @param name : strategy name, case insensitive.
+	 * @return the matching wait strategy, PARK if the name doesn't match any strategy.
+	 */
+	public static WaitStrategy fromName(String name) {
+		for(WaitStrategy strategy : values()){
+			if(strategy.name().equalsIgnoreCase(name)){
+				return strategy;
+			}
+		}
+		return PARK;
+	}
+}
@@ -23,11 +23,14 @@
  */
 package com.modeln.batam.connector.wrapper;
 
+import java.io.IOException;
 import java.util.*;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
+import com.modeln.batam.connector.util.JsonReader;
+
 /**
  * {
  * 		"id" : "Unique identifier",
@@ -86,6 +89,8 @@ public class BuildEntry {
 
 	private Map<String, String> customAttributes;
 
+	private Map<String, Object> aggregates;
+
 	public BuildEntry(){}
 	
 	public BuildEntry(String id, String name, Date startDate, Date endDate, String status,
@@ -267,13 +272,32 @@ public class BuildEntry {
 		return this.customAttributes;
 	}
 
+	/**
+	 * @return running test aggregates set by the connector when the entry is updated, null if none.
+	 */
+	public Map<String, Object> getAggregates() {
+		return aggregates;
+	}
+
+	public void setAggregates(Map<String, Object> aggregates) {
+		this.aggregates = aggregates;
+	}
+
 	@Override
 	public String toString() {
 		return toJSONString();
 	}
 
-	@SuppressWarnings("unchecked")
 	public String toJSONString(){
+		return toJSONString(infos);
+	}
+	
+	/**
+	 * @param infos : infos to serialize instead of the build ones, without changing this build.
+	 * @return JSON string.
+	 */
+	@SuppressWarnings("unchecked")
+	public String toJSONString(List<Pair> infos){
 		JSONObject obj = new JSONObject();
 		obj.put("id", id);
 		obj.put("name", name);
@@ -292,6 +316,9 @@ public class BuildEntry {
 		obj.put("customEntry", customEntry);
         obj.put("screenshotURL", screenshotURL);
 		obj.put("customAttributes", customAttributes);
+		if(aggregates != null){
+			obj.put("aggregates", aggregates);
+		}
 		
 		return obj.toJSONString();
 	}
@@ -355,10 +382,250 @@ public class BuildEntry {
 		String customEntry = (String)obj.get("customEntry");
         String screenshotURL = (String)obj.get("screenshotURL");
 		Map<String, String> customAttributes = (Map<String, String>)obj.get("customAttributes");
+		Map<String, Object> aggregates = (Map<String, Object>)obj.get("aggregates");
 		
-		return new BuildEntry(id, name, 
+		BuildEntry entry = new BuildEntry(id, name, 
 					startDate == null ? null : new Date(Long.valueOf(startDate)), 
 					endDate == null ? null : new Date(Long.valueOf(endDate)), 
 					status, description, criterias, infos, reports, steps, commits, override, isCustomFormatEnabled, customFormat, customEntry, screenshotURL, customAttributes);
+		entry.setAggregates(aggregates);
+		return entry;
+	}
+	
+	/**
+	 * Streaming version of {@link #fromJSON(JSONObject) fromJSON}.
+	 * 
+	 * @param reader : reader positioned on a build object.
+	 * @return build entry.
+	 * @throws IOException
+	 */
+	public static BuildEntry read(JsonReader reader) throws IOException {
+		BuildEntry entry = new BuildEntry();
+		entry.criterias = new ArrayList<Pair>();
+		entry.infos = new ArrayList<Pair>();
+		entry.reports = new ArrayList<Pair>();
+		entry.steps = new ArrayList<Step>();
+		entry.commits = new ArrayList<Commit>();
+		reader.beginObject();
+		while(reader.hasNext()){
+			String field = reader.nextName();
+			if("id".equals(field)){
+				entry.id = reader.nextString();
+			}else if("name".equals(field)){
+				entry.name = reader.nextString();
+			}else if("status".equals(field)){
+				entry.status = reader.nextString();
+			}else if("description".equals(field)){
+				entry.description = reader.nextString();
+			}else if("customFormat".equals(field)){
+				entry.customFormat = reader.nextString();
+			}else if("customEntry".equals(field)){
+				entry.customEntry = reader.nextString();
+			}else if("screenshotURL".equals(field)){
+				entry.screenshotURL = reader.nextString();
+			}else if("start_date".equals(field)){
+				entry.startDate = JsonBinding.readDate(reader);
+			}else if("end_date".equals(field)){
+				entry.endDate = JsonBinding.readDate(reader);
+			}else if("override".equals(field)){
+				entry.override = JsonBinding.readFlag(reader);
+			}else if("isCustomFormatEnabled".equals(field)){
+				entry.isCustomFormatEnabled = JsonBinding.readFlag(reader);
+			}else if("criterias".equals(field)){
+				JsonBinding.readPairs(reader, entry.criterias);
+			}else if("infos".equals(field)){
+				JsonBinding.readPairs(reader, entry.infos);
+			}else if("reports".equals(field)){
+				JsonBinding.readPairs(reader, entry.reports);
+			}else if("steps".equals(field)){
+				JsonBinding.readSteps(reader, entry.steps);
+			}else if("commits".equals(field)){
+				JsonBinding.readCommits(reader, entry.commits);
+			}else if("customAttributes".equals(field)){
+				entry.customAttributes = JsonBinding.readMap(reader);
+			}else if("aggregates".equals(field)){
+				entry.aggregates = JsonBinding.readMap(reader);
+			}else{
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return entry;
+	}
+	
+	/**
+	 * @return a builder of a new build entry.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	/**
+	 * Fluent builder of a reusable {@link BuildEntry BuildEntry}.
+	 * 
+	 * The builder always returns the same entry instance, {@link #reset() reset} clears it and keeps its lists, pairs and dates.
+	 */
+	public static class Builder {
+		
+		private final BuildEntry entry = new BuildEntry();
+		
+		private final Date startDate = new Date();
+		
+		private final Date endDate = new Date();
+		
+		private final PairList criterias = new PairList();
+		
+		private final PairList infos = new PairList();
+		
+		private final PairList reports = new PairList();
+		
+		private final List<Step> steps = new ArrayList<Step>();
+		
+		private final List<Commit> commits = new ArrayList<Commit>();
+		
+		private final Map<String, String> customAttributes = new HashMap<String, String>();
+		
+		Builder() {
+		}
+		
+		/**
+		 * Clear every field of the entry.
+		 * 
+		 * @return this builder.
+		 */
+		public Builder reset() {
+			entry.id = null;
+			entry.name = null;
+			entry.startDate = null;
+			entry.endDate = null;
+			entry.status = null;
+			entry.description = null;
+			entry.criterias = null;
+			entry.infos = null;
+			entry.reports = null;
+			entry.steps = null;
+			entry.commits = null;
+			entry.override = false;
+			entry.isCustomFormatEnabled = false;
+			entry.customFormat = null;
+			entry.customEntry = null;
+			entry.screenshotURL = null;
+			entry.customAttributes = null;
+			entry.aggregates = null;
+			criterias.clear();
+			infos.clear();
+			reports.clear();
+			steps.clear();
+			commits.clear();
+			customAttributes.clear();
+			return this;
+		}
+		
+		public Builder id(String id) {
+			entry.id = id;
+			return this;
+		}
+		
+		public Builder name(String name) {
+			entry.name = name;
+			return this;
+		}
+		
+		public Builder startDate(Date startDate) {
+			entry.startDate = startDate;
+			return this;
+		}
+		
+		/**
+		 * @param time : start date in milliseconds, set on a date reused by the builder.
+		 * @return this builder.
+		 */
+		public Builder startDate(long time) {
+			startDate.setTime(time);
+			entry.startDate = startDate;
+			return this;
+		}
+		
+		public Builder endDate(Date endDate) {
+			entry.endDate = endDate;
+			return this;
+		}
+		
+		/**
+		 * @param time : end date in milliseconds, set on a date reused by the builder.
+		 * @return this builder.
+		 */
+		public Builder endDate(long time) {
+			endDate.setTime(time);
+			entry.endDate = endDate;
+			return this;
+		}
+		
+		public Builder status(String status) {
+			entry.status = status;
+			return this;
+		}
+		
+		public Builder description(String description) {
+			entry.description = description;
+			return this;
+		}
+		
+		public Builder criteria(String name, String value) {
+			entry.criterias = criterias.add(name, value);
+			return this;
+		}
+		
+		public Builder info(String name, String value) {
+			entry.infos = infos.add(name, value);
+			return this;
+		}
+		
+		public Builder report(String name, String value) {
+			entry.reports = reports.add(name, value);
+			return this;
+		}
+		
+		public Builder step(Step step) {
+			steps.add(step);
+			entry.steps = steps;
+			return this;
+		}
+		
+		public Builder commit(Commit commit) {
+			commits.add(commit);
+			entry.commits = commits;
+			return this;
+		}
+		
+		public Builder override(boolean override) {
+			entry.override = override;
+			return this;
+		}
+		
+		public Builder customFormat(String customFormat, String customEntry) {
+			entry.isCustomFormatEnabled = customFormat != null;
+			entry.customFormat = customFormat;
+			entry.customEntry = customEntry;
+			return this;
+		}
+		
+		public Builder screenshotURL(String screenshotURL) {
+			entry.screenshotURL = screenshotURL;
+			return this;
+		}
+		
+		public Builder customAttribute(String name, String value) {
+			customAttributes.put(name, value);
+			entry.customAttributes = customAttributes;
+			return this;
+		}
+		
+		/**
+		 * @return the entry of this builder, the same instance until the builder is discarded.
+		 */
+		public BuildEntry build() {
+			return entry;
+		}
 	}
 }
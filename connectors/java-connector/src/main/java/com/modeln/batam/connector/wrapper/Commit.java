@@ -23,6 +23,7 @@
  */
 package com.modeln.batam.connector.wrapper;
 
+import java.io.IOException;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -30,6 +31,8 @@ import java.util.Date;
 
 import org.json.simple.JSONObject;
 
+import com.modeln.batam.connector.util.JsonReader;
+
 /**
  * {
  * 		"build_id" : "Build identifier this commit belong to",
@@ -45,6 +48,16 @@ import org.json.simple.JSONObject;
  */
 public class Commit {
 	
+	/**
+	 * Git date format, created once per thread since SimpleDateFormat is expensive to create and not thread safe.
+	 */
+	private final static ThreadLocal<DateFormat> GIT_DATE_FORMAT = new ThreadLocal<DateFormat>() {
+		@Override
+		protected DateFormat initialValue() {
+			return new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy Z");
+		}
+	};
+	
 	private String buildId;
 	
 	private String buildName;
@@ -129,6 +142,13 @@ public class Commit {
 		return obj.toJSONString();
 	}
 	
+	/**
+	 * @return immutable copy of this commit, serialized once.
+	 */
+	public Commit toImmutable() {
+		return new ImmutableCommit(buildId, buildName, commitId, url, author, dateCommitted);
+	}
+	
 	@Override
 	public String toString() {
 		return toJSONString();
@@ -141,9 +161,8 @@ public class Commit {
 		String url = (String)obj.get("url");
 		String author = (String)obj.get("author");
 		String dateCommitted = (String)obj.get("date_committed");
-		DateFormat dateFormat = new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy Z");
 		try {
-			return new Commit(buildId, buildName, commitId, url, author, dateCommitted == null ? null : dateFormat.parse(dateCommitted));
+			return new Commit(buildId, buildName, commitId, url, author, parseDate(dateCommitted));
 		} catch (ParseException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -151,4 +170,67 @@ public class Commit {
 		return null;
 	}
 	
+	/**
+	 * Streaming version of {@link #fromJSON(JSONObject) fromJSON}.
+	 * 
+	 * @param reader : reader positioned on a commit object.
+	 * @return commit.
+	 * @throws IOException
+	 */
+	public static Commit read(JsonReader reader) throws IOException {
+		Commit commit = new Commit(null, null, null, null, null, null);
+		reader.beginObject();
+		while(reader.hasNext()){
+			String field = reader.nextName();
+			if("build_id".equals(field)){
+				commit.buildId = reader.nextString();
+			}else if("build_name".equals(field)){
+				commit.buildName = reader.nextString();
+			}else if("commit_id".equals(field)){
+				commit.commitId = reader.nextString();
+			}else if("url".equals(field)){
+				commit.url = reader.nextString();
+			}else if("author".equals(field)){
+				commit.author = reader.nextString();
+			}else if("date_committed".equals(field)){
+				String dateCommitted = reader.nextString();
+				try {
+					commit.dateCommitted = parseDate(dateCommitted);
+				} catch (ParseException e) {
+					throw new IOException("Invalid date_committed " + dateCommitted + ".");
+				}
+			}else{
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return commit;
+	}
+	
+	/**
+	 * @param date : git date, or time in milliseconds as serialized by {@link #toJSONString() toJSONString}.
+	 */
+	private static Date parseDate(String date) throws ParseException {
+		if(date == null){
+			return null;
+		}
+		if(isTime(date)){
+			return new Date(Long.parseLong(date));
+		}
+		return GIT_DATE_FORMAT.get().parse(date);
+	}
+	
+	private static boolean isTime(String date) {
+		if(date.isEmpty()){
+			return false;
+		}
+		for(int i = 0; i < date.length(); i++){
+			char c = date.charAt(i);
+			if((c < '0' || c > '9') && !(i == 0 && c == '-' && date.length() > 1)){
+				return false;
+			}
+		}
+		return true;
+	}
+	
 }
@@ -0,0 +1,66 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector.wrapper;
+
+import org.json.simple.JSONAware;
+
+/**
+ * Immutable {@link Pair Pair} memoizing its JSON form.
+ * 
+ * The pair is serialized once, on first use, and the cached fragment is spliced as is in every message it appears in. 
+ * Use it for build and test criterias or infos resent unchanged with every update.
+ */
+public final class ImmutablePair extends Pair implements JSONAware {
+	
+	private volatile String json;
+
+	public ImmutablePair(String name, String value) {
+		super(name, value);
+	}
+	
+	@Override
+	public void setName(String name) {
+		throw new UnsupportedOperationException("Immutable pair.");
+	}
+	
+	@Override
+	public void setValue(String value) {
+		throw new UnsupportedOperationException("Immutable pair.");
+	}
+	
+	@Override
+	public Pair toImmutable() {
+		return this;
+	}
+	
+	@Override
+	public String toJSONString() {
+		String encoded = json;
+		if(encoded == null){
+			encoded = super.toJSONString();
+			json = encoded;
+		}
+		return encoded;
+	}
+}
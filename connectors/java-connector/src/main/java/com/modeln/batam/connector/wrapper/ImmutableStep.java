@@ -0,0 +1,155 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector.wrapper;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.json.simple.JSONAware;
+
+/**
+ * Immutable {@link Step Step} memoizing its JSON form.
+ * 
+ * The step is serialized once, on first use, and the cached fragment is spliced as is in every message it appears in. 
+ * Use it for build steps resent unchanged with every update_build message.
+ */
+public final class ImmutableStep extends Step implements JSONAware {
+	
+	private volatile String json;
+
+	public ImmutableStep(Integer order, String name, String description, Date startDate, Date endDate, String input, String expected, String output, String status, String error,
+			boolean isCustomFormatEnabled, String customFormat, String customEntry, Map<String, String> customAttributes) {
+		super(order, name, description, startDate, endDate, input, expected, output, status, error, isCustomFormatEnabled, customFormat, customEntry, 
+				customAttributes == null ? null : Collections.unmodifiableMap(new HashMap<String, String>(customAttributes)));
+	}
+	
+	ImmutableStep(Step step) {
+		this(step.getOrder(), step.getName(), step.getDescription(), step.getStartDate(), step.getEndDate(), step.getInput(), step.getExpected(), 
+				step.getOutput(), step.getStatus(), step.getError(), step.isCustomFormatEnabled(), step.getCustomFormat(), step.getCustomEntry(), 
+				step.getCustomAttributes());
+		super.setDurationNs(step.getDurationNs());
+	}
+	
+	@Override
+	public void setOrder(Integer order) {
+		throw new UnsupportedOperationException("Immutable step.");
+	}
+	
+	@Override
+	public void setName(String name) {
+		throw new UnsupportedOperationException("Immutable step.");
+	}
+	
+	@Override
+	public void setDescription(String description) {
+		throw new UnsupportedOperationException("Immutable step.");
+	}
+	
+	@Override
+	public void setStartDate(Date startDate) {
+		throw new UnsupportedOperationException("Immutable step.");
+	}
+	
+	@Override
+	public void setEndDate(Date endDate) {
+		throw new UnsupportedOperationException("Immutable step.");
+	}
+	
+	@Override
+	public void setStartTime(long startTime) {
+		throw new UnsupportedOperationException("Immutable step.");
+	}
+	
+	@Override
+	public void setEndTime(long endTime) {
+		throw new UnsupportedOperationException("Immutable step.");
+	}
+	
+	@Override
+	public void setDurationNs(long durationNs) {
+		throw new UnsupportedOperationException("Immutable step.");
+	}
+	
+	@Override
+	public void setInput(String input) {
+		throw new UnsupportedOperationException("Immutable step.");
+	}
+	
+	@Override
+	public void setExpected(String expected) {
+		throw new UnsupportedOperationException("Immutable step.");
+	}
+	
+	@Override
+	public void setOutput(String output) {
+		throw new UnsupportedOperationException("Immutable step.");
+	}
+	
+	@Override
+	public void setStatus(String status) {
+		throw new UnsupportedOperationException("Immutable step.");
+	}
+	
+	@Override
+	public void setError(String error) {
+		throw new UnsupportedOperationException("Immutable step.");
+	}
+	
+	@Override
+	public void setCustomFormatEnabled(boolean isCustomFormatEnabled) {
+		throw new UnsupportedOperationException("Immutable step.");
+	}
+	
+	@Override
+	public void setCustomFormat(String customFormat) {
+		throw new UnsupportedOperationException("Immutable step.");
+	}
+	
+	@Override
+	public void setCustomEntry(String customEntry) {
+		throw new UnsupportedOperationException("Immutable step.");
+	}
+	
+	@Override
+	public void setCustomAttributes(Map<String, String> customAttributes) {
+		throw new UnsupportedOperationException("Immutable step.");
+	}
+	
+	@Override
+	public Step toImmutable() {
+		return this;
+	}
+	
+	@Override
+	public String toJSONString() {
+		String encoded = json;
+		if(encoded == null){
+			encoded = super.toJSONString();
+			json = encoded;
+		}
+		return encoded;
+	}
+}
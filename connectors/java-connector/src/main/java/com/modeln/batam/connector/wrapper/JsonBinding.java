@@ -0,0 +1,117 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector.wrapper;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import com.modeln.batam.connector.util.JsonReader;
+
+/**
+ * Shared helpers of the wrappers streaming read methods.
+ */
+final class JsonBinding {
+	
+	private JsonBinding() {
+	}
+	
+	/**
+	 * @return epoch milliseconds of a "12341234" date string, {@link TestEntry#NO_TIME NO_TIME} if null.
+	 */
+	static long readTime(JsonReader reader) throws IOException {
+		String time = reader.nextString();
+		return time == null ? TestEntry.NO_TIME : Long.parseLong(time);
+	}
+	
+	static Date readDate(JsonReader reader) throws IOException {
+		return TestEntry.date(readTime(reader));
+	}
+	
+	static boolean readFlag(JsonReader reader) throws IOException {
+		Boolean flag = reader.nextBoolean();
+		return flag != null && flag;
+	}
+	
+	static List<String> readStrings(JsonReader reader, List<String> strings) throws IOException {
+		if(reader.peek() == JsonReader.Token.NULL){
+			reader.nextNull();
+			return strings;
+		}
+		reader.beginArray();
+		while(reader.hasNext()){
+			strings.add(reader.nextString());
+		}
+		reader.endArray();
+		return strings;
+	}
+	
+	static List<Pair> readPairs(JsonReader reader, List<Pair> pairs) throws IOException {
+		if(reader.peek() == JsonReader.Token.NULL){
+			reader.nextNull();
+			return pairs;
+		}
+		reader.beginArray();
+		while(reader.hasNext()){
+			pairs.add(Pair.read(reader));
+		}
+		reader.endArray();
+		return pairs;
+	}
+	
+	static List<Step> readSteps(JsonReader reader, List<Step> steps) throws IOException {
+		if(reader.peek() == JsonReader.Token.NULL){
+			reader.nextNull();
+			return steps;
+		}
+		reader.beginArray();
+		while(reader.hasNext()){
+			steps.add(Step.read(reader));
+		}
+		reader.endArray();
+		return steps;
+	}
+	
+	static List<Commit> readCommits(JsonReader reader, List<Commit> commits) throws IOException {
+		if(reader.peek() == JsonReader.Token.NULL){
+			reader.nextNull();
+			return commits;
+		}
+		reader.beginArray();
+		while(reader.hasNext()){
+			commits.add(Commit.read(reader));
+		}
+		reader.endArray();
+		return commits;
+	}
+	
+	/**
+	 * Free form maps (custom attributes and aggregates) are read as json-simple objects, like fromJSON does.
+	 */
+	@SuppressWarnings("unchecked")
+	static <V> Map<String, V> readMap(JsonReader reader) throws IOException {
+		return (Map<String, V>)reader.nextValue();
+	}
+}
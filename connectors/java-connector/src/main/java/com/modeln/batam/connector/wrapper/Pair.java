@@ -23,8 +23,12 @@
  */
 package com.modeln.batam.connector.wrapper;
 
+import java.io.IOException;
+
 import org.json.simple.JSONObject;
 
+import com.modeln.batam.connector.util.JsonReader;
+
 /**
  * {
  * 		"name" : "pair name",
@@ -61,6 +65,13 @@ public class Pair {
 		this.value = value;
 	}
 
+	/**
+	 * @return immutable copy of this pair, serialized once.
+	 */
+	public Pair toImmutable() {
+		return new ImmutablePair(name, value);
+	}
+
 	@Override
 	public String toString() {
 		return toJSONString();
@@ -81,4 +92,28 @@ public class Pair {
 		
 		return new Pair(name, value);
 	}
+	
+	/**
+	 * Streaming version of {@link #fromJSON(JSONObject) fromJSON}.
+	 * 
+	 * @param reader : reader positioned on a pair object.
+	 * @return pair.
+	 * @throws IOException
+	 */
+	public static Pair read(JsonReader reader) throws IOException {
+		Pair pair = new Pair(null, null);
+		reader.beginObject();
+		while(reader.hasNext()){
+			String field = reader.nextName();
+			if("name".equals(field)){
+				pair.name = reader.nextString();
+			}else if("value".equals(field)){
+				pair.value = reader.nextString();
+			}else{
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return pair;
+	}
 }
@@ -0,0 +1,57 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam.connector.wrapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * List of {@link Pair pairs} owned by a builder. Pairs removed by {@link #clear() clear} are kept and reused by the next additions.
+ */
+class PairList {
+	
+	private final List<Pair> pairs = new ArrayList<Pair>();
+	
+	private final List<Pair> free = new ArrayList<Pair>();
+	
+	/**
+	 * @return the list the pair has been added to.
+	 */
+	List<Pair> add(String name, String value) {
+		if(free.isEmpty()){
+			pairs.add(new Pair(name, value));
+		}else{
+			Pair pair = free.remove(free.size() - 1);
+			pair.setName(name);
+			pair.setValue(value);
+			pairs.add(pair);
+		}
+		return pairs;
+	}
+	
+	void clear() {
+		free.addAll(pairs);
+		pairs.clear();
+	}
+}
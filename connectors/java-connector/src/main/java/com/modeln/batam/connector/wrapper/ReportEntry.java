@@ -23,11 +23,14 @@
  */
 package com.modeln.batam.connector.wrapper;
 
+import java.io.IOException;
 import java.util.*;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
+import com.modeln.batam.connector.util.JsonReader;
+
 /**
  * {
  * 		"id" : "Report Identifier",
@@ -76,6 +79,8 @@ public class ReportEntry {
 
     private Map<String, String> customAttributes;
 
+	private Map<String, Object> aggregates;
+
 	public ReportEntry() {
 		super();
 	}
@@ -129,6 +134,17 @@ public class ReportEntry {
         return this.customAttributes;
     }
 
+	/**
+	 * @return running test aggregates set by the connector when the entry is updated, null if none.
+	 */
+	public Map<String, Object> getAggregates() {
+		return aggregates;
+	}
+
+	public void setAggregates(Map<String, Object> aggregates) {
+		this.aggregates = aggregates;
+	}
+
 	public String getId() {
 		return id;
 	}
@@ -242,6 +258,9 @@ public class ReportEntry {
 		obj.put("customEntry", customEntry);
         obj.put("screenshotURL", screenshotURL);
         obj.put("customAttributes", customAttributes);
+		if(aggregates != null){
+			obj.put("aggregates", aggregates);
+		}
 
 		return obj.toJSONString();
 	}
@@ -275,7 +294,206 @@ public class ReportEntry {
 		boolean isCustomFormatEnabled = (Boolean)obj.get("isCustomFormatEnabled") == null? false:(Boolean)obj.get("isCustomFormatEnabled");
 		String customFormat = (String)obj.get("customFormat");
 		String customEntry = (String)obj.get("customEntry");
-		return new ReportEntry(id, name, buildId, buildName, description, startDate == null ? null : new Date(Long.valueOf(startDate)), endDate == null ? null : new Date(Long.valueOf(endDate)), status, logs,
+		Map<String, Object> aggregates = (Map<String, Object>)obj.get("aggregates");
+		ReportEntry entry = new ReportEntry(id, name, buildId, buildName, description, startDate == null ? null : new Date(Long.valueOf(startDate)), endDate == null ? null : new Date(Long.valueOf(endDate)), status, logs,
 				isCustomFormatEnabled, customFormat, customEntry, screenshotURL, customAttributes);
+		entry.setAggregates(aggregates);
+		return entry;
+	}
+	
+	/**
+	 * Streaming version of {@link #fromJSON(JSONObject) fromJSON}.
+	 * 
+	 * @param reader : reader positioned on a report object.
+	 * @return report entry.
+	 * @throws IOException
+	 */
+	public static ReportEntry read(JsonReader reader) throws IOException {
+		ReportEntry entry = new ReportEntry();
+		entry.logs = new ArrayList<String>();
+		reader.beginObject();
+		while(reader.hasNext()){
+			String field = reader.nextName();
+			if("id".equals(field)){
+				entry.id = reader.nextString();
+			}else if("name".equals(field)){
+				entry.name = reader.nextString();
+			}else if("build_id".equals(field)){
+				entry.buildId = reader.nextString();
+			}else if("build_name".equals(field)){
+				entry.buildName = reader.nextString();
+			}else if("description".equals(field)){
+				entry.description = reader.nextString();
+			}else if("status".equals(field)){
+				entry.status = reader.nextString();
+			}else if("screenshotURL".equals(field)){
+				entry.screenshotURL = reader.nextString();
+			}else if("customFormat".equals(field)){
+				entry.customFormat = reader.nextString();
+			}else if("customEntry".equals(field)){
+				entry.customEntry = reader.nextString();
+			}else if("start_date".equals(field)){
+				entry.startDate = JsonBinding.readDate(reader);
+			}else if("end_date".equals(field)){
+				entry.endDate = JsonBinding.readDate(reader);
+			}else if("logs".equals(field)){
+				JsonBinding.readStrings(reader, entry.logs);
+			}else if("isCustomFormatEnabled".equals(field)){
+				entry.isCustomFormatEnabled = JsonBinding.readFlag(reader);
+			}else if("customAttributes".equals(field)){
+				entry.customAttributes = JsonBinding.readMap(reader);
+			}else if("aggregates".equals(field)){
+				entry.aggregates = JsonBinding.readMap(reader);
+			}else{
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return entry;
+	}
+	
+	/**
+	 * @return a builder of a new report entry.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	/**
+	 * Fluent builder of a reusable {@link ReportEntry ReportEntry}.
+	 * 
+	 * The builder always returns the same entry instance, {@link #reset() reset} clears it and keeps its lists and dates.
+	 */
+	public static class Builder {
+		
+		private final ReportEntry entry = new ReportEntry();
+		
+		private final Date startDate = new Date();
+		
+		private final Date endDate = new Date();
+		
+		private final List<String> logs = new ArrayList<String>();
+		
+		private final Map<String, String> customAttributes = new HashMap<String, String>();
+		
+		Builder() {
+		}
+		
+		/**
+		 * Clear every field of the entry.
+		 * 
+		 * @return this builder.
+		 */
+		public Builder reset() {
+			entry.id = null;
+			entry.name = null;
+			entry.buildId = null;
+			entry.buildName = null;
+			entry.description = null;
+			entry.startDate = null;
+			entry.endDate = null;
+			entry.status = null;
+			entry.logs = null;
+			entry.isCustomFormatEnabled = false;
+			entry.customFormat = null;
+			entry.customEntry = null;
+			entry.screenshotURL = null;
+			entry.customAttributes = null;
+			entry.aggregates = null;
+			logs.clear();
+			customAttributes.clear();
+			return this;
+		}
+		
+		public Builder id(String id) {
+			entry.id = id;
+			return this;
+		}
+		
+		public Builder name(String name) {
+			entry.name = name;
+			return this;
+		}
+		
+		public Builder buildId(String buildId) {
+			entry.buildId = buildId;
+			return this;
+		}
+		
+		public Builder buildName(String buildName) {
+			entry.buildName = buildName;
+			return this;
+		}
+		
+		public Builder description(String description) {
+			entry.description = description;
+			return this;
+		}
+		
+		public Builder startDate(Date startDate) {
+			entry.startDate = startDate;
+			return this;
+		}
+		
+		/**
+		 * @param time : start date in milliseconds, set on a date reused by the builder.
+		 * @return this builder.
+		 */
+		public Builder startDate(long time) {
+			startDate.setTime(time);
+			entry.startDate = startDate;
+			return this;
+		}
+		
+		public Builder endDate(Date endDate) {
+			entry.endDate = endDate;
+			return this;
+		}
+		
+		/**
+		 * @param time : end date in milliseconds, set on a date reused by the builder.
+		 * @return this builder.
+		 */
+		public Builder endDate(long time) {
+			endDate.setTime(time);
+			entry.endDate = endDate;
+			return this;
+		}
+		
+		public Builder status(String status) {
+			entry.status = status;
+			return this;
+		}
+		
+		public Builder log(String log) {
+			logs.add(log);
+			entry.logs = logs;
+			return this;
+		}
+		
+		public Builder customFormat(String customFormat, String customEntry) {
+			entry.isCustomFormatEnabled = customFormat != null;
+			entry.customFormat = customFormat;
+			entry.customEntry = customEntry;
+			return this;
+		}
+		
+		public Builder screenshotURL(String screenshotURL) {
+			entry.screenshotURL = screenshotURL;
+			return this;
+		}
+		
+		public Builder customAttribute(String name, String value) {
+			customAttributes.put(name, value);
+			entry.customAttributes = customAttributes;
+			return this;
+		}
+		
+		/**
+		 * @return the entry of this builder, the same instance until the builder is discarded.
+		 */
+		public ReportEntry build() {
+			return entry;
+		}
 	}
 }
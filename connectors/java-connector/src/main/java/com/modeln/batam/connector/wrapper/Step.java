@@ -23,17 +23,22 @@
  */
 package com.modeln.batam.connector.wrapper;
 
+import java.io.IOException;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
 
 import org.json.simple.JSONObject;
 
+import com.modeln.batam.connector.util.JsonReader;
+
 /**
  * {
  * 		"order": 1,
  * 		"name" : "step name",
  * 		"start_date" : "12341234", // Time in millisecond
  * 		"end_date" : "12341234", // Time in millisecond
+ * 		"duration_ns" : 1234, // Optional, duration measured in nanoseconds
  *      "input": "1",
  *      "expected": "2",
  *      "output": "1",
@@ -55,9 +60,11 @@ public class Step {
     private Map<String, String> customAttributes;
     private String description;
 	
-	private Date startDate;
+	private long startTime = TestEntry.NO_TIME;
+	
+	private long endTime = TestEntry.NO_TIME;
 	
-	private Date endDate;
+	private long durationNs = TestEntry.NO_DURATION;
 	
 	private String input;
 	
@@ -93,16 +100,16 @@ public class Step {
 	public Step(String name, Date startDate, Date endDate) {
 		super();
 		this.name = name;
-		this.startDate = startDate;
-		this.endDate = endDate;
+		this.startTime = TestEntry.time(startDate);
+		this.endTime = TestEntry.time(endDate);
 	}
 	
 	public Step(Integer order, String name, Date startDate, Date endDate, String input, String expected, String output, String status, String error) {
 		super();
 		this.order = order;
 		this.name = name;
-		this.startDate = startDate;
-		this.endDate = endDate;
+		this.startTime = TestEntry.time(startDate);
+		this.endTime = TestEntry.time(endDate);
 		this.input = input;
 		this.expected = expected;
 		this.output = output;
@@ -115,8 +122,8 @@ public class Step {
 		this.order = order;
 		this.name = name;
 		this.description = description;
-		this.startDate = startDate;
-		this.endDate = endDate;
+		this.startTime = TestEntry.time(startDate);
+		this.endTime = TestEntry.time(endDate);
 		this.input = input;
 		this.expected = expected;
 		this.output = output;
@@ -157,20 +164,59 @@ public class Step {
 		this.name = name;
 	}
 
+	/**
+	 * @return a new date, prefer {@link #getStartTime() getStartTime}.
+	 */
 	public Date getStartDate() {
-		return startDate;
+		return TestEntry.date(startTime);
 	}
 
 	public void setStartDate(Date startDate) {
-		this.startDate = startDate;
+		this.startTime = TestEntry.time(startDate);
 	}
 
+	/**
+	 * @return a new date, prefer {@link #getEndTime() getEndTime}.
+	 */
 	public Date getEndDate() {
-		return endDate;
+		return TestEntry.date(endTime);
 	}
 
 	public void setEndDate(Date endDate) {
-		this.endDate = endDate;
+		this.endTime = TestEntry.time(endDate);
+	}
+	
+	/**
+	 * @return start time in milliseconds since epoch, {@link TestEntry#NO_TIME NO_TIME} if not set.
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+	
+	public void setStartTime(long startTime) {
+		this.startTime = startTime;
+	}
+	
+	/**
+	 * @return end time in milliseconds since epoch, {@link TestEntry#NO_TIME NO_TIME} if not set.
+	 */
+	public long getEndTime() {
+		return endTime;
+	}
+	
+	public void setEndTime(long endTime) {
+		this.endTime = endTime;
+	}
+	
+	/**
+	 * @return duration in nanoseconds, {@link TestEntry#NO_DURATION NO_DURATION} if not measured.
+	 */
+	public long getDurationNs() {
+		return durationNs;
+	}
+	
+	public void setDurationNs(long durationNs) {
+		this.durationNs = durationNs;
 	}	
 
 	public String getInput() {
@@ -237,6 +283,13 @@ public class Step {
 		this.customEntry = customEntry;
 	}
 
+	/**
+	 * @return immutable copy of this step, serialized once.
+	 */
+	public Step toImmutable() {
+		return new ImmutableStep(this);
+	}
+	
 	@Override
 	public String toString() {
 		return toJSONString();
@@ -248,8 +301,11 @@ public class Step {
 		obj.put("order", order);
 		obj.put("name", name);
         obj.put("description", description);
-		obj.put("start_date", startDate == null ? null : String.valueOf(startDate.getTime()));
-		obj.put("end_date", endDate == null ? null : String.valueOf(endDate.getTime()));
+		obj.put("start_date", startTime == TestEntry.NO_TIME ? null : String.valueOf(startTime));
+		obj.put("end_date", endTime == TestEntry.NO_TIME ? null : String.valueOf(endTime));
+		if(durationNs != TestEntry.NO_DURATION){
+			obj.put("duration_ns", durationNs);
+		}
 		obj.put("input", input);
 		obj.put("expected", expected);
 		obj.put("output", output);
@@ -281,7 +337,7 @@ public class Step {
 		String customEntry = (String)obj.get("customEntry");
         Map<String, String> customAttributes = (Map<String, String>)obj.get("customAttributes");
 		
-		return new Step(order,
+		Step step = new Step(order,
 				name,
                 description,
 				startDate == null ? null : new Date(Long.valueOf(startDate)), 
@@ -294,5 +350,207 @@ public class Step {
 				isCustomFormatEnabled,
 				customFormat,
 				customEntry, customAttributes);
+		Number durationNs = (Number)obj.get("duration_ns");
+		if(durationNs != null){
+			step.durationNs = durationNs.longValue();
+		}
+		return step;
+	}
+	
+	/**
+	 * Streaming version of {@link #fromJSON(JSONObject) fromJSON}.
+	 * 
+	 * @param reader : reader positioned on a step object.
+	 * @return step.
+	 * @throws IOException
+	 */
+	public static Step read(JsonReader reader) throws IOException {
+		Step step = new Step(null, null, null);
+		reader.beginObject();
+		while(reader.hasNext()){
+			String field = reader.nextName();
+			if("order".equals(field)){
+				Long order = reader.nextLong();
+				step.order = order == null ? null : order.intValue();
+			}else if("name".equals(field)){
+				step.name = reader.nextString();
+			}else if("description".equals(field)){
+				step.description = reader.nextString();
+			}else if("start_date".equals(field)){
+				step.startTime = JsonBinding.readTime(reader);
+			}else if("end_date".equals(field)){
+				step.endTime = JsonBinding.readTime(reader);
+			}else if("duration_ns".equals(field)){
+				Long durationNs = reader.nextLong();
+				step.durationNs = durationNs == null ? TestEntry.NO_DURATION : durationNs;
+			}else if("input".equals(field)){
+				step.input = reader.nextString();
+			}else if("expected".equals(field)){
+				step.expected = reader.nextString();
+			}else if("output".equals(field)){
+				step.output = reader.nextString();
+			}else if("status".equals(field)){
+				step.status = reader.nextString();
+			}else if("error".equals(field)){
+				step.error = reader.nextString();
+			}else if("isCustomFormatEnabled".equals(field)){
+				step.isCustomFormatEnabled = JsonBinding.readFlag(reader);
+			}else if("customFormat".equals(field)){
+				step.customFormat = reader.nextString();
+			}else if("customEntry".equals(field)){
+				step.customEntry = reader.nextString();
+			}else if("customAttributes".equals(field)){
+				step.customAttributes = JsonBinding.readMap(reader);
+			}else{
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return step;
+	}
+	
+	/**
+	 * @return a builder of a new step.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	/**
+	 * Fluent builder of a reusable {@link Step Step}.
+	 * 
+	 * The builder always returns the same step instance, {@link #reset() reset} clears it. 
+	 * Use one builder per step of a test, or {@link TestEntry.Builder#addStep() TestEntry.Builder.addStep} which pools them.
+	 */
+	public static class Builder {
+		
+		private final Step step = new Step(null, null, null);
+		
+		private final Map<String, String> customAttributes = new HashMap<String, String>();
+		
+		Builder() {
+		}
+		
+		/**
+		 * Clear every field of the step.
+		 * 
+		 * @return this builder.
+		 */
+		public Builder reset() {
+			step.order = null;
+			step.name = null;
+			step.description = null;
+			step.startTime = TestEntry.NO_TIME;
+			step.endTime = TestEntry.NO_TIME;
+			step.durationNs = TestEntry.NO_DURATION;
+			step.input = null;
+			step.expected = null;
+			step.output = null;
+			step.status = null;
+			step.error = null;
+			step.isCustomFormatEnabled = false;
+			step.customFormat = null;
+			step.customEntry = null;
+			step.customAttributes = null;
+			customAttributes.clear();
+			return this;
+		}
+		
+		public Builder order(Integer order) {
+			step.order = order;
+			return this;
+		}
+		
+		public Builder name(String name) {
+			step.name = name;
+			return this;
+		}
+		
+		public Builder description(String description) {
+			step.description = description;
+			return this;
+		}
+		
+		public Builder startDate(Date startDate) {
+			step.startTime = TestEntry.time(startDate);
+			return this;
+		}
+		
+		/**
+		 * @param time : start time in milliseconds since epoch.
+		 * @return this builder.
+		 */
+		public Builder startDate(long time) {
+			step.startTime = time;
+			return this;
+		}
+		
+		public Builder endDate(Date endDate) {
+			step.endTime = TestEntry.time(endDate);
+			return this;
+		}
+		
+		/**
+		 * @param time : end time in milliseconds since epoch.
+		 * @return this builder.
+		 */
+		public Builder endDate(long time) {
+			step.endTime = time;
+			return this;
+		}
+		
+		/**
+		 * @param durationNs : duration in nanoseconds, measured with {@link System#nanoTime() System.nanoTime}.
+		 * @return this builder.
+		 */
+		public Builder durationNs(long durationNs) {
+			step.durationNs = durationNs;
+			return this;
+		}
+		
+		public Builder input(String input) {
+			step.input = input;
+			return this;
+		}
+		
+		public Builder expected(String expected) {
+			step.expected = expected;
+			return this;
+		}
+		
+		public Builder output(String output) {
+			step.output = output;
+			return this;
+		}
+		
+		public Builder status(String status) {
+			step.status = status;
+			return this;
+		}
+		
+		public Builder error(String error) {
+			step.error = error;
+			return this;
+		}
+		
+		public Builder customFormat(String customFormat, String customEntry) {
+			step.isCustomFormatEnabled = customFormat != null;
+			step.customFormat = customFormat;
+			step.customEntry = customEntry;
+			return this;
+		}
+		
+		public Builder customAttribute(String name, String value) {
+			customAttributes.put(name, value);
+			step.customAttributes = customAttributes;
+			return this;
+		}
+		
+		/**
+		 * @return the step of this builder, the same instance until the builder is discarded.
+		 */
+		public Step build() {
+			return step;
+		}
 	}
 }
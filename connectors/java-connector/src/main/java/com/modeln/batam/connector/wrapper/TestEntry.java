@@ -23,11 +23,14 @@
  */
 package com.modeln.batam.connector.wrapper;
 
+import java.io.IOException;
 import java.util.*;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
+import com.modeln.batam.connector.util.JsonReader;
+
 /**
  * {
  * 		"id" : "test identifier",
@@ -38,6 +41,7 @@ import org.json.simple.JSONObject;
  * 		"name" : "package#testname()",
  * 		"start_date" : "12341234", // Time in millisecond
  * 		"end_date" : "12341234", // Time in millisecond
+ * 		"duration_ns" : 1234, // Optional, duration measured in nanoseconds
  * 		"status" : "pass|failed|error| name it",
  * 		"log" : "test logs",
  * 		"criterias" : [{@link com.modeln.batam.connector.wrapper.Pair}],
@@ -56,6 +60,16 @@ import org.json.simple.JSONObject;
  */
 public class TestEntry {
 	
+	/**
+	 * Start or end time of a test without date.
+	 */
+	public final static long NO_TIME = Long.MIN_VALUE;
+	
+	/**
+	 * Duration of a test that has not been measured.
+	 */
+	public final static long NO_DURATION = -1;
+	
 	private String id;
 	
 	private String buildId;
@@ -70,9 +84,11 @@ public class TestEntry {
 	
 	private String description; 
 	
-	private Date startDate; 
+	private long startTime = NO_TIME; 
+	
+	private long endTime = NO_TIME;
 	
-	private Date endDate;
+	private long durationNs = NO_DURATION;
 	
 	private String status; 
 	
@@ -130,8 +146,8 @@ public class TestEntry {
 		this.reportName = reportName;
 		this.name = name;
 		this.description = description;
-		this.startDate = startDate;
-		this.endDate = endDate;
+		this.startTime = time(startDate);
+		this.endTime = time(endDate);
 		this.status = status;
 		this.criterias = criterias;
 		this.tags = tags;
@@ -253,20 +269,67 @@ public class TestEntry {
 		this.description = description;
 	}
 
+	static long time(Date date) {
+		return date == null ? NO_TIME : date.getTime();
+	}
+	
+	static Date date(long time) {
+		return time == NO_TIME ? null : new Date(time);
+	}
+
+	/**
+	 * @return a new date, prefer {@link #getStartTime() getStartTime}.
+	 */
 	public Date getStartDate() {
-		return startDate;
+		return date(startTime);
 	}
 
 	public void setStartDate(Date startDate) {
-		this.startDate = startDate;
+		this.startTime = time(startDate);
 	}
 
+	/**
+	 * @return a new date, prefer {@link #getEndTime() getEndTime}.
+	 */
 	public Date getEndDate() {
-		return endDate;
+		return date(endTime);
 	}
 
 	public void setEndDate(Date endDate) {
-		this.endDate = endDate;
+		this.endTime = time(endDate);
+	}
+	
+	/**
+	 * @return start time in milliseconds since epoch, {@link #NO_TIME NO_TIME} if not set.
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+	
+	public void setStartTime(long startTime) {
+		this.startTime = startTime;
+	}
+	
+	/**
+	 * @return end time in milliseconds since epoch, {@link #NO_TIME NO_TIME} if not set.
+	 */
+	public long getEndTime() {
+		return endTime;
+	}
+	
+	public void setEndTime(long endTime) {
+		this.endTime = endTime;
+	}
+	
+	/**
+	 * @return duration in nanoseconds, measured with {@link System#nanoTime() System.nanoTime}, {@link #NO_DURATION NO_DURATION} if not measured.
+	 */
+	public long getDurationNs() {
+		return durationNs;
+	}
+	
+	public void setDurationNs(long durationNs) {
+		this.durationNs = durationNs;
 	}
 
 	public String getStatus() {
@@ -409,23 +472,82 @@ public class TestEntry {
 		return this.approvedDate;
 	}
 
-	@SuppressWarnings("unchecked")
 	public String toJSONString() {
+		return toJSONString(true);
+	}
+	
+	/**
+	 * @param withLog : false to leave the log out of the message without changing this test.
+	 * @return JSON string.
+	 */
+	public String toJSONString(boolean withLog) {
 		JSONObject obj = new JSONObject();
-		obj.put("id", id);
+		putIdentity(obj, buildId, buildName, reportId, reportName);
+		putFields(obj, withLog);
+		return obj.toJSONString();
+	}
+	
+	/**
+	 * Serialize this test using a pre-encoded identity fragment instead of its own build and report fields.
+	 * 
+	 * @param identityFragment : fragment returned by {@link #identityFragment(String, String, String, String) identityFragment}.
+	 * @return JSON string.
+	 */
+	public String toJSONString(String identityFragment) {
+		return toJSONString(identityFragment, true);
+	}
+	
+	/**
+	 * @param identityFragment : fragment returned by {@link #identityFragment(String, String, String, String) identityFragment}.
+	 * @param withLog : false to leave the log out of the message without changing this test.
+	 * @return JSON string.
+	 */
+	public String toJSONString(String identityFragment, boolean withLog) {
+		JSONObject obj = new JSONObject();
+		putFields(obj, withLog);
+		String fields = obj.toJSONString();
+		return "{" + identityFragment + "," + fields.substring(1);
+	}
+	
+	/**
+	 * Pre-encode the build and report identity fields of a test so they can be reused across many tests.
+	 * 
+	 * @param buildId : Test Build Id.
+	 * @param buildName : Test Build Name.
+	 * @param reportId : Test Report Id.
+	 * @param reportName : Test Report Name.
+	 * @return JSON fragment (without surrounding braces).
+	 */
+	public static String identityFragment(String buildId, String buildName, String reportId, String reportName) {
+		JSONObject obj = new JSONObject();
+		putIdentity(obj, buildId, buildName, reportId, reportName);
+		String identity = obj.toJSONString();
+		return identity.substring(1, identity.length() - 1);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static void putIdentity(JSONObject obj, String buildId, String buildName, String reportId, String reportName) {
 		obj.put("build_id", buildId);
 		obj.put("build_name", buildName);
 		obj.put("report_id", reportId);
 		obj.put("report_name", reportName);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void putFields(JSONObject obj, boolean withLog) {
+		obj.put("id", id);
 		obj.put("name", name);
 		obj.put("description", description);
-		obj.put("start_date", startDate == null ? null : String.valueOf(startDate.getTime()));
-		obj.put("end_date", endDate == null ? null : String.valueOf(endDate.getTime()));
+		obj.put("start_date", startTime == NO_TIME ? null : String.valueOf(startTime));
+		obj.put("end_date", endTime == NO_TIME ? null : String.valueOf(endTime));
+		if(durationNs != NO_DURATION){
+			obj.put("duration_ns", durationNs);
+		}
 		obj.put("status", status);
 		obj.put("criterias", criterias);
 		obj.put("tags", tags);
 		obj.put("steps", steps);
-		obj.put("log", log);
+		obj.put("log", withLog ? log : null);
 		obj.put("override", override);
 		obj.put("isCustomFormatEnabled", isCustomFormatEnabled);
 		obj.put("customFormat", customFormat);
@@ -440,7 +562,6 @@ public class TestEntry {
 		obj.put("comments", comments);
 		obj.put("approvalStatus", approvalStatus);
 		obj.put("approvedBy", approvedBy);
-		return obj.toJSONString();
 	}
 	
 	@Override
@@ -505,10 +626,359 @@ public class TestEntry {
 		String approvedBy = (String)obj.get("approvedBy");
 		String executionType = (String) obj.get("executionType");
 		
-		return new TestEntry(id, buildId, buildName, reportId, reportName, name, description, 
+		TestEntry test = new TestEntry(id, buildId, buildName, reportId, reportName, name, description, 
 				startDate == null ? null : new Date(Long.valueOf(startDate)), 
 				endDate == null ? null : new Date(Long.valueOf(endDate)), 
 				status, criterias, tags, steps, log, override, isCustomFormatEnabled, customFormat, customEntry,
 				jiraTestID, jiraReqID, executionType, customAttributes, authoredBy, dateCreated, approvalStatus, approvedBy, approvedDate, comments);
+		Number durationNs = (Number)obj.get("duration_ns");
+		if(durationNs != null){
+			test.durationNs = durationNs.longValue();
+		}
+		return test;
+	}
+	
+	/**
+	 * Streaming version of {@link #fromJSON(JSONObject) fromJSON}, binding fields as they are read 
+	 * instead of building the JSON object tree first.
+	 * 
+	 * @param reader : reader positioned on a test object.
+	 * @return test entry.
+	 * @throws IOException
+	 */
+	public static TestEntry read(JsonReader reader) throws IOException {
+		TestEntry test = new TestEntry();
+		test.criterias = new ArrayList<Pair>();
+		test.tags = new ArrayList<String>();
+		test.steps = new ArrayList<Step>();
+		reader.beginObject();
+		while(reader.hasNext()){
+			String field = reader.nextName();
+			if("id".equals(field)){
+				test.id = reader.nextString();
+			}else if("build_id".equals(field)){
+				test.buildId = reader.nextString();
+			}else if("build_name".equals(field)){
+				test.buildName = reader.nextString();
+			}else if("report_id".equals(field)){
+				test.reportId = reader.nextString();
+			}else if("report_name".equals(field)){
+				test.reportName = reader.nextString();
+			}else if("name".equals(field)){
+				test.name = reader.nextString();
+			}else if("description".equals(field)){
+				test.description = reader.nextString();
+			}else if("status".equals(field)){
+				test.status = reader.nextString();
+			}else if("log".equals(field)){
+				test.log = reader.nextString();
+			}else if("customFormat".equals(field)){
+				test.customFormat = reader.nextString();
+			}else if("customEntry".equals(field)){
+				test.customEntry = reader.nextString();
+			}else if("jiraTestID".equals(field)){
+				test.jiraTestID = reader.nextString();
+			}else if("jiraReqID".equals(field)){
+				test.jiraReqID = reader.nextString();
+			}else if("executionType".equals(field)){
+				test.executionType = reader.nextString();
+			}else if("authoredBy".equals(field)){
+				test.authoredBy = reader.nextString();
+			}else if("dateCreated".equals(field)){
+				test.dateCreated = reader.nextString();
+			}else if("approvalStatus".equals(field)){
+				test.approvalStatus = reader.nextString();
+			}else if("approvedBy".equals(field)){
+				test.approvedBy = reader.nextString();
+			}else if("approvedDate".equals(field)){
+				test.approvedDate = reader.nextString();
+			}else if("comments".equals(field)){
+				test.comments = reader.nextString();
+			}else if("start_date".equals(field)){
+				test.startTime = JsonBinding.readTime(reader);
+			}else if("end_date".equals(field)){
+				test.endTime = JsonBinding.readTime(reader);
+			}else if("duration_ns".equals(field)){
+				Long durationNs = reader.nextLong();
+				test.durationNs = durationNs == null ? NO_DURATION : durationNs;
+			}else if("override".equals(field)){
+				test.override = JsonBinding.readFlag(reader);
+			}else if("isCustomFormatEnabled".equals(field)){
+				test.isCustomFormatEnabled = JsonBinding.readFlag(reader);
+			}else if("criterias".equals(field)){
+				JsonBinding.readPairs(reader, test.criterias);
+			}else if("tags".equals(field)){
+				JsonBinding.readStrings(reader, test.tags);
+			}else if("steps".equals(field)){
+				JsonBinding.readSteps(reader, test.steps);
+			}else if("customAttributes".equals(field)){
+				test.customAttributes = JsonBinding.readMap(reader);
+			}else{
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return test;
+	}
+	
+	/**
+	 * @return a builder of a new test entry.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	/**
+	 * Fluent builder of a reusable {@link TestEntry TestEntry}.
+	 * 
+	 * The builder always returns the same entry instance. {@link #reset() reset} clears it and keeps its lists and pairs 
+	 * so that hot loops can build one test after another with one builder per thread and almost no allocation. 
+	 * Connector APIs and sessions serialize entries before returning, reset the builder once the test is published.
+	 * 
+	 * <PRE>
+	 * TestEntry.Builder test = TestEntry.builder();
+	 * for(Result result : results){
+	 * 	connector.updateTest(test.reset().reportName("suite").name(result.name).status(result.status)
+	 * 		.startDate(result.start).endDate(result.end).build());
+	 * }
+	 * </PRE>
+	 */
+	public static class Builder {
+		
+		private final TestEntry entry = new TestEntry();
+		
+		private final PairList criterias = new PairList();
+		
+		private final List<String> tags = new ArrayList<String>();
+		
+		private final List<Step> steps = new ArrayList<Step>();
+		
+		private final List<Step.Builder> stepBuilders = new ArrayList<Step.Builder>();
+		
+		private int stepCount = 0;
+		
+		private final Map<String, String> customAttributes = new HashMap<String, String>();
+		
+		Builder() {
+		}
+		
+		/**
+		 * Clear every field of the entry.
+		 * 
+		 * @return this builder.
+		 */
+		public Builder reset() {
+			entry.id = null;
+			entry.buildId = null;
+			entry.buildName = null;
+			entry.reportId = null;
+			entry.reportName = null;
+			entry.name = null;
+			entry.description = null;
+			entry.startTime = NO_TIME;
+			entry.endTime = NO_TIME;
+			entry.durationNs = NO_DURATION;
+			entry.status = null;
+			entry.log = null;
+			entry.criterias = null;
+			entry.tags = null;
+			entry.steps = null;
+			entry.override = false;
+			entry.isCustomFormatEnabled = false;
+			entry.customFormat = null;
+			entry.customEntry = null;
+			entry.jiraTestID = null;
+			entry.jiraReqID = null;
+			entry.executionType = null;
+			entry.authoredBy = null;
+			entry.dateCreated = null;
+			entry.approvalStatus = null;
+			entry.approvedBy = null;
+			entry.approvedDate = null;
+			entry.comments = null;
+			entry.customAttributes = null;
+			criterias.clear();
+			tags.clear();
+			steps.clear();
+			stepCount = 0;
+			customAttributes.clear();
+			return this;
+		}
+		
+		public Builder id(String id) {
+			entry.id = id;
+			return this;
+		}
+		
+		public Builder buildId(String buildId) {
+			entry.buildId = buildId;
+			return this;
+		}
+		
+		public Builder buildName(String buildName) {
+			entry.buildName = buildName;
+			return this;
+		}
+		
+		public Builder reportId(String reportId) {
+			entry.reportId = reportId;
+			return this;
+		}
+		
+		public Builder reportName(String reportName) {
+			entry.reportName = reportName;
+			return this;
+		}
+		
+		public Builder name(String name) {
+			entry.name = name;
+			return this;
+		}
+		
+		public Builder description(String description) {
+			entry.description = description;
+			return this;
+		}
+		
+		public Builder startDate(Date startDate) {
+			entry.startTime = time(startDate);
+			return this;
+		}
+		
+		/**
+		 * @param time : start time in milliseconds since epoch.
+		 * @return this builder.
+		 */
+		public Builder startDate(long time) {
+			entry.startTime = time;
+			return this;
+		}
+		
+		public Builder endDate(Date endDate) {
+			entry.endTime = time(endDate);
+			return this;
+		}
+		
+		/**
+		 * @param time : end time in milliseconds since epoch.
+		 * @return this builder.
+		 */
+		public Builder endDate(long time) {
+			entry.endTime = time;
+			return this;
+		}
+		
+		/**
+		 * @param durationNs : duration in nanoseconds, measured with {@link System#nanoTime() System.nanoTime}.
+		 * @return this builder.
+		 */
+		public Builder durationNs(long durationNs) {
+			entry.durationNs = durationNs;
+			return this;
+		}
+		
+		public Builder status(String status) {
+			entry.status = status;
+			return this;
+		}
+		
+		public Builder log(String log) {
+			entry.log = log;
+			return this;
+		}
+		
+		public Builder criteria(String name, String value) {
+			entry.criterias = criterias.add(name, value);
+			return this;
+		}
+		
+		public Builder tag(String tag) {
+			tags.add(tag);
+			entry.tags = tags;
+			return this;
+		}
+		
+		public Builder step(Step step) {
+			steps.add(step);
+			entry.steps = steps;
+			return this;
+		}
+		
+		/**
+		 * Add a step built with a step builder pooled by this builder.
+		 * 
+		 * @return reset step builder.
+		 */
+		public Step.Builder addStep() {
+			if(stepCount == stepBuilders.size()){
+				stepBuilders.add(Step.builder());
+			}
+			Step.Builder step = stepBuilders.get(stepCount++).reset();
+			steps.add(step.build());
+			entry.steps = steps;
+			return step;
+		}
+		
+		public Builder override(boolean override) {
+			entry.override = override;
+			return this;
+		}
+		
+		public Builder customFormat(String customFormat, String customEntry) {
+			entry.isCustomFormatEnabled = customFormat != null;
+			entry.customFormat = customFormat;
+			entry.customEntry = customEntry;
+			return this;
+		}
+		
+		public Builder jiraTestID(String jiraTestID) {
+			entry.jiraTestID = jiraTestID;
+			return this;
+		}
+		
+		public Builder jiraReqID(String jiraReqID) {
+			entry.jiraReqID = jiraReqID;
+			return this;
+		}
+		
+		public Builder executionType(String executionType) {
+			entry.executionType = executionType;
+			return this;
+		}
+		
+		public Builder authoredBy(String authoredBy) {
+			entry.authoredBy = authoredBy;
+			return this;
+		}
+		
+		public Builder dateCreated(String dateCreated) {
+			entry.dateCreated = dateCreated;
+			return this;
+		}
+		
+		public Builder approval(String approvalStatus, String approvedBy, String approvedDate) {
+			entry.approvalStatus = approvalStatus;
+			entry.approvedBy = approvedBy;
+			entry.approvedDate = approvedDate;
+			return this;
+		}
+		
+		public Builder comments(String comments) {
+			entry.comments = comments;
+			return this;
+		}
+		
+		public Builder customAttribute(String name, String value) {
+			customAttributes.put(name, value);
+			entry.customAttributes = customAttributes;
+			return this;
+		}
+		
+		/**
+		 * @return the entry of this builder, the same instance until the builder is discarded.
+		 */
+		public TestEntry build() {
+			return entry;
+		}
 	}
 }
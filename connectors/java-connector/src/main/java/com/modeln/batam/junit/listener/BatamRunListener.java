@@ -1,17 +1,27 @@
 package com.modeln.batam.junit.listener;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.io.File;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.runner.Description;
 import org.junit.runner.Result;
 import org.junit.runner.notification.Failure;
 import org.junit.runner.notification.RunListener;
 
+import com.modeln.batam.connector.Connector;
 import com.modeln.batam.connector.ConnectorHelper;
+import com.modeln.batam.connector.FailureLogs;
+import com.modeln.batam.connector.TestSummarizer;
+import com.modeln.batam.connector.util.ConfigHelper;
+import com.modeln.batam.connector.wrapper.TestEntry;
 
 /**
  * RunListener class to use with the Maven Surefire plugin in order to send test to the batam application.
@@ -47,6 +57,14 @@ import com.modeln.batam.connector.ConnectorHelper;
  * 	<li><b>batam.report.name</b> : Specify the Report Name tests need to be registered into (optional if batam.report.id is defined).</li>
  * 	<li><b>batam.report.id</b> : Specify the Report Id tests need to be registered into (optional if batam.report.name is defined and unique across your BATAM build reports).</li>
  *  <li><b>batam.publish</b> : Publish information to the BATAM system when set to true, Otherwise set to false.</li>
+ *  <li><b>batam.warmup</b> : Begin the connection on a background thread when the test run starts when set to true (optional).</li>
+ *  <li><b>batam.relay</b> : Port of a relay started with <code>connector.jar -r &lt;port&gt;</code>, so that forked JVMs share its connection (optional).</li>
+ *  <li><b>batam.max_stack_frames</b> : Maximum number of stack frames logged per failure cause, test framework frames being folded (optional, 50 by default). 
+ *  Only the first failure of the build with a given root cause logs its stack trace, the other ones log the failure fingerprint.</li>
+ *  <li><b>batam.run.id</b> : Identifier shared by the forked JVMs of a test run and unique to it, so that they log each stack trace once 
+ *  when batam.result_cache is set (optional, batam.build.id by default, otherwise each JVM logs its own first occurrence).</li>
+ *  <li><b>batam.summary</b> : Aggregate passing tests per class instead of publishing them one by one when set to true (optional). 
+ *  Failures and a sample of passing tests are still published in full. Summary mode is also turned on once the connector overhead exceeds batam.overhead_budget.</li>
  * </ul>
  * @author gzussa
  *
@@ -54,6 +72,8 @@ import com.modeln.batam.connector.ConnectorHelper;
 public class BatamRunListener extends RunListener {
 	private final static String BATAM_PUBLISH_PROPERTY = "batam.publish";
 	
+	private final static String BATAM_WARMUP_PROPERTY = "batam.warmup";
+	
 	private final static String BATAM_REPORT_ID_PROPERTY = "batam.report.id";
 	
 	private final static String BATAM_REPORT_NAME_PROPERTY = "batam.report.name";
@@ -61,6 +81,29 @@ public class BatamRunListener extends RunListener {
 	private final static String BATAM_BUILD_ID_PROPERTY = "batam.build.id";
 	
 	private final static String BATAM_BUILD_NAME_PROPERTY = "batam.build.name";
+	
+	private final static String BATAM_SUMMARY_PROPERTY = "batam.summary";
+	
+	private final static String BATAM_RUN_ID_PROPERTY = "batam.run.id";
+	
+	private final Map<Description, TestStart> starts = new ConcurrentHashMap<Description, TestStart>();
+	
+	private final ThreadLocal<TestEntry.Builder> tests = new ThreadLocal<TestEntry.Builder>() {
+		@Override
+		protected TestEntry.Builder initialValue() {
+			return TestEntry.builder();
+		}
+	};
+	
+	private final Set<Description> failed = Collections.newSetFromMap(new ConcurrentHashMap<Description, Boolean>());
+	
+	private TestSummarizer summary;
+	
+	private final Map<Description, Future<String>> failureLogs = new ConcurrentHashMap<Description, Future<String>>();
+	
+	private FailureLogs failureRenderer;
+	
+	private String build;
 
     public void testRunStarted(Description description) throws Exception {
     	String publish = System.getProperty(BATAM_PUBLISH_PROPERTY);
@@ -74,7 +117,19 @@ public class BatamRunListener extends RunListener {
         buildName = buildName != null && !buildName.isEmpty() ? buildName : null;
         
         if("true".equals(publish)) {
+            if("true".equals(System.getProperty(BATAM_WARMUP_PROPERTY))) {
+                ConnectorHelper.warmUp();
+            }
             ConnectorHelper.createReport(reportId, reportName, buildId, buildName, null, new Date(), null, null, null);
+            build = buildId != null ? buildId : buildName;
+            //The result cache directory is shared by the forked JVMs of a build, build ids are unique to a run.
+            String runId = System.getProperty(BATAM_RUN_ID_PROPERTY);
+            runId = runId != null && !runId.isEmpty() ? runId : buildId;
+            failureRenderer = new FailureLogs(ConfigHelper.MAX_STACK_FRAMES, 
+                    ConfigHelper.RESULT_CACHE == null || ConfigHelper.RESULT_CACHE.isEmpty() ? null : new File(ConfigHelper.RESULT_CACHE), runId);
+            if("true".equals(System.getProperty(BATAM_SUMMARY_PROPERTY))) {
+                summary = ConnectorHelper.openTestSummary(buildId, buildName, reportId, reportName);
+            }
         }
     }
     
@@ -85,18 +140,37 @@ public class BatamRunListener extends RunListener {
         String reportName = System.getProperty(BATAM_REPORT_NAME_PROPERTY);
         reportName = reportName != null && !reportName.isEmpty() ? reportName : null;
         
-        if("true".equals(publish)) {
-            ConnectorHelper.createTest(null, null, reportId,
-            		reportName,
-                    description.getClassName() + "." + description.getMethodName(),
-                    null,
-                    new Date(),
-                    null,
-                    null,
-                    null,
-                    null,
-                    null,
-                    null);
+        if("true".equals(publish) && summary == null && Connector.getInstance().getOverheadBudget().isDegraded()) {
+            // The reporting overhead exceeded its budget, switch to summary mode.
+            String buildId = System.getProperty(BATAM_BUILD_ID_PROPERTY);
+            buildId = buildId != null && !buildId.isEmpty() ? buildId : null;
+            String buildName = System.getProperty(BATAM_BUILD_NAME_PROPERTY);
+            buildName = buildName != null && !buildName.isEmpty() ? buildName : null;
+            summary = ConnectorHelper.openTestSummary(buildId, buildName, reportId, reportName);
+        }
+        
+        if("true".equals(publish) && summary != null) {
+            // Tests are only published once finished, when they fail or are sampled.
+            starts.put(description, new TestStart(true));
+        } else if("true".equals(publish)) {
+            TestStart start = new TestStart(false);
+            starts.put(description, start);
+            ConnectorHelper.createTest(tests.get().reset()
+                    .reportId(reportId)
+                    .reportName(reportName)
+                    .name(description.getClassName() + "." + description.getMethodName())
+                    .startDate(start.time)
+                    .build());
+        }
+    }
+
+    public void testFailure(Failure failure) throws Exception {
+        if(summary != null) {
+            failed.add(failure.getDescription());
+        }
+        if(failureRenderer != null) {
+            // Rendered off the test thread, collected when the run finishes.
+            failureLogs.put(failure.getDescription(), failureRenderer.render(build, failure.getException()));
         }
     }
 
@@ -108,25 +182,48 @@ public class BatamRunListener extends RunListener {
         String reportName = System.getProperty(BATAM_REPORT_NAME_PROPERTY);
         reportName = reportName != null && !reportName.isEmpty() ? reportName : null;
         
-        if("true".equals(publish)) {
-            ConnectorHelper.updateTest(null, null, null, reportId,
-            		reportName,
-                    description.getClassName() + "." + description.getMethodName(),
-                    null,
-                    null,
-                    new Date(),
-                    "pass",
-                    null,
-                    null,
-                    null,
-                    null,
-                    false);
+        long endTime = System.currentTimeMillis();
+        TestStart start = starts.remove(description);
+        long durationNs = start != null ? System.nanoTime() - start.nanoTime : TestEntry.NO_DURATION;
+        
+        if("true".equals(publish) && summary != null && start != null && start.summarized) {
+            String name = description.getClassName() + "." + description.getMethodName();
+            boolean fail = failed.remove(description);
+            if(fail || summary.isSampled(name)) {
+                // Failures are completed with their status and stack trace when the run finishes.
+                ConnectorHelper.createTest(tests.get().reset()
+                        .reportId(reportId)
+                        .reportName(reportName)
+                        .name(name)
+                        .startDate(start.time)
+                        .endDate(endTime)
+                        .durationNs(durationNs)
+                        .status(fail ? null : "pass")
+                        .build());
+            } else {
+                summary.recordPass(description.getClassName(), TimeUnit.NANOSECONDS.toMillis(durationNs));
+            }
+        } else if("true".equals(publish)) {
+            failed.remove(description);
+            ConnectorHelper.updateTest(tests.get().reset()
+                    .reportId(reportId)
+                    .reportName(reportName)
+                    .name(description.getClassName() + "." + description.getMethodName())
+                    .endDate(endTime)
+                    .durationNs(durationNs)
+                    .status("pass")
+                    .build());
         }
     }
 
     public void testRunFinished(Result result) throws Exception {
         List<Failure> failures = result.getFailures();
         
+        if(summary != null) {
+            summary.close();
+            summary = null;
+        }
+        
         String publish = System.getProperty(BATAM_PUBLISH_PROPERTY);
         String reportId = System.getProperty(BATAM_REPORT_ID_PROPERTY);
         reportId = reportId != null && !reportId.isEmpty() ? reportId : null;
@@ -137,9 +234,8 @@ public class BatamRunListener extends RunListener {
             for (Iterator<Failure> it = failures.iterator(); it.hasNext(); ) {
                 Failure failure = it.next();
 
-                StringWriter errors = new StringWriter();
-                failure.getException().printStackTrace(new PrintWriter(errors));
-                String exception = errors.toString();
+                Future<String> log = failureLogs.remove(failure.getDescription());
+                String exception = log != null ? log.get() : failureRenderer.log(build, failure.getException());
 
                 ConnectorHelper.updateTest(null, null, null, reportId,
                 		reportName,
@@ -151,10 +247,14 @@ public class BatamRunListener extends RunListener {
                         null,
                         null, 
                         null,
-                        failure.getException().getMessage() + " " + exception,
+                        exception,
                         false);
             }
         }
+        if(failureRenderer != null) {
+            failureRenderer.shutdown();
+            failureRenderer = null;
+        }
         
         String buildId = System.getProperty(BATAM_BUILD_ID_PROPERTY);
         buildId = buildId != null && !buildId.isEmpty() ? buildId : null;
@@ -166,4 +266,23 @@ public class BatamRunListener extends RunListener {
             ConnectorHelper.updateReportStatus(reportId, reportName, buildId, buildName, "completed");
         }
     }
+    
+    /**
+     * Wall clock start time of a test, and its monotonic start time to measure its duration.
+     */
+    private static final class TestStart {
+        
+        private final long time = System.currentTimeMillis();
+        
+        private final long nanoTime = System.nanoTime();
+        
+        /**
+         * True if the test started in summary mode and is only published once finished.
+         */
+        private final boolean summarized;
+        
+        private TestStart(boolean summarized) {
+            this.summarized = summarized;
+        }
+    }
 }
@@ -0,0 +1,91 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.modeln.batam.connector.ArtifactStore;
+
+public class ArtifactStoreTest {
+	
+	private static File write(File directory, String name, String content) throws IOException {
+		File file = new File(directory, name);
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	@Test
+	public void testIdenticalFilesAreStoredOnce() throws Exception {
+		File root = new File(System.getProperty("java.io.tmpdir"), "batam-artifacts-" + System.nanoTime());
+		File sources = new File(root, "sources");
+		assertTrue(sources.mkdirs());
+		ArtifactStore store = new ArtifactStore(new File(root, "store"), "http://screenshots/store", 4);
+		try {
+			List<Future<ArtifactStore.Artifact>> artifacts = new ArrayList<Future<ArtifactStore.Artifact>>();
+			for(int i = 0; i < 20; i++){
+				artifacts.add(store.store(write(sources, "login-" + i + ".PNG", "same screenshot")));
+			}
+			ArtifactStore.Artifact other = store.store(write(sources, "logout.png", "another screenshot")).get();
+			
+			String hash = artifacts.get(0).get().getHash();
+			assertEquals(64, hash.length());
+			int copies = 0;
+			for(Future<ArtifactStore.Artifact> artifact : artifacts){
+				assertEquals(hash, artifact.get().getHash());
+				assertEquals("http://screenshots/store/" + hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + ".png", artifact.get().getUrl());
+				assertEquals(15, artifact.get().getLength());
+				if(!artifact.get().isDuplicate()){
+					copies++;
+				}
+			}
+			assertTrue(copies >= 1);
+			assertFalse(other.isDuplicate());
+			assertFalse(hash.equals(other.getHash()));
+			
+			File shard = new File(new File(new File(root, "store"), hash.substring(0, 2)), hash.substring(2, 4));
+			assertEquals(1, shard.list().length);
+			assertEquals(15, new File(shard, hash + ".png").length());
+			
+			assertTrue(store.store(write(sources, "again.png", "same screenshot")).get().isDuplicate());
+		} finally {
+			store.shutdown();
+		}
+	}
+}
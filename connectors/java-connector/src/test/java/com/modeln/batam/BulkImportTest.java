@@ -0,0 +1,76 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import com.modeln.batam.connector.BulkImport;
+import com.modeln.batam.connector.Connector;
+
+public class BulkImportTest {
+
+	@Test
+	public void testImportRecords() throws Exception {
+		StringBuilder records = new StringBuilder();
+		records.append("{\"action\":\"create_build\",\"data\":{\"name\":\"bulk build\",\"start_date\":\"1000\"}}\n");
+		records.append("{\"action\":\"create_report\",\"data\":{\"name\":\"bulk report\",\"build_name\":\"bulk build\"}}\n");
+		records.append("\n");
+		for(int i = 0; i < 500; i++){
+			records.append("{\"action\":\"update_test\",\"data\":{\"report_name\":\"bulk report\",\"name\":\"test" + i + "\",\"status\":\"pass\"}}\n");
+		}
+		//Data ahead of its action.
+		records.append("{\"data\":{\"name\":\"bulk build\",\"status\":\"completed\"},\"action\":\"update_build\"}\n");
+		
+		BulkImport.Report report = new BulkImport(Connector.getInstance(), 4).run(new StringReader(records.toString()));
+		assertEquals(503, report.getRecords());
+		assertEquals(503, report.getPublished());
+		assertEquals(0, report.getFailed());
+		assertTrue(report.isConfirmed());
+		assertTrue(report.isSuccess());
+	}
+	
+	@Test
+	public void testReportFailures() throws Exception {
+		String records = "{\"action\":\"create_build\",\"data\":{\"name\":\"bulk build\"}}\n"
+				+ "{\"action\":\"create_build\",\"data\":{\"name\":\"truncated\n"
+				+ "{\"action\":\"delete_build\",\"data\":{\"name\":\"bulk build\"}}\n"
+				+ "{\"action\":\"update_build\"}\n";
+		
+		BulkImport.Report report = new BulkImport(Connector.getInstance(), 2).run(new StringReader(records));
+		assertEquals(4, report.getRecords());
+		assertEquals(1, report.getPublished());
+		assertEquals(3, report.getFailed());
+		assertFalse(report.isSuccess());
+		assertEquals(3, report.getErrors().size());
+		assertTrue(report.getErrors().get(0), report.getErrors().get(0).startsWith("line 2: "));
+		assertTrue(report.getErrors().get(1), report.getErrors().get(1).contains("delete_build"));
+		assertTrue(report.toString(), report.toString().contains("4 records"));
+	}
+}
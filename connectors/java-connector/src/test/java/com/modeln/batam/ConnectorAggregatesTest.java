@@ -0,0 +1,83 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Date;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.Test;
+
+import com.modeln.batam.connector.Connector;
+import com.modeln.batam.connector.TestAggregates;
+import com.modeln.batam.connector.wrapper.BuildEntry;
+import com.modeln.batam.connector.wrapper.ReportEntry;
+import com.modeln.batam.connector.wrapper.TestEntry;
+
+public class ConnectorAggregatesTest {
+
+	@Test
+	public void testAggregates() throws Exception {
+		Connector connector = Connector.getInstance("aggregates");
+		connector.beginConnection();
+		try {
+			connector.createReport(new ReportEntry(null, "suite", null, "aggregated build", null, new Date(), null, null, null));
+			assertNull(connector.getReportAggregates(null, "suite"));
+			
+			connector.createTest(new TestEntry(null, null, null, null, "suite", "test1", null, new Date(1000), null, null, null, null, null, null, false));
+			connector.updateTest(new TestEntry(null, null, null, null, "suite", "test1", null, null, new Date(1500), "pass", null, null, null, null, false));
+			connector.createTest(new TestEntry(null, null, null, null, "suite", "test2", null, new Date(1000), new Date(1100), "fail", null, null, null, null, false));
+			//Publishing a test again moves it to its new status.
+			connector.updateTest(new TestEntry(null, null, null, null, "suite", "test2", null, null, null, "pass", null, null, null, null, false));
+			
+			TestAggregates report = connector.getReportAggregates(null, "suite");
+			assertEquals(2, report.getCount());
+			assertEquals(2, report.getCount("pass"));
+			assertEquals(0, report.getCount("fail"));
+			assertEquals(600, report.getDuration());
+			assertEquals(100, report.getMinDuration());
+			assertEquals(500, report.getMaxDuration());
+			assertEquals(2, report.getHistogram().getCount());
+			
+			JSONParser parser = new JSONParser();
+			String message = connector.updateReport(new ReportEntry(null, "suite", null, "aggregated build", null, null, new Date(), "completed", null));
+			JSONObject aggregates = (JSONObject)((JSONObject)((JSONObject)parser.parse(message)).get("data")).get("aggregates");
+			assertEquals(2L, aggregates.get("tests"));
+			assertEquals(2L, ((JSONObject)aggregates.get("statuses")).get("pass"));
+			
+			//Tests are attributed to the build of their report.
+			BuildEntry build = new BuildEntry();
+			build.setName("aggregated build");
+			message = connector.updateBuild(build);
+			aggregates = (JSONObject)((JSONObject)((JSONObject)parser.parse(message)).get("data")).get("aggregates");
+			assertEquals(600L, ((JSONObject)aggregates.get("duration")).get("total"));
+		} finally {
+			connector.endConnection();
+			Connector.removeInstance("aggregates");
+		}
+	}
+}
@@ -0,0 +1,338 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.modeln.batam.connector.Connector;
+import com.modeln.batam.connector.ConnectorHelper;
+import com.modeln.batam.connector.PublishFuture;
+import com.modeln.batam.connector.PublishListener;
+import com.modeln.batam.connector.PublishResult;
+import com.modeln.batam.connector.PublishingSubscriber;
+import com.modeln.batam.connector.flow.Subscription;
+import com.modeln.batam.connector.wrapper.BuildEntry;
+import com.modeln.batam.connector.wrapper.TestEntry;
+
+public class ConnectorAsyncTest {
+
+	@Test
+	public void testPublishAsync() throws Exception {
+		Connector connector = Connector.getInstance();
+		connector.beginConnection();
+		try {
+			BuildEntry build = new BuildEntry();
+			build.setName("async build");
+			build.setStartDate(new Date());
+			PublishResult result = connector.createBuildAsync(build).get(10, TimeUnit.SECONDS);
+			assertEquals("create_build", result.getAction());
+			assertEquals(result.getMessage().getBytes().length, result.getSize());
+			
+			final CountDownLatch latch = new CountDownLatch(100);
+			List<PublishFuture> futures = new ArrayList<PublishFuture>();
+			for(int i = 0; i < 100; i++){
+				TestEntry test = new TestEntry();
+				test.setReportName("async report");
+				test.setName("test"+i);
+				test.setStatus("pass");
+				PublishFuture future = connector.updateTestAsync(test);
+				future.addListener(new PublishListener() {
+					public void onSuccess(PublishResult result) {
+						latch.countDown();
+					}
+					public void onFailure(Throwable cause) {
+					}
+				});
+				futures.add(future);
+			}
+			assertTrue(connector.awaitPublished(10, TimeUnit.SECONDS));
+			assertTrue(latch.await(10, TimeUnit.SECONDS));
+			for(PublishFuture future : futures){
+				assertTrue(future.isDone());
+			}
+		}finally{
+			connector.endConnection();
+		}
+	}
+	
+	@Test
+	public void testConcurrentHelperCallsInVirtualThreadsMode() throws Exception {
+		Connector.getInstance().setVirtualThreads(true);
+		try {
+			final int threads = 32;
+			final CountDownLatch done = new CountDownLatch(threads);
+			final AtomicInteger failures = new AtomicInteger();
+			for(int i = 0; i < threads; i++){
+				final String name = "test"+i;
+				new Thread(new Runnable() {
+					public void run() {
+						try {
+							ConnectorHelper.createTest(null, null, null, "virtual report", name, null, new Date(), null, null, null, null, null, null);
+							ConnectorHelper.updateTest(null, null, null, null, "virtual report", name, null, null, new Date(), "pass", null, null, null, null, false);
+						} catch (Exception e) {
+							failures.incrementAndGet();
+						}finally{
+							done.countDown();
+						}
+					}
+				}).start();
+			}
+			assertTrue(done.await(30, TimeUnit.SECONDS));
+			assertEquals(0, failures.get());
+		}finally{
+			Connector.getInstance().setVirtualThreads(false);
+		}
+	}
+	
+	@Test
+	public void testSubscriberHonoursDemand() throws Exception {
+		Connector connector = Connector.getInstance();
+		connector.beginConnection();
+		try {
+			final int total = 1000;
+			final PublishingSubscriber<TestEntry> subscriber = connector.updateTestSubscriber();
+			final AtomicLong requested = new AtomicLong();
+			final AtomicLong sent = new AtomicLong();
+			subscriber.onSubscribe(new Subscription() {
+				public void request(long n) {
+					requested.addAndGet(n);
+				}
+				public void cancel() {
+				}
+			});
+			//Emit only what has been requested.
+			long deadline = System.currentTimeMillis() + 10000;
+			while(sent.get() < total && System.currentTimeMillis() < deadline){
+				if(sent.get() < requested.get()){
+					TestEntry test = new TestEntry();
+					test.setReportName("flow report");
+					test.setName("test"+sent.incrementAndGet());
+					subscriber.onNext(test);
+				}else{
+					Thread.sleep(1);
+				}
+			}
+			subscriber.onComplete();
+			
+			assertEquals(total, sent.get());
+			assertTrue(connector.awaitPublished(10, TimeUnit.SECONDS));
+			assertNull(subscriber.getFailure());
+		}finally{
+			connector.endConnection();
+		}
+	}
+	
+	@Test
+	public void testSubscriberDoesNotRequestFromPublisherThread() throws Exception {
+		Connector connector = Connector.getInstance();
+		connector.beginConnection();
+		try {
+			final int total = 1000;
+			final PublishingSubscriber<TestEntry> subscriber = connector.updateTestSubscriber();
+			final AtomicLong sent = new AtomicLong();
+			final AtomicInteger publisherThreads = new AtomicInteger();
+			//Synchronous upstream: entries are emitted from the thread requesting them.
+			subscriber.onSubscribe(new Subscription() {
+				public void request(long n) {
+					if(Thread.currentThread().getName().startsWith("batam-publisher-")){
+						publisherThreads.incrementAndGet();
+					}
+					for(long i = 0; i < n && sent.get() < total; i++){
+						TestEntry test = new TestEntry();
+						test.setReportName("synchronous report");
+						test.setName("test"+sent.incrementAndGet());
+						subscriber.onNext(test);
+					}
+				}
+				public void cancel() {
+				}
+			});
+			long deadline = System.currentTimeMillis() + 10000;
+			while(sent.get() < total && System.currentTimeMillis() < deadline){
+				Thread.sleep(1);
+			}
+			subscriber.onComplete();
+			
+			assertEquals(total, sent.get());
+			assertEquals(0, publisherThreads.get());
+			assertTrue(connector.awaitPublished(10, TimeUnit.SECONDS));
+			assertNull(subscriber.getFailure());
+		}finally{
+			connector.endConnection();
+		}
+	}
+	
+	@Test
+	public void testFlushPendingDropsTestMessagesFirst() throws Exception {
+		Connector connector = Connector.getInstance();
+		connector.beginConnection();
+		final PrintStream out = System.out;
+		try {
+			BuildEntry build = new BuildEntry();
+			build.setName("shutdown build");
+			final CountDownLatch blocked = new CountDownLatch(1);
+			//Messages are printed by the publisher thread, block it so that following messages stay queued.
+			System.setOut(new PrintStream(out) {
+				@Override
+				public void println(String x) {
+					if(Thread.currentThread().getName().startsWith("batam-publisher-")){
+						try {
+							blocked.await(10, TimeUnit.SECONDS);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+					super.println(x);
+				}
+			});
+			connector.createBuildAsync(build);
+			List<PublishFuture> tests = new ArrayList<PublishFuture>();
+			for(int i = 0; i < 10; i++){
+				TestEntry test = new TestEntry();
+				test.setReportName("shutdown report");
+				test.setName("test"+i);
+				tests.add(connector.createTestAsync(test));
+			}
+			build.setStatus("completed");
+			PublishFuture update = connector.updateBuildAsync(build);
+			
+			//Unblock the publisher once test messages are being dropped (after 3/4 of the budget).
+			new Thread(new Runnable() {
+				public void run() {
+					try {
+						Thread.sleep(1700);
+					} catch (InterruptedException e) {
+						return;
+					}
+					blocked.countDown();
+				}
+			}).start();
+			connector.flushPending(2, TimeUnit.SECONDS);
+			
+			assertEquals("update_build", update.get(1, TimeUnit.SECONDS).getAction());
+			for(PublishFuture test : tests){
+				assertTrue(test.isDone());
+				try {
+					test.get();
+					fail("Test message should have been dropped.");
+				} catch (ExecutionException e) {
+					assertTrue(e.getCause().getMessage().contains("dropped"));
+				}
+			}
+		} finally {
+			System.setOut(out);
+			connector.endConnection();
+		}
+	}
+	
+	@Test
+	public void testSubmitRacingClose() throws Exception {
+		final Connector connector = Connector.getInstance("async-close");
+		connector.beginConnection();
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new ByteArrayOutputStream()));
+		final List<PublishFuture> futures = Collections.synchronizedList(new ArrayList<PublishFuture>());
+		try {
+			int threads = 4;
+			final CountDownLatch done = new CountDownLatch(threads);
+			for(int i = 0; i < threads; i++){
+				new Thread(new Runnable() {
+					public void run() {
+						try {
+							for(int j = 0; j < 500; j++){
+								TestEntry test = new TestEntry();
+								test.setReportName("close report");
+								test.setName("test"+j);
+								try {
+									futures.add(connector.createTestAsync(test));
+								} catch (IOException e) {
+									//Publisher closed in between.
+								}
+							}
+						}finally{
+							done.countDown();
+						}
+					}
+				}).start();
+			}
+			//Close publishers while messages are being submitted.
+			while(!done.await(1, TimeUnit.MILLISECONDS)){
+				connector.flushPending(1, TimeUnit.SECONDS);
+			}
+		} finally {
+			connector.endConnection();
+			System.setOut(out);
+			Connector.removeInstance("async-close");
+		}
+		synchronized(futures){
+			for(PublishFuture future : futures){
+				try {
+					future.get(5, TimeUnit.SECONDS);
+				} catch (ExecutionException e) {
+					//Dropped while closing, but completed.
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testRoutingHeaders() throws Exception {
+		Connector connector = Connector.getInstance();
+		connector.beginConnection();
+		try {
+			TestEntry test = new TestEntry();
+			test.setBuildName("headers build");
+			test.setReportId("42");
+			test.setName("headers test");
+			Map<String, Object> headers = connector.createTestAsync(test).get(10, TimeUnit.SECONDS).getHeaders();
+			assertEquals("create_test", headers.get("action"));
+			assertEquals("headers build", headers.get("build_name"));
+			assertEquals("42", headers.get("report_id"));
+			assertEquals(1, headers.get("entry_count"));
+			assertEquals("json", headers.get("encoding"));
+			assertTrue(!headers.containsKey("build_id"));
+		} finally {
+			connector.endConnection();
+		}
+	}
+}
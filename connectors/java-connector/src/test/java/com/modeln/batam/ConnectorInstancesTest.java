@@ -0,0 +1,163 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.modeln.batam.connector.BuildSession;
+import com.modeln.batam.connector.Connector;
+import com.modeln.batam.connector.exception.InvalidArgumentException;
+import com.modeln.batam.connector.wrapper.BuildEntry;
+
+public class ConnectorInstancesTest {
+
+	@Test
+	public void testNamedInstances() {
+		assertSame(Connector.getInstance(), Connector.getInstance(Connector.DEFAULT_INSTANCE));
+		Connector first = Connector.getInstance("build-1");
+		assertSame(first, Connector.getInstance("build-1"));
+		assertNotSame(first, Connector.getInstance("build-2"));
+		assertEquals("build-1", first.getName());
+		
+		assertSame(first, Connector.removeInstance("build-1"));
+		assertNotSame(first, Connector.getInstance("build-1"));
+		Connector.removeInstance("build-1");
+		Connector.removeInstance("build-2");
+	}
+	
+	@Test
+	public void testInstancesPublishIndependently() throws Exception {
+		Connector first = Connector.getInstance("build-1");
+		Connector second = Connector.getInstance("build-2");
+		first.beginConnection(null, null, null, null, null, "queue-1", "off");
+		second.beginConnection(null, null, null, null, null, "queue-2", "off");
+		try {
+			BuildEntry build = new BuildEntry();
+			build.setName("build-1");
+			first.createBuildAsync(build);
+			
+			//Ending one instance doesn't affect the other one.
+			first.endConnection();
+			build.setName("build-2");
+			assertEquals("create_build", second.createBuildAsync(build).get(10, TimeUnit.SECONDS).getAction());
+			assertTrue(second.awaitPublished(10, TimeUnit.SECONDS));
+		} finally {
+			second.endConnection();
+			Connector.removeInstance("build-1");
+			Connector.removeInstance("build-2");
+		}
+	}
+	
+	@Test
+	public void testWarmUp() throws Exception {
+		Connector connector = Connector.getInstance("warm-up");
+		connector.warmUp();
+		try {
+			BuildEntry build = new BuildEntry();
+			build.setName("warm-up build");
+			//Published right away, buffered if the connection isn't ready yet.
+			assertTrue(connector.createBuild(build).contains("warm-up build"));
+			build.setStatus("completed");
+			assertTrue(connector.updateBuild(build).contains("completed"));
+			assertTrue(connector.awaitPublished(10, TimeUnit.SECONDS));
+		} finally {
+			connector.endConnection();
+			Connector.removeInstance("warm-up");
+		}
+	}
+	
+	@Test
+	public void testDebouncedRunAnalysis() throws Exception {
+		Connector connector = Connector.getInstance("debounce");
+		connector.beginConnection();
+		PrintStream out = System.out;
+		ByteArrayOutputStream published = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(published, true));
+		try {
+			connector.setAnalysisQuietPeriod(300);
+			connector.runAnalysis(null, "stage build", false);
+			connector.runAnalysis(null, "stage build", true);
+			connector.runAnalysis(null, "stage build", false);
+			connector.runAnalysis(null, "other build", false);
+			assertEquals("", published.toString());
+			
+			Thread.sleep(1000);
+			assertTrue(connector.awaitPublished(10, TimeUnit.SECONDS));
+			String[] messages = published.toString().trim().split("\\n");
+			assertEquals(2, messages.length);
+			for(String message : messages){
+				assertTrue(message.contains("run_analysis"));
+				assertEquals(message.contains("stage build"), message.contains("\"override\":true"));
+			}
+		} finally {
+			System.setOut(out);
+			connector.endConnection();
+			Connector.removeInstance("debounce");
+		}
+	}
+	
+	@Test
+	public void testPendingRunAnalysisPublishedOnEnd() throws Exception {
+		Connector connector = Connector.getInstance("debounce-end");
+		connector.beginConnection();
+		PrintStream out = System.out;
+		ByteArrayOutputStream published = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(published, true));
+		try {
+			connector.setAnalysisQuietPeriod(60000);
+			BuildSession session = connector.openBuildSession(null, "session build");
+			session.runAnalysis(false);
+			session.runAnalysis(true);
+			session.close();
+			assertEquals("", published.toString());
+			
+			connector.endConnection();
+			String[] messages = published.toString().trim().split("\\n");
+			assertEquals(1, messages.length);
+			assertTrue(messages[0].contains("run_analysis"));
+			assertTrue(messages[0].contains("\"override\":true"));
+			for(Thread thread : Thread.getAllStackTraces().keySet()){
+				assertFalse(thread.getName().startsWith("batam-analysis-debounce-end-"));
+			}
+		} finally {
+			System.setOut(out);
+			Connector.removeInstance("debounce-end");
+		}
+	}
+	
+	@Test(expected = InvalidArgumentException.class)
+	public void testInstanceNameRequired() {
+		Connector.getInstance(null);
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.junit.Test;
+
+import com.modeln.batam.connector.Connector;
+import com.modeln.batam.connector.wrapper.TestEntry;
+
+public class ConnectorLogAttachmentTest {
+	
+	private static String log(int length) {
+		StringBuilder log = new StringBuilder(length);
+		for(int i = 0; i < length; i++){
+			log.append((char)('a' + i % 26));
+		}
+		return log.toString();
+	}
+	
+	private static String attach(String log, int head, int tail, int expectedChunks) throws Exception {
+		PrintStream out = System.out;
+		ByteArrayOutputStream published = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(published, true, "UTF-8"));
+		try {
+			Connector connector = Connector.getInstance();
+			connector.beginConnection();
+			TestEntry test = new TestEntry(null, null, "log build", null, "suite", "test1", null, null, null, null, null, null, null, null, false);
+			assertEquals(expectedChunks, connector.attachTestLog(test, new ByteArrayInputStream(log.getBytes("UTF-8")), head, tail));
+			connector.endConnection();
+		} finally {
+			System.setOut(out);
+		}
+		
+		StringBuilder content = new StringBuilder();
+		int index = 0;
+		for(String line : published.toString("UTF-8").split("\n")){
+			if(!line.contains("append_test_log")){
+				continue;
+			}
+			JSONObject data = (JSONObject)((JSONObject)JSONValue.parse(line)).get("data");
+			assertEquals("test1", data.get("name"));
+			assertEquals("suite", data.get("report_name"));
+			assertEquals((long)index++, ((Number)data.get("index")).longValue());
+			content.append(data.get("content"));
+		}
+		assertEquals(expectedChunks, index);
+		return content.toString();
+	}
+
+	@Test
+	public void testSmallLogIsPublishedInFull() throws Exception {
+		String log = log(100000) + "\u00e9";
+		assertEquals(log, attach(log, 1048576, 1048576, 4));
+	}
+	
+	@Test
+	public void testHeadAndTailAreRetained() throws Exception {
+		String log = log(1000000);
+		String content = attach(log, 40000, 50000, 2 + 1 + 2);
+		
+		String marker = "\n... 910000 characters skipped ...\n";
+		assertEquals(log.substring(0, 40000) + marker + log.substring(950000), content);
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.modeln.batam.connector.Connector;
+import com.modeln.batam.connector.wrapper.ReportEntry;
+import com.modeln.batam.connector.wrapper.TestEntry;
+
+public class ConnectorResultCacheTest {
+	
+	private static TestEntry test(String name, String status, String log) {
+		return new TestEntry(null, null, null, null, "suite", name, null, new Date(), new Date(), status, null, null, null, log, false);
+	}
+	
+	private static Connector rerun(File cache) throws Exception {
+		Connector.removeInstance("rerun");
+		Connector connector = Connector.getInstance("rerun");
+		connector.setResultCache(cache);
+		connector.beginConnection();
+		connector.createReport(new ReportEntry(null, "suite", null, "rerun build", null, new Date(), null, null, null));
+		return connector;
+	}
+
+	@Test
+	public void testUnchangedResultsAreSkipped() throws Exception {
+		File cache = new File(System.getProperty("java.io.tmpdir"), "batam-results-" + System.nanoTime());
+		Connector connector = rerun(cache);
+		try {
+			assertNotNull(connector.createTest(test("test1", "pass", null)));
+			assertNotNull(connector.createTest(test("test2", "fail", "assertion failed")));
+			connector.endConnection();
+			
+			//Stage rerun, possibly in another JVM.
+			connector = rerun(cache);
+			assertNull(connector.createTest(test("test1", null, null)));
+			assertNull(connector.updateTest(test("test1", "pass", null)));
+			assertNotNull(connector.updateTest(test("test2", "fail", "another assertion failed")));
+			assertNotNull(connector.createTest(test("test3", "pass", null)));
+			
+			PrintStream out = System.out;
+			ByteArrayOutputStream published = new ByteArrayOutputStream();
+			System.setOut(new PrintStream(published, true));
+			try {
+				connector.updateReport(new ReportEntry(null, "suite", null, "rerun build", null, null, new Date(), "completed", null));
+			} finally {
+				System.setOut(out);
+			}
+			String[] messages = published.toString().trim().split("\\n");
+			assertEquals(2, messages.length);
+			assertTrue(messages[0].contains("unchanged_tests"));
+			assertTrue(messages[0].contains("[\"test1\"]"));
+			assertTrue(messages[1].contains("update_report"));
+		} finally {
+			connector.endConnection();
+			Connector.removeInstance("rerun");
+			for(File file : cache.listFiles()){
+				file.delete();
+			}
+			cache.delete();
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+
+import org.junit.Test;
+
+import com.modeln.batam.connector.Connector;
+import com.modeln.batam.connector.DirectoryWatcher;
+
+public class DirectoryWatcherTest {
+
+	@Test
+	public void testWatchDirectory() throws Exception {
+		File root = new File(System.getProperty("java.io.tmpdir"), "batam-watch-" + System.nanoTime());
+		File nested = new File(root, "job/results");
+		assertTrue(nested.mkdirs());
+		
+		DirectoryWatcher watcher = new DirectoryWatcher(Connector.getInstance(), root, null, 2);
+		File lines = new File(nested, "tests.ndjson");
+		append(lines, "{\"action\":\"create_build\",\"data\":{\"name\":\"watched build\"}}\n"
+				+ "{\"action\":\"update_test\",\"data\":{\"report_name\":\"watched report\",\"name\":\"test1\",\"status\":\"pass\"}}\n"
+				+ "{\"action\":\"update_test\",\"data\":{\"report_name\":\"watched report\",");
+		assertEquals(1, watcher.poll());
+		assertEquals(2, watcher.getRecords());
+		
+		//The partial line is published once complete.
+		append(lines, "\"name\":\"test2\",\"status\":\"pass\"}}\n");
+		File document = new File(root, "report.json");
+		append(document, "[{\"action\":\"update_report\",\"data\":{\"name\":\"watched report\",\"status\":\"completed\"}},\n"
+				+ "{\"action\":\"run_analysis\",\"data\":{\"name\":\"watched build\"}}]");
+		assertEquals(1, watcher.poll());
+		assertEquals(3, watcher.getRecords());
+		
+		//Documents are published once they did not change between two polls.
+		assertEquals(1, watcher.poll());
+		assertEquals(5, watcher.getRecords());
+		assertEquals(0, watcher.poll());
+		assertEquals(0, watcher.getFailed());
+		
+		//A restarted watcher resumes from the checkpoint.
+		DirectoryWatcher restarted = new DirectoryWatcher(Connector.getInstance(), root, null, 2);
+		append(lines, "{\"action\":\"update_test\",\"data\":{\"report_name\":\"watched report\",\"name\":\"test3\",\"status\":\"pass\"}}\n");
+		assertEquals(1, restarted.poll());
+		assertEquals(0, restarted.poll());
+		assertEquals(1, restarted.getRecords());
+		
+		delete(root);
+	}
+	
+	@Test
+	public void testRetryFailedPublish() throws Exception {
+		File root = new File(System.getProperty("java.io.tmpdir"), "batam-watch-" + System.nanoTime());
+		assertTrue(root.mkdirs());
+		append(new File(root, "tests.ndjson"), "{\"action\":\"update_test\",\"data\":{\"report_name\":\"watched report\",\"name\":\"test1\",\"status\":\"pass\"}}\n");
+		
+		//Nothing listens on the relay port, records can't be published.
+		ServerSocket socket = new ServerSocket(0);
+		int port = socket.getLocalPort();
+		socket.close();
+		Connector connector = Connector.getInstance("watch-retry");
+		connector.setRelay(String.valueOf(port));
+		try {
+			DirectoryWatcher watcher = new DirectoryWatcher(connector, root, null, 1);
+			try {
+				watcher.poll();
+				fail("Records should not be published without a connection.");
+			} catch (IOException e) {
+				//Expected.
+			}
+			assertEquals(0, watcher.getRecords());
+			
+			connector.setRelay("");
+			assertEquals(1, watcher.poll());
+			assertEquals(1, watcher.getRecords());
+			assertEquals(0, watcher.poll());
+		}finally{
+			Connector.removeInstance("watch-retry");
+			delete(root);
+		}
+	}
+	
+	@Test
+	public void testMalformedDocument() throws Exception {
+		File root = new File(System.getProperty("java.io.tmpdir"), "batam-watch-" + System.nanoTime());
+		assertTrue(root.mkdirs());
+		append(new File(root, "broken.json"), "{\"action\":\"create_build\",\"data\":{\"name\":");
+		append(new File(root, "ignored.json.part"), "{");
+		
+		DirectoryWatcher watcher = new DirectoryWatcher(Connector.getInstance(), root, null, 1);
+		assertEquals(0, watcher.poll());
+		assertEquals(1, watcher.poll());
+		assertEquals(1, watcher.getFailed());
+		//Not read again until it changes.
+		assertEquals(0, watcher.poll());
+		
+		delete(root);
+	}
+	
+	@Test
+	public void testInvalidRecordsAreSkipped() throws Exception {
+		File root = new File(System.getProperty("java.io.tmpdir"), "batam-watch-" + System.nanoTime());
+		assertTrue(root.mkdirs());
+		File older = new File(root, "a.json");
+		append(older, "[{\"action\":\"create_test\",\"data\":{\"report_name\":\"watched report\",\"name\":\"test1\",\"start_date\":\"2014-01-01\"}},\n"
+				+ "{\"data\":5,\"action\":\"create_build\"},\n"
+				+ "{\"action\":\"create_build\",\"data\":{\"name\":\"watched build\"}}]");
+		assertTrue(older.setLastModified(System.currentTimeMillis() - 60000));
+		append(new File(root, "b.json"), "{\"action\":\"update_build\",\"data\":{\"name\":\"watched build\"}}");
+		
+		DirectoryWatcher watcher = new DirectoryWatcher(Connector.getInstance(), root, null, 1);
+		assertEquals(0, watcher.poll());
+		//Records of the wrong type are skipped, the following ones and the newer file are still published.
+		assertEquals(2, watcher.poll());
+		assertEquals(4, watcher.getRecords());
+		assertEquals(2, watcher.getFailed());
+		assertEquals(0, watcher.poll());
+		
+		delete(root);
+	}
+	
+	private static void append(File file, String content) throws IOException {
+		OutputStream out = new FileOutputStream(file, true);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		}finally{
+			out.close();
+		}
+	}
+	
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if(children != null){
+			for(File child : children){
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,78 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.modeln.batam.connector.wrapper.BuildEntry;
+import com.modeln.batam.connector.wrapper.Commit;
+import com.modeln.batam.connector.wrapper.Pair;
+import com.modeln.batam.connector.wrapper.Step;
+
+public class ImmutableWrapperTest {
+
+	@Test
+	public void testImmutableCopiesSerializeOnce() {
+		Pair pair = new Pair("branch", "master");
+		Step step = new Step(1, "compile", null, new Date(1000), new Date(2000), null, null, null, "pass", null, false, null, null, 
+				Collections.singletonMap("module", "connector"));
+		Commit commit = new Commit(null, "build", "647df1d", "https://github.com/commit/647df1d", "dev@company.com", new Date(3000));
+		
+		Pair immutablePair = pair.toImmutable();
+		Step immutableStep = step.toImmutable();
+		Commit immutableCommit = commit.toImmutable();
+		assertEquals(pair.toJSONString(), immutablePair.toJSONString());
+		assertEquals(step.toJSONString(), immutableStep.toJSONString());
+		assertEquals(commit.toJSONString(), immutableCommit.toJSONString());
+		assertSame(immutableStep.toJSONString(), immutableStep.toJSONString());
+		assertSame(immutableStep, immutableStep.toImmutable());
+		
+		//Later changes of the source objects don't leak into the immutable copies.
+		step.getStartDate().setTime(0);
+		immutableStep.getEndDate().setTime(0);
+		assertEquals(new Date(1000), immutableStep.getStartDate());
+		assertEquals(immutableStep.toJSONString(), new Step(1, "compile", null, new Date(1000), new Date(2000), null, null, null, "pass", null, false, null, null, 
+				Collections.singletonMap("module", "connector")).toJSONString());
+		
+		BuildEntry build = new BuildEntry(null, "build", null, null, null, null, Arrays.asList(immutablePair), null, null, 
+				Arrays.asList(immutableStep), Arrays.asList(immutableCommit), false);
+		String json = build.toJSONString();
+		assertTrue(json.contains("\"steps\":[" + immutableStep.toJSONString() + "]"));
+		assertTrue(json.contains("\"criterias\":[" + immutablePair.toJSONString() + "]"));
+		assertTrue(json.contains("\"commits\":[" + immutableCommit.toJSONString() + "]"));
+	}
+	
+	@Test(expected = UnsupportedOperationException.class)
+	public void testImmutableStepCannotBeModified() {
+		new Step("compile", null, null).toImmutable().setStatus("fail");
+	}
+}
@@ -0,0 +1,134 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Iterator;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+import com.modeln.batam.connector.util.JsonReader;
+import com.modeln.batam.connector.wrapper.TestEntry;
+
+/**
+ * Compare the json-simple tree parser with the streaming {@link JsonReader JsonReader} on an array of tests, 
+ * the way the command line binds its input files. Not a unit test, run it manually:
+ * 
+ * <code>java -cp target/classes:target/test-classes:<json-simple jar> com.modeln.batam.JsonReaderBenchmark [tests] [rounds]</code>
+ */
+public class JsonReaderBenchmark {
+	
+	public static void main(String[] args) throws Exception {
+		int tests = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		
+		File file = File.createTempFile("batam-benchmark-", ".json");
+		file.deleteOnExit();
+		write(file, tests);
+		System.out.println(tests + " tests, " + (file.length() >> 20) + " MB");
+		
+		for(int round = 0; round < rounds; round++){
+			long start = System.nanoTime();
+			long tree = tree(file);
+			long treeMs = (System.nanoTime() - start) / 1000000;
+			
+			start = System.nanoTime();
+			long streamed = streamed(file);
+			long streamedMs = (System.nanoTime() - start) / 1000000;
+			
+			if(tree != streamed){
+				throw new IllegalStateException("Parsers disagree: " + tree + " != " + streamed);
+			}
+			System.out.println("round " + round + ": JSONParser+fromJSON " + treeMs + " ms, JsonReader+read " + streamedMs + " ms, x" 
+					+ (streamedMs == 0 ? "-" : String.valueOf(treeMs / (double)streamedMs)));
+		}
+	}
+	
+	private static void write(File file, int tests) throws IOException {
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try {
+			TestEntry.Builder test = TestEntry.builder();
+			out.write('[');
+			for(int i = 0; i < tests; i++){
+				if(i > 0){
+					out.write(',');
+				}
+				test.reset().buildName("nightly").reportName("suite").name("com.company.module.FeatureTest.test" + i)
+					.startDate(1400000000000L + i).endDate(1400000000100L + i).durationNs(100000000L).status(i % 50 == 0 ? "fail" : "pass")
+					.tag("integration").criteria("os", "linux").criteria("jdk", "1.6")
+					.log(i % 50 == 0 ? "java.lang.AssertionError: expected:<1> but was:<2>\n\tat com.company.module.FeatureTest.test" + i : null);
+				test.addStep().name("setup").startDate(1400000000000L + i).endDate(1400000000010L + i).status("pass");
+				test.addStep().name("run").startDate(1400000000010L + i).endDate(1400000000100L + i).status("pass");
+				out.write(test.build().toJSONString());
+			}
+			out.write(']');
+		} finally {
+			out.close();
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static long tree(File file) throws Exception {
+		Reader in = new InputStreamReader(new FileInputStream(file), "UTF-8");
+		try {
+			long checksum = 0;
+			JSONArray array = (JSONArray)new JSONParser().parse(in);
+			for(Iterator<JSONObject> it = array.iterator(); it.hasNext();){
+				checksum += checksum(TestEntry.fromJSON(it.next()));
+			}
+			return checksum;
+		} finally {
+			in.close();
+		}
+	}
+	
+	private static long streamed(File file) throws IOException {
+		JsonReader reader = new JsonReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			long checksum = 0;
+			reader.beginArray();
+			while(reader.hasNext()){
+				checksum += checksum(TestEntry.read(reader));
+			}
+			reader.endArray();
+			return checksum;
+		} finally {
+			reader.close();
+		}
+	}
+	
+	private static long checksum(TestEntry test) {
+		return test.getName().length() + test.getEndTime() + test.getSteps().size() + test.getCriterias().size();
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Date;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.Test;
+
+import com.modeln.batam.connector.util.JsonReader;
+import com.modeln.batam.connector.wrapper.BuildEntry;
+import com.modeln.batam.connector.wrapper.Commit;
+import com.modeln.batam.connector.wrapper.ReportEntry;
+import com.modeln.batam.connector.wrapper.Step;
+import com.modeln.batam.connector.wrapper.TestEntry;
+
+public class JsonReaderTest {
+
+	@Test
+	public void testReadMatchesFromJSON() throws Exception {
+		Step step = Step.builder().name("compile").startDate(1000).endDate(2000).status("pass").customAttribute("module", "connector").build();
+		BuildEntry build = BuildEntry.builder().id("42").name("build").startDate(3000).status("completed").description("nightly")
+				.criteria("branch", "master").info("jdk", "1.6").report("unit", "pass").step(step)
+				.commit(new Commit(null, "build", "647df1d", "https://github.com/commit/647df1d", "dev@company.com", new Date(4000)))
+				.override(true).customAttribute("team", "core").build();
+		String json = build.toJSONString();
+		assertEquals(BuildEntry.fromJSON(parse(json)).toJSONString(), BuildEntry.read(reader(json)).toJSONString());
+		
+		TestEntry test = TestEntry.builder().reportName("suite").name("Test \"quoted\" \\ path\n\ttabbed \u00e9\ud83d\ude00")
+				.startDate(5000).endDate(6000).durationNs(1234567L).status("fail").tag("slow").tag("db")
+				.criteria("os", "linux").log("line 1\r\nline 2\u0001").build();
+		json = test.toJSONString();
+		TestEntry read = TestEntry.read(reader(json));
+		assertEquals(TestEntry.fromJSON(parse(json)).toJSONString(), read.toJSONString());
+		assertEquals(1234567L, read.getDurationNs());
+		assertEquals(test.getName(), read.getName());
+		
+		ReportEntry report = new ReportEntry("7", "suite", null, "build", null, new Date(7000), null, "running", null);
+		json = report.toJSONString();
+		assertEquals(ReportEntry.fromJSON(parse(json)).toJSONString(), ReportEntry.read(reader(json)).toJSONString());
+	}
+	
+	@Test
+	public void testReadSkipsUnknownFields() throws IOException {
+		JsonReader reader = reader(" [ {\"name\":\"first\", \"extra\": {\"a\": [1, 2.5e3, true, null, {\"b\": \"}\"}]}, \"status\":null},"
+				+ "{\"unknown\": [[]], \"name\":\"second\", \"order\": 3} ] ");
+		reader.beginArray();
+		Step first = Step.read(reader);
+		Step second = Step.read(reader);
+		assertFalse(reader.hasNext());
+		reader.endArray();
+		assertEquals(JsonReader.Token.END_DOCUMENT, reader.peek());
+		
+		assertEquals("first", first.getName());
+		assertNull(first.getStatus());
+		assertEquals("second", second.getName());
+		assertEquals(Integer.valueOf(3), second.getOrder());
+		assertEquals(TestEntry.NO_TIME, second.getStartTime());
+	}
+	
+	@Test
+	public void testCommitDates() throws IOException {
+		Commit git = Commit.read(reader("{\"commit_id\":\"647df1d\", \"date_committed\":\"Thu Jan 1 00:00:05 1970 +0000\"}"));
+		assertEquals(5000, git.getDateCommitted().getTime());
+		Commit millis = Commit.read(reader("{\"commit_id\":\"647df1d\", \"date_committed\":\"5000\"}"));
+		assertEquals(5000, millis.getDateCommitted().getTime());
+	}
+	
+	@Test
+	public void testMalformedInput() {
+		try {
+			TestEntry.read(reader("{\"name\": \"unterminated"));
+			fail("Unterminated strings should be rejected.");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().length() > 0);
+		}
+	}
+	
+	private static JsonReader reader(String json) {
+		return new JsonReader(new StringReader(json));
+	}
+	
+	private static JSONObject parse(String json) throws Exception {
+		return (JSONObject)new JSONParser().parse(json);
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.modeln.batam.connector.Connector;
+import com.modeln.batam.connector.wrapper.BuildEntry;
+import com.modeln.batam.connector.wrapper.ReportEntry;
+import com.modeln.batam.connector.wrapper.TestEntry;
+
+public class OverheadBudgetTest {
+	
+	private static TestEntry test(String name, long duration, String log) {
+		return new TestEntry(null, null, null, null, "suite", name, null, new Date(0), new Date(duration), "pass", null, null, null, log, false);
+	}
+
+	@Test
+	public void testDegradeOverBudget() throws Exception {
+		Connector connector = Connector.getInstance("overhead");
+		connector.beginConnection();
+		try {
+			connector.createReport(new ReportEntry(null, "suite", null, "overhead build", null, new Date(), null, null, null));
+			connector.setOverheadBudget(0);
+			assertTrue(connector.createTest(test("test1", 2000, "first log")).contains("first log"));
+			assertFalse(connector.getOverheadBudget().isDegraded());
+			assertTrue(connector.getOverheadBudget().getOverhead() >= 0);
+			
+			//Any publish exceeds a budget this small.
+			connector.setOverheadBudget(0.00001);
+			connector.createTest(test("test2", 1, null));
+			assertTrue(connector.getOverheadBudget().isDegraded());
+			TestEntry passed = test("test3", 1, "dropped log");
+			assertFalse(connector.createTest(passed).contains("dropped log"));
+			assertEquals("dropped log", passed.getLog());
+			
+			BuildEntry build = new BuildEntry();
+			build.setName("overhead build");
+			String message = connector.updateBuild(build);
+			assertTrue(message.contains("batam.overhead.percent"));
+			assertTrue(message.contains("\"batam.overhead.degraded\""));
+			//The overhead is added to the message only.
+			assertNull(build.getInfos());
+		} finally {
+			connector.endConnection();
+			Connector.removeInstance("overhead");
+		}
+	}
+}
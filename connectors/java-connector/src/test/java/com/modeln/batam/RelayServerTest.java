@@ -0,0 +1,93 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.modeln.batam.connector.Connector;
+import com.modeln.batam.connector.RelayServer;
+import com.modeln.batam.connector.exception.InvalidArgumentException;
+import com.modeln.batam.connector.wrapper.BuildEntry;
+import com.modeln.batam.connector.wrapper.TestEntry;
+
+public class RelayServerTest {
+
+	@Test
+	public void testRelayClients() throws Exception {
+		RelayServer relay = new RelayServer(Connector.getInstance("relay"), 0);
+		relay.start();
+		try {
+			Connector[] clients = new Connector[3];
+			for(int i = 0; i < clients.length; i++){
+				clients[i] = Connector.getInstance("relay-client-" + i);
+				clients[i].setRelay(String.valueOf(relay.getPort()));
+				clients[i].beginConnection();
+			}
+			for(Connector client : clients){
+				BuildEntry build = new BuildEntry();
+				build.setName("relayed build \u00e9");
+				client.createBuild(build);
+				for(int i = 0; i < 50; i++){
+					TestEntry test = new TestEntry();
+					test.setReportName("relayed report");
+					test.setName("test" + i);
+					test.setStatus("pass");
+					client.updateTestAsync(test);
+				}
+			}
+			for(Connector client : clients){
+				//Waits until the relay confirmed every message of the client.
+				client.endConnection();
+			}
+			assertEquals(153, relay.getRelayed());
+			assertEquals(0, relay.getFailed());
+			assertEquals(true, Connector.getInstance("relay").awaitPublished(10, TimeUnit.SECONDS));
+		}finally{
+			relay.close();
+			Connector.removeInstance("relay");
+			for(int i = 0; i < 3; i++){
+				Connector.removeInstance("relay-client-" + i);
+			}
+		}
+	}
+	
+	@Test
+	public void testInvalidRelayAddress() throws Exception {
+		Connector client = Connector.getInstance("relay-client");
+		client.setRelay("localhost:relay");
+		try {
+			client.beginConnection();
+			fail("Relay address without port should be rejected.");
+		} catch (InvalidArgumentException e) {
+			//Expected.
+		}finally{
+			Connector.removeInstance("relay-client");
+		}
+	}
+}
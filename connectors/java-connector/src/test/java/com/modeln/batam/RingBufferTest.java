@@ -0,0 +1,119 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.modeln.batam.connector.util.RingBuffer;
+import com.modeln.batam.connector.util.RingBuffer.EventFactory;
+import com.modeln.batam.connector.util.WaitStrategy;
+
+public class RingBufferTest {
+	
+	private static class Event {
+		int producer;
+		long value;
+	}
+	
+	private final static EventFactory<Event> FACTORY = new EventFactory<Event>() {
+		public Event newInstance() {
+			return new Event();
+		}
+	};
+
+	@Test
+	public void testMultipleProducersSingleConsumer() throws InterruptedException {
+		for(WaitStrategy strategy : WaitStrategy.values()){
+			consume(strategy);
+		}
+	}
+	
+	private void consume(WaitStrategy strategy) throws InterruptedException {
+		final int producers = 4;
+		final int events = 20000;
+		final RingBuffer<Event> ring = new RingBuffer<Event>(64, FACTORY, strategy);
+		final CountDownLatch start = new CountDownLatch(1);
+		
+		for(int p = 0; p < producers; p++){
+			final int producer = p;
+			new Thread(new Runnable() {
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for(long i = 0; i < events; i++){
+						long sequence = ring.next();
+						Event event = ring.get(sequence);
+						event.producer = producer;
+						event.value = i;
+						ring.publish(sequence);
+					}
+				}
+			}).start();
+		}
+		start.countDown();
+		
+		long[] expected = new long[producers];
+		long next = 0;
+		long total = (long)producers * events;
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		while(next < total && System.nanoTime() < deadline){
+			long available = ring.waitFor(next, TimeUnit.MILLISECONDS.toNanos(10));
+			for(; next <= available; next++){
+				Event event = ring.get(next);
+				//Events of a producer are consumed in order.
+				assertEquals(expected[event.producer]++, event.value);
+			}
+			ring.release(next - 1);
+		}
+		assertEquals(strategy.name(), total, next);
+		assertTrue(!ring.hasPending());
+		assertEquals(64, ring.remainingCapacity());
+	}
+	
+	@Test
+	public void testReleaseWhenFull() {
+		RingBuffer<Event> ring = new RingBuffer<Event>(2, FACTORY, WaitStrategy.PARK);
+		ring.publish(ring.next());
+		ring.publish(ring.next());
+		assertEquals(0, ring.remainingCapacity());
+		assertEquals(1, ring.waitFor(0, 0));
+		ring.release(0);
+		assertEquals(1, ring.remainingCapacity());
+		assertEquals(2, ring.next());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testCapacityPowerOfTwo() {
+		new RingBuffer<Event>(10, FACTORY, WaitStrategy.PARK);
+	}
+}
@@ -0,0 +1,215 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.junit.Test;
+
+import com.modeln.batam.connector.BuildSession;
+import com.modeln.batam.connector.Connector;
+import com.modeln.batam.connector.ConnectorHelper;
+import com.modeln.batam.connector.ReportSession;
+import com.modeln.batam.connector.exception.InvalidArgumentException;
+import com.modeln.batam.connector.exception.NoConnectionFoundException;
+
+public class SessionTest {
+
+	@Test
+	public void testSessionReusesIdentity() throws IOException, ParseException {
+		String id = "session_"+System.currentTimeMillis();
+		BuildSession session = ConnectorHelper.openBuildSession(id, "build "+id);
+		try {
+			session.start();
+			ReportSession report = session.report("suite");
+			report.start();
+			report.test("test1").start();
+			String message = report.test("test1").pass();
+			
+			JSONObject data = (JSONObject)((JSONObject)new JSONParser().parse(message)).get("data");
+			assertEquals(id, data.get("build_id"));
+			assertEquals("build "+id, data.get("build_name"));
+			assertNull(data.get("report_id"));
+			assertEquals("suite", data.get("report_name"));
+			assertEquals("test1", data.get("name"));
+			assertEquals("pass", data.get("status"));
+			assertEquals(false, data.get("override"));
+			
+			report.end("completed");
+			session.end("completed");
+			session.runAnalysis(false);
+		}finally{
+			session.close();
+		}
+	}
+	
+	@Test
+	public void testSessionBatchSize() throws Exception {
+		Connector connector = Connector.getInstance("session-batch");
+		//Batches grow once the overhead budget is exceeded.
+		connector.setOverheadBudget(0);
+		connector.beginConnection();
+		BuildSession session = connector.openBuildSession(null, "build batch");
+		session.setBatchSize(2);
+		PrintStream out = System.out;
+		ByteArrayOutputStream published = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(published, true));
+		try {
+			ReportSession report = session.report("suite");
+			report.test("test0").start();
+			report.test("test0").pass();
+			//Tests finished without being started are created at once.
+			for(int i = 1; i < 6; i++){
+				report.test("test"+i).fail("log "+i);
+			}
+			//Batches of 2 messages have been published, the last one is still queued.
+			assertEquals(6, published.toString().trim().split("\\n").length);
+			session.close();
+		}finally{
+			System.setOut(out);
+			connector.endConnection();
+			Connector.removeInstance("session-batch");
+		}
+		String[] messages = published.toString().trim().split("\\n");
+		assertEquals(7, messages.length);
+		JSONParser parser = new JSONParser();
+		for(int i = 0; i < messages.length; i++){
+			JSONObject message = (JSONObject)parser.parse(messages[i]);
+			JSONObject data = (JSONObject)message.get("data");
+			assertEquals(i == 1 ? "update_test" : "create_test", message.get("action"));
+			if(i > 0){
+				assertEquals(i == 1 ? "pass" : "fail", data.get("status"));
+				assertNotNull(data.get("end_date"));
+			}
+		}
+	}
+	
+	@Test
+	public void testSessionRequeuesOnFailure() throws IOException {
+		Connector connector = Connector.getInstance("session-retry");
+		BuildSession session = connector.openBuildSession(null, "build retry");
+		session.setBatchSize(10);
+		ReportSession report = session.report("suite");
+		for(int i = 0; i < 3; i++){
+			report.test("test"+i).fail("log "+i);
+		}
+		PrintStream out = System.out;
+		ByteArrayOutputStream published = new ByteArrayOutputStream();
+		try {
+			try {
+				//No connection is established yet.
+				session.flush();
+				fail();
+			}catch(NoConnectionFoundException e){
+			}
+			
+			connector.beginConnection();
+			System.setOut(new PrintStream(published, true));
+			session.flush();
+			String[] messages = published.toString().trim().split("\\n");
+			assertEquals(3, messages.length);
+			for(int i = 0; i < 3; i++){
+				assertTrue(messages[i].contains("\"test"+i+"\""));
+			}
+		}finally{
+			System.setOut(out);
+			session.close();
+			connector.endConnection();
+			Connector.removeInstance("session-retry");
+		}
+	}
+	
+	@Test
+	public void testConcurrentFlushesKeepOrder() throws Exception {
+		Connector connector = Connector.getInstance("session-order");
+		connector.setOverheadBudget(0);
+		connector.beginConnection();
+		final BuildSession session = connector.openBuildSession(null, "build order");
+		session.setBatchSize(3);
+		final ReportSession report = session.report("suite");
+		final int total = 500;
+		PrintStream out = System.out;
+		ByteArrayOutputStream published = new ByteArrayOutputStream();
+		//Slow publishing down so that flushes overlap.
+		System.setOut(new PrintStream(published, true) {
+			@Override
+			public void println(String x) {
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				super.println(x);
+			}
+		});
+		try {
+			final AtomicBoolean done = new AtomicBoolean();
+			Thread flusher = new Thread(new Runnable() {
+				public void run() {
+					while(!done.get()){
+						try {
+							session.flush();
+						} catch (IOException e) {
+							return;
+						}
+					}
+				}
+			});
+			flusher.start();
+			for(int i = 0; i < total; i++){
+				report.test("test"+i).pass();
+			}
+			done.set(true);
+			flusher.join(10000);
+			session.close();
+			
+			String[] messages = published.toString().trim().split("\\n");
+			assertEquals(total, messages.length);
+			for(int i = 0; i < total; i++){
+				assertTrue(messages[i].contains("\"test"+i+"\""));
+			}
+		}finally{
+			System.setOut(out);
+			connector.endConnection();
+			Connector.removeInstance("session-order");
+		}
+	}
+	
+	@Test(expected = InvalidArgumentException.class)
+	public void testSessionRequiresIdentity() {
+		ConnectorHelper.openBuildSession(null, null);
+	}
+}
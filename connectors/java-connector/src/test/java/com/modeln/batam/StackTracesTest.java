@@ -0,0 +1,134 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import com.modeln.batam.connector.FailureLogs;
+import com.modeln.batam.connector.util.StackTraces;
+
+public class StackTracesTest {
+	
+	private static IllegalStateException connect() {
+		return new IllegalStateException("connection refused on port " + System.nanoTime());
+	}
+	
+	private static IllegalStateException openSession() {
+		return connect();
+	}
+	
+	private static IllegalStateException rootCause() {
+		return openSession();
+	}
+	
+	private static RuntimeException firstCaller() {
+		return new RuntimeException("first test", rootCause());
+	}
+	
+	private static RuntimeException secondCaller() {
+		return new RuntimeException("second test", rootCause());
+	}
+	
+	private static RuntimeException deep(int depth) {
+		return depth == 0 ? new RuntimeException("deep") : deep(depth - 1);
+	}
+
+	@Test
+	public void testRenderFoldsFrameworkFrames() {
+		String trace = StackTraces.render(firstCaller(), 50);
+		assertTrue(trace.startsWith("java.lang.RuntimeException: first test\n"));
+		assertTrue(trace.contains("Caused by: java.lang.IllegalStateException"));
+		assertTrue(trace.contains("framework frames"));
+		assertFalse(trace.contains("at org.junit."));
+		assertFalse(trace.contains("at sun.reflect."));
+	}
+	
+	@Test
+	public void testRenderCapsFrames() {
+		String trace = StackTraces.render(deep(100), 10);
+		assertEquals(10, trace.split("\tat ").length - 1);
+		assertTrue(trace.contains("more frames"));
+	}
+	
+	@Test
+	public void testFingerprint() {
+		//Same root cause, different messages.
+		assertEquals(StackTraces.fingerprint(rootCause()), StackTraces.fingerprint(rootCause()));
+		assertNotEquals(StackTraces.fingerprint(rootCause()), StackTraces.fingerprint(deep(0)));
+	}
+	
+	@Test
+	public void testFailureLogsDeduplicatedPerBuild() throws Exception {
+		FailureLogs logs = new FailureLogs(50);
+		try {
+			String first = logs.render("build", rootCause()).get();
+			String second = logs.render("build", rootCause()).get();
+			String otherBuild = logs.render("other build", rootCause()).get();
+			assertTrue(first.contains("\tat "));
+			assertFalse(second.contains("\tat "));
+			assertEquals(first.substring(0, first.indexOf('\n')), second.substring(0, first.indexOf('\n')));
+			assertTrue(otherBuild.contains("\tat "));
+		} finally {
+			logs.shutdown();
+		}
+	}
+	
+	@Test
+	public void testFailureLogsDeduplicatedAcrossJvms() throws Exception {
+		File directory = new File(System.getProperty("java.io.tmpdir"), "batam-failures-" + System.nanoTime());
+		//Each fork of a build has its own failure logs.
+		FailureLogs fork1 = new FailureLogs(50, directory, "run 1");
+		FailureLogs fork2 = new FailureLogs(50, directory, "run 1");
+		//A later run of the same build.
+		FailureLogs rerun = new FailureLogs(50, directory, "run 2");
+		try {
+			assertTrue(fork1.log("build", rootCause()).contains("\tat "));
+			assertFalse(fork2.log("build", rootCause()).contains("\tat "));
+			assertTrue(fork2.log("other build", rootCause()).contains("\tat "));
+			assertTrue(rerun.log("build", rootCause()).contains("\tat "));
+		} finally {
+			fork1.shutdown();
+			fork2.shutdown();
+			rerun.shutdown();
+			delete(directory);
+		}
+	}
+	
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if(children != null){
+			for(File child : children){
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,141 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.junit.Test;
+
+import com.modeln.batam.connector.Connector;
+import com.modeln.batam.connector.TestSummarizer;
+import com.modeln.batam.connector.exception.NoConnectionFoundException;
+import com.modeln.batam.connector.util.Histogram;
+
+public class TestSummarizerTest {
+
+	@Test
+	public void testHistogram() {
+		Histogram histogram = new Histogram();
+		histogram.record(0);
+		histogram.record(1);
+		histogram.record(3);
+		histogram.record(100);
+		assertEquals(4, histogram.getCount());
+		assertEquals(Arrays.asList(1L, 1L, 1L, 0L, 0L, 0L, 0L, 1L), histogram.toList());
+		assertEquals(3, histogram.getPercentile(75));
+		assertEquals(127, histogram.getPercentile(100));
+	}
+	
+	@Test
+	public void testSummary() throws Exception {
+		Connector connector = Connector.getInstance("summary");
+		connector.beginConnection();
+		TestSummarizer summary = connector.openTestSummary(null, "summary build", null, "summary report");
+		try {
+			assertNull(summary.flush());
+			summary.recordPass("com.example.FirstTest", 10);
+			summary.recordPass("com.example.FirstTest", 20);
+			summary.recordPass("com.example.SecondTest", 5);
+			
+			JSONObject message = (JSONObject)JSONValue.parse(summary.flush());
+			assertEquals("test_summary", message.get("action"));
+			JSONObject data = (JSONObject)message.get("data");
+			assertEquals("summary report", data.get("name"));
+			JSONArray classes = (JSONArray)data.get("classes");
+			assertEquals(2, classes.size());
+			long passes = 0;
+			for(Object record : classes){
+				JSONObject summaryRecord = (JSONObject)record;
+				if("com.example.FirstTest".equals(summaryRecord.get("name"))){
+					assertEquals(30L, summaryRecord.get("duration"));
+				}
+				passes += (Long)summaryRecord.get("passes");
+			}
+			assertEquals(3, passes);
+			
+			//Counts are reset once published.
+			assertNull(summary.flush());
+		} finally {
+			summary.close();
+			connector.endConnection();
+			Connector.removeInstance("summary");
+		}
+	}
+	
+	@Test
+	public void testSummaryKeptOnFailure() throws Exception {
+		Connector connector = Connector.getInstance("summary");
+		TestSummarizer summary = connector.openTestSummary(null, "summary build", null, "summary report");
+		try {
+			summary.recordPass("com.example.FirstTest", 10);
+			try {
+				//No connection is established yet.
+				summary.flush();
+				fail();
+			}catch(NoConnectionFoundException e){
+			}
+			summary.recordPass("com.example.FirstTest", 20);
+			
+			connector.beginConnection();
+			JSONObject message = (JSONObject)JSONValue.parse(summary.flush());
+			JSONArray classes = (JSONArray)((JSONObject)message.get("data")).get("classes");
+			assertEquals(1, classes.size());
+			JSONObject record = (JSONObject)classes.get(0);
+			assertEquals(2L, record.get("passes"));
+			assertEquals(30L, record.get("duration"));
+			assertEquals(Arrays.asList(0L, 0L, 0L, 0L, 1L, 1L), record.get("histogram"));
+		} finally {
+			summary.close();
+			connector.endConnection();
+			Connector.removeInstance("summary");
+		}
+	}
+	
+	@Test
+	public void testStableSampling() throws Exception {
+		Connector connector = Connector.getInstance("summary");
+		TestSummarizer summary = connector.openTestSummary(null, "summary build", null, "summary report");
+		try {
+			int sampled = 0;
+			for(int i = 0; i < 10000; i++){
+				String name = "com.example.Test.test" + i;
+				assertEquals(summary.isSampled(name), summary.isSampled(name));
+				sampled += summary.isSampled(name) ? 1 : 0;
+			}
+			//Default sample rate is 1%.
+			assertTrue(sampled > 0 && sampled < 500);
+		} finally {
+			summary.close();
+			Connector.removeInstance("summary");
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.modeln.batam.connector.util.Utf8;
+
+public class Utf8Test {
+
+	@Test
+	public void testEncode() {
+		StringBuilder message = new StringBuilder();
+		for(int i = 0; i < 2000; i++){
+			message.append("{\"name\": \"\u00e9t\u00e9 \u20ac \ud83d\ude00\"} ");
+		}
+		byte[] expected = message.toString().getBytes(Utf8.UTF8);
+		assertEquals(expected.length, Utf8.length(message));
+		assertArrayEquals(expected, Utf8.encode(message));
+		assertArrayEquals(new byte[0], Utf8.encode(""));
+	}
+	
+	@Test
+	public void testUnpairedSurrogates() {
+		String message = "a\ud83db\ude00";
+		assertArrayEquals(message.getBytes(Utf8.UTF8), Utf8.encode(message));
+		assertArrayEquals("a?".getBytes(Utf8.UTF8), Utf8.encode("a\ud83d"));
+	}
+}
@@ -0,0 +1,114 @@
+/**
+ * The MIT License (MIT)
+ * 
+ * Copyright (c) 2014 Model N
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.modeln.batam;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.junit.Test;
+
+import com.modeln.batam.connector.wrapper.BuildEntry;
+import com.modeln.batam.connector.wrapper.Pair;
+import com.modeln.batam.connector.wrapper.ReportEntry;
+import com.modeln.batam.connector.wrapper.Step;
+import com.modeln.batam.connector.wrapper.TestEntry;
+
+public class WrapperBuilderTest {
+
+	@Test
+	public void testTestBuilderMatchesConstructor() {
+		TestEntry expected = new TestEntry(null, null, "build", null, "suite", "test1", "description", new Date(1000), new Date(2000), "pass", 
+				Arrays.asList(new Pair("browser", "firefox")), Arrays.asList("smoke"), 
+				Arrays.asList(new Step(1, "login", new Date(1000), new Date(1500), null, null, null, "pass", null)), "log", false);
+		
+		TestEntry.Builder builder = TestEntry.builder();
+		builder.buildName("build").reportName("suite").name("test1").description("description")
+				.startDate(1000).endDate(2000).status("pass").criteria("browser", "firefox").tag("smoke").log("log")
+				.addStep().order(1).name("login").startDate(1000).endDate(1500).status("pass");
+		
+		assertEquals(expected.toJSONString(), builder.build().toJSONString());
+	}
+	
+	@Test
+	public void testResetReusesInstances() {
+		TestEntry.Builder builder = TestEntry.builder();
+		TestEntry first = builder.name("test1").startDate(1000).criteria("browser", "firefox").build();
+		Pair criteria = first.getCriterias().get(0);
+		Step step = builder.addStep().name("login").build();
+		
+		TestEntry second = builder.reset().name("test2").startDate(3000).criteria("browser", "chrome").build();
+		assertSame(first, second);
+		assertEquals(3000, second.getStartTime());
+		assertEquals(TestEntry.NO_TIME, second.getEndTime());
+		assertSame(criteria, second.getCriterias().get(0));
+		assertEquals("chrome", criteria.getValue());
+		assertNull(second.getSteps());
+		assertNull(second.getTags());
+		
+		assertSame(step, builder.addStep().build());
+		assertNull(step.getName());
+	}
+	
+	@Test
+	public void testReportAndBuildBuilders() {
+		ReportEntry report = ReportEntry.builder().name("suite").buildName("build").startDate(1000).status("completed").log("done").build();
+		assertEquals(new ReportEntry(null, "suite", null, "build", null, new Date(1000), null, "completed", Collections.singletonList("done")).toJSONString(), 
+				report.toJSONString());
+		
+		BuildEntry.Builder builder = BuildEntry.builder();
+		BuildEntry build = builder.name("build").info("branch", "master").screenshotURL("http://screenshots/build.png").build();
+		assertEquals("master", build.getInfos().get(0).getValue());
+		assertEquals("http://screenshots/build.png", build.getScreenshotURL());
+		builder.reset();
+		assertNull(build.getName());
+		assertNull(build.getInfos());
+		assertNull(build.getScreenshotURL());
+	}
+	
+	@Test
+	public void testPrimitiveTimesAndNanosecondDuration() {
+		TestEntry test = TestEntry.builder().name("test1").startDate(1000).endDate(1001).durationNs(250000).build();
+		assertEquals(new Date(1000), test.getStartDate());
+		assertNotSame(test.getStartDate(), test.getStartDate());
+		
+		JSONObject json = (JSONObject)JSONValue.parse(test.toJSONString());
+		assertEquals("1000", json.get("start_date"));
+		assertEquals(250000L, json.get("duration_ns"));
+		assertEquals(250000L, TestEntry.fromJSON(json).getDurationNs());
+		
+		test.setStartDate(null);
+		assertNull(test.getStartDate());
+		assertEquals(TestEntry.NO_TIME, test.getStartTime());
+		assertFalse(new TestEntry().toJSONString().contains("duration_ns"));
+	}
+}
@@ -219,6 +219,14 @@ function processAnalysis(data, build, previous_builds, reports, previous_reports
 				}
 			}
 			
+			//Add passes aggregated by test_summary actions
+			if(!_.isUndefined(reports[index].summary) && !_.isNull(reports[index].summary) && _.isNumber(reports[index].summary.passes)){
+				total_report_tests += reports[index].summary.passes;
+				total_tests += reports[index].summary.passes;
+				total_report_passes += reports[index].summary.passes;
+				total_passes += reports[index].summary.passes;
+			}
+			
 			//set tests info to report
 			reports[index].tests = {};
 			reports[index].tests.all = {};
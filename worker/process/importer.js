@@ -51,6 +51,18 @@ function startImport(message, ack){
 					console.log("update_test action.");
 					testImporter.update(data, ack);
 				break;
+				case "test_summary":
+					console.log("test_summary action.");
+					reportImporter.summarize(data, ack);
+				break;
+				case "unchanged_tests":
+					console.log("unchanged_tests action.");
+					reportImporter.unchanged(data, ack);
+				break;
+				case "append_test_log":
+					console.log("append_test_log action.");
+					testImporter.appendLog(data, ack);
+				break;
 				case "run_analysis":
 					console.log("run_analysis action.");
 					analyzer.run(data, ack, function(){
@@ -461,6 +461,11 @@ function updateBuild(build, data, ack){
 		build.customAttributes = customAttributes;
 	}
 	
+	//Running aggregates computed by the connector
+	if(!_.isUndefined(data.aggregates) && !_.isNull(data.aggregates)){
+		build.aggregates = data.aggregates;
+	}
+	
 	//Check and set status
 	if(!_.isNull(status)){
 		build.status = status;
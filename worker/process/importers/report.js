@@ -8,7 +8,8 @@ var mongoskin = require('mongoskin'),
 	db = mongoskin.db(dbUrl, {safe:true}),
 	collections = {
 		builds: db.collection('builds'),
-		reports: db.collection('reports')
+		reports: db.collection('reports'),
+		tests: db.collection('tests')
 	};
 	
 exports.create = createReportEntrypoint;
@@ -195,7 +196,7 @@ function createReport(build, data, ack){
 
 exports.update = updateReportEntrypoint;
 
-function updateReportEntrypoint(data, ack){
+function updateReportEntrypoint(data, ack, apply){
 	var findBuildReportCallback = function (error, builds){
 		if(error){
 			return e.error(data, ack, false, "Find Build Operation failed.");
@@ -219,7 +220,7 @@ function updateReportEntrypoint(data, ack){
 		}
 
 		//Update report.
-		updateBuildReport(builds[0], data, ack);
+		updateBuildReport(builds[0], data, ack, apply);
 	};
 
 	var id = data.id;
@@ -234,11 +235,11 @@ function updateReportEntrypoint(data, ack){
 		var build = {};
 		build.id = buildId;
 		
-		updateBuildReport(build, data, ack);
+		updateBuildReport(build, data, ack, apply);
 	}
 }
 
-function updateBuildReport(build, data, ack){
+function updateBuildReport(build, data, ack, apply){
 	var findReportsCallback = function (error, reports){
 		if(error){
 			return e.error(data, ack, false, "Find Report Operation failed.");
@@ -260,7 +261,7 @@ function updateBuildReport(build, data, ack){
 		}
 		
 		//Update report.
-		updateReport(reports[0], data, ack);
+		(apply || updateReport)(reports[0], data, ack);
 	};
 	
 	var id = data.id;
@@ -347,9 +348,83 @@ function updateReport(report, data, ack){
 	}
 	report.screenshotURL = data.screenshotURL;
 	report.customAttributes = data.customAttributes;
+	
+	//Running aggregates computed by the connector
+	if(!_.isUndefined(data.aggregates) && !_.isNull(data.aggregates)){
+		report.aggregates = data.aggregates;
+	}
+
+	//Summary counters are only incremented by test_summary actions.
+	delete report.summary;
 
 	//Update reports
 	collections.reports.updateById(report._id, {$set: report}, updateReportInfoCallback);
 }
 
+exports.summarize = summarizeReportEntrypoint;
+
+function summarizeReportEntrypoint(data, ack){
+	if(_.isUndefined(data.classes) || !_.isArray(data.classes)){
+		return e.error(data, ack, true, "Classes field not valid.");
+	}
+	updateReportEntrypoint(data, ack, summarizeReport);
+}
 
+function summarizeReport(report, data, ack){
+	var summarizeReportCallback = function (error, count){
+		if(error) {
+			return e.error(data, ack, false, "Summarize Report operation failed.");
+		}
+		
+		ack.acknowledge();
+	};
+	
+	//Passes are aggregated per class, counters are incremented so that summaries can be applied in any order.
+	var inc = {};
+	var add = function(field, value){
+		inc[field] = (inc[field] || 0) + value;
+	};
+	for(var i = 0; i < data.classes.length; i++){
+		var summary = data.classes[i];
+		if(_.isNull(summary) || !_.isString(summary.name) || !_.isNumber(summary.passes) || !_.isNumber(summary.duration)){
+			return e.error(data, ack, true, "Classes object "+i+" not valid.");
+		}
+		//Mongo field names can't contain dots.
+		var prefix = "summary.classes."+summary.name.replace(/\./g, "\uff0e");
+		add("summary.passes", summary.passes);
+		add("summary.duration", summary.duration);
+		add(prefix+".passes", summary.passes);
+		add(prefix+".duration", summary.duration);
+		var histogram = _.isArray(summary.histogram) ? summary.histogram : [];
+		for(var j = 0; j < histogram.length; j++){
+			if(_.isNumber(histogram[j]) && histogram[j] > 0){
+				add("summary.histogram."+j, histogram[j]);
+				add(prefix+".histogram."+j, histogram[j]);
+			}
+		}
+	}
+	
+	collections.reports.updateById(report._id, {$inc: inc}, summarizeReportCallback);
+}
+
+exports.unchanged = unchangedTestsEntrypoint;
+
+function unchangedTestsEntrypoint(data, ack){
+	if(_.isUndefined(data.tests) || !_.isArray(data.tests)){
+		return e.error(data, ack, true, "Tests field not valid.");
+	}
+	updateReportEntrypoint(data, ack, unchangedTests);
+}
+
+function unchangedTests(report, data, ack){
+	var unchangedTestsCallback = function (error, count){
+		if(error) {
+			return e.error(data, ack, false, "Unchanged Tests operation failed.");
+		}
+		
+		ack.acknowledge();
+	};
+	
+	//Results skipped by the connector result cache are confirmed by the rerun.
+	collections.tests.update({report_id: report.id, name: {$in: data.tests}}, {$set: {unchanged: true}}, {multi: true}, unchangedTestsCallback);
+}
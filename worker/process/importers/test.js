@@ -298,6 +298,10 @@ function createTest(report, data, ack){
 			test.time = "1h and more";
 		}
 	}
+	//Nanosecond duration measured by the connector, more accurate than the dates for sub-millisecond tests.
+	if(_.isNumber(data.duration_ns)){
+		test.duration.ns = data.duration_ns;
+	}
 	
 	//Check Criterias
 	if(!_.isNull(criterias) && !_.isArray(criterias)){
@@ -366,7 +370,7 @@ function createTest(report, data, ack){
 
 exports.update = updateTestEntrypoint;
 
-function updateTestEntrypoint(data, ack){
+function updateTestEntrypoint(data, ack, apply){
 	var findReportCallback = function (error, reports){
 		if(error){
 			return e.error(data, ack, false, "Find Report Operation failed.");
@@ -391,7 +395,7 @@ function updateTestEntrypoint(data, ack){
 		}
 		
 		//Create test.
-		updateTest(reports[0], data, ack);
+		(apply || updateTest)(reports[0], data, ack);
 	};
 	
 	var reportId = data.report_id;
@@ -573,6 +577,8 @@ function updateTest(report, data, ack){
 
 
 		var test = tests[0];
+		//Log attachment chunks are only pushed by append_test_log actions.
+		delete test.log_attachment;
 		
 		if(!_.isNull(description)){
 			test.description = description;
@@ -659,6 +665,12 @@ function updateTest(report, data, ack){
 				test.time = "1h and more";
 			}
 		}
+		if(_.isNumber(data.duration_ns)){
+			if(test.duration == undefined){
+				test.duration = {};
+			}
+			test.duration.ns = data.duration_ns;
+		}
 		
 		//Set logs
 		if(!_.isUndefined(log) && !_.isNull(log)){
@@ -834,4 +846,28 @@ function updateTest(report, data, ack){
 	collections.tests.find({report_id: report.id, name: name}).toArray(checkTestExistCallback);
 }
 
+exports.appendLog = appendTestLogEntrypoint;
+
+function appendTestLogEntrypoint(data, ack){
+	if(!_.isNumber(data.index) || !_.isString(data.content)){
+		return e.error(data, ack, true, "Log chunk not valid.");
+	}
+	updateTestEntrypoint(data, ack, appendTestLog);
+}
 
+function appendTestLog(report, data, ack){
+	var appendTestLogCallback = function (error, count){
+		if(error) {
+			return e.error(data, ack, false, "Append Test Log operation failed.");
+		}
+		if(count == 0){
+			return e.error(data, ack, true, "Test doesn't exist. "+
+					"Please make sure to create a test using the create_test action before to attach a log to it (using append_test_log action).");
+		}
+		
+		ack.acknowledge();
+	};
+	
+	//Chunks may be processed out of order, they are sorted by index when displayed.
+	collections.tests.update({report_id: report.id, name: data.name}, {$push: {log_attachment: {index: data.index, content: data.content}}}, appendTestLogCallback);
+}